@@ -4,7 +4,7 @@ Servicio LLM con sistema de fallback para OpenRouter.
 import httpx
 import logging
 import json
-from typing import Optional, List, Dict
+from typing import Optional, List, Dict, Iterator
 from system_utils import system_config
 
 logger = logging.getLogger(__name__)
@@ -152,6 +152,87 @@ Responde siempre en español puro. """
             "error": "No se pudo conectar con ningún modelo LLM"
         }
     
+    def _stream_openrouter(self, model_config: dict, messages: List[Dict]) -> Iterator[str]:
+        """
+        Llama a OpenRouter con stream=True y va devolviendo los fragmentos de
+        texto según llegan (eventos SSE "data: {...}" terminados en "data: [DONE]").
+        Lanza RuntimeError si la API responde con error.
+        """
+        headers = {
+            "Authorization": f"Bearer {model_config['api_key']}",
+            "Content-Type": "application/json",
+            "HTTP-Referer": "https://soteria-emergency.app",
+            "X-Title": "Soteria Emergency Assistant"
+        }
+
+        payload = {
+            "model": model_config["name"],
+            "messages": messages,
+            "max_tokens": 1024,
+            "temperature": 0.7,
+            "top_p": 0.9,
+            "stream": True
+        }
+
+        with httpx.Client(timeout=self.timeout) as client:
+            with client.stream(
+                "POST",
+                f"{model_config['api_base']}/chat/completions",
+                headers=headers,
+                json=payload
+            ) as response:
+                if response.status_code != 200:
+                    raise RuntimeError(f"OpenRouter ({model_config['name']}): HTTP {response.status_code}")
+                for line in response.iter_lines():
+                    if not line.startswith("data:"):
+                        continue  # comentarios SSE (": OPENROUTER PROCESSING") y líneas vacías
+                    data = line[len("data:"):].strip()
+                    if data == "[DONE]":
+                        break
+                    try:
+                        chunk = json.loads(data)
+                    except json.JSONDecodeError:
+                        continue
+                    delta = chunk.get("choices", [{}])[0].get("delta", {}).get("content")
+                    if delta:
+                        yield delta
+
+    def chat_stream(self, user_message: str, context: str = "") -> Iterator[dict]:
+        """
+        Versión en streaming de chat(). Genera eventos:
+            {"type": "token", "text": "..."}        un fragmento de la respuesta
+            {"type": "done", "model_used": "..."}   fin correcto
+            {"type": "error", "error": "..."}       fallo (sin más eventos detrás)
+
+        El fallback al modelo secundario solo es posible mientras el primario no
+        haya emitido ningún fragmento.
+        """
+        if not system_config.is_configured():
+            yield {"type": "error", "error": "API key de OpenRouter no configurada"}
+            return
+
+        messages = self._create_messages(user_message, context)
+
+        for model_config in (self.primary_model, self.fallback_model):
+            emitted = False
+            try:
+                logger.info(f"Streaming con modelo: {model_config['name']}")
+                for delta in self._stream_openrouter(model_config, messages):
+                    emitted = True
+                    yield {"type": "token", "text": delta}
+                if emitted:
+                    yield {"type": "done", "model_used": model_config["name"]}
+                    return
+                logger.warning(f"Modelo {model_config['name']} no devolvió texto")
+            except Exception as e:
+                logger.error(f"Error en streaming ({model_config['name']}): {e}")
+                if emitted:
+                    yield {"type": "error", "error": str(e)}
+                    return
+
+        logger.error("Ambos modelos LLM fallaron (streaming)")
+        yield {"type": "error", "error": "No se pudo conectar con ningún modelo LLM"}
+
     def detect_emergency_type(self, text: str) -> dict:
         """
         Usa el LLM para detectar el tipo de emergencia (sin clasificar para el usuario).
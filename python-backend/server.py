@@ -1,16 +1,18 @@
 import csv
 import joblib
+from functools import lru_cache
 from difflib import get_close_matches
 from pathlib import Path
-from fastapi import FastAPI, UploadFile, File, Form
-from fastapi.responses import Response
+from typing import Optional
+from fastapi import FastAPI, HTTPException, UploadFile, File, Form, Header
+from fastapi.responses import Response, StreamingResponse
 from pydantic import BaseModel
 from spellchecker import SpellChecker
 
 # Importar nuevos servicios
 from system_utils import system_config
 from llm_service import llm_service
-from stt_service import stt_service
+from stt_service import stt_service, decode_audio, SLPC_ENCODING
 import tts_service
 
 MODEL_PATH = Path(__file__).parent / "models" / "emergency_classifier.pkl"
@@ -49,6 +51,7 @@ with open(DATA_PATH, encoding="utf-8") as f:
             if len(word) > 2:
                 dataset_words.add(word)
 VOCABULARY = list(dataset_words)
+VOCABULARY_SET = dataset_words
 spell.word_frequency.load_words(VOCABULARY)
 
 
@@ -93,25 +96,24 @@ class ClassifyResponse(BaseModel):
 
 
 def correct_text(text: str) -> str:
-    words = text.lower().split()
-    corrected = []
-    for word in words:
-        if len(word) <= 2 or word in VOCABULARY:
-            corrected.append(word)
-            continue
-        # Paso 1: si es palabra valida en español, no tocar
-        if word in spell:
-            corrected.append(word)
-            continue
-        # Paso 2: buscar la mas parecida en el CSV (prioridad sobre pyspellchecker)
-        matches = get_close_matches(word, VOCABULARY, n=1, cutoff=0.7)
-        if matches:
-            corrected.append(matches[0])
-            continue
-        # Paso 3: fallback a pyspellchecker para palabras que no matchean el CSV
-        correction = spell.correction(word)
-        corrected.append(correction if correction else word)
-    return " ".join(corrected)
+    return " ".join(correct_word(word) for word in text.lower().split())
+
+
+@lru_cache(maxsize=20000)
+def correct_word(word: str) -> str:
+    """Corrige una palabra; se cachea porque los lotes repiten mucho vocabulario."""
+    if len(word) <= 2 or word in VOCABULARY_SET:
+        return word
+    # Paso 1: si es palabra valida en español, no tocar
+    if word in spell:
+        return word
+    # Paso 2: buscar la mas parecida en el CSV (prioridad sobre pyspellchecker)
+    matches = get_close_matches(word, VOCABULARY, n=1, cutoff=0.7)
+    if matches:
+        return matches[0]
+    # Paso 3: fallback a pyspellchecker para palabras que no matchean el CSV
+    correction = spell.correction(word)
+    return correction if correction else word
 
 
 SECONDARY_THRESHOLD = 0.20
@@ -134,16 +136,10 @@ def has_relevant_keywords(label: str, text: str) -> bool:
     return False
 
 
-@app.post("/classify", response_model=ClassifyResponse)
-def classify(request: ClassifyRequest):
-    corrected = correct_text(request.text)
-
-    label = model.predict([corrected])[0]
-    probabilities = model.predict_proba([corrected])[0]
-    classes = model.classes_
-
+def build_response(corrected: str, probabilities) -> ClassifyResponse:
+    """Construye la respuesta de /classify a partir de las probabilidades del modelo."""
     # Ordenar por probabilidad descendente
-    ranked = sorted(zip(classes, probabilities), key=lambda x: -x[1])
+    ranked = sorted(zip(model.classes_, probabilities), key=lambda x: -x[1])
 
     primary_label, primary_conf = ranked[0]
     primary = EmergencyDetail(
@@ -177,6 +173,42 @@ def classify(request: ClassifyRequest):
     )
 
 
+@app.post("/classify", response_model=ClassifyResponse)
+def classify(request: ClassifyRequest):
+    corrected = correct_text(request.text)
+    probabilities = model.predict_proba([corrected])[0]
+    return build_response(corrected, probabilities)
+
+
+MAX_BATCH_SIZE = 512
+
+
+class ClassifyBatchRequest(BaseModel):
+    texts: list[str]
+
+
+class ClassifyBatchResponse(BaseModel):
+    results: list[ClassifyResponse]
+
+
+@app.post("/classify/batch", response_model=ClassifyBatchResponse)
+def classify_batch(request: ClassifyBatchRequest):
+    """Clasifica varios textos con una sola llamada vectorizada al modelo.
+
+    Devuelve un resultado por texto, en el mismo orden que la peticion.
+    """
+    if len(request.texts) > MAX_BATCH_SIZE:
+        raise HTTPException(status_code=413, detail=f"Maximo {MAX_BATCH_SIZE} textos por lote")
+    if not request.texts:
+        return ClassifyBatchResponse(results=[])
+
+    corrected = [correct_text(text) for text in request.texts]
+    probabilities = model.predict_proba(corrected)
+    return ClassifyBatchResponse(
+        results=[build_response(text, probs) for text, probs in zip(corrected, probabilities)]
+    )
+
+
 @app.get("/geolocate")
 def geolocate():
     """Obtiene ubicacion aproximada del usuario por IP publica."""
@@ -319,6 +351,19 @@ def chat(request: ChatRequest):
         return ChatResponse(success=False, response="Error interno del servidor", model_used="none", error=str(e))
 
 
+@app.post("/chat/stream")
+def chat_stream(request: ChatRequest):
+    """
+    Conversación con el LLM en streaming (NDJSON): un evento JSON por línea,
+    enviado en cuanto el modelo genera cada fragmento. Ver LLMService.chat_stream.
+    """
+    def events():
+        for event in llm_service.chat_stream(request.message, request.context):
+            yield json.dumps(event, ensure_ascii=False) + "\n"
+
+    return StreamingResponse(events(), media_type="application/x-ndjson")
+
+
 class TTSRequest(BaseModel):
     text: str
     emotion: str = "neutral"
@@ -347,14 +392,16 @@ def text_to_speech(request: TTSRequest):
 @app.post("/stt")
 async def speech_to_text_advanced(
     audio: UploadFile = File(...),
-    sample_rate: int = Form(16000)
+    sample_rate: int = Form(16000),
+    x_audio_encoding: Optional[str] = Header(None)
 ):
     """
     Endpoint avanzado para reconocimiento de voz.
     Usa fallback automático: emotion2vec → Vosk
+    Acepta audio comprimido "slpc" si la petición lo indica en X-Audio-Encoding.
     """
     try:
-        audio_data = await audio.read()
+        audio_data, sample_rate = decode_audio(await audio.read(), x_audio_encoding, sample_rate)
         result = stt_service.transcribe(audio_data, sample_rate)
         return result
     except Exception as e:
@@ -371,14 +418,15 @@ async def speech_to_text_advanced(
 @app.post("/analyze-emotion")
 async def analyze_emotion(
     audio: UploadFile = File(...),
-    sample_rate: int = Form(16000)
+    sample_rate: int = Form(16000),
+    x_audio_encoding: Optional[str] = Header(None)
 ):
     """
     Endpoint para detectar emoción en audio.
     Útil para detectar urgencia del usuario.
     """
     try:
-        audio_data = await audio.read()
+        audio_data, sample_rate = decode_audio(await audio.read(), x_audio_encoding, sample_rate)
         result = stt_service.get_emotion(audio_data, sample_rate)
         return result
     except Exception as e:
@@ -403,7 +451,9 @@ def system_info():
 
 
 @app.get("/health")
-def health():
+def health(response: Response):
+    # Anuncia las codificaciones de audio que /stt y /analyze-emotion saben decodificar
+    response.headers["X-Audio-Encodings"] = SLPC_ENCODING
     return {"status": "ok"}
 
 
@@ -14,6 +14,97 @@ from system_utils import system_config
 logger = logging.getLogger(__name__)
 
 
+# Audio comprimido "slpc" que envía el cliente Java (AudioCodec.java): predictor
+# lineal fijo de orden 0-4 por bloque y residuos en código Rice, sin pérdidas.
+SLPC_ENCODING = "slpc"
+_SLPC_MAGIC = b"SLPC"
+_SLPC_VERSION = 1
+_SLPC_ESCAPE = 32
+_SLPC_RAW_BITS = 24
+
+
+def _read_bits(data: bytes, bit: int, count: int) -> int:
+    if count == 0:
+        return 0
+    first = bit >> 3
+    last = (bit + count + 7) >> 3
+    if last > len(data):
+        raise ValueError("Flujo SLPC truncado")
+    chunk = int.from_bytes(data[first:last], "big")
+    return (chunk >> (last * 8 - bit - count)) & ((1 << count) - 1)
+
+
+def _predict(order: int, s: list, i: int) -> int:
+    if order == 0:
+        return 0
+    if order == 1:
+        return s[i - 1]
+    if order == 2:
+        return 2 * s[i - 1] - s[i - 2]
+    if order == 3:
+        return 3 * s[i - 1] - 3 * s[i - 2] + s[i - 3]
+    return 4 * s[i - 1] - 6 * s[i - 2] + 4 * s[i - 3] - s[i - 4]
+
+
+def decode_slpc(data: bytes) -> tuple:
+    """
+    Decodifica audio "slpc" a PCM de 16 bits little endian.
+
+    Returns:
+        (pcm, sample_rate)
+    """
+    if len(data) < 9 or data[:4] != _SLPC_MAGIC:
+        raise ValueError("No es un flujo SLPC")
+    if data[4] != _SLPC_VERSION:
+        raise ValueError(f"Versión SLPC no soportada: {data[4]}")
+    sample_rate = int.from_bytes(data[5:9], "big")
+
+    samples = []
+    pos = 9
+    while pos < len(data):
+        if pos + 4 > len(data):
+            raise ValueError("Flujo SLPC truncado")
+        n = int.from_bytes(data[pos:pos + 2], "big")
+        order, k = data[pos + 2], data[pos + 3]
+        if order > 4 or order > n:
+            raise ValueError("Bloque SLPC inválido")
+        pos += 4
+        block = []
+        for _ in range(order):
+            block.append(int.from_bytes(data[pos:pos + 2], "big", signed=True))
+            pos += 2
+        bit = pos * 8
+        for i in range(order, n):
+            q = 0
+            while q < _SLPC_ESCAPE and _read_bits(data, bit, 1):
+                q += 1
+                bit += 1
+            if q < _SLPC_ESCAPE:
+                bit += 1  # cero que cierra el unario
+                u = (q << k) | _read_bits(data, bit, k)
+                bit += k
+            else:
+                u = _read_bits(data, bit, _SLPC_RAW_BITS)
+                bit += _SLPC_RAW_BITS
+            block.append(_predict(order, block, i) + ((u >> 1) ^ -(u & 1)))
+        pos = (bit + 7) >> 3
+        samples.extend(block)
+
+    return np.asarray(samples, dtype="<i2").tobytes(), sample_rate
+
+
+def decode_audio(audio_data: bytes, encoding: Optional[str], sample_rate: int) -> tuple:
+    """
+    Devuelve (pcm, sample_rate) según la cabecera X-Audio-Encoding de la petición.
+    Sin cabecera el audio ya es PCM.
+    """
+    if encoding is None or encoding.strip().lower() in ("", "pcm"):
+        return audio_data, sample_rate
+    if encoding.strip().lower() == SLPC_ENCODING:
+        return decode_slpc(audio_data)
+    raise ValueError(f"Codificación de audio no soportada: {encoding}")
+
+
 class STTService:
     """
     Servicio de reconocimiento de voz con fallback automático.
@@ -50,3 +50,27 @@ def test_has_relevant_keywords_for_fire_label():
 def test_classify_rejects_missing_body():
     resp = client.post("/classify", json={})
     assert resp.status_code == 422  # validación Pydantic
+
+
+def test_classify_batch_matches_single_classify():
+    texts = ["hay un incendio en la cocina", "mi padre se ha caido por la escalera"]
+    resp = client.post("/classify/batch", json={"texts": texts})
+    assert resp.status_code == 200
+    results = resp.json()["results"]
+
+    assert len(results) == len(texts)
+    for text, result in zip(texts, results):
+        single = client.post("/classify", json={"text": text}).json()
+        assert result == single
+
+
+def test_classify_batch_accepts_empty_list():
+    resp = client.post("/classify/batch", json={"texts": []})
+    assert resp.status_code == 200
+    assert resp.json() == {"results": []}
+
+
+def test_classify_batch_rejects_oversized_batch():
+    texts = ["hay fuego"] * (server.MAX_BATCH_SIZE + 1)
+    resp = client.post("/classify/batch", json={"texts": texts})
+    assert resp.status_code == 413
@@ -14,6 +14,7 @@ def test_health_ok():
     resp = client.get("/health")
     assert resp.status_code == 200
     assert resp.json() == {"status": "ok"}
+    assert "slpc" in resp.headers["X-Audio-Encodings"]
 
 
 def test_system_info_has_expected_keys():
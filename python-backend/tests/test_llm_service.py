@@ -80,3 +80,52 @@ def test_detect_emergency_type_markdown_parsing():
         result = service.detect_emergency_type("hola")
         assert result["is_emergency"] is False
         assert result["type"] == "none"
+
+def _stream_response(status_code, lines):
+    response = MagicMock()
+    response.status_code = status_code
+    response.iter_lines.return_value = iter(lines)
+    return response
+
+@patch("httpx.Client")
+def test_stream_openrouter_parses_sse(mock_client_class):
+    mock_client = mock_client_class.return_value.__enter__.return_value
+    mock_client.stream.return_value.__enter__.return_value = _stream_response(200, [
+        ": OPENROUTER PROCESSING",
+        'data: {"choices": [{"delta": {"content": "Mantenga "}}]}',
+        "",
+        'data: {"choices": [{"delta": {"content": "la calma."}}]}',
+        'data: {"choices": [{"delta": {}}]}',
+        "data: [DONE]",
+    ])
+
+    service = LLMService()
+    config = {"name": "test-model", "api_key": "key", "api_base": "http://test"}
+    deltas = list(service._stream_openrouter(config, [{"role": "user", "content": "hi"}]))
+
+    assert deltas == ["Mantenga ", "la calma."]
+    assert mock_client.stream.call_args.kwargs["json"]["stream"] is True
+
+@patch("httpx.Client")
+def test_chat_stream_falls_back_before_first_token(mock_client_class):
+    mock_client = mock_client_class.return_value.__enter__.return_value
+    mock_client.stream.return_value.__enter__.side_effect = [
+        _stream_response(500, []),
+        _stream_response(200, ['data: {"choices": [{"delta": {"content": "Hola"}}]}', "data: [DONE]"]),
+    ]
+
+    with patch("system_utils.system_config.is_configured", return_value=True):
+        service = LLMService()
+        events = list(service.chat_stream("hola"))
+
+    assert events == [
+        {"type": "token", "text": "Hola"},
+        {"type": "done", "model_used": service.fallback_model["name"]},
+    ]
+
+def test_chat_stream_not_configured():
+    with patch("system_utils.system_config.is_configured", return_value=False):
+        events = list(LLMService().chat_stream("hola"))
+
+    assert len(events) == 1
+    assert events[0]["type"] == "error"
@@ -1,3 +1,4 @@
+import json
 import pytest
 from fastapi.testclient import TestClient
 from unittest.mock import patch, MagicMock
@@ -24,6 +25,21 @@ def test_chat_endpoint(mock_chat):
     assert resp.status_code == 200
     assert resp.json()["response"] == "Mantenga la calma, la ayuda va en camino."
 
+@patch("llm_service.llm_service.chat_stream")
+def test_chat_stream_endpoint(mock_stream):
+    mock_stream.return_value = iter([
+        {"type": "token", "text": "Mantenga "},
+        {"type": "token", "text": "la calma."},
+        {"type": "done", "model_used": "test-model"},
+    ])
+
+    resp = client.post("/chat/stream", json={"message": "ayuda!", "context": "fuego"})
+    assert resp.status_code == 200
+    assert resp.headers["content-type"].startswith("application/x-ndjson")
+    events = [json.loads(line) for line in resp.text.splitlines()]
+    assert "".join(e["text"] for e in events if e["type"] == "token") == "Mantenga la calma."
+    assert events[-1] == {"type": "done", "model_used": "test-model"}
+
 @patch("tts_service.tts_service.synthesize")
 def test_tts_endpoint_success(mock_synthesize):
     mock_synthesize.return_value = {
@@ -55,6 +71,20 @@ def test_stt_endpoint(mock_transcribe):
     assert resp.status_code == 200
     assert resp.json()["text"] == "fuego detectado"
 
+@patch("stt_service.stt_service.transcribe")
+def test_stt_endpoint_decodes_compressed_audio(mock_transcribe):
+    mock_transcribe.return_value = {"success": True, "text": "ok"}
+    slpc = bytes.fromhex("534c50430100003e80" "0004" "01" "01" "0064" "99a0")
+
+    files = {'audio': ('audio.slpc', slpc, 'audio/x-slpc')}
+    resp = client.post("/stt", files=files, data={"sample_rate": 8000},
+                       headers={"X-Audio-Encoding": "slpc"})
+
+    assert resp.status_code == 200
+    pcm, sample_rate = mock_transcribe.call_args[0]
+    assert sample_rate == 16000
+    assert pcm == bytes.fromhex("6400650067006400")
+
 @patch("stt_service.stt_service.get_emotion")
 def test_analyze_emotion_endpoint(mock_get_emotion):
     mock_get_emotion.return_value = {
@@ -13,7 +13,7 @@ sys_modules = {
 }
 
 with patch.dict('sys.modules', sys_modules):
-    from stt_service import STTService
+    from stt_service import STTService, decode_slpc, decode_audio
 
 def test_stt_initialization_vosk():
     service = STTService()
@@ -70,3 +70,35 @@ def test_stt_fallback_on_init_fail():
         success = service.initialize()
         assert success is True
         assert service.model_type == "vosk"
+
+
+# Flujo de referencia (mismo que AudioCodecTest.decodesReferenceStream en Java):
+# 16 kHz, un bloque de orden 1 con k = 1, muestra inicial 100 y residuos 1, 2, -3
+SLPC_REFERENCE = bytes.fromhex("534c50430100003e80" "0004" "01" "01" "0064" "99a0")
+
+
+def test_decode_slpc_reference_stream():
+    pcm, sample_rate = decode_slpc(SLPC_REFERENCE)
+    assert sample_rate == 16000
+    assert np.frombuffer(pcm, dtype="<i2").tolist() == [100, 101, 103, 100]
+
+
+def test_decode_slpc_escape_and_errors():
+    # Orden 0, k = 0: 32 unos de escape y el valor zigzag en 24 bits (-32768 -> 65535)
+    bits = "1" * 32 + format(65535, "024b")
+    bits += "0" * (-len(bits) % 8)
+    block = bytes.fromhex("0001" "00" "00") + int(bits, 2).to_bytes(len(bits) // 8, "big")
+    pcm, _ = decode_slpc(SLPC_REFERENCE[:9] + block)
+    assert np.frombuffer(pcm, dtype="<i2").tolist() == [-32768]
+
+    with pytest.raises(ValueError):
+        decode_slpc(b"RIFF0000")
+    with pytest.raises(ValueError):
+        decode_slpc(SLPC_REFERENCE[:-1])
+
+
+def test_decode_audio_by_header():
+    assert decode_audio(b"\x01\x00", None, 8000) == (b"\x01\x00", 8000)
+    assert decode_audio(SLPC_REFERENCE, "slpc", 8000)[1] == 16000
+    with pytest.raises(ValueError):
+        decode_audio(b"", "opus", 16000)
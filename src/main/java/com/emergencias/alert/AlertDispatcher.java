@@ -0,0 +1,242 @@
+package com.emergencias.alert;
+
+import com.emergencias.model.EmergencyEvent;
+import com.emergencias.services.IAlert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Motor de envío asíncrono de alertas con prioridad por gravedad.
+ *
+ * {@link IAlert#send} es bloqueante (escribe en disco y simula la llamada
+ * durante segundos), así que los controladores no lo llaman directamente:
+ * encolan el evento y reciben un future con el resultado del envío.
+ *
+ * La cola se ordena por {@code severityLevel} (primero la más grave) y, a
+ * igual gravedad, por orden de llegada. Además de los trabajadores generales
+ * hay trabajadores reservados que solo atienden alertas críticas
+ * (gravedad {@value #CRITICAL_SEVERITY}): aunque una avalancha de avisos leves
+ * tenga ocupados a todos los generales, una alerta crítica empieza a enviarse
+ * en cuanto llega.
+ */
+public final class AlertDispatcher implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(AlertDispatcher.class.getName());
+
+    public static final int CRITICAL_SEVERITY = 10;
+    public static final int DEFAULT_WORKERS = 4;
+
+    private static final Duration SHUTDOWN_GRACE = Duration.ofSeconds(2);
+
+    private static AlertDispatcher shared;
+
+    private final IAlert channel;
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final PriorityQueue<Pending> queue = new PriorityQueue<>();
+    private long sequence = 0;
+    private boolean closed = false;
+
+    /**
+     * Alerta en cola: la más grave primero y, a igual gravedad, la más antigua.
+     */
+    private record Pending(EmergencyEvent event, int severity, long sequence,
+                           CompletableFuture<Boolean> result) implements Comparable<Pending> {
+        boolean critical() {
+            return severity >= CRITICAL_SEVERITY;
+        }
+
+        @Override
+        public int compareTo(Pending other) {
+            int bySeverity = Integer.compare(other.severity, severity);
+            return bySeverity != 0 ? bySeverity : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Crea un despachador con un trabajador reservado para alertas críticas.
+     *
+     * @param channel canal por el que se envían las alertas
+     * @param workers número de trabajadores generales (al menos 1)
+     */
+    public AlertDispatcher(IAlert channel, int workers) {
+        this(channel, workers, 1);
+    }
+
+    /**
+     * @param channel          canal por el que se envían las alertas
+     * @param workers          número de trabajadores generales (al menos 1)
+     * @param reservedCritical trabajadores que solo atienden alertas críticas
+     */
+    public AlertDispatcher(IAlert channel, int workers, int reservedCritical) {
+        if (channel == null) throw new IllegalArgumentException("El canal de alertas no puede ser nulo");
+        if (workers < 1) throw new IllegalArgumentException("Se necesita al menos un trabajador: " + workers);
+        if (reservedCritical < 0) throw new IllegalArgumentException("Trabajadores reservados negativos: " + reservedCritical);
+        this.channel = channel;
+        Thread.Builder general = Thread.ofVirtual().name("soteria-alert-", 0);
+        for (int i = 0; i < workers; i++) this.workers.add(general.start(() -> work(false)));
+        Thread.Builder critical = Thread.ofVirtual().name("soteria-alert-critical-", 0);
+        for (int i = 0; i < reservedCritical; i++) this.workers.add(critical.start(() -> work(true)));
+    }
+
+    /**
+     * Despachador compartido por la interfaz; envía a la vez por
+     * {@link AlertSender} y {@link CallAlert} y da la alerta por enviada en
+     * cuanto uno de los dos entrega. Se cierra desde MainApp.stop con
+     * {@link #closeShared()}.
+     */
+    public static synchronized AlertDispatcher shared() {
+        if (shared == null) {
+            shared = new AlertDispatcher(
+                    new CompositeAlert(CompositeAlert.Policy.FIRST_SUCCESS)
+                            .register(new AlertSender())
+                            .register(new CallAlert()),
+                    DEFAULT_WORKERS);
+        }
+        return shared;
+    }
+
+    /**
+     * Cierra el despachador compartido si llegó a crearse.
+     */
+    public static synchronized void closeShared() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    /**
+     * Encola una alerta. El future se completa con el resultado de
+     * {@link IAlert#send}, o excepcionalmente si el canal lanza una excepción.
+     * Cancelarlo antes de que un trabajador la recoja la saca de la cola; una
+     * alerta que ya se está enviando termina su envío. Si el despachador está
+     * cerrado, el future nace cancelado.
+     */
+    public CompletableFuture<Boolean> dispatch(EmergencyEvent event) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (event == null) {
+            result.complete(false);   // Mismo contrato que IAlert.send
+            return result;
+        }
+        Pending pending;
+        lock.lock();
+        try {
+            if (closed) {
+                result.cancel(false);
+                return result;
+            }
+            pending = new Pending(event, event.getSeverityLevel(), sequence++, result);
+            queue.add(pending);
+            ready.signalAll();   // Los reservados solo despiertan por una crítica
+        } finally {
+            lock.unlock();
+        }
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled()) remove(pending);
+        });
+        return result;
+    }
+
+    /**
+     * Alertas encoladas que ningún trabajador ha recogido todavía.
+     */
+    public int pending() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deja de aceptar alertas, cancela las que siguen en cola y espera un
+     * momento a que terminen las que ya se están enviando, incluidos los
+     * canales de un {@link CompositeAlert} que siguen enviando tras dar la
+     * alerta por entregada.
+     */
+    @Override
+    public void close() {
+        List<Pending> dropped;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            dropped = new ArrayList<>(queue);
+            queue.clear();
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (!dropped.isEmpty()) log.warning("Se descartan " + dropped.size() + " alertas sin enviar");
+        for (Pending p : dropped) p.result().cancel(false);
+
+        long deadline = System.nanoTime() + SHUTDOWN_GRACE.toNanos();
+        try {
+            for (Thread worker : workers) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0 || !worker.join(Duration.ofNanos(left))) {
+                    log.warning("Quedan alertas enviándose tras el cierre");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (channel instanceof CompositeAlert composite
+                && !composite.awaitDeliveries(Duration.ofNanos(deadline - System.nanoTime()))) {
+            log.warning("Quedan canales enviándose tras el cierre");
+        }
+    }
+
+    // ── Trabajadores ──────────────────────────────────────────────────────────
+
+    private void work(boolean criticalOnly) {
+        Pending next;
+        while ((next = take(criticalOnly)) != null) {
+            if (next.result().isDone()) continue;   // Cancelada mientras esperaba
+            try {
+                next.result().complete(channel.send(next.event()));
+            } catch (RuntimeException e) {
+                next.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Saca la siguiente alerta que puede atender este trabajador, o null al cerrar.
+     */
+    private Pending take(boolean criticalOnly) {
+        lock.lock();
+        try {
+            while (!closed) {
+                Pending head = queue.peek();
+                if (head != null && (!criticalOnly || head.critical())) return queue.poll();
+                ready.awaitUninterruptibly();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(Pending pending) {
+        lock.lock();
+        try {
+            queue.remove(pending);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.emergencias.alert;
 import com.emergencias.model.EmergencyEvent;
 import com.emergencias.model.UserData;
 import com.emergencias.services.IAlert;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 
@@ -35,11 +34,9 @@ public class AlertSender implements IAlert {
         System.out.println("\n=== ALERTA ENVIADA ===");
         System.out.println(alertMessage);
         
-        // 2. Guardar en archivo de registro para auditoría
-        try (FileWriter writer = new FileWriter(ALERTS_FILE, true)) {
-            writer.write("-".repeat(80) + "\n");
-            writer.write(alertMessage + "\n");
-            writer.flush();
+        // 2. Guardar en el diario de alertas (duradero antes de llamar)
+        try {
+            Journal.shared(ALERTS_FILE).write("-".repeat(80) + "\n" + alertMessage + "\n");
         } catch (IOException e) {
             System.err.println("❌ Error al guardar la alerta en el archivo: " + e.getMessage());
             return false;
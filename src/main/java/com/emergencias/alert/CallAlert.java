@@ -3,7 +3,6 @@ package com.emergencias.alert;
 import com.emergencias.model.EmergencyEvent;
 import com.emergencias.model.UserData;
 import com.emergencias.services.IAlert;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 
@@ -29,10 +28,8 @@ public class CallAlert implements IAlert {
         System.out.println("\n=== ALERTA DE LLAMADA ENVIADA ===");
         System.out.println(alertMessage);
         
-        try (FileWriter writer = new FileWriter(ALERTS_FILE, true)) {
-            writer.write("-".repeat(80) + "\n");
-            writer.write("[LLAMADA] " + alertMessage + "\n");
-            writer.flush();
+        try {
+            Journal.shared(ALERTS_FILE).write("-".repeat(80) + "\n" + "[LLAMADA] " + alertMessage + "\n");
         } catch (IOException e) {
             System.err.println("❌ Error al guardar la alerta: " + e.getMessage());
             return false;
@@ -0,0 +1,246 @@
+package com.emergencias.alert;
+
+import com.emergencias.model.EmergencyEvent;
+import com.emergencias.model.UserData;
+import com.emergencias.services.IAlert;
+import com.emergencias.services.TaskRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Canal de alertas compuesto: envía cada evento por todos los canales
+ * registrados a la vez.
+ *
+ * Cada canal corre en su propia tarea con su propio tiempo máximo, así que la
+ * latencia total es la del canal más lento (o la del primero que entrega, con
+ * {@link Policy#FIRST_SUCCESS}) y no la suma de todos. Un canal que se pasa de
+ * tiempo se interrumpe y cuenta como {@link Status#TIMED_OUT}.
+ *
+ * Como implementa {@link IAlert}, se puede usar en cualquier sitio que espere
+ * un único canal (por ejemplo detrás de {@link AlertDispatcher}).
+ */
+public final class CompositeAlert implements IAlert {
+
+    private static final Logger log = Logger.getLogger(CompositeAlert.class.getName());
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Cuándo se da por terminada una entrega.
+     */
+    public enum Policy {
+        /** En cuanto un canal entrega; el resto sigue enviando en segundo plano. */
+        FIRST_SUCCESS,
+        /** Cuando han terminado todos; solo hay éxito si todos entregan. */
+        ALL_SUCCESS
+    }
+
+    public enum Status { DELIVERED, REJECTED, FAILED, TIMED_OUT, PENDING }
+
+    /**
+     * Resultado de un canal. {@code error} solo se rellena con {@link Status#FAILED}.
+     */
+    public record Delivery(String channel, Status status, Duration latency, Throwable error) {
+        public boolean delivered() {
+            return status == Status.DELIVERED;
+        }
+    }
+
+    /**
+     * Resultado agregado de una entrega, con un {@link Delivery} por canal en
+     * el orden en que se registraron.
+     */
+    public record DeliveryReport(Policy policy, boolean success, List<Delivery> deliveries, Duration elapsed) {
+        public List<Delivery> failures() {
+            return deliveries.stream()
+                    .filter(d -> d.status() != Status.DELIVERED && d.status() != Status.PENDING)
+                    .toList();
+        }
+    }
+
+    private record Channel(IAlert alert, Duration timeout) {}
+
+    private final Policy policy;
+    private final TaskRunner runner;
+    private final List<Channel> channels = new CopyOnWriteArrayList<>();
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+
+    public CompositeAlert(Policy policy) {
+        this(policy, TaskRunner.shared());
+    }
+
+    CompositeAlert(Policy policy, TaskRunner runner) {
+        this.policy = policy;
+        this.runner = runner;
+    }
+
+    /**
+     * Registra un canal con el tiempo máximo por defecto.
+     */
+    public CompositeAlert register(IAlert channel) {
+        return register(channel, DEFAULT_TIMEOUT);
+    }
+
+    public CompositeAlert register(IAlert channel, Duration timeout) {
+        if (channel == null) throw new IllegalArgumentException("El canal de alertas no puede ser nulo");
+        if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Tiempo máximo inválido: " + timeout);
+        }
+        channels.add(new Channel(channel, timeout));
+        return this;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Envía el evento por todos los canales a la vez. El future se completa
+     * según la política; los canales que aún no han terminado aparecen como
+     * {@link Status#PENDING}. Sin canales registrados la entrega no tiene éxito.
+     */
+    public CompletableFuture<DeliveryReport> deliver(EmergencyEvent event) {
+        long start = System.nanoTime();
+        List<Channel> targets = List.copyOf(channels);
+        CompletableFuture<DeliveryReport> report = new CompletableFuture<>();
+        if (event == null || targets.isEmpty()) {
+            report.complete(new DeliveryReport(policy, false, List.of(), Duration.ZERO));
+            return report;
+        }
+
+        List<CompletableFuture<Delivery>> outcomes = new ArrayList<>(targets.size());
+        for (Channel channel : targets) outcomes.add(deliverTo(channel, event));
+
+        AtomicInteger remaining = new AtomicInteger(targets.size());
+        for (CompletableFuture<Delivery> outcome : outcomes) {
+            outcome.thenAccept(delivery -> {
+                boolean last = remaining.decrementAndGet() == 0;
+                if (policy == Policy.FIRST_SUCCESS && delivery.delivered()) {
+                    report.complete(snapshot(targets, outcomes, true, start));
+                } else if (last) {
+                    boolean success = policy == Policy.ALL_SUCCESS
+                            ? outcomes.stream().allMatch(o -> o.join().delivered())
+                            : outcomes.stream().anyMatch(o -> o.join().delivered());
+                    report.complete(snapshot(targets, outcomes, success, start));
+                }
+            });
+        }
+        return report;
+    }
+
+    /**
+     * Lanza notifyContacts de todos los canales a la vez y espera a que
+     * terminen o se les acabe el tiempo.
+     */
+    public CompletableFuture<Void> notifyContactsAsync(UserData userData, EmergencyEvent event) {
+        List<CompletableFuture<?>> notifications = new ArrayList<>();
+        for (Channel channel : channels) {
+            CompletableFuture<Void> task = runner.run(() -> channel.alert().notifyContacts(userData, event));
+            notifications.add(task.copy()
+                    .orTimeout(channel.timeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> {
+                        task.cancel(true);
+                        log.warning("No se pudo avisar a los contactos por "
+                                + channel.alert().getAlertType() + ": " + e);
+                        return null;
+                    }));
+        }
+        return CompletableFuture.allOf(notifications.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Espera a que terminen los envíos que siguen en marcha (con
+     * {@link Policy#FIRST_SUCCESS}, los canales que perdieron la carrera).
+     * Se llama al cerrar, antes de cerrar los diarios y el historial en los
+     * que escriben los canales.
+     *
+     * @return true si terminaron todos los envíos que estaban en marcha al llamarlo
+     */
+    public boolean awaitDeliveries(Duration timeout) {
+        CompletableFuture<?>[] running = inFlight.toArray(CompletableFuture<?>[]::new);
+        if (running.length == 0) return true;
+        try {
+            CompletableFuture.allOf(running).get(Math.max(0, timeout.toMillis()), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // Los fallos de cada canal ya quedan en su Delivery
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    // ── IAlert ────────────────────────────────────────────────────────────────
+
+    @Override
+    public boolean send(EmergencyEvent event) {
+        DeliveryReport report = deliver(event).join();
+        for (Delivery failed : report.failures()) {
+            log.warning("Canal " + failed.channel() + ": " + failed.status()
+                    + (failed.error() != null ? " (" + failed.error().getMessage() + ")" : ""));
+        }
+        return report.success();
+    }
+
+    @Override
+    public void notifyContacts(UserData userData, EmergencyEvent event) {
+        notifyContactsAsync(userData, event).join();
+    }
+
+    @Override
+    public String getAlertType() {
+        return channels.stream()
+                .map(c -> c.alert().getAlertType())
+                .collect(Collectors.joining(", ", "Alerta multicanal (", ")"));
+    }
+
+    // ── Internos ──────────────────────────────────────────────────────────────
+
+    private CompletableFuture<Delivery> deliverTo(Channel channel, EmergencyEvent event) {
+        String name = channel.alert().getAlertType();
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> task = runner.submit(() -> channel.alert().send(event));
+        inFlight.add(task);
+        task.whenComplete((r, t) -> inFlight.remove(task));
+        CompletableFuture<Delivery> outcome = task.handle((sent, error) -> {
+            Duration latency = Duration.ofNanos(System.nanoTime() - start);
+            if (error != null) return new Delivery(name, Status.FAILED, latency, unwrap(error));
+            return new Delivery(name, sent ? Status.DELIVERED : Status.REJECTED, latency, null);
+        });
+        outcome.completeOnTimeout(new Delivery(name, Status.TIMED_OUT, channel.timeout(), null),
+                channel.timeout().toMillis(), TimeUnit.MILLISECONDS);
+        outcome.whenComplete((d, t) -> task.cancel(true));   // Sin efecto si ya terminó
+        return outcome;
+    }
+
+    private DeliveryReport snapshot(List<Channel> targets, List<CompletableFuture<Delivery>> outcomes,
+                                    boolean success, long start) {
+        List<Delivery> deliveries = new ArrayList<>(outcomes.size());
+        for (int i = 0; i < outcomes.size(); i++) {
+            deliveries.add(outcomes.get(i).getNow(new Delivery(
+                    targets.get(i).alert().getAlertType(), Status.PENDING, null, null)));
+        }
+        return new DeliveryReport(policy, success, List.copyOf(deliveries),
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+    }
+}
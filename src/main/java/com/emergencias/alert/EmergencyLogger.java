@@ -3,8 +3,8 @@ package com.emergencias.alert;
 import com.emergencias.model.EmergencyEvent;
 import com.emergencias.model.UserFeedback;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
@@ -17,6 +17,10 @@ import java.util.Scanner;
  * - Guardar cada interacción de emergencia
  * - Registrar feedback del usuario
  * - Mantener un historial de operaciones
+ *
+ * Además del log de texto, cada registro se guarda en el historial SQLite
+ * ({@link EmergencyRepository}) para poder consultarlo por fechas, tipo y
+ * gravedad. Si la base de datos no está disponible se sigue escribiendo el log.
  */
 public class EmergencyLogger {
     private static final String HISTORY_FILE = "logs/emergency_history.log";
@@ -25,11 +29,31 @@ public class EmergencyLogger {
     private static final DateTimeFormatter TIMESTAMP_FORMAT = 
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private final EmergencyRepository repository;
+
     /**
-     * Constructor que asegura que la carpeta de logs existe.
+     * Constructor que asegura que la carpeta de logs existe y usa el
+     * historial SQLite compartido.
      */
     public EmergencyLogger() {
+        this(openSharedRepository());
+    }
+
+    /**
+     * @param repository historial donde guardar también los registros (puede ser null)
+     */
+    public EmergencyLogger(EmergencyRepository repository) {
         createLogsDirectoryIfNotExists();
+        this.repository = repository;
+    }
+
+    private static EmergencyRepository openSharedRepository() {
+        try {
+            return EmergencyRepository.shared();
+        } catch (SQLException e) {
+            System.err.println("⚠️  Historial SQLite no disponible: " + e.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -69,13 +93,21 @@ public class EmergencyLogger {
             event.getSeverityLevel()
         );
 
-        try (FileWriter writer = new FileWriter(HISTORY_FILE, true)) {
-            writer.write(logEntry);
+        try {
+            Journal.shared(HISTORY_FILE).write(logEntry);
         } catch (IOException e) {
             System.err.println("❌ Error al registrar emergencia: " + e.getMessage());
             throw new RuntimeException("Error al escribir en el archivo de historial", e);
         }
 
+        if (repository != null) {
+            try {
+                repository.save(emergencyId, event);
+            } catch (SQLException e) {
+                System.err.println("⚠️  No se pudo guardar la emergencia en el historial: " + e.getMessage());
+            }
+        }
+
         return emergencyId;
     }
 
@@ -149,10 +181,18 @@ public class EmergencyLogger {
             feedback.getComments()
         );
 
-        try (FileWriter writer = new FileWriter(FEEDBACK_FILE, true)) {
-            writer.write(logEntry);
+        try {
+            Journal.shared(FEEDBACK_FILE).write(logEntry);
         } catch (IOException e) {
             System.err.println("❌ Error al registrar feedback: " + e.getMessage());
         }
+
+        if (repository != null) {
+            try {
+                repository.saveFeedback(feedback);
+            } catch (SQLException e) {
+                System.err.println("⚠️  No se pudo guardar el feedback en el historial: " + e.getMessage());
+            }
+        }
     }
 }
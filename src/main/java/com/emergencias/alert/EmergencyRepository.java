@@ -0,0 +1,418 @@
+package com.emergencias.alert;
+
+import com.emergencias.model.EmergencyEvent;
+import com.emergencias.model.UserFeedback;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.TreeMap;
+
+/**
+ * Historial de emergencias y feedback en SQLite.
+ *
+ * Sustituye al grep sobre emergency_history.log por consultas con índices. La
+ * base va en modo WAL (las lecturas no bloquean a la escritura y cada commit
+ * no necesita un fsync del fichero principal) y las inserciones usan
+ * sentencias preparadas en lotes dentro de una sola transacción.
+ *
+ * Los agregados no recorren la tabla de eventos: cada inserción actualiza en
+ * la misma transacción un resumen por hora, tipo y gravedad
+ * ({@code emergency_hourly}). Los conteos por tipo y hora y el percentil de
+ * gravedad leen ese resumen (unas pocas filas por hora) y solo bajan a los
+ * eventos sueltos en los trozos de hora de los extremos del intervalo.
+ *
+ * Las fechas se guardan como milisegundos de la hora local tratada como UTC,
+ * igual que las {@link LocalDateTime} del modelo. Los intervalos son
+ * semiabiertos: {@code [from, to)}.
+ */
+public final class EmergencyRepository implements AutoCloseable {
+
+    public static final String DEFAULT_DB = "logs/emergency_history.db";
+
+    static final int BATCH_SIZE = 1000;
+    private static final long HOUR_MS = 3_600_000L;
+    private static final int SCHEMA_VERSION = 1;
+
+    private static EmergencyRepository shared;
+
+    private final Connection connection;
+    private final PreparedStatement insertEmergency;
+    private final PreparedStatement upsertHourly;
+    private final PreparedStatement insertFeedback;
+
+    /**
+     * Emergencia guardada con su identificador (el UUID de EmergencyLogger).
+     */
+    public record EmergencyRecord(String id, EmergencyEvent event) {}
+
+    /**
+     * Número de emergencias de un tipo en la hora que empieza en {@code hour}.
+     */
+    public record HourlyCount(LocalDateTime hour, String type, long count) {}
+
+    private record HourKey(long hour, String type, int severity) {}
+
+    /**
+     * Abre (o crea, con sus carpetas) la base de datos en {@code file}.
+     */
+    public EmergencyRepository(Path file) throws SQLException {
+        Path parent = file.toAbsolutePath().getParent();
+        try {
+            if (parent != null) Files.createDirectories(parent);
+        } catch (IOException e) {
+            throw new SQLException("No se pudo crear la carpeta de " + file, e);
+        }
+        this.connection = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath());
+        try {
+            createSchema();
+            this.insertEmergency = connection.prepareStatement(
+                    "INSERT INTO emergency (uuid, ts, type, location, severity, user_data) VALUES (?, ?, ?, ?, ?, ?)");
+            this.upsertHourly = connection.prepareStatement(
+                    "INSERT INTO emergency_hourly (hour, type, severity, count) VALUES (?, ?, ?, ?) "
+                            + "ON CONFLICT (hour, type, severity) DO UPDATE SET count = count + excluded.count");
+            this.insertFeedback = connection.prepareStatement(
+                    "INSERT INTO feedback (emergency_uuid, ts, rating, comments) VALUES (?, ?, ?, ?)");
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Repositorio compartido en {@link #DEFAULT_DB}; se cierra desde MainApp.stop.
+     */
+    public static synchronized EmergencyRepository shared() throws SQLException {
+        if (shared == null) shared = new EmergencyRepository(Path.of(DEFAULT_DB));
+        return shared;
+    }
+
+    public static synchronized void closeShared() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    private void createSchema() throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("PRAGMA journal_mode = WAL");
+            st.execute("PRAGMA synchronous = NORMAL");   // Seguro en WAL: solo se fuerza en los checkpoints
+            st.execute("PRAGMA temp_store = MEMORY");
+
+            st.execute("CREATE TABLE IF NOT EXISTS emergency ("
+                    + " id INTEGER PRIMARY KEY,"
+                    + " uuid TEXT NOT NULL,"
+                    + " ts INTEGER NOT NULL,"
+                    + " type TEXT NOT NULL,"
+                    + " location TEXT,"
+                    + " severity INTEGER NOT NULL,"
+                    + " user_data TEXT)");
+            // (ts, type, severity) cubre las consultas por rango sin tocar la tabla
+            st.execute("CREATE INDEX IF NOT EXISTS idx_emergency_ts ON emergency (ts, type, severity)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_emergency_type ON emergency (type, ts)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_emergency_severity ON emergency (severity, ts)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_emergency_uuid ON emergency (uuid)");
+
+            st.execute("CREATE TABLE IF NOT EXISTS emergency_hourly ("
+                    + " hour INTEGER NOT NULL,"
+                    + " type TEXT NOT NULL,"
+                    + " severity INTEGER NOT NULL,"
+                    + " count INTEGER NOT NULL,"
+                    + " PRIMARY KEY (hour, type, severity)) WITHOUT ROWID");
+
+            st.execute("CREATE TABLE IF NOT EXISTS feedback ("
+                    + " id INTEGER PRIMARY KEY,"
+                    + " emergency_uuid TEXT NOT NULL,"
+                    + " ts INTEGER NOT NULL,"
+                    + " rating INTEGER NOT NULL,"
+                    + " comments TEXT)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_feedback_emergency ON feedback (emergency_uuid)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_feedback_ts ON feedback (ts)");
+
+            st.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+        }
+    }
+
+    // ── Escritura ─────────────────────────────────────────────────────────────
+
+    public void save(String id, EmergencyEvent event) throws SQLException {
+        saveAll(List.of(new EmergencyRecord(id, event)));
+    }
+
+    /**
+     * Inserta las emergencias en una sola transacción, en lotes de
+     * {@value #BATCH_SIZE}, y actualiza el resumen por hora.
+     */
+    public synchronized void saveAll(List<EmergencyRecord> records) throws SQLException {
+        if (records.isEmpty()) return;
+        Map<HourKey, Long> hourly = new HashMap<>();
+        inTransaction(() -> {
+            int batched = 0;
+            for (EmergencyRecord record : records) {
+                EmergencyEvent event = record.event();
+                long ts = toMillis(event.getTimestamp());
+                String type = typeOf(event);
+                insertEmergency.setString(1, record.id());
+                insertEmergency.setLong(2, ts);
+                insertEmergency.setString(3, type);
+                insertEmergency.setString(4, event.getLocation());
+                insertEmergency.setInt(5, event.getSeverityLevel());
+                insertEmergency.setString(6, event.getUserData());
+                insertEmergency.addBatch();
+                if (++batched == BATCH_SIZE) {
+                    insertEmergency.executeBatch();
+                    batched = 0;
+                }
+                hourly.merge(new HourKey(Math.floorDiv(ts, HOUR_MS), type, event.getSeverityLevel()), 1L, Long::sum);
+            }
+            if (batched > 0) insertEmergency.executeBatch();
+
+            for (Map.Entry<HourKey, Long> entry : hourly.entrySet()) {
+                upsertHourly.setLong(1, entry.getKey().hour());
+                upsertHourly.setString(2, entry.getKey().type());
+                upsertHourly.setInt(3, entry.getKey().severity());
+                upsertHourly.setLong(4, entry.getValue());
+                upsertHourly.addBatch();
+            }
+            upsertHourly.executeBatch();
+        });
+    }
+
+    public void saveFeedback(UserFeedback feedback) throws SQLException {
+        saveFeedbackAll(List.of(feedback));
+    }
+
+    public synchronized void saveFeedbackAll(List<UserFeedback> feedback) throws SQLException {
+        if (feedback.isEmpty()) return;
+        inTransaction(() -> {
+            int batched = 0;
+            for (UserFeedback f : feedback) {
+                insertFeedback.setString(1, f.getEmergencyId());
+                insertFeedback.setLong(2, toMillis(f.getFeedbackTime()));
+                insertFeedback.setInt(3, f.getSatisfactionRating());
+                insertFeedback.setString(4, f.getComments());
+                insertFeedback.addBatch();
+                if (++batched == BATCH_SIZE) {
+                    insertFeedback.executeBatch();
+                    batched = 0;
+                }
+            }
+            if (batched > 0) insertFeedback.executeBatch();
+        });
+    }
+
+    // ── Consultas ─────────────────────────────────────────────────────────────
+
+    /**
+     * Emergencias del intervalo, de la más antigua a la más reciente.
+     */
+    public synchronized List<EmergencyRecord> findBetween(LocalDateTime from, LocalDateTime to, int limit)
+            throws SQLException {
+        return queryEmergencies(
+                "SELECT uuid, ts, type, location, severity, user_data FROM emergency"
+                        + " WHERE ts >= ? AND ts < ? ORDER BY ts LIMIT ?",
+                toMillis(from), toMillis(to), limit);
+    }
+
+    public synchronized List<EmergencyRecord> findByType(String type, LocalDateTime from, LocalDateTime to, int limit)
+            throws SQLException {
+        return queryEmergencies(
+                "SELECT uuid, ts, type, location, severity, user_data FROM emergency INDEXED BY idx_emergency_type"
+                        + " WHERE type = ? AND ts >= ? AND ts < ? ORDER BY ts LIMIT ?",
+                type, toMillis(from), toMillis(to), limit);
+    }
+
+    /**
+     * Emergencias con gravedad igual o superior a {@code minSeverity}, de la
+     * más reciente a la más antigua.
+     */
+    public synchronized List<EmergencyRecord> findSevere(int minSeverity, LocalDateTime from, LocalDateTime to,
+                                                         int limit) throws SQLException {
+        return queryEmergencies(
+                "SELECT uuid, ts, type, location, severity, user_data FROM emergency"
+                        + " WHERE severity >= ? AND ts >= ? AND ts < ? ORDER BY ts DESC LIMIT ?",
+                minSeverity, toMillis(from), toMillis(to), limit);
+    }
+
+    public synchronized List<UserFeedback> findFeedback(String emergencyId) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(
+                "SELECT emergency_uuid, rating, comments, ts FROM feedback WHERE emergency_uuid = ? ORDER BY ts")) {
+            st.setString(1, emergencyId);
+            List<UserFeedback> result = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new UserFeedback(rs.getString(1), rs.getInt(2), rs.getString(3),
+                            fromMillis(rs.getLong(4))));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Emergencias por tipo y hora en las horas que tocan el intervalo (las
+     * horas de los extremos se cuentan enteras), ordenadas por hora y tipo.
+     */
+    public synchronized List<HourlyCount> countsPerTypePerHour(LocalDateTime from, LocalDateTime to)
+            throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(
+                "SELECT hour, type, SUM(count) FROM emergency_hourly"
+                        + " WHERE hour >= ? AND hour < ? GROUP BY hour, type ORDER BY hour, type")) {
+            st.setLong(1, Math.floorDiv(toMillis(from), HOUR_MS));
+            st.setLong(2, Math.ceilDiv(toMillis(to), HOUR_MS));
+            List<HourlyCount> result = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new HourlyCount(fromMillis(rs.getLong(1) * HOUR_MS), rs.getString(2), rs.getLong(3)));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Número exacto de emergencias en el intervalo.
+     */
+    public synchronized long count(LocalDateTime from, LocalDateTime to) throws SQLException {
+        return severityHistogram(toMillis(from), toMillis(to)).values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public OptionalInt p95Severity(LocalDateTime from, LocalDateTime to) throws SQLException {
+        return severityPercentile(from, to, 0.95);
+    }
+
+    /**
+     * Percentil de gravedad en el intervalo por rango más cercano: la menor
+     * gravedad que alcanza al menos la fracción {@code p} de las emergencias.
+     * Vacío si no hay ninguna.
+     */
+    public synchronized OptionalInt severityPercentile(LocalDateTime from, LocalDateTime to, double p)
+            throws SQLException {
+        if (p <= 0 || p > 1) throw new IllegalArgumentException("Percentil fuera de (0, 1]: " + p);
+        TreeMap<Integer, Long> histogram = severityHistogram(toMillis(from), toMillis(to));
+        long total = histogram.values().stream().mapToLong(Long::longValue).sum();
+        if (total == 0) return OptionalInt.empty();
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (Map.Entry<Integer, Long> entry : histogram.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) return OptionalInt.of(entry.getKey());
+        }
+        return OptionalInt.of(histogram.lastKey());
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();   // Cierra también las sentencias preparadas
+        } catch (SQLException e) {
+            System.err.println("Error cerrando el historial: " + e.getMessage());
+        }
+    }
+
+    // ── Internos ──────────────────────────────────────────────────────────────
+
+    /**
+     * Gravedad → número de emergencias en [fromMs, toMs): horas completas
+     * desde el resumen y los trozos de los extremos desde los eventos.
+     */
+    private TreeMap<Integer, Long> severityHistogram(long fromMs, long toMs) throws SQLException {
+        TreeMap<Integer, Long> histogram = new TreeMap<>();
+        if (fromMs >= toMs) return histogram;
+        long firstHour = Math.ceilDiv(fromMs, HOUR_MS);
+        long endHour = Math.floorDiv(toMs, HOUR_MS);
+        if (firstHour >= endHour) {
+            addRawSeverities(histogram, fromMs, toMs);
+        } else {
+            addRawSeverities(histogram, fromMs, firstHour * HOUR_MS);
+            try (PreparedStatement st = connection.prepareStatement(
+                    "SELECT severity, SUM(count) FROM emergency_hourly WHERE hour >= ? AND hour < ? GROUP BY severity")) {
+                st.setLong(1, firstHour);
+                st.setLong(2, endHour);
+                addHistogram(histogram, st);
+            }
+            addRawSeverities(histogram, endHour * HOUR_MS, toMs);
+        }
+        return histogram;
+    }
+
+    private void addRawSeverities(TreeMap<Integer, Long> histogram, long fromMs, long toMs) throws SQLException {
+        if (fromMs >= toMs) return;
+        try (PreparedStatement st = connection.prepareStatement(
+                "SELECT severity, COUNT(*) FROM emergency INDEXED BY idx_emergency_ts"
+                        + " WHERE ts >= ? AND ts < ? GROUP BY severity")) {
+            st.setLong(1, fromMs);
+            st.setLong(2, toMs);
+            addHistogram(histogram, st);
+        }
+    }
+
+    private static void addHistogram(TreeMap<Integer, Long> histogram, PreparedStatement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery()) {
+            while (rs.next()) histogram.merge(rs.getInt(1), rs.getLong(2), Long::sum);
+        }
+    }
+
+    private List<EmergencyRecord> queryEmergencies(String sql, Object... params) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) st.setObject(i + 1, params[i]);
+            List<EmergencyRecord> result = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    EmergencyEvent event = new EmergencyEvent(rs.getString(3), rs.getString(4), rs.getInt(5),
+                            rs.getString(6), fromMillis(rs.getLong(2)));
+                    result.add(new EmergencyRecord(rs.getString(1), event));
+                }
+            }
+            return result;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+
+    private void inTransaction(SqlWork work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            work.run();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            insertEmergency.clearBatch();
+            upsertHourly.clearBatch();
+            insertFeedback.clearBatch();
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static String typeOf(EmergencyEvent event) {
+        return event.getEmergencyType() != null ? event.getEmergencyType() : "";
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,283 @@
+package com.emergencias.alert;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Diario de solo anexado sobre un {@link FileChannel} con confirmación en grupo.
+ *
+ * Sustituye al patrón abrir/escribir/cerrar un {@code FileWriter} por registro.
+ * Un único hilo escritor es dueño del canal: mientras fuerza a disco un lote,
+ * los registros que llegan se acumulan y se escriben juntos en el siguiente,
+ * con una sola escritura agrupada y un solo {@code force()}. Así varios
+ * emisores (AlertSender y CallAlert comparten emergency_alerts.log) escriben
+ * sin pisarse y el coste del fsync se reparte entre todos los del lote.
+ *
+ * Cuándo se fuerza a disco lo decide la {@link FlushPolicy}; el future de
+ * {@link #append} se completa cuando el registro es tan duradero como pide.
+ */
+public final class Journal implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(Journal.class.getName());
+
+    private static final Map<Path, Journal> SHARED = new ConcurrentHashMap<>();
+
+    /**
+     * Política de volcado a disco.
+     *
+     * @param mode     cuándo se llama a {@code force()}
+     * @param interval separación máxima entre volcados con {@link Mode#PERIODIC}
+     */
+    public record FlushPolicy(Mode mode, Duration interval) {
+        public enum Mode {
+            /** Cada lote se fuerza antes de confirmar sus registros. */
+            ALWAYS,
+            /** Se confirma tras escribir y se fuerza como mucho cada {@code interval}. */
+            PERIODIC,
+            /** Solo se fuerza al cerrar; el resto lo decide el sistema operativo. */
+            ON_CLOSE
+        }
+
+        public static FlushPolicy always() {
+            return new FlushPolicy(Mode.ALWAYS, Duration.ZERO);
+        }
+
+        public static FlushPolicy every(Duration interval) {
+            if (interval == null || interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("Intervalo de volcado inválido: " + interval);
+            }
+            return new FlushPolicy(Mode.PERIODIC, interval);
+        }
+
+        public static FlushPolicy onClose() {
+            return new FlushPolicy(Mode.ON_CLOSE, Duration.ZERO);
+        }
+    }
+
+    private record Entry(byte[] bytes, CompletableFuture<Void> done) {}
+
+    private final Path file;
+    private final FlushPolicy policy;
+    private final FileChannel channel;
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private List<Entry> pending = new ArrayList<>();
+    private boolean closed = false;
+
+    // Solo los toca el hilo escritor
+    private boolean dirty = false;
+    private long lastForce = System.nanoTime();
+    private volatile long forces = 0;
+
+    /**
+     * Abre (o crea, con sus carpetas) el fichero y arranca el hilo escritor.
+     */
+    public Journal(Path file, FlushPolicy policy) throws IOException {
+        this.file = file;
+        this.policy = policy;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.writer = Thread.ofPlatform().daemon().name("soteria-journal-" + file.getFileName())
+                .start(this::writeLoop);
+    }
+
+    /**
+     * Diario compartido por todos los que escriben en {@code file}, con
+     * {@link FlushPolicy#always()}. Se cierran desde MainApp.stop con {@link #closeAll()}.
+     */
+    public static Journal shared(String file) throws IOException {
+        Path key = Path.of(file).toAbsolutePath().normalize();
+        try {
+            return SHARED.computeIfAbsent(key, path -> {
+                try {
+                    return new Journal(path, FlushPolicy.always());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Cierra los diarios compartidos volcando lo pendiente.
+     */
+    public static void closeAll() {
+        for (Path path : List.copyOf(SHARED.keySet())) {
+            Journal journal = SHARED.remove(path);
+            if (journal != null) journal.close();
+        }
+    }
+
+    /**
+     * Encola un registro tal cual (sin añadir salto de línea). El future falla
+     * con IOException si no se pudo escribir o el diario está cerrado.
+     */
+    public CompletableFuture<Void> append(String record) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Entry entry = new Entry(record.getBytes(StandardCharsets.UTF_8), done);
+        lock.lock();
+        try {
+            if (closed) {
+                done.completeExceptionally(new IOException("El diario está cerrado: " + file));
+                return done;
+            }
+            pending.add(entry);
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+        return done;
+    }
+
+    /**
+     * Anexa un registro y espera a que sea duradero según la política.
+     */
+    public void write(String record) throws IOException {
+        try {
+            append(record).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw e;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public FlushPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Número de {@code force()} hechos; con confirmación en grupo es menor que
+     * el de registros cuando hay concurrencia.
+     */
+    long forceCount() {
+        return forces;
+    }
+
+    /**
+     * Escribe lo pendiente, lo fuerza a disco y cierra el fichero.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ── Hilo escritor ─────────────────────────────────────────────────────────
+
+    private void writeLoop() {
+        List<Entry> batch;
+        while ((batch = nextBatch()) != null) {
+            if (!batch.isEmpty()) commit(batch);
+            else if (dirty) forceQuietly();   // Venció el intervalo sin registros nuevos
+        }
+        if (dirty) forceQuietly();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warning("No se pudo cerrar " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void forceQuietly() {
+        try {
+            force();
+        } catch (IOException e) {
+            log.warning("No se pudo volcar " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Espera registros y se lleva todos los pendientes. Devuelve una lista
+     * vacía si toca un volcado periódico y null al cerrar sin nada pendiente.
+     */
+    private List<Entry> nextBatch() {
+        lock.lock();
+        try {
+            while (pending.isEmpty()) {
+                if (closed) return null;
+                if (dirty && policy.mode() == FlushPolicy.Mode.PERIODIC) {
+                    long wait = policy.interval().toNanos() - (System.nanoTime() - lastForce);
+                    if (wait <= 0) return List.of();
+                    ready.awaitNanos(wait);
+                } else {
+                    ready.awaitUninterruptibly();
+                }
+            }
+            List<Entry> batch = pending;
+            pending = new ArrayList<>();
+            return batch;
+        } catch (InterruptedException e) {
+            return List.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void commit(List<Entry> batch) {
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(batch.get(i).bytes());
+            remaining += buffers[i].remaining();
+        }
+        try {
+            while (remaining > 0) remaining -= channel.write(buffers);
+            dirty = true;
+            switch (policy.mode()) {
+                case ALWAYS -> force();
+                case PERIODIC -> {
+                    if (System.nanoTime() - lastForce >= policy.interval().toNanos()) force();
+                }
+                case ON_CLOSE -> { }
+            }
+        } catch (IOException e) {
+            for (Entry entry : batch) entry.done().completeExceptionally(e);
+            return;
+        }
+        for (Entry entry : batch) entry.done().complete(null);
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        dirty = false;
+        lastForce = System.nanoTime();
+        forces++;
+    }
+}
@@ -2,7 +2,18 @@ package com.emergencias.detector;
 
 import com.emergencias.model.EmergencyEvent;
 import com.emergencias.model.UserData;
-import com.emergencias.services.AIClassifierClient;
+import com.emergencias.services.ClassifyResponse;
+import com.emergencias.services.IEmergencyClassifier;
+import com.emergencias.services.KeywordMatcher;
+import com.emergencias.services.LocalEmergencyClassifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 /**
  * Clase encargada de detectar emergencias.
@@ -12,113 +23,151 @@ public class EmergencyDetector {
     private static final int MIN_SEVERITY = 1;
     private static final int MAX_SEVERITY = 10;
 
+    // Confianza mínima del modelo local para detectar sin palabras clave
+    private static final double LOCAL_CONFIDENCE_THRESHOLD = 0.85;
+
+    // Tiempo máximo de espera a la IA antes de responder con la clasificación local
+    public static final Duration DEFAULT_REMOTE_DEADLINE = Duration.ofMillis(1500);
+
     private final UserData userData;
-    private final AIClassifierClient aiClient;
+    private final IEmergencyClassifier aiClient;
+    private final LocalEmergencyClassifier localClassifier;
+    private final KeywordMatcher keywords = KeywordMatcher.getDefault();
 
     /**
      * Constructor para uso en la UI (JavaFX).
+     * Usa el modelo local incluido en la aplicación como fallback.
      */
-    public EmergencyDetector(UserData userData, AIClassifierClient aiClient) {
+    public EmergencyDetector(UserData userData, IEmergencyClassifier aiClient) {
+        this(userData, aiClient, LocalModelHolder.MODEL);
+    }
+
+    /**
+     * Constructor con clasificador local explícito (null = solo palabras clave).
+     */
+    public EmergencyDetector(UserData userData, IEmergencyClassifier aiClient,
+                             LocalEmergencyClassifier localClassifier) {
         this.userData = userData;
         this.aiClient = aiClient;
+        this.localClassifier = localClassifier;
     }
 
     /**
      * Clasifica un mensaje de emergencia.
-     * Método principal para uso en la UI.
+     * Método principal para uso en la UI: clasificación híbrida con el plazo por defecto.
      */
     public DetectionResult classifyEmergency(String description) {
-        if (aiClient != null && aiClient.isAvailable()) {
-            return classifyWithAI(description);
-        } else {
-            return classifyManually(description);
-        }
+        return classifyHybrid(description, DEFAULT_REMOTE_DEADLINE, null);
     }
 
     /**
-     * Clasificación con IA.
+     * Clasificación híbrida: la clasificación remota y la local arrancan a la vez.
+     * Si la IA responde dentro del plazo se devuelve su resultado; si no, se
+     * devuelve el resultado local y, cuando la IA termine, el resultado refinado
+     * se entrega a {@code onRefined} (desde el hilo que complete la petición).
+     * No se consulta /health: un servidor caído simplemente no llega a tiempo.
      */
-    private DetectionResult classifyWithAI(String description) {
-        String jsonResponse = aiClient.classify(description);
-        
-        if (jsonResponse == null) {
+    public DetectionResult classifyHybrid(String description, Duration deadline,
+                                          Consumer<DetectionResult> onRefined) {
+        if (aiClient == null) {
             return classifyManually(description);
         }
-        
-        String corrected = AIClassifierClient.extractString(jsonResponse, "corrected_text");
-        String[] emergencies = AIClassifierClient.extractEmergencies(jsonResponse);
-        
-        if (emergencies.length > 0) {
-            String primaryEmergency = emergencies[0];
-            String typeName = AIClassifierClient.extractString(primaryEmergency, "type_name");
-            double confidence = AIClassifierClient.extractDouble(primaryEmergency, "confidence");
-            String context = AIClassifierClient.extractString(primaryEmergency, "context");
-            String[] instructions = AIClassifierClient.extractStringArray(primaryEmergency, "instructions");
-            
-            return new DetectionResult(true, typeName, context, confidence, instructions, corrected);
+
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        CompletableFuture<DetectionResult> remote = classifyWithAIAsync(description);
+        DetectionResult local = classifyManually(description);
+
+        try {
+            long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+            DetectionResult refined = remote.get(remaining, TimeUnit.NANOSECONDS);
+            return refined != null ? refined : local;
+        } catch (TimeoutException e) {
+            if (onRefined != null) {
+                remote.thenAccept(refined -> {
+                    if (refined != null) onRefined.accept(refined);
+                });
+            }
+            return local;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return local;
+        } catch (ExecutionException e) {
+            return local;
         }
+    }
+
+    /**
+     * Clasificación con IA. Completa con null si la IA falla o no detecta nada.
+     */
+    private CompletableFuture<DetectionResult> classifyWithAIAsync(String description) {
+        return aiClient.classifyDetailedAsync(description)
+                .thenApply(this::toDetectionResult)
+                .exceptionally(error -> null);
+    }
+
+    private DetectionResult toDetectionResult(ClassifyResponse response) {
+        if (response == null) return null;
         
-        return classifyManually(description);
+        ClassifyResponse.Emergency primary = response.primary();
+        if (primary == null) return null;
+
+        return new DetectionResult(true, primary.typeName(), primary.context(), primary.confidence(),
+                                   primary.instructions().toArray(new String[0]), response.correctedText());
     }
 
     /**
      * Clasificación manual (fallback cuando IA no está disponible).
+     * Las palabras clave de emergency_config.json deciden el tipo y el subcontexto;
+     * el modelo local aporta la confianza real y detecta frases sin palabras
+     * clave cuando está muy seguro.
      */
     private DetectionResult classifyManually(String message) {
-        String lower = message.toLowerCase();
-        String typeName = null;
-        String context = null;
-        String[] instructions = new String[0];
-        
-        if (lower.contains("fuego") || lower.contains("incendio")) {
-            typeName = "Incendio";
-            context = "incendio";
-            instructions = new String[]{
-                "Evacua inmediatamente",
-                "Llama al 112",
-                "No uses ascensores"
-            };
-        } else if (lower.contains("accidente") || lower.contains("coche")) {
-            typeName = "Accidente de tráfico";
-            context = "accidente de tráfico";
-            instructions = new String[]{
-                "Señaliza el lugar",
-                "No muevas heridos",
-                "Llama al 112"
-            };
-        } else if (lower.contains("duele") || lower.contains("médico") || lower.contains("medico")) {
-            typeName = "Problema médico";
-            context = "emergencia médica";
-            instructions = new String[]{
-                "Mantén la calma",
-                "Siéntate",
-                "Llama al 112"
-            };
-        } else if (lower.contains("agresión") || lower.contains("agresion") || lower.contains("ataque")) {
-            typeName = "Agresión";
-            context = "agresión";
-            instructions = new String[]{
-                "Aléjate del agresor",
-                "Busca un lugar seguro",
-                "Llama al 112"
-            };
-        } else if (lower.contains("inundación") || lower.contains("inundacion") || lower.contains("terremoto")) {
-            typeName = "Desastre natural";
-            context = "desastre natural";
-            instructions = new String[]{
-                "Busca un lugar alto",
-                "Aléjate de estructuras inestables",
-                "Llama al 112"
-            };
+        KeywordMatcher.Matches matches = keywords.scan(message);
+        double[] probs = localClassifier != null ? localClassifier.predictProbabilities(message) : null;
+
+        FallbackCategory category = null;
+        for (FallbackCategory candidate : FallbackCategory.values()) {
+            if (matches.has(keywords.groupId(candidate.label))) {
+                category = candidate;
+                break;
+            }
         }
-        
-        if (typeName != null) {
-            return new DetectionResult(true, typeName, context, 0.0, instructions, message);
+
+        double confidence = 0.0;
+        if (category != null) {
+            confidence = probabilityOf(probs, category.label);
+        } else if (probs != null) {
+            String[] labels = localClassifier.getLabels();
+            int best = 0;
+            for (int c = 1; c < probs.length; c++) {
+                if (probs[c] > probs[best]) best = c;
+            }
+            FallbackCategory predicted = FallbackCategory.forLabel(labels[best]);
+            if (predicted != null && probs[best] >= LOCAL_CONFIDENCE_THRESHOLD) {
+                category = predicted;
+                confidence = probs[best];
+            }
+        }
+
+        if (category != null) {
+            List<String> instructions = keywords.instructionsFor(category.label, matches);
+            if (instructions.isEmpty()) instructions = List.of("Llama al 112");
+            return new DetectionResult(true, category.typeName, keywords.contextFor(category.label, matches),
+                                       confidence, instructions.toArray(new String[0]), message);
         }
         
         return new DetectionResult(false, null, null, 0.0, new String[0], message);
     }
 
+    private double probabilityOf(double[] probs, String label) {
+        if (probs == null) return 0.0;
+        String[] labels = localClassifier.getLabels();
+        for (int c = 0; c < labels.length; c++) {
+            if (labels[c].equals(label)) return probs[c];
+        }
+        return 0.0;
+    }
+
     /**
      * Crea un EmergencyEvent a partir del resultado de detección.
      */
@@ -156,6 +205,40 @@ public class EmergencyDetector {
         return MAX_SEVERITY;
     }
 
+    /**
+     * Modelo local compartido, cargado una sola vez.
+     */
+    private static class LocalModelHolder {
+        static final LocalEmergencyClassifier MODEL = LocalEmergencyClassifier.loadDefault();
+    }
+
+    /**
+     * Categorías del fallback manual, en orden de preferencia cuando
+     * aparecen palabras clave de varias etiquetas.
+     */
+    private enum FallbackCategory {
+        FIRE("FIRE", "Incendio"),
+        TRAFFIC("TRAFFIC", "Accidente de tráfico"),
+        MEDICAL("MEDICAL", "Problema médico"),
+        SECURITY("SECURITY", "Agresión"),
+        NATURAL("NATURAL", "Desastre natural");
+
+        final String label;
+        final String typeName;
+
+        FallbackCategory(String label, String typeName) {
+            this.label = label;
+            this.typeName = typeName;
+        }
+
+        static FallbackCategory forLabel(String label) {
+            for (FallbackCategory c : values()) {
+                if (c.label.equals(label)) return c;
+            }
+            return null;
+        }
+    }
+
     // ========================================
     // CLASE INTERNA PARA RESULTADO
     // ========================================
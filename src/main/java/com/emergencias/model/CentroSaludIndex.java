@@ -0,0 +1,349 @@
+package com.emergencias.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Índice espacial (k-d tree) sobre los centros de salud.
+ *
+ * Las coordenadas se parsean una sola vez al construir el índice y se guardan
+ * como puntos 3D sobre la esfera unidad en arrays de double. La distancia
+ * euclídea (cuerda) entre esos puntos es monótona con la distancia real
+ * sobre la Tierra, así que el árbol da resultados exactos y las consultas
+ * cuestan O(log n) en lugar de ordenar toda la lista en cada alerta.
+ */
+public class CentroSaludIndex {
+    private static final double RADIO_TIERRA_KM = 6371.0;
+
+    // UTM (ETRS89) usado en los datasets regionales; el huso lo da la Region del dataset
+    private static final double UTM_K0 = 0.9996;
+    private static final double UTM_A = 6378137.0;
+    private static final double UTM_E2 = 0.00669438;
+
+    // Nodos del árbol implícito: el nodo de [lo, hi) está en (lo + hi) / 2
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final CentroSalud[] centros;
+
+    private CentroSaludIndex(double[] xs, double[] ys, double[] zs, CentroSalud[] centros) {
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.centros = centros;
+    }
+
+    /**
+     * Ámbito geográfico de un dataset: huso UTM de sus coordenadas proyectadas
+     * y límites en grados en los que deben caer todos sus centros.
+     */
+    public record Region(String nombre, int husoUtm, double latMin, double latMax, double lonMin, double lonMax) {
+        /** Región de Murcia (CentrosdeSaludMurcia.json), huso 30 norte. */
+        public static final Region MURCIA = new Region("Murcia", 30, 37.2, 38.9, -2.5, -0.5);
+
+        public Region {
+            if (husoUtm < 1 || husoUtm > 60) throw new IllegalArgumentException("Huso UTM inválido: " + husoUtm);
+            if (latMin >= latMax || lonMin >= lonMax) throw new IllegalArgumentException("Límites inválidos para " + nombre);
+        }
+
+        public boolean contiene(double lat, double lon) {
+            return lat >= latMin && lat <= latMax && lon >= lonMin && lon <= lonMax;
+        }
+    }
+
+    /**
+     * Construye el índice de un dataset de {@code region}. Los centros sin
+     * coordenadas válidas o que caen fuera de la región se descartan.
+     */
+    public static CentroSaludIndex build(List<CentroSalud> lista, Region region) {
+        if (lista == null) lista = List.of();
+
+        int n = 0;
+        double[] xs = new double[lista.size()];
+        double[] ys = new double[lista.size()];
+        double[] zs = new double[lista.size()];
+        CentroSalud[] centros = new CentroSalud[lista.size()];
+
+        for (CentroSalud c : lista) {
+            double[] latLon = parsearCoordenadas(c.getLatitud(), c.getLongitud(), region);
+            if (latLon == null) continue;
+            double lat = Math.toRadians(latLon[0]);
+            double lon = Math.toRadians(latLon[1]);
+            xs[n] = Math.cos(lat) * Math.cos(lon);
+            ys[n] = Math.cos(lat) * Math.sin(lon);
+            zs[n] = Math.sin(lat);
+            centros[n] = c;
+            n++;
+        }
+
+        CentroSaludIndex index = new CentroSaludIndex(
+            Arrays.copyOf(xs, n), Arrays.copyOf(ys, n), Arrays.copyOf(zs, n), Arrays.copyOf(centros, n));
+        index.construir(0, n, 0);
+        return index;
+    }
+
+    /**
+     * Número de centros indexados.
+     */
+    public int size() {
+        return centros.length;
+    }
+
+    /**
+     * Devuelve los k centros más cercanos, ordenados de menor a mayor distancia.
+     */
+    public List<CentroCercano> nearest(double lat, double lon, int k) {
+        if (k <= 0 || centros.length == 0) return List.of();
+        Consulta q = new Consulta(lat, lon, Math.min(k, centros.length), Double.POSITIVE_INFINITY);
+        buscar(q, 0, centros.length, 0);
+        return q.resultados();
+    }
+
+    /**
+     * Devuelve todos los centros a menos de {@code km} kilómetros, ordenados por distancia.
+     */
+    public List<CentroCercano> withinRadius(double lat, double lon, double km) {
+        return withinRadius(lat, lon, km, centros.length);
+    }
+
+    /**
+     * Igual que {@link #withinRadius(double, double, double)} pero limitado a los
+     * {@code max} más cercanos.
+     */
+    public List<CentroCercano> withinRadius(double lat, double lon, double km, int max) {
+        if (km < 0 || max <= 0 || centros.length == 0) return List.of();
+        double cuerda = 2 * Math.sin(Math.min(km / RADIO_TIERRA_KM, Math.PI) / 2);
+        Consulta q = new Consulta(lat, lon, Math.min(max, centros.length), cuerda * cuerda);
+        buscar(q, 0, centros.length, 0);
+        return q.resultados();
+    }
+
+    // ── Construcción ─────────────────────────────────────────────────────────
+
+    private void construir(int lo, int hi, int eje) {
+        if (hi - lo <= 1) return;
+        int mid = (lo + hi) >>> 1;
+        seleccionar(lo, hi - 1, mid, eje);
+        int siguiente = (eje + 1) % 3;
+        construir(lo, mid, siguiente);
+        construir(mid + 1, hi, siguiente);
+    }
+
+    /**
+     * Quickselect: deja en {@code k} la mediana del eje y a cada lado los menores/mayores.
+     */
+    private void seleccionar(int lo, int hi, int k, int eje) {
+        while (lo < hi) {
+            double pivote = coord(eje, (lo + hi) >>> 1);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (coord(eje, i) < pivote) i++;
+                while (coord(eje, j) > pivote) j--;
+                if (i <= j) intercambiar(i++, j--);
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    private double coord(int eje, int i) {
+        return eje == 0 ? xs[i] : eje == 1 ? ys[i] : zs[i];
+    }
+
+    private void intercambiar(int a, int b) {
+        double t = xs[a]; xs[a] = xs[b]; xs[b] = t;
+        t = ys[a]; ys[a] = ys[b]; ys[b] = t;
+        t = zs[a]; zs[a] = zs[b]; zs[b] = t;
+        CentroSalud c = centros[a]; centros[a] = centros[b]; centros[b] = c;
+    }
+
+    // ── Búsqueda ─────────────────────────────────────────────────────────────
+
+    private void buscar(Consulta q, int lo, int hi, int eje) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+
+        double dx = xs[mid] - q.x, dy = ys[mid] - q.y, dz = zs[mid] - q.z;
+        q.ofrecer(mid, dx * dx + dy * dy + dz * dz);
+
+        double diff = (eje == 0 ? q.x : eje == 1 ? q.y : q.z) - coord(eje, mid);
+        int siguiente = (eje + 1) % 3;
+        if (diff < 0) {
+            buscar(q, lo, mid, siguiente);
+            if (diff * diff <= q.limite()) buscar(q, mid + 1, hi, siguiente);
+        } else {
+            buscar(q, mid + 1, hi, siguiente);
+            if (diff * diff <= q.limite()) buscar(q, lo, mid, siguiente);
+        }
+    }
+
+    /**
+     * Estado de una consulta: max-heap acotado de k candidatos sobre arrays primitivos.
+     */
+    private class Consulta {
+        final double x, y, z;
+        final double radio2;
+        final int[] heapIdx;
+        final double[] heapDist;
+        int tam = 0;
+
+        Consulta(double lat, double lon, int k, double radio2) {
+            double la = Math.toRadians(lat), lo = Math.toRadians(lon);
+            this.x = Math.cos(la) * Math.cos(lo);
+            this.y = Math.cos(la) * Math.sin(lo);
+            this.z = Math.sin(la);
+            this.radio2 = radio2;
+            this.heapIdx = new int[k];
+            this.heapDist = new double[k];
+        }
+
+        double limite() {
+            return tam < heapIdx.length ? radio2 : heapDist[0];
+        }
+
+        void ofrecer(int idx, double d2) {
+            if (d2 > radio2) return;
+            if (tam < heapIdx.length) {
+                int i = tam++;
+                heapIdx[i] = idx;
+                heapDist[i] = d2;
+                subir(i);
+            } else if (d2 < heapDist[0]) {
+                heapIdx[0] = idx;
+                heapDist[0] = d2;
+                bajar(0);
+            }
+        }
+
+        private void subir(int i) {
+            while (i > 0) {
+                int padre = (i - 1) / 2;
+                if (heapDist[padre] >= heapDist[i]) break;
+                swap(i, padre);
+                i = padre;
+            }
+        }
+
+        private void bajar(int i) {
+            while (true) {
+                int mayor = i, l = 2 * i + 1, r = l + 1;
+                if (l < tam && heapDist[l] > heapDist[mayor]) mayor = l;
+                if (r < tam && heapDist[r] > heapDist[mayor]) mayor = r;
+                if (mayor == i) return;
+                swap(i, mayor);
+                i = mayor;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int ti = heapIdx[a]; heapIdx[a] = heapIdx[b]; heapIdx[b] = ti;
+            double td = heapDist[a]; heapDist[a] = heapDist[b]; heapDist[b] = td;
+        }
+
+        List<CentroCercano> resultados() {
+            // Vaciar el heap de mayor a menor deja el array ordenado ascendente
+            CentroCercano[] out = new CentroCercano[tam];
+            while (tam > 0) {
+                double cuerda = Math.sqrt(heapDist[0]);
+                double km = 2 * RADIO_TIERRA_KM * Math.asin(Math.min(1.0, cuerda / 2));
+                out[tam - 1] = new CentroCercano(centros[heapIdx[0]], km);
+                swap(0, --tam);
+                bajar(0);
+            }
+            return new ArrayList<>(Arrays.asList(out));
+        }
+    }
+
+    // ── Coordenadas ──────────────────────────────────────────────────────────
+
+    /**
+     * Normaliza las coordenadas del JSON a grados {lat, lon}.
+     * Acepta coma decimal, UTM en el huso de la región y pares con lat/lon
+     * invertidos, tal como aparecen en el fichero de Murcia: de las dos
+     * lecturas posibles se queda con la que cae dentro de la región. Devuelve
+     * null si no son válidas o ninguna lectura cae dentro.
+     */
+    static double[] parsearCoordenadas(String latitud, String longitud, Region region) {
+        if (latitud == null || longitud == null) return null;
+        double a, b;
+        try {
+            a = Double.parseDouble(latitud.trim().replace(",", "."));
+            b = Double.parseDouble(longitud.trim().replace(",", "."));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (Double.isNaN(a) || Double.isNaN(b)) return null;
+
+        boolean utm = Math.abs(a) > 180 || Math.abs(b) > 180;
+        // Primero como vienen etiquetadas (latitud = norte), luego invertidas
+        double[] directa = utm ? utmALatLon(b, a, region.husoUtm()) : new double[]{a, b};
+        if (region.contiene(directa[0], directa[1])) return directa;
+        double[] invertida = utm ? utmALatLon(a, b, region.husoUtm()) : new double[]{b, a};
+        if (region.contiene(invertida[0], invertida[1])) return invertida;
+        return null;
+    }
+
+    /**
+     * Conversión UTM → lat/lon (hemisferio norte, elipsoide GRS80).
+     */
+    static double[] utmALatLon(double este, double norte, int huso) {
+        double ep2 = UTM_E2 / (1 - UTM_E2);
+        double e1 = (1 - Math.sqrt(1 - UTM_E2)) / (1 + Math.sqrt(1 - UTM_E2));
+        double x = este - 500000.0;
+
+        double m = norte / UTM_K0;
+        double mu = m / (UTM_A * (1 - UTM_E2 / 4 - 3 * UTM_E2 * UTM_E2 / 64
+                                  - 5 * UTM_E2 * UTM_E2 * UTM_E2 / 256));
+        double phi1 = mu
+            + (3 * e1 / 2 - 27 * Math.pow(e1, 3) / 32) * Math.sin(2 * mu)
+            + (21 * e1 * e1 / 16 - 55 * Math.pow(e1, 4) / 32) * Math.sin(4 * mu)
+            + (151 * Math.pow(e1, 3) / 96) * Math.sin(6 * mu)
+            + (1097 * Math.pow(e1, 4) / 512) * Math.sin(8 * mu);
+
+        double sin = Math.sin(phi1), cos = Math.cos(phi1), tan = Math.tan(phi1);
+        double n1 = UTM_A / Math.sqrt(1 - UTM_E2 * sin * sin);
+        double t1 = tan * tan;
+        double c1 = ep2 * cos * cos;
+        double r1 = UTM_A * (1 - UTM_E2) / Math.pow(1 - UTM_E2 * sin * sin, 1.5);
+        double d = x / (n1 * UTM_K0);
+
+        double lat = phi1 - (n1 * tan / r1) * (d * d / 2
+            - (5 + 3 * t1 + 10 * c1 - 4 * c1 * c1 - 9 * ep2) * Math.pow(d, 4) / 24
+            + (61 + 90 * t1 + 298 * c1 + 45 * t1 * t1 - 252 * ep2 - 3 * c1 * c1) * Math.pow(d, 6) / 720);
+        double lon = (d - (1 + 2 * t1 + c1) * Math.pow(d, 3) / 6
+            + (5 - 2 * c1 + 28 * t1 - 3 * c1 * c1 + 8 * ep2 + 24 * t1 * t1) * Math.pow(d, 5) / 120) / cos;
+
+        return new double[]{Math.toDegrees(lat), huso * 6 - 183 + Math.toDegrees(lon)};
+    }
+
+    /**
+     * Distancia en km entre dos puntos (Haversine).
+     */
+    public static double calcularDistancia(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return RADIO_TIERRA_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    // ========================================
+    // CLASE INTERNA PARA RESULTADO
+    // ========================================
+
+    public static class CentroCercano {
+        private final CentroSalud centro;
+        private final double distanciaKm;
+
+        public CentroCercano(CentroSalud centro, double distanciaKm) {
+            this.centro = centro;
+            this.distanciaKm = distanciaKm;
+        }
+
+        public CentroSalud getCentro() { return centro; }
+        public double getDistanciaKm() { return distanciaKm; }
+    }
+}
@@ -41,11 +41,20 @@ public class EmergencyEvent {
      * @throws IllegalArgumentException si los parámetros no son válidos
      */
     public EmergencyEvent(String emergencyType, String location, int severityLevel, String userData) {
+        this(emergencyType, location, severityLevel, userData, LocalDateTime.now());
+    }
+
+    /**
+     * Reconstruye un evento con su marca de tiempo original (p. ej. al leerlo
+     * del historial).
+     */
+    public EmergencyEvent(String emergencyType, String location, int severityLevel, String userData,
+                          LocalDateTime timestamp) {
         this.emergencyType = emergencyType;
         this.location = location;
         this.severityLevel = severityLevel;
         this.userData = userData;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = timestamp;
     }
 
     // Getters y Setters
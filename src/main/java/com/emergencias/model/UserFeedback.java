@@ -15,10 +15,17 @@ public class UserFeedback {
     private LocalDateTime feedbackTime;
 
     public UserFeedback(String emergencyId, int satisfactionRating, String comments) {
+        this(emergencyId, satisfactionRating, comments, LocalDateTime.now());
+    }
+
+    /**
+     * Reconstruye un feedback con su fecha original (p. ej. al leerlo del historial).
+     */
+    public UserFeedback(String emergencyId, int satisfactionRating, String comments, LocalDateTime feedbackTime) {
         this.emergencyId = emergencyId;
         this.satisfactionRating = satisfactionRating;
         this.comments = comments;
-        this.feedbackTime = LocalDateTime.now();
+        this.feedbackTime = feedbackTime;
     }
 
     public String getEmergencyId() {
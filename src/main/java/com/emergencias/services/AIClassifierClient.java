@@ -1,29 +1,68 @@
 package com.emergencias.services;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
-public class AIClassifierClient implements IEmergencyClassifier {
+public class AIClassifierClient implements IEmergencyClassifier, AutoCloseable {
 
     private static final Logger log = Logger.getLogger(AIClassifierClient.class.getName());
 
     private static final int    MAX_RETRIES             = 3;
     private static final long   BACKOFF_BASE_MS         = 500;
-    private static final int    CIRCUIT_FAILURE_THRESHOLD = 3;
+    private static final int    CIRCUIT_WINDOW_SIZE     = 10;
+    private static final int    CIRCUIT_MIN_CALLS       = 3;
+    private static final double CIRCUIT_FAILURE_RATE    = 0.5;
     private static final Duration CIRCUIT_OPEN_TTL      = Duration.ofSeconds(60);
+    private static final int    CIRCUIT_HALF_OPEN_PROBES = 2;
+    private static final Duration HEALTH_INTERVAL       = Duration.ofSeconds(15);
+    private static final double   HEALTH_JITTER         = 0.2;
+    private static final Duration HEALTH_TIMEOUT        = Duration.ofSeconds(3);
+    private static final int    BATCH_CHUNK_SIZE        = 64;
+    private static final int    BATCH_MAX_IN_FLIGHT     = 4;
+    private static final int    UPLOAD_CHUNK_BYTES      = 4096;   // ~128 ms de PCM a 16 kHz
+    private static final long   EMOTION_GRACE_MS        = 500;    // espera extra a la emoción tras /stt
+    private static final String AUDIO_ENCODING_HEADER   = "X-Audio-Encoding";
+    private static final String AUDIO_ENCODINGS_HEADER  = "X-Audio-Encodings"; // anunciada en /health
 
     private final String baseUrl;
     private final HttpClient httpClient;
-    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    // Un breaker por endpoint: un TTS lento o caído no bloquea la clasificación
+    private final CircuitBreaker classifyBreaker = newBreaker("classify");
+    private final CircuitBreaker chatBreaker = newBreaker("chat");
+    private final CircuitBreaker geoBreaker = newBreaker("geolocate");
+    private final CircuitBreaker ttsBreaker = newBreaker("tts");
+    private final CircuitBreaker sttBreaker = newBreaker("stt");
+    private final CircuitBreaker emotionBreaker = newBreaker("analyze-emotion");
+    private final CircuitBreaker systemInfoBreaker = newBreaker("system-info");
+    private final List<CircuitBreaker> breakers = List.of(classifyBreaker, chatBreaker, geoBreaker,
+            ttsBreaker, sttBreaker, emotionBreaker, systemInfoBreaker);
+    private final HealthMonitor healthMonitor =
+            new HealthMonitor(this::probeHealthAsync, HEALTH_INTERVAL, HEALTH_JITTER);
+
+    // El audio solo se comprime si el backend lo anuncia en /health y no se ha desactivado
+    private volatile boolean audioCompression = true;
+    private volatile boolean serverDecodesSlpc = false;
 
     public AIClassifierClient(String baseUrl) {
         this.baseUrl = baseUrl;
@@ -37,41 +76,197 @@ public class AIClassifierClient implements IEmergencyClassifier {
 
     @Override
     public String classify(String text) {
+        return await(classifyAsync(text));
+    }
+
+    @Override
+    public CompletableFuture<String> classifyAsync(String text) {
+        return sendWithRetryAsync(classifyRequest(text), classifyBreaker,
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8), body -> body);
+    }
+
+    @Override
+    public ClassifyResponse classifyDetailed(String text) {
+        return await(classifyDetailedAsync(text));
+    }
+
+    /**
+     * Igual que {@link #classifyAsync(String)} pero decodifica la respuesta en
+     * streaming desde el cuerpo HTTP, sin pasar por un String intermedio.
+     */
+    @Override
+    public CompletableFuture<ClassifyResponse> classifyDetailedAsync(String text) {
+        return sendWithRetryAsync(classifyRequest(text), classifyBreaker,
+                HttpResponse.BodyHandlers.ofInputStream(), ResponseParser::parseClassify);
+    }
+
+    /**
+     * Clasifica muchos textos con /classify/batch (reclasificación offline,
+     * reproducción de transcripciones). La lista se trocea en bloques de
+     * {@value #BATCH_CHUNK_SIZE} textos y hasta {@value #BATCH_MAX_IN_FLIGHT}
+     * bloques viajan a la vez. El resultado conserva el orden de entrada; los
+     * textos de un bloque que falla quedan a null.
+     */
+    public List<ClassifyResponse> classifyBatch(List<String> texts) {
+        return await(classifyBatchAsync(texts));
+    }
+
+    public CompletableFuture<List<ClassifyResponse>> classifyBatchAsync(List<String> texts) {
+        return new BatchJob(texts).start();
+    }
+
+    /**
+     * Estado de una clasificación por lotes: cada bloque que termina lanza el
+     * siguiente, de modo que siempre hay hasta BATCH_MAX_IN_FLIGHT peticiones en curso.
+     */
+    private final class BatchJob {
+        private final List<String> texts;
+        private final ClassifyResponse[] results;
+        private final int chunks;
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final List<CompletableFuture<?>> inFlight = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<List<ClassifyResponse>> done = new CompletableFuture<>();
+
+        BatchJob(List<String> texts) {
+            this.texts = List.copyOf(texts);
+            this.results = new ClassifyResponse[texts.size()];
+            this.chunks = (texts.size() + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE;
+            this.remaining = new AtomicInteger(chunks);
+        }
+
+        CompletableFuture<List<ClassifyResponse>> start() {
+            if (chunks == 0) {
+                done.complete(List.of());
+                return done;
+            }
+            done.whenComplete((r, t) -> {
+                if (done.isCancelled()) inFlight.forEach(f -> f.cancel(true));
+            });
+            for (int i = 0; i < Math.min(BATCH_MAX_IN_FLIGHT, chunks); i++) sendNext();
+            return done;
+        }
+
+        private void sendNext() {
+            int chunk = nextChunk.getAndIncrement();
+            if (chunk >= chunks || done.isDone()) return;
+            int from = chunk * BATCH_CHUNK_SIZE;
+            List<String> slice = texts.subList(from, Math.min(texts.size(), from + BATCH_CHUNK_SIZE));
+
+            CompletableFuture<List<ClassifyResponse>> request = sendWithRetryAsync(batchRequest(slice),
+                    classifyBreaker, HttpResponse.BodyHandlers.ofInputStream(), ResponseParser::parseClassifyBatch);
+            inFlight.add(request);
+            request.thenAccept(chunkResults -> {
+                inFlight.remove(request);
+                if (chunkResults != null && chunkResults.size() == slice.size()) {
+                    for (int i = 0; i < chunkResults.size(); i++) results[from + i] = chunkResults.get(i);
+                } else if (chunkResults != null) {
+                    log.warning("classify/batch devolvió " + chunkResults.size() + " resultados para " +
+                                slice.size() + " textos");
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    done.complete(Collections.unmodifiableList(Arrays.asList(results)));
+                } else {
+                    sendNext();
+                }
+            });
+        }
+    }
+
+    private HttpRequest batchRequest(List<String> texts) {
+        StringBuilder body = new StringBuilder("{\"texts\": [");
+        for (int i = 0; i < texts.size(); i++) {
+            if (i > 0) body.append(", ");
+            body.append('"').append(escapeJson(texts.get(i))).append('"');
+        }
+        body.append("]}");
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/classify/batch"))
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+    }
+
+    private HttpRequest classifyRequest(String text) {
         String body = "{\"text\": \"" + escapeJson(text) + "\"}";
-        HttpRequest req = HttpRequest.newBuilder()
+        return HttpRequest.newBuilder()
                 .uri(URI.create(baseUrl + "/classify"))
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(body))
                 .timeout(Duration.ofSeconds(10))
                 .build();
-        return sendWithRetry(req);
     }
 
+    /**
+     * Disponibilidad del backend según el monitor de salud en segundo plano.
+     * Solo la primera llamada espera a una sonda de /health; el resto leen la
+     * última instantánea sin hacer ninguna petición.
+     */
     @Override
     public boolean isAvailable() {
-        if (circuitBreaker.isOpen()) return false;
-        try {
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/health"))
-                    .GET()
-                    .timeout(Duration.ofSeconds(3))
-                    .build();
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() == 200) {
-                circuitBreaker.recordSuccess();
-                return true;
-            }
-            circuitBreaker.recordFailure();
-            return false;
-        } catch (Exception e) {
-            circuitBreaker.recordFailure();
-            return false;
-        }
+        if (classifyBreaker.isOpen()) return false;
+        healthMonitor.start();
+        return healthMonitor.awaitAvailability(HEALTH_TIMEOUT);
+    }
+
+    /**
+     * Notifica cada cambio de disponibilidad detectado por el monitor de salud.
+     */
+    public void addAvailabilityListener(Consumer<Boolean> listener) {
+        healthMonitor.addListener(listener);
+    }
+
+    /**
+     * Detiene el monitor de salud.
+     */
+    @Override
+    public void close() {
+        healthMonitor.close();
+    }
+
+    /**
+     * Sonda de /health. Alimenta los circuit breakers: cada fallo cuenta como un
+     * fallo más en la ventana de todos los endpoints (una sonda perdida no basta
+     * para abrirlos; se aplica el umbral normal) y un éxito deja que la
+     * siguiente petición de cada endpoint abierto lo pruebe antes del TTL.
+     */
+    private CompletableFuture<Boolean> probeHealthAsync() {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/health"))
+                .GET()
+                .timeout(HEALTH_TIMEOUT)
+                .build();
+        return httpClient.sendAsync(req, HttpResponse.BodyHandlers.discarding())
+                .handle((resp, error) -> {
+                    boolean ok = error == null && resp.statusCode() == 200;
+                    if (ok) {
+                        serverDecodesSlpc = resp.headers().allValues(AUDIO_ENCODINGS_HEADER).stream()
+                                .anyMatch(v -> v.contains(AudioCodec.ENCODING));
+                    }
+                    for (CircuitBreaker breaker : breakers) {
+                        if (ok) {
+                            breaker.allowProbe();
+                        } else {
+                            breaker.recordFailure();
+                        }
+                    }
+                    return ok;
+                });
     }
 
     // ── Other endpoints ───────────────────────────────────────────────────────
+    //
+    // Cada endpoint tiene una variante *Async basada en sendAsync (no bloquea ningún
+    // hilo mientras espera la red) y una variante bloqueante que simplemente espera
+    // al future. Los futures nunca terminan con excepción: null indica fallo, igual
+    // que en la API bloqueante. Cancelar el future aborta la petición en curso.
+
+    public ChatResponse chat(String message, String context) {
+        return await(chatAsync(message, context));
+    }
 
-    public String chat(String message, String context) {
+    public CompletableFuture<ChatResponse> chatAsync(String message, String context) {
         String body = "{\"message\": \"" + escapeJson(message) +
                       "\", \"context\": \"" + escapeJson(context) + "\"}";
         HttpRequest req = HttpRequest.newBuilder()
@@ -80,38 +275,87 @@ public class AIClassifierClient implements IEmergencyClassifier {
                 .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
                 .timeout(Duration.ofSeconds(30))
                 .build();
-        return sendWithRetry(req);
+        return sendWithRetryAsync(req, chatBreaker, HttpResponse.BodyHandlers.ofInputStream(), ResponseParser::parseChat);
     }
 
-    public String geolocate() {
-        if (circuitBreaker.isOpen()) return null;
-        try {
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/geolocate"))
-                    .GET()
-                    .timeout(Duration.ofSeconds(5))
-                    .build();
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() == 200 && !resp.body().contains("\"error\"")) return resp.body();
-            return null;
-        } catch (Exception e) {
-            log.warning("Error geolocate: " + e.getMessage());
-            return null;
-        }
+    /**
+     * Igual que {@link #chat(String, String)} pero por /chat/stream: cada token
+     * llega al oyente en cuanto el LLM lo genera y cada frase completa se
+     * notifica enseguida (para empezar el TTS sin esperar al final).
+     * Devuelve la respuesta acumulada, o null si no se pudo contactar.
+     */
+    public ChatResponse chatStream(String message, String context, ChatStreamListener listener) {
+        return await(chatStreamAsync(message, context, listener));
+    }
+
+    /**
+     * Variante asíncrona de {@link #chatStream}. No se reintenta: parte de la
+     * respuesta puede haberse mostrado ya. Si el backend no tiene /chat/stream
+     * (404) se usa /chat y el texto completo se entrega de una vez al oyente.
+     */
+    public CompletableFuture<ChatResponse> chatStreamAsync(String message, String context, ChatStreamListener listener) {
+        String body = "{\"message\": \"" + escapeJson(message) +
+                      "\", \"context\": \"" + escapeJson(context) + "\"}";
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/chat/stream"))
+                .header("Content-Type", "application/json; charset=utf-8")
+                .header("Accept", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+
+        ChatStreamSubscriber subscriber = new ChatStreamSubscriber(listener);
+        HttpResponse.BodyHandler<ChatResponse> handler = info -> info.statusCode() == 200
+                ? HttpResponse.BodyHandlers.fromLineSubscriber(subscriber, s -> s.result(), "\n").apply(info)
+                : HttpResponse.BodySubscribers.replacing(null);
+
+        CompletableFuture<HttpResponse<ChatResponse>> stream =
+                sendOnceAsync(req, chatBreaker, handler, "chat/stream", resp -> resp);
+        CompletableFuture<ChatResponse> result = stream.thenCompose(resp -> {
+            if (resp == null) return CompletableFuture.completedFuture(null);
+            if (resp.statusCode() == 404) {
+                log.info("Backend sin /chat/stream — usando /chat");
+                return chatAsync(message, context).thenApply(subscriber::replay);
+            }
+            return CompletableFuture.completedFuture(resp.body());
+        });
+        result.whenComplete((r, t) -> { if (result.isCancelled()) stream.cancel(true); });
+        return result;
+    }
+
+    public GeoResponse geolocate() {
+        return await(geolocateAsync());
+    }
+
+    public CompletableFuture<GeoResponse> geolocateAsync() {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/geolocate"))
+                .GET()
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        return sendOnceAsync(req, geoBreaker, HttpResponse.BodyHandlers.ofInputStream(), "geolocate", resp -> {
+            try (InputStream in = resp.body()) {
+                if (resp.statusCode() != 200) return null;
+                GeoResponse geo = ResponseParser.parseGeo(in);
+                return geo.error() == null ? geo : null;
+            }
+        });
     }
 
     public byte[] synthesize(String text, String emotion) {
-        if (circuitBreaker.isOpen()) return null;
-        try {
-            String body = "{\"text\": \"" + escapeJson(text) +
-                          "\", \"emotion\": \"" + escapeJson(emotion) + "\"}";
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/tts"))
-                    .header("Content-Type", "application/json; charset=utf-8")
-                    .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
-                    .timeout(Duration.ofSeconds(30))
-                    .build();
-            HttpResponse<byte[]> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofByteArray());
+        return await(synthesizeAsync(text, emotion));
+    }
+
+    public CompletableFuture<byte[]> synthesizeAsync(String text, String emotion) {
+        String body = "{\"text\": \"" + escapeJson(text) +
+                      "\", \"emotion\": \"" + escapeJson(emotion) + "\"}";
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/tts"))
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        return sendOnceAsync(req, ttsBreaker, HttpResponse.BodyHandlers.ofByteArray(), "TTS", resp -> {
             if (resp.statusCode() == 200) {
                 String ct = resp.headers().firstValue("content-type").orElse("");
                 if (ct.contains("application/json")) {
@@ -123,52 +367,171 @@ public class AIClassifierClient implements IEmergencyClassifier {
             }
             log.warning("TTS HTTP " + resp.statusCode());
             return null;
-        } catch (Exception e) {
-            log.warning("Error TTS: " + e.getMessage());
-            return null;
-        }
+        });
     }
 
     public String transcribeAdvanced(byte[] audioData, int sampleRate) {
-        if (circuitBreaker.isOpen()) return null;
-        try {
-            String boundary = "----WebKitFormBoundary" + System.currentTimeMillis();
-            byte[] body = buildMultipart(boundary, audioData, sampleRate);
-            HttpRequest req = HttpRequest.newBuilder()
+        return await(transcribeAdvancedAsync(audioData, sampleRate));
+    }
+
+    public CompletableFuture<String> transcribeAdvancedAsync(byte[] audioData, int sampleRate) {
+        return transcribeAsync(prepareAudio(audioData, sampleRate));
+    }
+
+    /**
+     * Activa o desactiva la compresión de las subidas de audio. Aunque esté
+     * activa, solo se usa si el backend anuncia en /health que sabe decodificarla.
+     */
+    public void setAudioCompression(boolean enabled) {
+        this.audioCompression = enabled;
+    }
+
+    /**
+     * Indica si las próximas subidas de audio irán comprimidas.
+     */
+    public boolean isAudioCompressed() {
+        return audioCompression && serverDecodesSlpc;
+    }
+
+    /**
+     * Empieza una transcripción por /stt antes de tener todo el audio: el cuerpo
+     * multipart se envía troceado (chunked) según se graba, así que al terminar
+     * de hablar solo queda por subir el último trozo.
+     */
+    public SpeechUpload startTranscription(int sampleRate) {
+        return new StreamingSttUpload(sampleRate);
+    }
+
+    /**
+     * Subida a /stt en curso. Las muestras se agrupan en trozos de
+     * {@value #UPLOAD_CHUNK_BYTES} bytes para no mandar un trozo HTTP por trama;
+     * si el backend admite audio comprimido, cada trozo sale como un bloque
+     * independiente de {@link AudioCodec}.
+     */
+    private final class StreamingSttUpload implements SpeechUpload {
+        private final String boundary = "----SoteriaStream" + System.nanoTime();
+        private final StreamingBody body = new StreamingBody();
+        private final CompletableFuture<String> response;
+        private final boolean compressed;
+        private byte[] chunk = new byte[UPLOAD_CHUNK_BYTES];
+        private int used = 0;
+
+        StreamingSttUpload(int sampleRate) {
+            // Los trozos se comprimen tal cual: sin remuestreo, solo a 16 kHz o menos
+            compressed = isAudioCompressed() && sampleRate <= AudioCodec.TARGET_SAMPLE_RATE;
+            // sample_rate va primero: así el audio es la última parte y se puede ir enviando
+            String head = "--" + boundary + "\r\n" +
+                    "Content-Disposition: form-data; name=\"sample_rate\"\r\n\r\n" +
+                    sampleRate + "\r\n" +
+                    "--" + boundary + "\r\n" +
+                    (compressed
+                            ? "Content-Disposition: form-data; name=\"audio\"; filename=\"audio.slpc\"\r\n" +
+                              "Content-Type: audio/x-slpc\r\n\r\n"
+                            : "Content-Disposition: form-data; name=\"audio\"; filename=\"audio.pcm\"\r\n" +
+                              "Content-Type: application/octet-stream\r\n\r\n");
+            body.write(ByteBuffer.wrap(head.getBytes(StandardCharsets.UTF_8)));
+            if (compressed) body.write(ByteBuffer.wrap(AudioCodec.header(sampleRate)));
+
+            HttpRequest.Builder builder = HttpRequest.newBuilder()
                     .uri(URI.create(baseUrl + "/stt"))
                     .header("Content-Type", "multipart/form-data; boundary=" + boundary)
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
-                    .timeout(Duration.ofSeconds(30))
-                    .build();
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-            return resp.statusCode() == 200 ? resp.body() : null;
-        } catch (Exception e) {
-            log.warning("Error STT: " + e.getMessage());
-            return null;
+                    .POST(HttpRequest.BodyPublishers.fromPublisher(body))
+                    .timeout(Duration.ofSeconds(30));
+            if (compressed) builder.header(AUDIO_ENCODING_HEADER, AudioCodec.ENCODING);
+            response = sendOnceAsync(builder.build(), sttBreaker, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8),
+                    "STT", resp -> resp.statusCode() == 200 ? resp.body() : null);
+        }
+
+        @Override
+        public synchronized void write(byte[] pcm, int offset, int length) {
+            while (length > 0) {
+                int n = Math.min(length, chunk.length - used);
+                System.arraycopy(pcm, offset, chunk, used, n);
+                used += n;
+                offset += n;
+                length -= n;
+                if (used == chunk.length) flushChunk();
+            }
+        }
+
+        @Override
+        public synchronized CompletableFuture<String> finish() {
+            if (used > 0) flushChunk();
+            body.write(ByteBuffer.wrap(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8)));
+            body.complete();
+            return response;
+        }
+
+        private void flushChunk() {
+            if (compressed) {
+                // El bloque codificado es una copia: el trozo se puede reutilizar
+                body.write(ByteBuffer.wrap(AudioCodec.encodeBlock(chunk, 0, used)));
+            } else {
+                body.write(ByteBuffer.wrap(chunk, 0, used));
+                chunk = new byte[UPLOAD_CHUNK_BYTES];
+            }
+            used = 0;
+        }
+
+        @Override
+        public void cancel() {
+            body.fail(new CancellationException("Grabación cancelada"));
+            response.cancel(true);
         }
     }
 
     public String analyzeEmotion(byte[] audioData, int sampleRate) {
-        if (circuitBreaker.isOpen()) return null;
-        try {
-            String boundary = "----WebKitFormBoundary" + System.currentTimeMillis();
-            byte[] body = buildMultipart(boundary, audioData, sampleRate);
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/analyze-emotion"))
-                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
-                    .timeout(Duration.ofSeconds(15))
-                    .build();
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-            return resp.statusCode() == 200 ? resp.body() : null;
-        } catch (Exception e) {
-            log.warning("Error analyzeEmotion: " + e.getMessage());
-            return null;
-        }
+        return await(analyzeEmotionAsync(audioData, sampleRate));
+    }
+
+    public CompletableFuture<String> analyzeEmotionAsync(byte[] audioData, int sampleRate) {
+        return analyzeEmotionAsync(prepareAudio(audioData, sampleRate));
+    }
+
+    public VoiceAnalysis analyzeVoice(byte[] audioData, int sampleRate) {
+        return await(analyzeVoiceAsync(audioData, sampleRate));
+    }
+
+    /**
+     * Transcribe y analiza la emoción de una misma grabación a la vez: las dos
+     * peticiones salen en paralelo desde una única copia (o codificación) del audio, así que la
+     * latencia del turno es la de la más lenta y no la suma de ambas.
+     *
+     * La emoción es opcional: si no ha llegado {@value #EMOTION_GRACE_MS} ms
+     * después de la transcripción se cancela y el resultado se entrega sin ella.
+     * Devuelve null solo si la respuesta de /stt no es válida.
+     */
+    public CompletableFuture<VoiceAnalysis> analyzeVoiceAsync(byte[] audioData, int sampleRate) {
+        // Instantánea inmutable: el llamante puede reutilizar su búfer mientras se envía
+        AudioUpload shared = prepareAudio(isAudioCompressed() ? audioData : audioData.clone(), sampleRate);
+        CompletableFuture<String> stt = transcribeAsync(shared);
+        CompletableFuture<String> emotion = analyzeEmotionAsync(shared);
+
+        stt.whenComplete((r, t) -> {
+            if (emotion.isDone()) return;
+            CompletableFuture.delayedExecutor(EMOTION_GRACE_MS, TimeUnit.MILLISECONDS)
+                    .execute(() -> emotion.cancel(true));
+        });
+        CompletableFuture<VoiceAnalysis> result = stt.thenCombine(emotion.exceptionally(e -> null),
+                (sttJson, emotionJson) -> {
+                    try {
+                        return ResponseParser.parseVoiceAnalysis(sttJson, emotionJson);
+                    } catch (IOException e) {
+                        log.warning("Error analyzeVoice: " + e.getMessage());
+                        return null;
+                    }
+                });
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled()) {
+                stt.cancel(true);
+                emotion.cancel(true);
+            }
+        });
+        return result;
     }
 
     public String getSystemInfo() {
-        if (circuitBreaker.isOpen()) return null;
+        if (!systemInfoBreaker.tryAcquire()) return null;
         try {
             HttpRequest req = HttpRequest.newBuilder()
                     .uri(URI.create(baseUrl + "/system-info"))
@@ -176,109 +539,231 @@ public class AIClassifierClient implements IEmergencyClassifier {
                     .timeout(Duration.ofSeconds(5))
                     .build();
             HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
+            recordStatus(systemInfoBreaker, resp.statusCode());
             return resp.statusCode() == 200 ? resp.body() : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
+            systemInfoBreaker.recordFailure();
             return null;
         }
     }
 
-    // ── Retry + circuit breaker ───────────────────────────────────────────────
+    private CompletableFuture<String> transcribeAsync(AudioUpload audio) {
+        return postAudioAsync("/stt", sttBreaker, audio, Duration.ofSeconds(30), "STT");
+    }
 
-    private String sendWithRetry(HttpRequest request) {
-        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
-            if (circuitBreaker.isOpen()) {
-                log.warning("Circuit breaker abierto — saltando llamada al backend");
+    private CompletableFuture<String> analyzeEmotionAsync(AudioUpload audio) {
+        return postAudioAsync("/analyze-emotion", emotionBreaker, audio, Duration.ofSeconds(15), "analyzeEmotion");
+    }
+
+    /**
+     * Audio listo para subir: PCM tal cual o, si el backend lo admite, bajado a
+     * 16 kHz y comprimido sin pérdidas con {@link AudioCodec}.
+     */
+    private record AudioUpload(ByteBuffer data, int sampleRate, boolean compressed) {}
+
+    private AudioUpload prepareAudio(byte[] pcm, int sampleRate) {
+        if (!isAudioCompressed()) return new AudioUpload(ByteBuffer.wrap(pcm), sampleRate, false);
+        int rate = Math.min(sampleRate, AudioCodec.TARGET_SAMPLE_RATE);
+        byte[] samples = AudioCodec.downsample(pcm, sampleRate, rate);
+        return new AudioUpload(ByteBuffer.wrap(AudioCodec.encode(samples, 0, samples.length, rate)), rate, true);
+    }
+
+    private CompletableFuture<String> postAudioAsync(String path, CircuitBreaker breaker, AudioUpload audio,
+                                                     Duration timeout, String label) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .header("Content-Type", MultipartBody.CONTENT_TYPE)
+                .timeout(timeout);
+        if (audio.compressed()) {
+            builder.header(AUDIO_ENCODING_HEADER, AudioCodec.ENCODING)
+                   .POST(MultipartBody.slpc(audio.data(), audio.sampleRate()));
+        } else {
+            builder.POST(new MultipartBody(audio.data(), audio.sampleRate()));
+        }
+        return sendOnceAsync(builder.build(), breaker, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8),
+                label, resp -> resp.statusCode() == 200 ? resp.body() : null);
+    }
+
+    // ── Async plumbing ────────────────────────────────────────────────────────
+
+    /**
+     * Envía una petición sin reintentos. Los errores se registran y se traducen a
+     * null; una cancelación no cuenta como fallo para el breaker.
+     */
+    private <B, T> CompletableFuture<T> sendOnceAsync(HttpRequest request,
+                                                      CircuitBreaker breaker,
+                                                      HttpResponse.BodyHandler<B> handler,
+                                                      String label,
+                                                      BodyReader<HttpResponse<B>, T> mapper) {
+        if (!breaker.tryAcquire()) return CompletableFuture.completedFuture(null);
+        CompletableFuture<HttpResponse<B>> inFlight = httpClient.sendAsync(request, handler);
+        CompletableFuture<T> result = inFlight.handle((resp, error) -> {
+            if (error != null) {
+                // Cancelada por el llamante (o por el plazo de gracia de la emoción): no es un fallo del endpoint
+                if (unwrap(error) instanceof CancellationException) return null;
+                breaker.recordFailure();
+                log.warning("Error " + label + ": " + unwrap(error).getMessage());
+                return null;
+            }
+            recordStatus(breaker, resp.statusCode());
+            try {
+                return mapper.read(resp);
+            } catch (IOException e) {
+                log.warning("Error " + label + ": " + e.getMessage());
                 return null;
             }
+        });
+        result.whenComplete((r, t) -> { if (result.isCancelled()) inFlight.cancel(true); });
+        return result;
+    }
+
+    /**
+     * Espera a un future de la API asíncrona desde código bloqueante.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Un 5xx cuenta como fallo del endpoint; cualquier otra respuesta demuestra que responde.
+     */
+    private static void recordStatus(CircuitBreaker breaker, int statusCode) {
+        if (statusCode >= 500) {
+            breaker.recordFailure();
+        } else {
+            breaker.recordSuccess();
+        }
+    }
+
+    private static void closeQuietly(Object body) {
+        if (body instanceof AutoCloseable closeable) {
             try {
-                HttpResponse<String> resp = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                closeable.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    // ── Retry + circuit breaker ───────────────────────────────────────────────
+
+    /**
+     * Lectura del cuerpo de una respuesta; puede fallar con IOException si el JSON no es válido.
+     */
+    @FunctionalInterface
+    private interface BodyReader<B, T> {
+        T read(B body) throws IOException;
+    }
+
+    private <B, T> CompletableFuture<T> sendWithRetryAsync(HttpRequest request,
+                                                           CircuitBreaker breaker,
+                                                           HttpResponse.BodyHandler<B> handler,
+                                                           BodyReader<B, T> reader) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        sendAttempt(request, breaker, handler, reader, 0, result);
+        return result;
+    }
+
+    /**
+     * Un intento de envío. Si falla de forma transitoria se programa el siguiente
+     * con backoff exponencial en un executor diferido, sin dormir ningún hilo.
+     */
+    private <B, T> void sendAttempt(HttpRequest request, CircuitBreaker breaker, HttpResponse.BodyHandler<B> handler,
+                                    BodyReader<B, T> reader, int attempt, CompletableFuture<T> result) {
+        if (result.isDone()) return;
+        if (!breaker.tryAcquire()) {
+            log.warning("Circuit breaker " + breaker.getName() + " abierto — saltando llamada al backend");
+            result.complete(null);
+            return;
+        }
+
+        CompletableFuture<HttpResponse<B>> inFlight = httpClient.sendAsync(request, handler);
+        result.whenComplete((r, t) -> { if (result.isCancelled()) inFlight.cancel(true); });
 
+        inFlight.whenComplete((resp, error) -> {
+            if (result.isDone()) return;
+
+            if (error == null) {
                 if (resp.statusCode() == 200) {
-                    circuitBreaker.recordSuccess();
-                    return resp.body();
+                    breaker.recordSuccess();
+                    try {
+                        result.complete(reader.read(resp.body()));
+                    } catch (IOException e) {
+                        log.warning("Respuesta del backend no válida: " + e.getMessage());
+                        result.complete(null);
+                    } finally {
+                        closeQuietly(resp.body());
+                    }
+                    return;
                 }
+                closeQuietly(resp.body());
                 if (resp.statusCode() >= 400 && resp.statusCode() < 500) {
-                    // Error del cliente — no reintentar
+                    // Error del cliente — no reintentar (el endpoint responde)
+                    breaker.recordSuccess();
                     log.warning("HTTP " + resp.statusCode() + " (4xx) — no se reintenta");
-                    return null;
+                    result.complete(null);
+                    return;
                 }
                 // 5xx — transitorio, reintentar
                 log.warning("HTTP " + resp.statusCode() + " (5xx), intento " + (attempt + 1) + "/" + MAX_RETRIES);
-                circuitBreaker.recordFailure();
-
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return null;
-            } catch (IOException e) {
-                log.warning("IOException al contactar backend: " + e.getMessage() +
-                            " — intento " + (attempt + 1) + "/" + MAX_RETRIES);
-                circuitBreaker.recordFailure();
-            } catch (Exception e) {
-                log.warning("Error inesperado: " + e.getMessage());
-                circuitBreaker.recordFailure();
+                breaker.recordFailure();
+            } else {
+                Throwable cause = unwrap(error);
+                if (cause instanceof IOException) {
+                    log.warning("IOException al contactar backend: " + cause.getMessage() +
+                                " — intento " + (attempt + 1) + "/" + MAX_RETRIES);
+                } else {
+                    log.warning("Error inesperado: " + cause.getMessage());
+                }
+                breaker.recordFailure();
             }
 
             if (attempt < MAX_RETRIES - 1) {
-                try {
-                    Thread.sleep(BACKOFF_BASE_MS * (1L << attempt)); // 500ms, 1000ms
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    return null;
-                }
+                long delay = BACKOFF_BASE_MS * (1L << attempt); // 500ms, 1000ms
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                        .execute(() -> sendAttempt(request, breaker, handler, reader, attempt + 1, result));
+            } else {
+                result.complete(null);
             }
-        }
-        return null;
+        });
     }
 
     // ── Circuit breaker ───────────────────────────────────────────────────────
 
-    private class CircuitBreaker {
-        private int consecutiveFailures = 0;
-        private Instant openedAt = Instant.EPOCH;
-        private boolean open = false;
-
-        synchronized boolean isOpen() {
-            if (!open) return false;
-            if (Duration.between(openedAt, Instant.now()).compareTo(CIRCUIT_OPEN_TTL) > 0) {
-                open = false;
-                consecutiveFailures = 0;
-            }
-            return open;
-        }
-
-        synchronized void recordSuccess() {
-            consecutiveFailures = 0;
-            open = false;
-        }
+    private static CircuitBreaker newBreaker(String endpoint) {
+        return new CircuitBreaker(endpoint, CIRCUIT_WINDOW_SIZE, CIRCUIT_MIN_CALLS, CIRCUIT_FAILURE_RATE,
+                CIRCUIT_OPEN_TTL, CIRCUIT_HALF_OPEN_PROBES);
+    }
 
-        synchronized void recordFailure() {
-            consecutiveFailures++;
-            if (consecutiveFailures >= CIRCUIT_FAILURE_THRESHOLD) {
-                open = true;
-                openedAt = Instant.now();
-                log.warning("Circuit breaker ABIERTO tras " + consecutiveFailures + " fallos consecutivos");
-            }
+    /**
+     * Breaker de un endpoint ("classify", "chat", "tts", ...) para diagnóstico.
+     */
+    public CircuitBreaker getCircuitBreaker(String endpoint) {
+        for (CircuitBreaker breaker : breakers) {
+            if (breaker.getName().equals(endpoint)) return breaker;
         }
+        return null;
     }
 
     // ── Helpers ───────────────────────────────────────────────────────────────
 
-    private static byte[] buildMultipart(String boundary, byte[] audioData, int sampleRate) throws IOException {
-        java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
-        baos.write(("--" + boundary + "\r\n").getBytes(StandardCharsets.UTF_8));
-        baos.write("Content-Disposition: form-data; name=\"audio\"; filename=\"audio.wav\"\r\n".getBytes());
-        baos.write("Content-Type: audio/wav\r\n\r\n".getBytes());
-        baos.write(audioData);
-        baos.write("\r\n".getBytes());
-        baos.write(("--" + boundary + "\r\n").getBytes(StandardCharsets.UTF_8));
-        baos.write("Content-Disposition: form-data; name=\"sample_rate\"\r\n\r\n".getBytes());
-        baos.write(String.valueOf(sampleRate).getBytes(StandardCharsets.UTF_8));
-        baos.write("\r\n".getBytes());
-        baos.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
-        return baos.toByteArray();
-    }
-
     private String escapeJson(String text) {
         return text.replace("\\", "\\\\")
                    .replace("\"", "\\\"")
@@ -286,73 +771,4 @@ public class AIClassifierClient implements IEmergencyClassifier {
                    .replace("\r", "\\r")
                    .replace("\t", "\\t");
     }
-
-    // ── Static JSON extract helpers (sin cambios) ─────────────────────────────
-
-    public static String extractString(String json, String key) {
-        String search = "\"" + key + "\":\"";
-        int start = json.indexOf(search);
-        if (start == -1) return null;
-        start += search.length();
-        int end = json.indexOf("\"", start);
-        return json.substring(start, end);
-    }
-
-    public static int extractInt(String json, String key) {
-        String search = "\"" + key + "\":";
-        int start = json.indexOf(search);
-        if (start == -1) return -1;
-        start += search.length();
-        int end = start;
-        while (end < json.length() && (Character.isDigit(json.charAt(end)) || json.charAt(end) == '-')) end++;
-        return Integer.parseInt(json.substring(start, end));
-    }
-
-    public static double extractDouble(String json, String key) {
-        String search = "\"" + key + "\":";
-        int start = json.indexOf(search);
-        if (start == -1) return -1;
-        start += search.length();
-        int end = start;
-        while (end < json.length() &&
-               (Character.isDigit(json.charAt(end)) || json.charAt(end) == '.' || json.charAt(end) == '-')) end++;
-        return Double.parseDouble(json.substring(start, end));
-    }
-
-    public static String[] extractStringArray(String json, String key) {
-        String search = "\"" + key + "\":[";
-        int start = json.indexOf(search);
-        if (start == -1) return new String[0];
-        start += search.length();
-        int end = json.indexOf("]", start);
-        String content = json.substring(start, end).trim();
-        if (content.isEmpty()) return new String[0];
-
-        List<String> items = new ArrayList<>();
-        boolean inQuotes = false;
-        int itemStart = -1;
-        for (int i = 0; i < content.length(); i++) {
-            char c = content.charAt(i);
-            if (c == '"' && !inQuotes) { inQuotes = true; itemStart = i + 1; }
-            else if (c == '"' && inQuotes) { inQuotes = false; items.add(content.substring(itemStart, i)); }
-        }
-        return items.toArray(new String[0]);
-    }
-
-    public static String[] extractEmergencies(String json) {
-        String search = "\"emergencies\":[";
-        int start = json.indexOf(search);
-        if (start == -1) return new String[0];
-        start += search.length();
-
-        List<String> objects = new ArrayList<>();
-        int depth = 0, objStart = -1;
-        for (int i = start; i < json.length(); i++) {
-            char c = json.charAt(i);
-            if (c == '{') { if (depth == 0) objStart = i; depth++; }
-            else if (c == '}') { depth--; if (depth == 0 && objStart != -1) { objects.add(json.substring(objStart, i + 1)); objStart = -1; } }
-            else if (c == ']' && depth == 0) break;
-        }
-        return objects.toArray(new String[0]);
-    }
 }
@@ -0,0 +1,280 @@
+package com.emergencias.services;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compresión sin pérdidas de PCM de 16 bits mono para las subidas a /stt y
+ * /analyze-emotion (formato "slpc", al estilo de FLAC).
+ *
+ * Cada bloque elige el predictor lineal fijo (orden 0 a 4) que deja los
+ * residuos más pequeños y los codifica con Rice. La voz a 16 kHz ocupa así
+ * entre la mitad y la cuarta parte que en crudo, y el backend recupera las
+ * muestras exactas (decode_slpc en stt_service.py).
+ *
+ * Formato (big endian):
+ * <pre>
+ *   cabecera: "SLPC" | versión (u8) | frecuencia (u32)
+ *   bloque:   muestras (u16) | orden (u8) | k (u8) | orden × muestra inicial (i16)
+ *             | residuos Rice | relleno hasta el byte
+ * </pre>
+ * Cada residuo va en zigzag: cociente en unario (unos terminados en cero) y
+ * k bits de resto. Si el cociente llega a {@value #ESCAPE} se escriben
+ * {@value #ESCAPE} unos y el valor en crudo con {@value #RAW_BITS} bits.
+ * Los bloques son independientes, así que se pueden ir enviando según se graba.
+ */
+public final class AudioCodec {
+
+    /** Valor de las cabeceras X-Audio-Encoding / X-Audio-Encodings. */
+    public static final String ENCODING = "slpc";
+    public static final int TARGET_SAMPLE_RATE = 16000;
+
+    static final int BLOCK_SAMPLES = 4096;
+    static final int HEADER_BYTES = 9;
+    private static final byte[] MAGIC = {'S', 'L', 'P', 'C'};
+    private static final int VERSION = 1;
+    private static final int MAX_ORDER = 4;
+    private static final int MAX_RICE = 30;
+    private static final int ESCAPE = 32;
+    private static final int RAW_BITS = 24;   // cabe cualquier residuo de orden 4 en zigzag
+
+    private AudioCodec() {}
+
+    /**
+     * Audio decodificado: frecuencia y PCM de 16 bits little endian.
+     */
+    record Decoded(int sampleRate, byte[] pcm) {}
+
+    // ── Codificación ──────────────────────────────────────────────────────────
+
+    /**
+     * Codifica PCM de 16 bits little endian mono (un byte final suelto se ignora).
+     */
+    public static byte[] encode(byte[] pcm, int offset, int length, int sampleRate) {
+        BitWriter out = new BitWriter(HEADER_BYTES + length / 2);
+        writeHeader(out, sampleRate);
+        int samples = length / 2;
+        for (int from = 0; from < samples; from += BLOCK_SAMPLES) {
+            int n = Math.min(BLOCK_SAMPLES, samples - from);
+            writeBlock(out, pcm, offset + 2 * from, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Cabecera de un flujo que se va a enviar por bloques con {@link #encodeBlock}.
+     */
+    public static byte[] header(int sampleRate) {
+        BitWriter out = new BitWriter(HEADER_BYTES);
+        writeHeader(out, sampleRate);
+        return out.toByteArray();
+    }
+
+    /**
+     * Codifica un trozo de PCM como uno o más bloques independientes.
+     */
+    public static byte[] encodeBlock(byte[] pcm, int offset, int length) {
+        BitWriter out = new BitWriter(length / 2 + 16);
+        int samples = length / 2;
+        for (int from = 0; from < samples; from += BLOCK_SAMPLES) {
+            writeBlock(out, pcm, offset + 2 * from, Math.min(BLOCK_SAMPLES, samples - from));
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeHeader(BitWriter out, int sampleRate) {
+        for (byte b : MAGIC) out.bits(b, 8);
+        out.bits(VERSION, 8);
+        out.bits(sampleRate, 32);
+    }
+
+    private static void writeBlock(BitWriter out, byte[] pcm, int offset, int n) {
+        int[] s = new int[n];
+        for (int i = 0; i < n; i++) {
+            s[i] = (short) ((pcm[offset + 2 * i] & 0xFF) | (pcm[offset + 2 * i + 1] << 8));
+        }
+
+        // Todos los órdenes se comparan sobre las mismas muestras
+        int maxOrder = Math.min(MAX_ORDER, n);
+        int order = 0;
+        long best = Long.MAX_VALUE;
+        for (int candidate = 0; candidate <= maxOrder; candidate++) {
+            long cost = 0;
+            for (int i = maxOrder; i < n; i++) cost += Math.abs(s[i] - predict(candidate, s, i));
+            if (cost < best) {
+                best = cost;
+                order = candidate;
+            }
+        }
+
+        long sum = 0;
+        for (int i = order; i < n; i++) sum += zigzag(s[i] - predict(order, s, i));
+        int count = n - order;
+        int k = 0;
+        while (k < MAX_RICE && ((long) count << (k + 1)) < sum) k++;
+
+        out.bits(n, 16);
+        out.bits(order, 8);
+        out.bits(k, 8);
+        for (int i = 0; i < order; i++) out.bits(s[i] & 0xFFFF, 16);
+        for (int i = order; i < n; i++) {
+            int u = zigzag(s[i] - predict(order, s, i));
+            int q = u >>> k;
+            if (q < ESCAPE) {
+                out.ones(q);
+                out.bits(0, 1);
+                out.bits(u & ((1 << k) - 1), k);
+            } else {
+                out.ones(ESCAPE);
+                out.bits(u, RAW_BITS);
+            }
+        }
+        out.align();
+    }
+
+    // ── Decodificación (la del backend está en stt_service.py) ───────────────
+
+    static Decoded decode(byte[] data) throws IOException {
+        if (data.length < HEADER_BYTES || !Arrays.equals(data, 0, 4, MAGIC, 0, 4)) {
+            throw new IOException("No es un flujo SLPC");
+        }
+        if (data[4] != VERSION) throw new IOException("Versión SLPC no soportada: " + data[4]);
+        BitReader in = new BitReader(data, 5 * 8);
+        int sampleRate = (int) in.bits(32);
+
+        java.io.ByteArrayOutputStream pcm = new java.io.ByteArrayOutputStream(data.length * 3);
+        while (in.position() < data.length * 8L) {
+            int n = (int) in.bits(16);
+            int order = (int) in.bits(8);
+            int k = (int) in.bits(8);
+            if (order > MAX_ORDER || order > n || k > MAX_RICE) throw new IOException("Bloque SLPC inválido");
+            int[] s = new int[n];
+            for (int i = 0; i < order; i++) s[i] = (short) in.bits(16);
+            for (int i = order; i < n; i++) {
+                int q = 0;
+                while (q < ESCAPE && in.bits(1) == 1) q++;
+                int u = q < ESCAPE ? (q << k) | (int) in.bits(k) : (int) in.bits(RAW_BITS);
+                s[i] = predict(order, s, i) + ((u >>> 1) ^ -(u & 1));
+            }
+            in.align();
+            for (int v : s) {
+                pcm.write(v);
+                pcm.write(v >> 8);
+            }
+        }
+        return new Decoded(sampleRate, pcm.toByteArray());
+    }
+
+    // ── Remuestreo ────────────────────────────────────────────────────────────
+
+    /**
+     * Baja la frecuencia de PCM de 16 bits mono. Cada muestra de salida es la
+     * media de las de entrada que cubre (filtro de caja), suficiente como
+     * antialiasing para voz. Si no hay que bajar, devuelve el mismo array.
+     */
+    public static byte[] downsample(byte[] pcm, int fromRate, int toRate) {
+        if (fromRate <= toRate) return pcm;
+        int inSamples = pcm.length / 2;
+        int outSamples = (int) ((long) inSamples * toRate / fromRate);
+        byte[] out = new byte[outSamples * 2];
+        for (int j = 0; j < outSamples; j++) {
+            int start = (int) ((long) j * fromRate / toRate);
+            int end = Math.max(start + 1, (int) ((long) (j + 1) * fromRate / toRate));
+            long sum = 0;
+            for (int i = start; i < end; i++) sum += (short) ((pcm[2 * i] & 0xFF) | (pcm[2 * i + 1] << 8));
+            int v = (int) Math.round((double) sum / (end - start));
+            out[2 * j] = (byte) v;
+            out[2 * j + 1] = (byte) (v >> 8);
+        }
+        return out;
+    }
+
+    // ── Internos ──────────────────────────────────────────────────────────────
+
+    /**
+     * Predictores fijos de FLAC: extrapolación polinómica de grado {@code order - 1}.
+     */
+    private static int predict(int order, int[] s, int i) {
+        return switch (order) {
+            case 0 -> 0;
+            case 1 -> s[i - 1];
+            case 2 -> 2 * s[i - 1] - s[i - 2];
+            case 3 -> 3 * s[i - 1] - 3 * s[i - 2] + s[i - 3];
+            default -> 4 * s[i - 1] - 6 * s[i - 2] + 4 * s[i - 3] - s[i - 4];
+        };
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static final class BitWriter {
+        private byte[] buf;
+        private int size = 0;
+        private long acc = 0;
+        private int accBits = 0;
+
+        BitWriter(int capacity) {
+            buf = new byte[Math.max(16, capacity)];
+        }
+
+        void bits(long value, int count) {
+            if (count == 0) return;
+            acc = (acc << count) | (value & ((1L << count) - 1));
+            accBits += count;
+            while (accBits >= 8) {
+                accBits -= 8;
+                put((byte) (acc >>> accBits));
+            }
+        }
+
+        void ones(int count) {
+            while (count > 0) {
+                int n = Math.min(count, 32);
+                bits((1L << n) - 1, n);
+                count -= n;
+            }
+        }
+
+        void align() {
+            if (accBits > 0) bits(0, 8 - accBits);
+        }
+
+        byte[] toByteArray() {
+            align();
+            return Arrays.copyOf(buf, size);
+        }
+
+        private void put(byte b) {
+            if (size == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            buf[size++] = b;
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] data;
+        private long bit;
+
+        BitReader(byte[] data, long bit) {
+            this.data = data;
+            this.bit = bit;
+        }
+
+        long bits(int count) throws IOException {
+            if (bit + count > data.length * 8L) throw new IOException("Flujo SLPC truncado");
+            long value = 0;
+            for (int i = 0; i < count; i++, bit++) {
+                value = (value << 1) | ((data[(int) (bit >>> 3)] >>> (7 - (bit & 7))) & 1);
+            }
+            return value;
+        }
+
+        void align() {
+            bit = (bit + 7) & ~7L;
+        }
+
+        long position() {
+            return bit;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.emergencias.services;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Reproduce audio WAV/PCM directamente desde memoria por una
+ * {@link SourceDataLine} reutilizable.
+ *
+ * Sin ficheros temporales ni un reproductor nuevo por frase: la cabecera WAV se
+ * lee en el propio array, las muestras se escriben a la línea sin copiarlas y
+ * la línea se mantiene abierta mientras el formato no cambie. Los audios se
+ * reproducen en orden en un único hilo; cada {@link #play} devuelve un future
+ * que se completa cuando el audio ha terminado de sonar (o ha fallado).
+ */
+public class AudioPlayer implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(AudioPlayer.class.getName());
+
+    // Bloques de escritura: permiten detener un audio cancelado sin esperar a que acabe
+    private static final int WRITE_CHUNK_BYTES = 8192;
+
+    /**
+     * Muestras PCM dentro de un array (sin copiar) y su formato.
+     */
+    public record Pcm(AudioFormat format, byte[] data, int offset, int length) {}
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "audio-playback");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Solo los toca el hilo de reproducción
+    private SourceDataLine line;
+    private AudioFormat lineFormat;
+    private volatile boolean closed = false;
+
+    /**
+     * Encola un WAV (PCM entero) para reproducirlo. Cancelar el future corta el audio.
+     */
+    public CompletableFuture<Void> play(byte[] wav) {
+        try {
+            return play(parseWav(wav));
+        } catch (IOException e) {
+            log.warning("WAV no válido: " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Encola muestras PCM ya decodificadas.
+     */
+    public CompletableFuture<Void> play(Pcm pcm) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        try {
+            worker.execute(() -> {
+                try {
+                    playNow(pcm, done);
+                } finally {
+                    done.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            done.complete(null);
+        }
+        return done;
+    }
+
+    /**
+     * Corta el audio en curso, descarta los pendientes y libera la línea.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.execute(this::closeLine);
+        } catch (RejectedExecutionException ignored) {
+            // Ya cerrado
+        }
+        worker.shutdown();
+    }
+
+    // ── Reproducción (hilo audio-playback) ────────────────────────────────────
+
+    private void playNow(Pcm pcm, CompletableFuture<Void> done) {
+        if (done.isDone() || closed) return; // cancelado antes de empezar
+        try {
+            SourceDataLine out = lineFor(pcm.format());
+            out.start();
+            int frame = Math.max(1, pcm.format().getFrameSize());
+            int chunk = Math.max(frame, WRITE_CHUNK_BYTES / frame * frame);
+            int offset = pcm.offset();
+            int end = offset + pcm.length() / frame * frame;
+            while (offset < end && !done.isDone() && !closed) {
+                offset += out.write(pcm.data(), offset, Math.min(chunk, end - offset));
+            }
+            if (done.isDone() || closed) {
+                out.stop();
+                out.flush();
+            } else {
+                out.drain();
+            }
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            log.warning("Salida de audio no disponible: " + e.getMessage());
+            closeLine();
+        }
+    }
+
+    private SourceDataLine lineFor(AudioFormat format) throws LineUnavailableException {
+        if (line != null && line.isOpen() && format.matches(lineFormat)) return line;
+        closeLine();
+        SourceDataLine next = AudioSystem.getSourceDataLine(format);
+        next.open(format);
+        line = next;
+        lineFormat = format;
+        return next;
+    }
+
+    private void closeLine() {
+        if (line != null) {
+            line.close();
+            line = null;
+            lineFormat = null;
+        }
+    }
+
+    // ── WAV ───────────────────────────────────────────────────────────────────
+
+    /**
+     * Localiza las muestras de un WAV PCM entero (RIFF/WAVE, fmt + data) sin copiarlas.
+     */
+    public static Pcm parseWav(byte[] wav) throws IOException {
+        if (wav == null || wav.length < 12 || !tag(wav, 0, "RIFF") || !tag(wav, 8, "WAVE")) {
+            throw new IOException("No es un fichero RIFF/WAVE");
+        }
+        AudioFormat format = null;
+        int pos = 12;
+        while (pos + 8 <= wav.length) {
+            int size = le32(wav, pos + 4);
+            int body = pos + 8;
+            if (size < 0 || body + size > wav.length) {
+                // Algunos escritores en streaming dejan el tamaño de data sin rellenar
+                if (!tag(wav, pos, "data")) throw new IOException("Chunk truncado");
+                size = wav.length - body;
+            }
+            if (tag(wav, pos, "fmt ")) {
+                if (size < 16) throw new IOException("Chunk fmt demasiado corto");
+                int encoding = le16(wav, body);
+                if (encoding != 1) throw new IOException("Solo se admite PCM entero (formato " + encoding + ")");
+                int channels = le16(wav, body + 2);
+                int sampleRate = le32(wav, body + 4);
+                int bits = le16(wav, body + 14);
+                format = pcmFormat(sampleRate, bits, channels);
+            } else if (tag(wav, pos, "data")) {
+                if (format == null) throw new IOException("Chunk data antes de fmt");
+                return new Pcm(format, wav, body, size);
+            }
+            pos = body + size + (size & 1); // los chunks se alinean a 2 bytes
+        }
+        throw new IOException("WAV sin chunk data");
+    }
+
+    /**
+     * Formato PCM entero de un WAV: 8 bits sin signo; el resto, con signo y little-endian.
+     */
+    public static AudioFormat pcmFormat(int sampleRate, int bits, int channels) {
+        return new AudioFormat(bits == 8 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED,
+                sampleRate, bits, channels, channels * ((bits + 7) / 8), sampleRate, false);
+    }
+
+    private static boolean tag(byte[] b, int pos, String id) {
+        for (int i = 0; i < 4; i++) {
+            if (b[pos + i] != id.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int le16(byte[] b, int pos) {
+        return (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8;
+    }
+
+    private static int le32(byte[] b, int pos) {
+        return le16(b, pos) | le16(b, pos + 2) << 16;
+    }
+}
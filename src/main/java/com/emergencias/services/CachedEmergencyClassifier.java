@@ -0,0 +1,224 @@
+package com.emergencias.services;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché de clasificaciones delante de cualquier {@link IEmergencyClassifier}
+ * (patrón Decorator).
+ *
+ * La clave es el texto normalizado (minúsculas, sin tildes, sin signos de
+ * puntuación y con espacios colapsados), de modo que "Hay fuego en la cocina!"
+ * y "hay  fuego en la cocína" comparten entrada. Las entradas caducan tras un
+ * TTL y se expulsan en orden LRU cuando se supera el número máximo de entradas
+ * o el presupuesto de memoria estimado. Los fallos (null) no se cachean.
+ */
+public class CachedEmergencyClassifier implements IEmergencyClassifier {
+
+    private static final int DEFAULT_MAX_ENTRIES = 1_000;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+    private static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+    // Sobrecoste aproximado por entrada: nodo del mapa, objeto Entry y cabeceras de String
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final IEmergencyClassifier delegate;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long maxBytes;
+    private final LongSupplier clock;
+
+    // LinkedHashMap en orden de acceso = LRU; protegido por 'this'
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CachedEmergencyClassifier(IEmergencyClassifier delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_MAX_BYTES);
+    }
+
+    public CachedEmergencyClassifier(IEmergencyClassifier delegate, int maxEntries, Duration ttl, long maxBytes) {
+        this(delegate, maxEntries, ttl, maxBytes, System::nanoTime);
+    }
+
+    CachedEmergencyClassifier(IEmergencyClassifier delegate, int maxEntries, Duration ttl, long maxBytes,
+                              LongSupplier clock) {
+        if (delegate == null) throw new IllegalArgumentException("El clasificador no puede ser nulo");
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries debe ser positivo");
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes debe ser positivo");
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+    }
+
+    // ── IEmergencyClassifier ──────────────────────────────────────────────────
+
+    @Override
+    public String classify(String text) {
+        String key = normalize(text);
+        Entry cached = lookup(key, false);
+        if (cached != null) return cached.json;
+        String json = delegate.classify(text);
+        store(key, json, null);
+        return json;
+    }
+
+    @Override
+    public ClassifyResponse classifyDetailed(String text) {
+        String key = normalize(text);
+        Entry cached = lookup(key, true);
+        if (cached != null) return cached.detailed;
+        ClassifyResponse response = delegate.classifyDetailed(text);
+        store(key, null, response);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<String> classifyAsync(String text) {
+        String key = normalize(text);
+        Entry cached = lookup(key, false);
+        if (cached != null) return CompletableFuture.completedFuture(cached.json);
+        return delegate.classifyAsync(text).thenApply(json -> {
+            store(key, json, null);
+            return json;
+        });
+    }
+
+    @Override
+    public CompletableFuture<ClassifyResponse> classifyDetailedAsync(String text) {
+        String key = normalize(text);
+        Entry cached = lookup(key, true);
+        if (cached != null) return CompletableFuture.completedFuture(cached.detailed);
+        return delegate.classifyDetailedAsync(text).thenApply(response -> {
+            store(key, null, response);
+            return response;
+        });
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+
+    // ── Estadísticas ──────────────────────────────────────────────────────────
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    // ── Internos ──────────────────────────────────────────────────────────────
+
+    /**
+     * Normaliza el texto para usarlo como clave de caché.
+     */
+    static String normalize(String text) {
+        return TextNormalizer.normalize(text);
+    }
+
+    /**
+     * Busca una entrada vigente que tenga la representación pedida (JSON o tipada).
+     */
+    private synchronized Entry lookup(String key, boolean detailed) {
+        Entry entry = entries.get(key);
+        if (entry != null && clock.getAsLong() - entry.createdAt > ttlNanos) {
+            remove(key, entry);
+            entry = null;
+        }
+        if (entry != null && (detailed ? entry.detailed != null : entry.json != null)) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private synchronized void store(String key, String json, ClassifyResponse detailed) {
+        if (json == null && detailed == null) return;
+
+        Entry previous = entries.get(key);
+        if (previous != null && clock.getAsLong() - previous.createdAt <= ttlNanos) {
+            // Completar la representación que faltaba sin renovar el TTL
+            usedBytes -= previous.bytes;
+            if (json != null) previous.json = json;
+            if (detailed != null) previous.detailed = detailed;
+            previous.bytes = estimateBytes(key, previous.json, previous.detailed);
+            usedBytes += previous.bytes;
+        } else {
+            if (previous != null) remove(key, previous);
+            Entry entry = new Entry(json, detailed, clock.getAsLong());
+            entry.bytes = estimateBytes(key, json, detailed);
+            if (entry.bytes > maxBytes) return;
+            entries.put(key, entry);
+            usedBytes += entry.bytes;
+        }
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || usedBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            usedBytes -= eldest.getValue().bytes;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        usedBytes -= entry.bytes;
+    }
+
+    private static long estimateBytes(String key, String json, ClassifyResponse detailed) {
+        long bytes = ENTRY_OVERHEAD_BYTES + 2L * key.length();
+        if (json != null) bytes += 2L * json.length();
+        if (detailed != null) {
+            bytes += ENTRY_OVERHEAD_BYTES + sizeOf(detailed.correctedText());
+            for (ClassifyResponse.Emergency e : detailed.emergencies()) {
+                bytes += ENTRY_OVERHEAD_BYTES + sizeOf(e.type()) + sizeOf(e.typeName()) + sizeOf(e.context());
+                for (String instruction : e.instructions()) bytes += sizeOf(instruction);
+            }
+        }
+        return bytes;
+    }
+
+    private static long sizeOf(String s) {
+        return s == null ? 0 : 40L + 2L * s.length();
+    }
+
+    private static final class Entry {
+        String json;
+        ClassifyResponse detailed;
+        final long createdAt;
+        long bytes;
+
+        Entry(String json, ClassifyResponse detailed, long createdAt) {
+            this.json = json;
+            this.detailed = detailed;
+            this.createdAt = createdAt;
+        }
+    }
+}
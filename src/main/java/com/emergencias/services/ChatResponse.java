@@ -0,0 +1,14 @@
+package com.emergencias.services;
+
+/**
+ * Respuesta tipada de POST /chat.
+ */
+public record ChatResponse(boolean success, String response, String modelUsed, String error) {
+
+    /**
+     * Indica si el LLM respondió con texto utilizable.
+     */
+    public boolean hasText() {
+        return success && response != null && !response.isEmpty();
+    }
+}
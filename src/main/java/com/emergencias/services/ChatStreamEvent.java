@@ -0,0 +1,24 @@
+package com.emergencias.services;
+
+/**
+ * Evento de POST /chat/stream (una línea NDJSON).
+ *
+ * @param type      "token", "done" o "error"
+ * @param text      fragmento de texto (solo en "token")
+ * @param modelUsed modelo que respondió (solo en "done")
+ * @param error     descripción del fallo (solo en "error")
+ */
+public record ChatStreamEvent(String type, String text, String modelUsed, String error) {
+
+    public boolean isToken() {
+        return "token".equals(type);
+    }
+
+    public boolean isDone() {
+        return "done".equals(type);
+    }
+
+    public boolean isError() {
+        return "error".equals(type);
+    }
+}
@@ -0,0 +1,21 @@
+package com.emergencias.services;
+
+/**
+ * Recibe una respuesta de POST /chat/stream a medida que el LLM la genera.
+ *
+ * Los métodos se invocan en orden desde el hilo del cliente HTTP: quien
+ * actualice la interfaz debe pasar a su propio hilo (Platform.runLater).
+ */
+public interface ChatStreamListener {
+
+    /**
+     * Un fragmento de texto, tal como llega del modelo.
+     */
+    void onToken(String text);
+
+    /**
+     * Una frase completa, lista para sintetizar. Se emite en cuanto aparece el
+     * final de la frase, sin esperar al resto de la respuesta.
+     */
+    default void onSentence(String sentence) {}
+}
@@ -0,0 +1,104 @@
+package com.emergencias.services;
+
+import java.io.IOException;
+import java.util.concurrent.Flow;
+import java.util.logging.Logger;
+
+/**
+ * Consume línea a línea el cuerpo NDJSON de /chat/stream (vía
+ * {@code BodyHandlers.fromLineSubscriber}): reenvía cada token al oyente en
+ * cuanto llega, detecta los finales de frase y acumula la respuesta completa.
+ */
+final class ChatStreamSubscriber implements Flow.Subscriber<String> {
+
+    private static final Logger log = Logger.getLogger(ChatStreamSubscriber.class.getName());
+
+    private final ChatStreamListener listener;
+    private final SentenceSplitter splitter;
+    private final StringBuilder text = new StringBuilder();
+    private Flow.Subscription subscription;
+    private String modelUsed;
+    private String error;
+    private boolean done;
+
+    ChatStreamSubscriber(ChatStreamListener listener) {
+        this.listener = listener;
+        this.splitter = new SentenceSplitter(this::sentence);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(String line) {
+        try {
+            if (!line.isBlank()) handle(ResponseParser.parseChatStreamEvent(line));
+        } catch (IOException e) {
+            log.warning("Evento de /chat/stream no válido: " + e.getMessage());
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // El future de sendAsync termina con la excepción; no hay nada que cerrar
+    }
+
+    @Override
+    public void onComplete() {
+        splitter.flush();
+    }
+
+    /**
+     * Respuesta acumulada; se llama al terminar el cuerpo.
+     */
+    ChatResponse result() {
+        boolean success = done && error == null;
+        String failure = error != null ? error : done ? null : "Respuesta incompleta";
+        return new ChatResponse(success, text.toString(), modelUsed, failure);
+    }
+
+    /**
+     * Reproduce una respuesta completa de /chat como si hubiera llegado en
+     * streaming (backend sin /chat/stream).
+     */
+    ChatResponse replay(ChatResponse response) {
+        if (response != null && response.hasText()) {
+            token(response.response());
+            splitter.flush();
+        }
+        return response;
+    }
+
+    private void handle(ChatStreamEvent event) {
+        if (event.isToken() && event.text() != null) {
+            token(event.text());
+        } else if (event.isDone()) {
+            done = true;
+            modelUsed = event.modelUsed();
+        } else if (event.isError()) {
+            error = event.error() != null ? event.error() : "Error desconocido";
+        }
+    }
+
+    private void token(String fragment) {
+        text.append(fragment);
+        try {
+            listener.onToken(fragment);
+        } catch (RuntimeException e) {
+            log.warning("Error en oyente de chat: " + e.getMessage());
+        }
+        splitter.append(fragment);
+    }
+
+    private void sentence(String sentence) {
+        try {
+            listener.onSentence(sentence);
+        } catch (RuntimeException e) {
+            log.warning("Error en oyente de chat: " + e.getMessage());
+        }
+    }
+}
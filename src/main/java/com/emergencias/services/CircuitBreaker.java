@@ -0,0 +1,222 @@
+package com.emergencias.services;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker sin bloqueos para un endpoint del backend.
+ *
+ * El estado completo vive en una única palabra atómica (estado, sondas
+ * semiabiertas en curso y marca de tiempo en nanoTime), de modo que consultar
+ * el breaker en el camino caliente es una lectura volátil sin reservar memoria.
+ *
+ * - CERRADO: las peticiones pasan; los resultados alimentan una ventana
+ *   deslizante de las últimas N llamadas. Si hay al menos {@code minCalls}
+ *   llamadas y la tasa de fallos alcanza el umbral, el breaker se abre.
+ * - ABIERTO: las peticiones se rechazan hasta que pasa {@code openTimeout}.
+ * - SEMIABIERTO: se admite un número limitado de peticiones de prueba; el
+ *   primer éxito cierra el breaker y un fallo lo vuelve a abrir.
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final State[] STATES = State.values();
+
+    // Palabra de estado: [ marca de tiempo (56 bits) | sondas (6 bits) | estado (2 bits) ]
+    private static final int STATE_BITS = 2;
+    private static final int PROBE_BITS = 6;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+    private static final long PROBE_MASK = (1L << PROBE_BITS) - 1;
+    private static final int TIME_SHIFT = STATE_BITS + PROBE_BITS;
+    private static final int CLOSED = 0, OPEN = 1, HALF_OPEN = 2;
+
+    // Resultados en la ventana deslizante
+    private static final int EMPTY = 0, SUCCESS = 1, FAILURE = 2;
+
+    private final String name;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openTimeoutNanos;
+    private final int halfOpenProbes;
+    private final LongSupplier clock;
+    private final long epoch;
+
+    private final AtomicLong word = new AtomicLong(pack(CLOSED, 0, 0));
+
+    private final AtomicIntegerArray window;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public CircuitBreaker(String name, int windowSize, int minCalls, double failureRateThreshold,
+                          Duration openTimeout, int halfOpenProbes) {
+        this(name, windowSize, minCalls, failureRateThreshold, openTimeout, halfOpenProbes, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int windowSize, int minCalls, double failureRateThreshold,
+                   Duration openTimeout, int halfOpenProbes, LongSupplier clock) {
+        if (windowSize <= 0) throw new IllegalArgumentException("windowSize debe ser positivo");
+        if (minCalls <= 0 || minCalls > windowSize) throw new IllegalArgumentException("minCalls fuera de rango");
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("failureRateThreshold debe estar en (0, 1]");
+        }
+        if (halfOpenProbes <= 0 || halfOpenProbes > PROBE_MASK) {
+            throw new IllegalArgumentException("halfOpenProbes fuera de rango");
+        }
+        this.name = name;
+        this.window = new AtomicIntegerArray(windowSize);
+        this.minCalls = minCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openTimeoutNanos = openTimeout.toNanos();
+        this.halfOpenProbes = halfOpenProbes;
+        this.clock = clock;
+        this.epoch = clock.getAsLong();
+    }
+
+    // ── Camino caliente ───────────────────────────────────────────────────────
+
+    /**
+     * Pide permiso para una petición. En estado semiabierto consume una de las
+     * sondas disponibles; el resultado debe notificarse con
+     * {@link #recordSuccess()} o {@link #recordFailure()}.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            long current = word.get();
+            int state = stateOf(current);
+            if (state == CLOSED) return true;
+
+            long now = now();
+            boolean expired = now - timeOf(current) >= openTimeoutNanos;
+            long next;
+            if (state == OPEN) {
+                if (!expired) return false;
+                next = pack(HALF_OPEN, 1, now);
+            } else if (expired) {
+                // Sondas perdidas (canceladas sin resultado): empezar otra ronda
+                next = pack(HALF_OPEN, 1, now);
+            } else {
+                int probes = probesOf(current);
+                if (probes >= halfOpenProbes) return false;
+                next = pack(HALF_OPEN, probes + 1, timeOf(current));
+            }
+            if (word.compareAndSet(current, next)) return true;
+        }
+    }
+
+    /**
+     * Indica si las peticiones se están rechazando, sin modificar el estado.
+     */
+    public boolean isOpen() {
+        long current = word.get();
+        int state = stateOf(current);
+        if (state == CLOSED) return false;
+        boolean expired = now() - timeOf(current) >= openTimeoutNanos;
+        if (state == OPEN) return !expired;
+        return !expired && probesOf(current) >= halfOpenProbes;
+    }
+
+    public void recordSuccess() {
+        long current = word.get();
+        int state = stateOf(current);
+        if (state == CLOSED) {
+            record(SUCCESS);
+        } else if (word.compareAndSet(current, pack(CLOSED, 0, 0))) {
+            clearWindow();
+            log.info("Circuit breaker " + name + " CERRADO");
+        }
+    }
+
+    public void recordFailure() {
+        while (true) {
+            long current = word.get();
+            int state = stateOf(current);
+            if (state == OPEN) return;
+            if (state == CLOSED) break;
+            if (word.compareAndSet(current, pack(OPEN, 0, now()))) {
+                log.warning("Circuit breaker " + name + " ABIERTO de nuevo: falló la petición de prueba");
+                return;
+            }
+        }
+
+        record(FAILURE);
+        int n = calls.get();
+        if (n < minCalls || failures.get() < failureRateThreshold * n) return;
+        long current = word.get();
+        if (stateOf(current) == CLOSED && word.compareAndSet(current, pack(OPEN, 0, now()))) {
+            log.warning("Circuit breaker " + name + " ABIERTO: " + failures.get() + "/" + n + " fallos");
+        }
+    }
+
+    // ── Control externo (monitor de salud) ────────────────────────────────────
+
+    /**
+     * Si está abierto, pasa a semiabierto sin esperar al timeout para que la
+     * siguiente petición real compruebe el endpoint (p. ej. /health vuelve a responder).
+     */
+    public void allowProbe() {
+        long current = word.get();
+        if (stateOf(current) == OPEN) word.compareAndSet(current, pack(HALF_OPEN, 0, now()));
+    }
+
+    public State getState() {
+        return STATES[stateOf(word.get())];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Tasa de fallos en la ventana actual (0 si está vacía).
+     */
+    public double getFailureRate() {
+        int n = calls.get();
+        return n == 0 ? 0.0 : (double) failures.get() / n;
+    }
+
+    // ── Internos ──────────────────────────────────────────────────────────────
+
+    private void record(int outcome) {
+        int slot = (int) (cursor.getAndIncrement() % window.length());
+        int previous = window.getAndSet(slot, outcome);
+        if (previous == EMPTY) calls.incrementAndGet();
+        if (previous == FAILURE) failures.decrementAndGet();
+        if (outcome == FAILURE) failures.incrementAndGet();
+    }
+
+    private void clearWindow() {
+        for (int i = 0; i < window.length(); i++) {
+            int previous = window.getAndSet(i, EMPTY);
+            if (previous != EMPTY) calls.decrementAndGet();
+            if (previous == FAILURE) failures.decrementAndGet();
+        }
+    }
+
+    private long now() {
+        return clock.getAsLong() - epoch;
+    }
+
+    private static long pack(int state, int probes, long time) {
+        return (time << TIME_SHIFT) | ((long) probes << STATE_BITS) | state;
+    }
+
+    private static int stateOf(long word) {
+        return (int) (word & STATE_MASK);
+    }
+
+    private static int probesOf(long word) {
+        return (int) ((word >>> STATE_BITS) & PROBE_MASK);
+    }
+
+    private static long timeOf(long word) {
+        return word >>> TIME_SHIFT;
+    }
+}
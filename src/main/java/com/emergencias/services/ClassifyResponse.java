@@ -0,0 +1,35 @@
+package com.emergencias.services;
+
+import java.util.List;
+
+/**
+ * Respuesta tipada de POST /classify.
+ *
+ * @param priority      prioridad máxima entre las emergencias detectadas
+ * @param correctedText texto tras la corrección ortográfica del backend
+ * @param emergencies   emergencias ordenadas por confianza (la primera es la principal)
+ */
+public record ClassifyResponse(int priority, String correctedText, List<Emergency> emergencies) {
+
+    public ClassifyResponse {
+        emergencies = emergencies == null ? List.of() : List.copyOf(emergencies);
+    }
+
+    /**
+     * Emergencia principal o null si el backend no devolvió ninguna.
+     */
+    public Emergency primary() {
+        return emergencies.isEmpty() ? null : emergencies.get(0);
+    }
+
+    /**
+     * Una emergencia detectada dentro de la respuesta.
+     */
+    public record Emergency(String type, String typeName, double confidence,
+                            String context, List<String> instructions) {
+
+        public Emergency {
+            instructions = instructions == null ? List.of() : List.copyOf(instructions);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.emergencias.services;
+
+/**
+ * Respuesta tipada de GET /geolocate (ubicación aproximada por IP).
+ */
+public record GeoResponse(String city, String region, String country,
+                          double lat, double lon, String ip, String error) {
+
+    /**
+     * Indica si la geolocalización tuvo éxito y hay coordenadas utilizables.
+     */
+    public boolean hasCoordinates() {
+        return error == null && !(lat == 0 && lon == 0);
+    }
+}
@@ -0,0 +1,196 @@
+package com.emergencias.services;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Monitor de salud del backend en segundo plano.
+ *
+ * Lanza una sonda (normalmente GET /health) de forma periódica, con un
+ * intervalo aleatorizado (jitter) para que varios clientes no sondeen a la vez,
+ * y publica el resultado en una instantánea volátil: consultar la
+ * disponibilidad no hace ninguna petición. Las sondas nunca se solapan: la
+ * siguiente se programa cuando termina la anterior.
+ */
+public class HealthMonitor implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(HealthMonitor.class.getName());
+
+    private final Supplier<CompletableFuture<Boolean>> probe;
+    private final long intervalNanos;
+    private final double jitter;
+    private final List<Consumer<Boolean>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicReference<CompletableFuture<Boolean>> inFlight = new AtomicReference<>();
+
+    // Instantánea publicada por el hilo del monitor; null hasta la primera sonda
+    private volatile Boolean available = null;
+    private volatile long lastCheckNanos = 0;
+    private volatile boolean closed = false;
+
+    // Se publica antes de empezar a sondear para que un close() concurrente lo vea
+    private final AtomicReference<ScheduledExecutorService> scheduler = new AtomicReference<>();
+
+    /**
+     * @param probe    sonda asíncrona: true si el backend responde correctamente
+     * @param interval intervalo medio entre sondas
+     * @param jitter   fracción de aleatorización del intervalo (0.2 = ±20 %)
+     */
+    public HealthMonitor(Supplier<CompletableFuture<Boolean>> probe, Duration interval, double jitter) {
+        if (interval.isNegative() || interval.isZero()) throw new IllegalArgumentException("El intervalo debe ser positivo");
+        if (jitter < 0 || jitter >= 1) throw new IllegalArgumentException("jitter debe estar en [0, 1)");
+        this.probe = probe;
+        this.intervalNanos = interval.toNanos();
+        this.jitter = jitter;
+    }
+
+    /**
+     * Arranca el sondeo periódico (idempotente). La primera sonda es inmediata.
+     */
+    public void start() {
+        if (closed || scheduler.get() != null) return;
+        ScheduledExecutorService created = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "health-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        if (!scheduler.compareAndSet(null, created) || closed) {
+            created.shutdownNow();   // Ya arrancado por otro hilo, o cerrado entretanto
+            return;
+        }
+        created.execute(this::probeAndReschedule);
+    }
+
+    /**
+     * Última disponibilidad conocida. No hace ninguna petición.
+     * Devuelve false mientras no haya terminado ninguna sonda.
+     */
+    public boolean isAvailable() {
+        Boolean snapshot = available;
+        return snapshot != null && snapshot;
+    }
+
+    /**
+     * Indica si ya se ha completado al menos una sonda.
+     */
+    public boolean hasResult() {
+        return available != null;
+    }
+
+    /**
+     * Momento (System.nanoTime) de la última sonda completada, 0 si no ha habido ninguna.
+     */
+    public long getLastCheckNanos() {
+        return lastCheckNanos;
+    }
+
+    /**
+     * Lanza una sonda ahora, o se une a la que ya esté en curso.
+     */
+    public CompletableFuture<Boolean> checkNow() {
+        while (true) {
+            CompletableFuture<Boolean> current = inFlight.get();
+            if (current != null) return current;
+            CompletableFuture<Boolean> next = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, next)) {
+                runProbe(next);
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Espera el resultado de la primera sonda (o lanza una si aún no hay ninguna).
+     * Tras la primera sonda vuelve inmediatamente con la instantánea.
+     */
+    public boolean awaitAvailability(Duration timeout) {
+        if (hasResult()) return isAvailable();
+        try {
+            return checkNow().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return isAvailable();
+        } catch (Exception e) {
+            return isAvailable();
+        }
+    }
+
+    /**
+     * Registra un oyente que recibe cada cambio de disponibilidad (no la primera sonda).
+     * Se invoca desde el hilo que completa la sonda.
+     */
+    public void addListener(Consumer<Boolean> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Boolean> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ScheduledExecutorService current = scheduler.get();
+        if (current != null) current.shutdownNow();
+    }
+
+    // ── Internos ──────────────────────────────────────────────────────────────
+
+    private void probeAndReschedule() {
+        if (closed) return;
+        checkNow().whenComplete((ok, error) -> {
+            if (closed) return;
+            try {
+                scheduler.get().schedule(this::probeAndReschedule, nextDelayNanos(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ignored) {
+                // Monitor cerrado mientras la sonda estaba en curso
+            }
+        });
+    }
+
+    private void runProbe(CompletableFuture<Boolean> result) {
+        CompletableFuture<Boolean> attempt;
+        try {
+            attempt = probe.get();
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.completedFuture(false);
+        }
+        attempt.handle((ok, error) -> error == null && Boolean.TRUE.equals(ok))
+               .thenAccept(ok -> {
+                   publish(ok);
+                   inFlight.compareAndSet(result, null);
+                   result.complete(ok);
+               });
+    }
+
+    private void publish(boolean ok) {
+        Boolean previous = available;
+        available = ok;
+        lastCheckNanos = System.nanoTime();
+        if (previous != null && previous != ok) {
+            log.info("Backend " + (ok ? "disponible" : "no disponible"));
+            for (Consumer<Boolean> listener : listeners) {
+                try {
+                    listener.accept(ok);
+                } catch (RuntimeException e) {
+                    log.warning("Error en oyente de salud: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    long nextDelayNanos() {
+        double factor = 1.0 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return (long) (intervalNanos * factor);
+    }
+}
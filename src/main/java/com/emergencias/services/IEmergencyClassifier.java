@@ -1,6 +1,39 @@
 package com.emergencias.services;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
 public interface IEmergencyClassifier {
     String classify(String text);
     boolean isAvailable();
+
+    /**
+     * Clasifica y devuelve la respuesta ya decodificada (null si falla).
+     * Por defecto parsea el JSON de {@link #classify(String)}.
+     */
+    default ClassifyResponse classifyDetailed(String text) {
+        String json = classify(text);
+        if (json == null) return null;
+        try {
+            return ResponseParser.parseClassify(json);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Variante asíncrona de {@link #classify(String)}. Por defecto ejecuta la
+     * versión bloqueante en el pool común; las implementaciones con E/S de red
+     * deberían sobrescribirla con una versión no bloqueante.
+     */
+    default CompletableFuture<String> classifyAsync(String text) {
+        return CompletableFuture.supplyAsync(() -> classify(text));
+    }
+
+    /**
+     * Variante asíncrona de {@link #classifyDetailed(String)}.
+     */
+    default CompletableFuture<ClassifyResponse> classifyDetailedAsync(String text) {
+        return CompletableFuture.supplyAsync(() -> classifyDetailed(text));
+    }
 }
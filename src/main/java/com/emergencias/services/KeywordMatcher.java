@@ -0,0 +1,433 @@
+package com.emergencias.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Motor de palabras clave compartido, construido a partir de emergency_config.json.
+ *
+ * Todas las palabras clave de la configuración se compilan en un único autómata
+ * de Aho-Corasick sobre caracteres normalizados (minúsculas, sin tildes y con
+ * cualquier signo convertido en un único separador). Una sola pasada lineal
+ * sobre el texto informa de todos los grupos que aparecen: etiquetas
+ * ("FIRE"), comandos ("ALERT") y subcontextos ("FIRE:cocina|sarten|aceite|gas").
+ *
+ * Las palabras clave se buscan como subcadenas, igual que en el backend Python.
+ * Un espacio al principio o al final de una palabra clave la ancla a un límite
+ * de palabra (" no " solo encaja con la palabra "no").
+ */
+public final class KeywordMatcher {
+
+    public static final String DEFAULT_CONFIG = "/emergency_config.json";
+
+    private static final String DEFAULT_KEY = "_default";
+
+    // Alfabeto del autómata: separador, a-z, 0-9 y "otra letra"
+    private static final int SEPARATOR = 0;
+    private static final int OTHER = 37;
+    private static final int ALPHABET = 38;
+
+    // Tabla de plegado para Latin-1, Latin Extended y marcas combinantes
+    private static final char SKIP = '\0';
+    private static final char[] FOLD = buildFoldTable();
+
+    private final String[] groupNames;
+    private final Map<String, Integer> groupIds;
+    private final int[] transitions;   // estado * ALPHABET + símbolo -> estado
+    private final int[][] outputs;     // estado -> grupos que terminan aquí
+    private final Map<String, List<ContextRule<String>>> descriptions;
+    private final Map<String, List<ContextRule<List<String>>>> instructions;
+    private final ThreadLocal<Matches> scratch;
+
+    /**
+     * Construye el motor a partir de grupos con nombre y palabras clave separadas por '|'.
+     */
+    public KeywordMatcher(Map<String, String> groups) {
+        this(groups, Map.of(), Map.of());
+    }
+
+    private KeywordMatcher(Map<String, String> groups,
+                           Map<String, List<ContextRule<String>>> descriptions,
+                           Map<String, List<ContextRule<List<String>>>> instructions) {
+        this.groupNames = groups.keySet().toArray(new String[0]);
+        this.groupIds = new HashMap<>();
+        for (int i = 0; i < groupNames.length; i++) groupIds.put(groupNames[i], i);
+        this.descriptions = descriptions;
+        this.instructions = instructions;
+
+        // 1. Trie de todas las palabras clave
+        List<int[]> rows = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        rows.add(newRow());
+        out.add(new ArrayList<>());
+        for (Map.Entry<String, String> group : groups.entrySet()) {
+            int id = groupIds.get(group.getKey());
+            for (String keyword : group.getValue().split("\\|")) {
+                String pattern = normalizeKeyword(keyword);
+                if (pattern.isBlank()) continue;
+                int state = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    int symbol = symbolOf(pattern.charAt(i));
+                    if (rows.get(state)[symbol] < 0) {
+                        rows.get(state)[symbol] = rows.size();
+                        rows.add(newRow());
+                        out.add(new ArrayList<>());
+                    }
+                    state = rows.get(state)[symbol];
+                }
+                if (!out.get(state).contains(id)) out.get(state).add(id);
+            }
+        }
+
+        // 2. Enlaces de fallo en anchura y cierre en un DFA completo
+        int states = rows.size();
+        int[] fail = new int[states];
+        this.transitions = new int[states * ALPHABET];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int s = 0; s < ALPHABET; s++) {
+            int next = rows.get(0)[s];
+            if (next < 0) {
+                transitions[s] = 0;
+            } else {
+                transitions[s] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int id : out.get(fail[state])) {
+                if (!out.get(state).contains(id)) out.get(state).add(id);
+            }
+            for (int s = 0; s < ALPHABET; s++) {
+                int next = rows.get(state)[s];
+                if (next < 0) {
+                    transitions[state * ALPHABET + s] = transitions[fail[state] * ALPHABET + s];
+                } else {
+                    transitions[state * ALPHABET + s] = next;
+                    fail[next] = transitions[fail[state] * ALPHABET + s];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.outputs = new int[states][];
+        for (int s = 0; s < states; s++) {
+            outputs[s] = out.get(s).stream().mapToInt(Integer::intValue).toArray();
+        }
+        this.scratch = ThreadLocal.withInitial(this::newMatches);
+    }
+
+    // ── Carga ─────────────────────────────────────────────────────────────────
+
+    /**
+     * Motor compartido cargado desde el emergency_config.json del classpath.
+     */
+    public static KeywordMatcher getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Construye el motor desde una configuración con el formato de emergency_config.json:
+     * "keywords" (etiqueta -> palabras clave), "commands" (comando -> palabras clave) y
+     * los subcontextos de "context_descriptions" y "contextual_instructions".
+     */
+    public static KeywordMatcher fromConfig(InputStream in) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(in);
+        if (root == null || !root.isObject()) throw new IOException("Configuración de palabras clave inválida");
+
+        Map<String, String> groups = new LinkedHashMap<>();
+        addGroups(groups, root.path("keywords"));
+        addGroups(groups, root.path("commands"));
+
+        Map<String, List<ContextRule<String>>> descriptions = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = root.path("context_descriptions").fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> label = it.next();
+            descriptions.put(label.getKey(), readRules(groups, label.getKey(), label.getValue(),
+                    node -> node.asText()));
+        }
+        Map<String, List<ContextRule<List<String>>>> instructions = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = root.path("contextual_instructions").fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> label = it.next();
+            instructions.put(label.getKey(), readRules(groups, label.getKey(), label.getValue(), node -> {
+                List<String> lines = new ArrayList<>();
+                for (JsonNode line : node) lines.add(line.asText());
+                return List.copyOf(lines);
+            }));
+        }
+
+        KeywordMatcher matcher = new KeywordMatcher(groups, descriptions, instructions);
+        matcher.resolveRules();
+        return matcher;
+    }
+
+    private static void addGroups(Map<String, String> groups, JsonNode node) {
+        for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            groups.put(entry.getKey(), entry.getValue().asText());
+        }
+    }
+
+    private static <T> List<ContextRule<T>> readRules(Map<String, String> groups, String label, JsonNode node,
+                                                       Function<JsonNode, T> reader) {
+        List<ContextRule<T>> rules = new ArrayList<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            String name = DEFAULT_KEY.equals(entry.getKey()) ? null : label + ":" + entry.getKey();
+            if (name != null) groups.put(name, entry.getKey());
+            rules.add(new ContextRule<>(name, reader.apply(entry.getValue())));
+        }
+        return rules;
+    }
+
+    private void resolveRules() {
+        for (List<ContextRule<String>> rules : descriptions.values()) {
+            for (ContextRule<String> rule : rules) rule.resolve(this);
+        }
+        for (List<ContextRule<List<String>>> rules : instructions.values()) {
+            for (ContextRule<List<String>> rule : rules) rule.resolve(this);
+        }
+    }
+
+    // ── Búsqueda ──────────────────────────────────────────────────────────────
+
+    /**
+     * Recorre el texto una vez y devuelve los grupos encontrados.
+     * El resultado pertenece al hilo actual y se reutiliza en la siguiente llamada.
+     */
+    public Matches scan(CharSequence text) {
+        Matches matches = scratch.get();
+        scan(text, matches);
+        return matches;
+    }
+
+    /**
+     * Recorre el texto una vez y deja los grupos encontrados en {@code matches}
+     * (creado con {@link #newMatches()}). No reserva memoria.
+     */
+    public void scan(CharSequence text, Matches matches) {
+        matches.clear();
+        if (text == null) return;
+
+        // El texto se recorre rodeado de separadores virtuales para anclar límites de palabra
+        int state = step(0, SEPARATOR, matches);
+        boolean lastWasSeparator = true;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            int symbol = symbolOf(fold(text.charAt(i)));
+            if (symbol < 0) continue;
+            if (symbol == SEPARATOR) {
+                if (lastWasSeparator) continue;
+                lastWasSeparator = true;
+            } else {
+                lastWasSeparator = false;
+            }
+            state = step(state, symbol, matches);
+        }
+        if (!lastWasSeparator) step(state, SEPARATOR, matches);
+    }
+
+    private int step(int state, int symbol, Matches matches) {
+        int next = transitions[state * ALPHABET + symbol];
+        for (int id : outputs[next]) matches.set(id);
+        return next;
+    }
+
+    /**
+     * Atajo: indica si el texto contiene alguna palabra clave del grupo.
+     */
+    public boolean contains(CharSequence text, String group) {
+        int id = groupId(group);
+        return id >= 0 && scan(text).has(id);
+    }
+
+    public Matches newMatches() {
+        return new Matches(groupNames.length);
+    }
+
+    /**
+     * Identificador numérico de un grupo, o -1 si no existe.
+     */
+    public int groupId(String group) {
+        Integer id = groupIds.get(group);
+        return id != null ? id : -1;
+    }
+
+    public String groupName(int id) {
+        return groupNames[id];
+    }
+
+    public int groupCount() {
+        return groupNames.length;
+    }
+
+    /**
+     * Descripción del subcontexto de una etiqueta, con la misma regla que
+     * get_context() del backend: el primer subcontexto encontrado o "_default".
+     */
+    public String contextFor(String label, Matches matches) {
+        return firstRule(descriptions.get(label), matches, "una emergencia");
+    }
+
+    /**
+     * Instrucciones del subcontexto de una etiqueta (get_instructions() del backend).
+     */
+    public List<String> instructionsFor(String label, Matches matches) {
+        return firstRule(instructions.get(label), matches, Collections.emptyList());
+    }
+
+    /**
+     * Todas las instrucciones del catálogo, sin repetir y en orden de aparición
+     * (p. ej. para precargar su locución).
+     */
+    public List<String> allInstructions() {
+        Set<String> all = new LinkedHashSet<>();
+        for (List<ContextRule<List<String>>> rules : instructions.values()) {
+            for (ContextRule<List<String>> rule : rules) all.addAll(rule.value);
+        }
+        return List.copyOf(all);
+    }
+
+    private static <T> T firstRule(List<ContextRule<T>> rules, Matches matches, T fallback) {
+        if (rules == null) return fallback;
+        T byDefault = fallback;
+        for (ContextRule<T> rule : rules) {
+            if (rule.id < 0) {
+                if (rule.name == null) byDefault = rule.value;
+            } else if (matches.has(rule.id)) {
+                return rule.value;
+            }
+        }
+        return byDefault;
+    }
+
+    // ── Normalización ─────────────────────────────────────────────────────────
+
+    /**
+     * Normaliza una palabra clave conservando los espacios de los extremos,
+     * que actúan como anclas de límite de palabra.
+     */
+    private static String normalizeKeyword(String keyword) {
+        String core = TextNormalizer.normalize(keyword);
+        if (core.isEmpty()) return core;
+        boolean leading = Character.isWhitespace(keyword.charAt(0));
+        boolean trailing = Character.isWhitespace(keyword.charAt(keyword.length() - 1));
+        return (leading ? " " : "") + core + (trailing ? " " : "");
+    }
+
+    /**
+     * Pliega un carácter igual que {@link TextNormalizer}: SKIP para marcas
+     * combinantes, ' ' para separadores y la letra base en minúsculas.
+     */
+    private static char fold(char c) {
+        if (c < FOLD.length) return FOLD[c];
+        return Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : ' ';
+    }
+
+    private static int symbolOf(char c) {
+        if (c == SKIP) return -1;
+        if (c == ' ') return SEPARATOR;
+        if (c >= 'a' && c <= 'z') return 1 + (c - 'a');
+        if (c >= '0' && c <= '9') return 27 + (c - '0');
+        return OTHER;
+    }
+
+    private static char[] buildFoldTable() {
+        char[] table = new char[0x370];
+        for (char c = 0; c < table.length; c++) {
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                table[c] = SKIP;
+                continue;
+            }
+            String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            char first = base.charAt(0);
+            table[c] = Character.isLetterOrDigit(first) ? Character.toLowerCase(first) : ' ';
+        }
+        return table;
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    // ── Tipos auxiliares ──────────────────────────────────────────────────────
+
+    /**
+     * Conjunto de grupos encontrados en un texto (bitset reutilizable).
+     */
+    public static final class Matches {
+        private final long[] bits;
+
+        private Matches(int groups) {
+            this.bits = new long[Math.max(1, (groups + 63) >>> 6)];
+        }
+
+        public boolean has(int id) {
+            return id >= 0 && (bits[id >>> 6] & (1L << id)) != 0;
+        }
+
+        public boolean isEmpty() {
+            for (long word : bits) {
+                if (word != 0) return false;
+            }
+            return true;
+        }
+
+        void set(int id) {
+            bits[id >>> 6] |= 1L << id;
+        }
+
+        void clear() {
+            Arrays.fill(bits, 0L);
+        }
+    }
+
+    /**
+     * Subcontexto de una etiqueta: grupo de palabras clave y valor asociado.
+     */
+    private static final class ContextRule<T> {
+        final String name;   // null para "_default"
+        final T value;
+        int id = -1;
+
+        ContextRule(String name, T value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        void resolve(KeywordMatcher matcher) {
+            if (name != null) id = matcher.groupId(name);
+        }
+    }
+
+    private static class DefaultHolder {
+        static final KeywordMatcher INSTANCE = loadDefault();
+
+        private static KeywordMatcher loadDefault() {
+            try (InputStream in = KeywordMatcher.class.getResourceAsStream(DEFAULT_CONFIG)) {
+                if (in == null) throw new IllegalStateException("No se encontró " + DEFAULT_CONFIG);
+                return fromConfig(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.emergencias.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Clasificador de emergencias en proceso (sin backend Python).
+ *
+ * Regresión logística multinomial sobre n-gramas de caracteres (2-5, dentro de
+ * cada palabra, como el {@code char_wb} de scikit-learn) con hashing en un
+ * número fijo de buckets. El modelo son arrays primitivos de float guardados
+ * comprimidos en {@code /models/emergency_classifier.bin}; se carga en pocos
+ * milisegundos y cada clasificación tarda microsegundos.
+ *
+ * El modelo se entrena offline desde {@code python-backend/data/emergencies_dataset.csv}
+ * ejecutando {@link #main(String[])}.
+ */
+public class LocalEmergencyClassifier implements IEmergencyClassifier {
+
+    private static final Logger log = Logger.getLogger(LocalEmergencyClassifier.class.getName());
+
+    public static final String DEFAULT_MODEL = "/models/emergency_classifier.bin";
+
+    private static final int MAGIC = 0x534F5445; // "SOTE"
+    private static final int VERSION = 1;
+
+    private static final int BUCKET_BITS = 14;
+    private static final int MIN_N = 2;
+    private static final int MAX_N = 5;
+
+    private static final double SECONDARY_THRESHOLD = 0.20;
+
+    // Parámetros de entrenamiento (SGD con regularización L2)
+    private static final int EPOCHS = 100;
+    private static final double LEARNING_RATE = 0.5;
+    private static final double L2 = 3e-4;
+
+    private final int bucketBits;
+    private final int minN;
+    private final int maxN;
+    private final String[] labels;
+    private final String[] labelNames;
+    private final int[] priorities;
+    private final float[] bias;      // [clase]
+    private final float[] weights;   // [bucket * numClases + clase]
+
+    private LocalEmergencyClassifier(int bucketBits, int minN, int maxN, String[] labels, String[] labelNames,
+                                     int[] priorities, float[] bias, float[] weights) {
+        this.bucketBits = bucketBits;
+        this.minN = minN;
+        this.maxN = maxN;
+        this.labels = labels;
+        this.labelNames = labelNames;
+        this.priorities = priorities;
+        this.bias = bias;
+        this.weights = weights;
+    }
+
+    // ── Carga ─────────────────────────────────────────────────────────────────
+
+    /**
+     * Carga el modelo incluido en el classpath, o null si no está disponible.
+     */
+    public static LocalEmergencyClassifier loadDefault() {
+        try (InputStream in = LocalEmergencyClassifier.class.getResourceAsStream(DEFAULT_MODEL)) {
+            if (in == null) {
+                log.warning("Modelo local no encontrado en " + DEFAULT_MODEL);
+                return null;
+            }
+            return load(in);
+        } catch (IOException e) {
+            log.warning("Error cargando el modelo local: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static LocalEmergencyClassifier load(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+        if (data.readInt() != MAGIC) throw new IOException("Fichero de modelo no válido");
+        int version = data.readInt();
+        if (version != VERSION) throw new IOException("Versión de modelo no soportada: " + version);
+
+        int bucketBits = data.readInt();
+        int minN = data.readInt();
+        int maxN = data.readInt();
+        int classes = data.readInt();
+        String[] labels = new String[classes];
+        String[] names = new String[classes];
+        int[] priorities = new int[classes];
+        for (int c = 0; c < classes; c++) {
+            labels[c] = data.readUTF();
+            names[c] = data.readUTF();
+            priorities[c] = data.readInt();
+        }
+        float[] bias = new float[classes];
+        for (int c = 0; c < classes; c++) bias[c] = data.readFloat();
+        float[] weights = new float[(1 << bucketBits) * classes];
+        for (int i = 0; i < weights.length; i++) weights[i] = data.readFloat();
+
+        return new LocalEmergencyClassifier(bucketBits, minN, maxN, labels, names, priorities, bias, weights);
+    }
+
+    public void save(OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(gzip));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(bucketBits);
+        data.writeInt(minN);
+        data.writeInt(maxN);
+        data.writeInt(labels.length);
+        for (int c = 0; c < labels.length; c++) {
+            data.writeUTF(labels[c]);
+            data.writeUTF(labelNames[c]);
+            data.writeInt(priorities[c]);
+        }
+        for (float b : bias) data.writeFloat(b);
+        for (float w : weights) data.writeFloat(w);
+        data.flush();
+        gzip.finish();
+    }
+
+    // ── Predicción ────────────────────────────────────────────────────────────
+
+    /**
+     * Probabilidad de cada etiqueta (mismo orden que {@link #getLabels()}).
+     */
+    public double[] predictProbabilities(String text) {
+        Features f = Features.extract(TextNormalizer.normalize(text), bucketBits, minN, maxN);
+        int classes = labels.length;
+        double[] scores = new double[classes];
+        for (int c = 0; c < classes; c++) scores[c] = bias[c];
+        for (int i = 0; i < f.size; i++) {
+            int base = f.buckets[i] * classes;
+            double v = f.values[i];
+            for (int c = 0; c < classes; c++) scores[c] += weights[base + c] * v;
+        }
+        softmax(scores);
+        return scores;
+    }
+
+    public String[] getLabels() {
+        return labels.clone();
+    }
+
+    /**
+     * Nombre legible de una etiqueta (p. ej. FIRE → "Incendio").
+     */
+    public String getLabelName(String label) {
+        for (int c = 0; c < labels.length; c++) {
+            if (labels[c].equals(label)) return labelNames[c];
+        }
+        return label;
+    }
+
+    // ── IEmergencyClassifier ──────────────────────────────────────────────────
+
+    @Override
+    public ClassifyResponse classifyDetailed(String text) {
+        double[] probs = predictProbabilities(text);
+
+        int first = 0, second = -1;
+        for (int c = 1; c < probs.length; c++) {
+            if (probs[c] > probs[first]) { second = first; first = c; }
+            else if (second == -1 || probs[c] > probs[second]) second = c;
+        }
+
+        List<ClassifyResponse.Emergency> emergencies = new ArrayList<>(2);
+        emergencies.add(emergency(first, probs[first]));
+        int priority = priorities[first];
+        if (second >= 0 && probs[second] >= SECONDARY_THRESHOLD) {
+            emergencies.add(emergency(second, probs[second]));
+            priority = Math.max(priority, priorities[second]);
+        }
+        return new ClassifyResponse(priority, text, emergencies);
+    }
+
+    /**
+     * Devuelve el mismo JSON que POST /classify (sin contexto ni instrucciones,
+     * que dependen de la configuración del backend).
+     */
+    @Override
+    public String classify(String text) {
+        ClassifyResponse response = classifyDetailed(text);
+        StringWriter out = new StringWriter();
+        try (JsonGenerator g = new JsonFactory().createGenerator(out)) {
+            g.writeStartObject();
+            g.writeNumberField("priority", response.priority());
+            g.writeStringField("corrected_text", response.correctedText());
+            g.writeArrayFieldStart("emergencies");
+            for (ClassifyResponse.Emergency e : response.emergencies()) {
+                g.writeStartObject();
+                g.writeStringField("type", e.type());
+                g.writeStringField("type_name", e.typeName());
+                g.writeNumberField("confidence", e.confidence());
+                g.writeNullField("context");
+                g.writeArrayFieldStart("instructions");
+                g.writeEndArray();
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        } catch (IOException e) {
+            return null;
+        }
+        return out.toString();
+    }
+
+    /**
+     * El modelo local siempre está disponible una vez cargado.
+     */
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    private ClassifyResponse.Emergency emergency(int c, double confidence) {
+        return new ClassifyResponse.Emergency(labels[c], labelNames[c], Math.round(confidence * 100) / 100.0,
+                                              null, List.of());
+    }
+
+    private static void softmax(double[] scores) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double s : scores) max = Math.max(max, s);
+        double sum = 0;
+        for (int c = 0; c < scores.length; c++) {
+            scores[c] = Math.exp(scores[c] - max);
+            sum += scores[c];
+        }
+        for (int c = 0; c < scores.length; c++) scores[c] /= sum;
+    }
+
+    // ── Características ───────────────────────────────────────────────────────
+
+    /**
+     * Vector disperso de n-gramas: buckets ordenados con su tf sublineal normalizado (L2).
+     */
+    static final class Features {
+        final int[] buckets;
+        final float[] values;
+        final int size;
+
+        private Features(int[] buckets, float[] values, int size) {
+            this.buckets = buckets;
+            this.values = values;
+            this.size = size;
+        }
+
+        static Features extract(String normalized, int bucketBits, int minN, int maxN) {
+            int mask = (1 << bucketBits) - 1;
+            int len = normalized.length();
+            int[] hashes = new int[(len + 2) * (maxN - minN + 1)];
+            int count = 0;
+
+            int start = 0;
+            while (start < len) {
+                int end = normalized.indexOf(' ', start);
+                if (end < 0) end = len;
+                // Palabra con un espacio de relleno a cada lado: " palabra "
+                int padded = end - start + 2;
+                for (int n = minN; n <= maxN; n++) {
+                    for (int i = 0; i + n <= padded; i++) {
+                        int h = 0x811C9DC5;
+                        for (int k = i; k < i + n; k++) {
+                            char ch = (k == 0 || k == padded - 1) ? ' ' : normalized.charAt(start + k - 1);
+                            h = (h ^ ch) * 0x01000193;
+                        }
+                        h = (h ^ n) * 0x01000193;
+                        hashes[count++] = h & mask;
+                    }
+                }
+                start = end + 1;
+            }
+
+            Arrays.sort(hashes, 0, count);
+            int[] buckets = new int[count];
+            float[] values = new float[count];
+            int size = 0;
+            double norm = 0;
+            for (int i = 0; i < count; ) {
+                int j = i;
+                while (j < count && hashes[j] == hashes[i]) j++;
+                double tf = 1 + Math.log(j - i);
+                buckets[size] = hashes[i];
+                values[size++] = (float) tf;
+                norm += tf * tf;
+                i = j;
+            }
+            if (norm > 0) {
+                float inv = (float) (1 / Math.sqrt(norm));
+                for (int i = 0; i < size; i++) values[i] *= inv;
+            }
+            return new Features(buckets, values, size);
+        }
+    }
+
+    // ── Entrenamiento (offline) ───────────────────────────────────────────────
+
+    /**
+     * Entrena un modelo con descenso de gradiente estocástico.
+     *
+     * @param texts      textos de ejemplo
+     * @param targets    etiqueta de cada texto
+     * @param labelNames nombre legible por etiqueta (define el orden de clases)
+     * @param priorities prioridad por etiqueta
+     */
+    public static LocalEmergencyClassifier train(List<String> texts, List<String> targets,
+                                                 Map<String, String> labelNames, Map<String, Integer> priorities) {
+        String[] labels = labelNames.keySet().toArray(new String[0]);
+        String[] names = new String[labels.length];
+        int[] prios = new int[labels.length];
+        for (int c = 0; c < labels.length; c++) {
+            names[c] = labelNames.get(labels[c]);
+            prios[c] = priorities.getOrDefault(labels[c], 5);
+        }
+
+        int classes = labels.length;
+        Features[] samples = new Features[texts.size()];
+        int[] y = new int[texts.size()];
+        int[] perClass = new int[classes];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = Features.extract(TextNormalizer.normalize(texts.get(i)), BUCKET_BITS, MIN_N, MAX_N);
+            y[i] = Arrays.asList(labels).indexOf(targets.get(i));
+            if (y[i] < 0) throw new IllegalArgumentException("Etiqueta desconocida: " + targets.get(i));
+            perClass[y[i]]++;
+        }
+
+        // Pesos de clase equilibrados, como class_weight="balanced" en scikit-learn
+        double[] classWeight = new double[classes];
+        for (int c = 0; c < classes; c++) {
+            classWeight[c] = perClass[c] == 0 ? 0 : (double) samples.length / (classes * perClass[c]);
+        }
+
+        float[] bias = new float[classes];
+        float[] weights = new float[(1 << BUCKET_BITS) * classes];
+        Random random = new Random(7);
+        int[] order = new int[samples.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        double[] scores = new double[classes];
+
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = order[i]; order[i] = order[j]; order[j] = t;
+            }
+            double lr = LEARNING_RATE / (1 + 0.05 * epoch);
+            for (int idx : order) {
+                Features f = samples[idx];
+                for (int c = 0; c < classes; c++) scores[c] = bias[c];
+                for (int i = 0; i < f.size; i++) {
+                    int base = f.buckets[i] * classes;
+                    for (int c = 0; c < classes; c++) scores[c] += weights[base + c] * f.values[i];
+                }
+                softmax(scores);
+                for (int c = 0; c < classes; c++) {
+                    double grad = (scores[c] - (c == y[idx] ? 1 : 0)) * classWeight[y[idx]];
+                    bias[c] -= (float) (lr * grad);
+                    for (int i = 0; i < f.size; i++) {
+                        int w = f.buckets[i] * classes + c;
+                        weights[w] -= (float) (lr * (grad * f.values[i] + L2 * weights[w]));
+                    }
+                }
+            }
+        }
+        return new LocalEmergencyClassifier(BUCKET_BITS, MIN_N, MAX_N, labels, names, prios, bias, weights);
+    }
+
+    /**
+     * Entrena el modelo desde el CSV del backend y lo guarda.
+     *
+     * Uso: {@code LocalEmergencyClassifier <dataset.csv> <emergency_config.json> <salida.bin>}
+     */
+    public static void main(String[] args) throws IOException {
+        Path csv = Path.of(args.length > 0 ? args[0] : "python-backend/data/emergencies_dataset.csv");
+        Path config = Path.of(args.length > 1 ? args[1] : "python-backend/data/emergency_config.json");
+        Path output = Path.of(args.length > 2 ? args[2] : "src/main/resources" + DEFAULT_MODEL);
+
+        List<String> texts = new ArrayList<>();
+        List<String> targets = new ArrayList<>();
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        for (String line : lines.subList(1, lines.size())) {
+            int comma = line.lastIndexOf(',');
+            if (comma <= 0) continue;
+            texts.add(line.substring(0, comma).replaceAll("^\"|\"$", ""));
+            targets.add(line.substring(comma + 1).trim());
+        }
+
+        JsonNode root = new ObjectMapper().readTree(config.toFile());
+        Map<String, String> names = new LinkedHashMap<>();
+        Map<String, Integer> priorities = new LinkedHashMap<>();
+        root.get("label_names").fields().forEachRemaining(e -> names.put(e.getKey(), e.getValue().asText()));
+        root.get("priority_map").fields().forEachRemaining(e -> priorities.put(e.getKey(), e.getValue().asInt()));
+
+        System.out.printf("Accuracy (cross-validation 5-fold): %.2f%%%n",
+                crossValidate(texts, targets, names, priorities, 5) * 100);
+
+        LocalEmergencyClassifier model = train(texts, targets, names, priorities);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (OutputStream out = Files.newOutputStream(output)) {
+            model.save(out);
+        }
+        System.out.println("Modelo guardado en: " + output + " (" + Files.size(output) + " bytes)");
+    }
+
+    static double crossValidate(List<String> texts, List<String> targets, Map<String, String> names,
+                                Map<String, Integer> priorities, int folds) {
+        int correct = 0;
+        for (int fold = 0; fold < folds; fold++) {
+            List<String> trainX = new ArrayList<>(), trainY = new ArrayList<>();
+            List<Integer> test = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                if (i % folds == fold) test.add(i);
+                else { trainX.add(texts.get(i)); trainY.add(targets.get(i)); }
+            }
+            LocalEmergencyClassifier model = train(trainX, trainY, names, priorities);
+            for (int i : test) {
+                if (model.classifyDetailed(texts.get(i)).primary().type().equals(targets.get(i))) correct++;
+            }
+        }
+        return (double) correct / texts.size();
+    }
+}
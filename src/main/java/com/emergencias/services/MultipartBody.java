@@ -0,0 +1,89 @@
+package com.emergencias.services;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Cuerpo multipart/form-data de una subida de audio (campos "audio" y
+ * "sample_rate") que no copia el audio.
+ *
+ * Las cabeceras de las partes son constantes y se codifican una sola vez; el
+ * audio se envía como vistas de solo lectura del búfer original (un array
+ * envuelto o un fichero mapeado en memoria), troceadas en
+ * {@value #SLICE_BYTES} bytes. Cada suscripción (reintentos, redirecciones)
+ * recorre los mismos búferes con posiciones propias.
+ */
+final class MultipartBody implements HttpRequest.BodyPublisher {
+
+    static final int SLICE_BYTES = 64 * 1024;
+
+    /** Límite aleatorio por proceso: así todas las cabeceras se pueden precalcular. */
+    static final String BOUNDARY = "----SoteriaBoundary" + Long.toHexString(new SecureRandom().nextLong());
+    static final String CONTENT_TYPE = "multipart/form-data; boundary=" + BOUNDARY;
+
+    private static final ByteBuffer AUDIO_HEAD = constant("--" + BOUNDARY + "\r\n" +
+            "Content-Disposition: form-data; name=\"audio\"; filename=\"audio.wav\"\r\n" +
+            "Content-Type: audio/wav\r\n\r\n");
+    private static final ByteBuffer SLPC_HEAD = constant("--" + BOUNDARY + "\r\n" +
+            "Content-Disposition: form-data; name=\"audio\"; filename=\"audio.slpc\"\r\n" +
+            "Content-Type: audio/x-slpc\r\n\r\n");
+    private static final ByteBuffer RATE_HEAD = constant("\r\n--" + BOUNDARY + "\r\n" +
+            "Content-Disposition: form-data; name=\"sample_rate\"\r\n\r\n");
+    private static final ByteBuffer TAIL = constant("\r\n--" + BOUNDARY + "--\r\n");
+
+    private final List<ByteBuffer> parts = new ArrayList<>();
+    private final long contentLength;
+
+    /**
+     * @param audio      audio a enviar, desde su posición hasta su límite; no se copia
+     *                   ni se modifica, así que no debe cambiar mientras dure el envío
+     * @param sampleRate frecuencia de muestreo declarada en el campo "sample_rate"
+     */
+    MultipartBody(ByteBuffer audio, int sampleRate) {
+        this(AUDIO_HEAD, audio, sampleRate);
+    }
+
+    /**
+     * Cuerpo con el audio ya comprimido por {@link AudioCodec}.
+     */
+    static MultipartBody slpc(ByteBuffer encoded, int sampleRate) {
+        return new MultipartBody(SLPC_HEAD, encoded, sampleRate);
+    }
+
+    private MultipartBody(ByteBuffer head, ByteBuffer audio, int sampleRate) {
+        parts.add(head);
+        ByteBuffer view = audio.asReadOnlyBuffer();
+        for (int from = view.position(); from < view.limit(); from += SLICE_BYTES) {
+            parts.add(view.slice(from, Math.min(SLICE_BYTES, view.limit() - from)));
+        }
+        parts.add(RATE_HEAD);
+        parts.add(constant(Integer.toString(sampleRate)));
+        parts.add(TAIL);
+
+        long length = 0;
+        for (ByteBuffer part : parts) length += part.remaining();
+        this.contentLength = length;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        StreamingBody body = new StreamingBody();
+        for (ByteBuffer part : parts) body.write(part.duplicate());
+        body.complete();
+        body.subscribe(subscriber);
+    }
+
+    private static ByteBuffer constant(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,332 @@
+package com.emergencias.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodifica las respuestas JSON del backend en una sola pasada con el
+ * {@link JsonParser} de streaming de Jackson.
+ *
+ * Se puede leer directamente del InputStream del cuerpo HTTP, así que las
+ * respuestas grandes no se materializan como String. Los campos desconocidos
+ * se ignoran y los escapes/espacios se tratan correctamente.
+ */
+public final class ResponseParser {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private ResponseParser() {}
+
+    // ── /classify ─────────────────────────────────────────────────────────────
+
+    public static ClassifyResponse parseClassify(InputStream in) throws IOException {
+        try (JsonParser p = FACTORY.createParser(in)) {
+            return readClassify(p);
+        }
+    }
+
+    public static ClassifyResponse parseClassify(String json) throws IOException {
+        try (JsonParser p = FACTORY.createParser(json)) {
+            return readClassify(p);
+        }
+    }
+
+    // ── /classify/batch ───────────────────────────────────────────────────────
+
+    /**
+     * Decodifica {"results": [ {...}, {...} ]}, un ClassifyResponse por texto y en el mismo orden.
+     */
+    public static List<ClassifyResponse> parseClassifyBatch(InputStream in) throws IOException {
+        try (JsonParser p = FACTORY.createParser(in)) {
+            return readClassifyBatch(p);
+        }
+    }
+
+    public static List<ClassifyResponse> parseClassifyBatch(String json) throws IOException {
+        try (JsonParser p = FACTORY.createParser(json)) {
+            return readClassifyBatch(p);
+        }
+    }
+
+    private static List<ClassifyResponse> readClassifyBatch(JsonParser p) throws IOException {
+        expectObject(p);
+        List<ClassifyResponse> results = null;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if (field.equals("results") && value == JsonToken.START_ARRAY) {
+                results = new ArrayList<>();
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    if (p.currentToken() == JsonToken.START_OBJECT) {
+                        results.add(readClassifyFields(p));
+                    } else {
+                        p.skipChildren();
+                        results.add(null);
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        if (results == null) throw new IOException("Falta el campo 'results'");
+        return results;
+    }
+
+    private static ClassifyResponse readClassify(JsonParser p) throws IOException {
+        expectObject(p);
+        return readClassifyFields(p);
+    }
+
+    /**
+     * Lee los campos de un ClassifyResponse con el parser ya situado en su START_OBJECT.
+     */
+    private static ClassifyResponse readClassifyFields(JsonParser p) throws IOException {
+        int priority = -1;
+        String corrected = null;
+        List<ClassifyResponse.Emergency> emergencies = new ArrayList<>();
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "priority" -> priority = p.getValueAsInt(-1);
+                case "corrected_text" -> corrected = text(p);
+                case "emergencies" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        while (p.nextToken() == JsonToken.START_OBJECT) {
+                            emergencies.add(readEmergency(p));
+                        }
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return new ClassifyResponse(priority, corrected, emergencies);
+    }
+
+    private static ClassifyResponse.Emergency readEmergency(JsonParser p) throws IOException {
+        String type = null, typeName = null, context = null;
+        double confidence = 0.0;
+        List<String> instructions = new ArrayList<>();
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "type" -> type = text(p);
+                case "type_name" -> typeName = text(p);
+                case "confidence" -> confidence = p.getValueAsDouble(0.0);
+                case "context" -> context = text(p);
+                case "instructions" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        while (p.nextToken() != JsonToken.END_ARRAY) {
+                            if (p.currentToken() == JsonToken.VALUE_STRING) instructions.add(p.getText());
+                            else p.skipChildren();
+                        }
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return new ClassifyResponse.Emergency(type, typeName, confidence, context, instructions);
+    }
+
+    // ── /chat ─────────────────────────────────────────────────────────────────
+
+    public static ChatResponse parseChat(InputStream in) throws IOException {
+        try (JsonParser p = FACTORY.createParser(in)) {
+            return readChat(p);
+        }
+    }
+
+    public static ChatResponse parseChat(String json) throws IOException {
+        try (JsonParser p = FACTORY.createParser(json)) {
+            return readChat(p);
+        }
+    }
+
+    private static ChatResponse readChat(JsonParser p) throws IOException {
+        expectObject(p);
+        boolean success = false;
+        String response = null, modelUsed = null, error = null;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "success" -> success = p.getValueAsBoolean(false);
+                case "response" -> response = text(p);
+                case "model_used" -> modelUsed = text(p);
+                case "error" -> error = text(p);
+                default -> p.skipChildren();
+            }
+        }
+        return new ChatResponse(success, response, modelUsed, error == null || error.isEmpty() ? null : error);
+    }
+
+    // ── /chat/stream ──────────────────────────────────────────────────────────
+
+    /**
+     * Decodifica una línea NDJSON de /chat/stream: {"type": "token", "text": "..."}.
+     */
+    public static ChatStreamEvent parseChatStreamEvent(String json) throws IOException {
+        try (JsonParser p = FACTORY.createParser(json)) {
+            expectObject(p);
+            String type = null, text = null, modelUsed = null, error = null;
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "type" -> type = text(p);
+                    case "text" -> text = text(p);
+                    case "model_used" -> modelUsed = text(p);
+                    case "error" -> error = text(p);
+                    default -> p.skipChildren();
+                }
+            }
+            if (type == null) throw new IOException("Falta el campo 'type'");
+            return new ChatStreamEvent(type, text, modelUsed, error);
+        }
+    }
+
+    // ── /geolocate ────────────────────────────────────────────────────────────
+
+    public static GeoResponse parseGeo(InputStream in) throws IOException {
+        try (JsonParser p = FACTORY.createParser(in)) {
+            return readGeo(p);
+        }
+    }
+
+    public static GeoResponse parseGeo(String json) throws IOException {
+        try (JsonParser p = FACTORY.createParser(json)) {
+            return readGeo(p);
+        }
+    }
+
+    private static GeoResponse readGeo(JsonParser p) throws IOException {
+        expectObject(p);
+        String city = null, region = null, country = null, ip = null, error = null;
+        double lat = 0, lon = 0;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "city" -> city = text(p);
+                case "region" -> region = text(p);
+                case "country" -> country = text(p);
+                case "lat" -> lat = p.getValueAsDouble(0);
+                case "lon" -> lon = p.getValueAsDouble(0);
+                case "ip" -> ip = text(p);
+                case "error" -> error = text(p);
+                default -> p.skipChildren();
+            }
+        }
+        return new GeoResponse(city, region, country, lat, lon, ip, error);
+    }
+
+    // ── /stt + /analyze-emotion ───────────────────────────────────────────────
+
+    /**
+     * Une la respuesta de /stt con la de /analyze-emotion. Sin respuesta de
+     * emoción (null o inválida) se usa la emoción que trae /stt y la urgencia
+     * queda en "medium". Solo un JSON de /stt inválido es un error.
+     */
+    public static VoiceAnalysis parseVoiceAnalysis(String sttJson, String emotionJson) throws IOException {
+        boolean success = false;
+        String text = null, emotion = null;
+        double confidence = 0;
+        if (sttJson != null) {
+            try (JsonParser p = FACTORY.createParser(sttJson)) {
+                expectObject(p);
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    p.nextToken();
+                    switch (field) {
+                        case "success" -> success = p.getValueAsBoolean(false);
+                        case "text" -> text = text(p);
+                        case "emotion" -> emotion = text(p);
+                        case "confidence" -> confidence = p.getValueAsDouble(0);
+                        default -> p.skipChildren();
+                    }
+                }
+            }
+        }
+        if (!success) text = null;
+
+        if (emotionJson != null) {
+            try (JsonParser p = FACTORY.createParser(emotionJson)) {
+                expectObject(p);
+                String analyzedEmotion = null, urgency = null;
+                double analyzedConfidence = 0;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    p.nextToken();
+                    switch (field) {
+                        case "emotion" -> analyzedEmotion = text(p);
+                        case "confidence" -> analyzedConfidence = p.getValueAsDouble(0);
+                        case "urgency" -> urgency = text(p);
+                        default -> p.skipChildren();
+                    }
+                }
+                if (analyzedEmotion != null) {
+                    return new VoiceAnalysis(text, analyzedEmotion, analyzedConfidence,
+                            urgency != null ? urgency : "medium", true);
+                }
+            } catch (IOException e) {
+                // Una emoción ilegible no invalida la transcripción
+            }
+        }
+        return new VoiceAnalysis(text, emotion != null ? emotion : "unknown",
+                emotion != null ? confidence : 0, "medium", false);
+    }
+
+    // ── Genérico ──────────────────────────────────────────────────────────────
+
+    /**
+     * Lee un campo de texto de primer nivel (p. ej. "text" de /transcribe).
+     * Devuelve null si el campo no existe o el JSON no es válido.
+     */
+    public static String stringField(String json, String key) {
+        if (json == null) return null;
+        try (JsonParser p = FACTORY.createParser(json)) {
+            expectObject(p);
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                if (field.equals(key)) return text(p);
+                p.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void expectObject(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Se esperaba un objeto JSON");
+        }
+    }
+
+    private static String text(JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) return null;
+        if (p.currentToken().isStructStart()) {
+            p.skipChildren();
+            return null;
+        }
+        return p.getText();
+    }
+}
@@ -0,0 +1,63 @@
+package com.emergencias.services;
+
+import java.util.function.Consumer;
+
+/**
+ * Parte en frases un texto que llega a trozos (tokens del LLM).
+ *
+ * Una frase termina en '.', '!' o '?' seguido de un espacio, la misma regla
+ * que {@code split("(?<=[.!?])\\s+")}, salvo que el número que abre una
+ * frase no corta ("1. Llame al 112." es una sola frase). Solo se vuelve a examinar el texto nuevo, así que
+ * el coste total es lineal en la longitud de la respuesta.
+ */
+public final class SentenceSplitter {
+
+    private final Consumer<String> onSentence;
+    private final StringBuilder pending = new StringBuilder();
+
+    public SentenceSplitter(Consumer<String> onSentence) {
+        this.onSentence = onSentence;
+    }
+
+    /**
+     * Añade un fragmento y emite las frases que queden completas.
+     */
+    public void append(CharSequence text) {
+        int from = Math.max(pending.length(), 1);
+        pending.append(text);
+        int start = 0;
+        for (int i = from; i < pending.length(); i++) {
+            if (Character.isWhitespace(pending.charAt(i)) && endsSentence(i - 1, start)) {
+                emit(pending.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (start > 0) pending.delete(0, start);
+    }
+
+    /**
+     * Emite lo que quede pendiente (fin de la respuesta).
+     */
+    public void flush() {
+        emit(pending.toString());
+        pending.setLength(0);
+    }
+
+    private boolean endsSentence(int i, int start) {
+        char c = pending.charAt(i);
+        if (c == '!' || c == '?') return true;
+        if (c != '.') return false;
+
+        // Cifras al principio de la frase seguidas de punto: número de lista
+        int j = i - 1;
+        while (j >= start && Character.isDigit(pending.charAt(j))) j--;
+        if (j == i - 1) return true;
+        while (j >= start && Character.isWhitespace(pending.charAt(j))) j--;
+        return j >= start;
+    }
+
+    private void emit(String sentence) {
+        String trimmed = sentence.strip();
+        if (!trimmed.isEmpty()) onSentence.accept(trimmed);
+    }
+}
@@ -0,0 +1,141 @@
+package com.emergencias.services;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Locución encadenada de frases: sintetiza por adelantado las siguientes
+ * frases mientras suena la actual y las reproduce en orden, sin huecos.
+ *
+ * Como mucho hay {@code lookahead} síntesis pedidas por delante de la frase que
+ * está sonando; el resto de frases espera su turno como texto. No hay ningún
+ * hilo dedicado ni espera activa: cada síntesis y cada reproducción avisan al
+ * terminar y ese aviso lanza el siguiente paso.
+ *
+ * @param <A> audio que entienden el sintetizador y el reproductor (WAV, PCM de la caché...)
+ */
+public class SpeechPipeline<A> implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(SpeechPipeline.class.getName());
+
+    private final Function<String, CompletableFuture<A>> synthesizer;
+    private final Function<A, CompletableFuture<Void>> player;
+    private final int lookahead;
+
+    // Protegidos por this
+    private final Deque<String> waiting = new ArrayDeque<>();
+    private final Deque<CompletableFuture<A>> ahead = new ArrayDeque<>();
+    private boolean busy = false;
+    private boolean closed = false;
+
+    /**
+     * @param synthesizer texto → audio (p. ej. TtsCache::get); null si falla
+     * @param player      reproduce un audio y completa el future cuando termina de sonar
+     * @param lookahead   síntesis que pueden ir por delante de la frase en curso
+     */
+    public SpeechPipeline(Function<String, CompletableFuture<A>> synthesizer,
+                          Function<A, CompletableFuture<Void>> player,
+                          int lookahead) {
+        if (lookahead <= 0) throw new IllegalArgumentException("lookahead debe ser positivo");
+        this.synthesizer = synthesizer;
+        this.player = player;
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Añade una frase al final de la locución.
+     */
+    public void speak(String sentence) {
+        synchronized (this) {
+            if (closed) return;
+            waiting.add(sentence);
+        }
+        pump();
+    }
+
+    /**
+     * Descarta las frases pendientes y cancela sus síntesis. La frase que está
+     * sonando termina normalmente.
+     */
+    public void clear() {
+        synchronized (this) {
+            waiting.clear();
+            ahead.forEach(f -> f.cancel(true));
+            ahead.clear();
+        }
+    }
+
+    /**
+     * Frases aceptadas que aún no han empezado a sonar.
+     */
+    public synchronized int pending() {
+        return waiting.size() + ahead.size();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        clear();
+    }
+
+    // ── Internos ──────────────────────────────────────────────────────────────
+
+    /**
+     * Rellena la ventana de síntesis adelantadas y, si no suena nada, prepara
+     * la siguiente frase para cuando su audio esté listo.
+     */
+    private void pump() {
+        CompletableFuture<A> head;
+        synchronized (this) {
+            if (closed) return;
+            while (ahead.size() < lookahead && !waiting.isEmpty()) ahead.add(synthesize(waiting.poll()));
+            if (busy || ahead.isEmpty()) return;
+            busy = true;
+            head = ahead.peek();
+        }
+        head.whenComplete((audio, error) -> play(head, error == null ? audio : null));
+    }
+
+    private void play(CompletableFuture<A> head, A audio) {
+        synchronized (this) {
+            ahead.remove(head);
+        }
+        pump(); // la ventana queda libre: pedir la siguiente síntesis mientras esta suena
+
+        CompletableFuture<Void> done;
+        if (audio == null || isClosed()) {
+            done = CompletableFuture.completedFuture(null);
+        } else {
+            try {
+                done = player.apply(audio);
+            } catch (RuntimeException e) {
+                log.warning("Error reproduciendo audio: " + e.getMessage());
+                done = CompletableFuture.completedFuture(null);
+            }
+        }
+        done.whenComplete((r, t) -> {
+            synchronized (this) {
+                busy = false;
+            }
+            pump();
+        });
+    }
+
+    private CompletableFuture<A> synthesize(String sentence) {
+        try {
+            return synthesizer.apply(sentence);
+        } catch (RuntimeException e) {
+            log.warning("Error en síntesis: " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+}
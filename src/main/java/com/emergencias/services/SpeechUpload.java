@@ -0,0 +1,25 @@
+package com.emergencias.services;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Subida de audio en curso: las muestras se envían mientras se graban y la
+ * respuesta llega poco después de {@link #finish()}.
+ */
+public interface SpeechUpload {
+
+    /**
+     * Envía más muestras PCM (se copian; el array se puede reutilizar).
+     */
+    void write(byte[] pcm, int offset, int length);
+
+    /**
+     * Cierra el audio y devuelve la respuesta del backend (JSON), o null si falla.
+     */
+    CompletableFuture<String> finish();
+
+    /**
+     * Aborta la subida sin esperar respuesta.
+     */
+    void cancel();
+}
@@ -0,0 +1,102 @@
+package com.emergencias.services;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cuerpo HTTP que se va escribiendo mientras la petición ya está en marcha
+ * (para {@code BodyPublishers.fromPublisher}, que lo envía troceado).
+ *
+ * A diferencia de SubmissionPublisher, guarda lo escrito antes de que el
+ * cliente HTTP se suscriba y respeta la demanda del suscriptor. Admite un
+ * único suscriptor.
+ */
+final class StreamingBody implements Flow.Publisher<ByteBuffer> {
+
+    private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<Flow.Subscriber<? super ByteBuffer>> subscriber = new AtomicReference<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean completed = false;
+    private volatile boolean cancelled = false;
+    private volatile Throwable error;
+    private boolean terminated = false; // solo dentro de drain()
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> s) {
+        if (!subscriber.compareAndSet(null, s)) {
+            s.onSubscribe(new Flow.Subscription() {
+                @Override public void request(long n) {}
+                @Override public void cancel() {}
+            });
+            s.onError(new IllegalStateException("El cuerpo solo se puede enviar una vez"));
+            return;
+        }
+        s.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("request(" + n + ")"));
+                    return;
+                }
+                demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                queue.clear();
+            }
+        });
+        drain();
+    }
+
+    void write(ByteBuffer chunk) {
+        if (completed || cancelled) return;
+        queue.add(chunk);
+        drain();
+    }
+
+    void complete() {
+        completed = true;
+        drain();
+    }
+
+    void fail(Throwable t) {
+        error = t;
+        completed = true;
+        drain();
+    }
+
+    /**
+     * Entrega lo pendiente según la demanda; un único hilo a la vez.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) return;
+        do {
+            Flow.Subscriber<? super ByteBuffer> s = subscriber.get();
+            if (s != null && !terminated && !cancelled) {
+                if (error != null) {
+                    terminated = true;
+                    queue.clear();
+                    s.onError(error);
+                } else {
+                    while (demand.get() > 0 && !queue.isEmpty()) {
+                        demand.decrementAndGet();
+                        s.onNext(queue.poll());
+                    }
+                    if (completed && queue.isEmpty()) {
+                        terminated = true;
+                        s.onComplete();
+                    }
+                }
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+}
@@ -0,0 +1,161 @@
+package com.emergencias.services;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Ejecutor de tareas en segundo plano de la aplicación, sobre hilos virtuales.
+ *
+ * Sustituye a los {@code new Thread(...)} sueltos de los controladores: cada
+ * tarea bloqueante (petición al backend, alerta, grabación) ocupa un hilo
+ * virtual barato y todas se cancelan juntas al cerrar la aplicación.
+ *
+ * Las tareas de un mismo turno de conversación se agrupan en un {@link Scope}:
+ * cancelar el turno interrumpe todas sus tareas (y con ello las peticiones
+ * HTTP que estén esperando) y cualquier tarea que se lance después nace ya
+ * cancelada.
+ */
+public final class TaskRunner implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(TaskRunner.class.getName());
+
+    private static final Duration SHUTDOWN_GRACE = Duration.ofSeconds(2);
+
+    private final ExecutorService executor;
+
+    public TaskRunner(String threadPrefix) {
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(threadPrefix, 0).factory());
+    }
+
+    /**
+     * Ejecutor compartido por toda la interfaz; se cierra desde MainApp.stop.
+     */
+    public static TaskRunner shared() {
+        return Holder.SHARED;
+    }
+
+    private static final class Holder {
+        static final TaskRunner SHARED = new TaskRunner("soteria-task-");
+    }
+
+    /**
+     * Lanza una tarea suelta. Cancelar el future interrumpe la tarea.
+     */
+    public CompletableFuture<Void> run(Runnable task) {
+        return submit(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running;
+        try {
+            running = executor.submit(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.cancel(false); // Aplicación cerrándose
+            return result;
+        }
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled()) running.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Abre un ámbito de tareas (p. ej. un turno de conversación).
+     */
+    public Scope openScope() {
+        return new Scope();
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /**
+     * Interrumpe todas las tareas y espera un momento a que terminen.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_GRACE.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warning("Quedan tareas en segundo plano tras el cierre");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Grupo de tareas que se cancela como una unidad. Cerrarlo equivale a
+     * cancelarlo: un turno terminado no deja tareas huérfanas.
+     */
+    public final class Scope implements AutoCloseable {
+        private final Set<CompletableFuture<?>> tasks = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled = false;
+
+        private Scope() {}
+
+        public <T> CompletableFuture<T> fork(Callable<T> task) {
+            if (cancelled) {
+                CompletableFuture<T> late = new CompletableFuture<>();
+                late.cancel(false);
+                return late;
+            }
+            CompletableFuture<T> result = submit(task);
+            tasks.add(result);
+            result.whenComplete((r, t) -> tasks.remove(result));
+            if (cancelled) result.cancel(true); // cancel() concurrente pudo no verla
+            return result;
+        }
+
+        public CompletableFuture<Void> fork(Runnable task) {
+            return fork(() -> {
+                task.run();
+                return null;
+            });
+        }
+
+        /**
+         * Interrumpe las tareas en curso; las que se lancen después nacen canceladas.
+         */
+        public void cancel() {
+            cancelled = true;
+            for (CompletableFuture<?> task : tasks) task.cancel(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Tareas del ámbito que aún no han terminado.
+         */
+        public int active() {
+            return tasks.size();
+        }
+
+        @Override
+        public void close() {
+            cancel();
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.emergencias.services;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Caché de locuciones por frase, direccionada por contenido: la clave es un
+ * hash de (emoción, texto), así que "Mantenga la calma." se sintetiza una sola vez.
+ *
+ * - Memoria: LRU de muestras PCM con un presupuesto de bytes.
+ * - Disco: un fichero por frase (cabecera + PCM) que se lee de una vez y
+ *   sobrevive entre sesiones; al superar su presupuesto se borran primero
+ *   los menos usados.
+ *
+ * Las peticiones simultáneas de la misma frase comparten una única síntesis.
+ * Con {@link #prewarm} se cargan de antemano las instrucciones habituales para
+ * que suenen sin esperar al TTS.
+ */
+public class TtsCache {
+
+    private static final Logger log = Logger.getLogger(TtsCache.class.getName());
+
+    private static final int MAGIC = 0x53545453; // "STTS"
+    private static final int HEADER_BYTES = 16;  // magic, sampleRate, bits, canales, longitud PCM
+    private static final String EXTENSION = ".pcm";
+    private static final int PREWARM_CONCURRENCY = 2;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final BiFunction<String, String, CompletableFuture<byte[]>> synthesizer;
+    private final Path directory;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+
+    // LinkedHashMap en orden de acceso = LRU; protegido por 'this'
+    private final LinkedHashMap<String, AudioPlayer.Pcm> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private final Map<String, CompletableFuture<AudioPlayer.Pcm>> inFlight = new ConcurrentHashMap<>();
+
+    // Índice del nivel de disco (clave -> bytes) en orden de uso; protegido por diskLock
+    private final Object diskLock = new Object();
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes = 0;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param synthesizer    (texto, emoción) → WAV, p. ej. AIClassifierClient::synthesizeAsync
+     * @param directory      directorio del nivel de disco, o null para usar solo memoria
+     * @param maxMemoryBytes presupuesto del nivel de memoria
+     * @param maxDiskBytes   presupuesto del nivel de disco
+     */
+    public TtsCache(BiFunction<String, String, CompletableFuture<byte[]>> synthesizer, Path directory,
+                    long maxMemoryBytes, long maxDiskBytes) {
+        if (maxMemoryBytes <= 0 || maxDiskBytes <= 0) throw new IllegalArgumentException("Los presupuestos deben ser positivos");
+        this.synthesizer = synthesizer;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.directory = openDirectory(directory);
+    }
+
+    /**
+     * Audio de una frase: de memoria, de disco o sintetizado (y guardado en ambos niveles).
+     * Completa con null si la síntesis falla. Cancelar el future no afecta a otros
+     * que esperen la misma frase.
+     */
+    public CompletableFuture<AudioPlayer.Pcm> get(String text, String emotion) {
+        String key = key(text, emotion);
+        AudioPlayer.Pcm cached = fromMemory(key);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            touchDisk(key);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<AudioPlayer.Pcm> mine = new CompletableFuture<>();
+        CompletableFuture<AudioPlayer.Pcm> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) return existing.copy();
+        mine.whenComplete((r, t) -> inFlight.remove(key, mine));
+        load(key, text, emotion, mine);
+        return mine.copy();
+    }
+
+    /**
+     * Carga en caché una lista de frases, con pocas síntesis a la vez para no
+     * saturar el TTS. Completa cuando se han procesado todas.
+     */
+    public CompletableFuture<Void> prewarm(Collection<String> phrases, String emotion) {
+        Iterator<String> pending = List.copyOf(phrases).iterator();
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (int i = 0; i < PREWARM_CONCURRENCY; i++) {
+            CompletableFuture<Void> lane = new CompletableFuture<>();
+            prewarmNext(pending, emotion, lane);
+            lanes.add(lane);
+        }
+        return CompletableFuture.allOf(lanes.toArray(CompletableFuture<?>[]::new));
+    }
+
+    // ── Estadísticas ──────────────────────────────────────────────────────────
+
+    public long getMemoryHits() { return memoryHits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public long getDiskBytes() {
+        synchronized (diskLock) {
+            return diskBytes;
+        }
+    }
+
+    public synchronized int size() {
+        return memory.size();
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Vacía el nivel de memoria (el de disco se conserva).
+     */
+    public synchronized void clearMemory() {
+        memory.clear();
+        memoryBytes = 0;
+    }
+
+    // ── Clave ─────────────────────────────────────────────────────────────────
+
+    /**
+     * Hash de (emoción, texto). El texto se compara con los espacios colapsados
+     * y sin el punto final, que no cambia la locución.
+     */
+    static String key(String text, String emotion) {
+        String phrase = WHITESPACE.matcher(text.strip()).replaceAll(" ");
+        while (phrase.endsWith(".")) phrase = phrase.substring(0, phrase.length() - 1).stripTrailing();
+        String tone = emotion == null ? "" : emotion.toLowerCase(Locale.ROOT);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((tone + "\n" + phrase).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    // ── Carga ─────────────────────────────────────────────────────────────────
+
+    private void load(String key, String text, String emotion, CompletableFuture<AudioPlayer.Pcm> result) {
+        AudioPlayer.Pcm stored = fromDisk(key);
+        if (stored != null) {
+            diskHits.incrementAndGet();
+            toMemory(key, stored);
+            result.complete(stored);
+            return;
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<byte[]> synthesis;
+        try {
+            synthesis = synthesizer.apply(text, emotion);
+        } catch (RuntimeException e) {
+            log.warning("Error en síntesis: " + e.getMessage());
+            result.complete(null);
+            return;
+        }
+        synthesis.whenComplete((wav, error) -> {
+            AudioPlayer.Pcm pcm = null;
+            if (error == null && wav != null) {
+                try {
+                    pcm = AudioPlayer.parseWav(wav);
+                    toMemory(key, pcm);
+                    toDisk(key, pcm);
+                } catch (IOException e) {
+                    log.warning("Audio de TTS no válido: " + e.getMessage());
+                }
+            }
+            result.complete(pcm);
+        });
+    }
+
+    private void prewarmNext(Iterator<String> pending, String emotion, CompletableFuture<Void> lane) {
+        String phrase;
+        synchronized (pending) {
+            phrase = pending.hasNext() ? pending.next() : null;
+        }
+        if (phrase == null) {
+            lane.complete(null);
+            return;
+        }
+        get(phrase, emotion).whenComplete((pcm, error) -> prewarmNext(pending, emotion, lane));
+    }
+
+    // ── Nivel de memoria ──────────────────────────────────────────────────────
+
+    private synchronized AudioPlayer.Pcm fromMemory(String key) {
+        return memory.get(key);
+    }
+
+    private synchronized void toMemory(String key, AudioPlayer.Pcm pcm) {
+        long bytes = pcm.data().length;
+        if (bytes > maxMemoryBytes) return;
+        AudioPlayer.Pcm previous = memory.put(key, pcm);
+        if (previous != null) memoryBytes -= previous.data().length;
+        memoryBytes += bytes;
+
+        Iterator<AudioPlayer.Pcm> it = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+            memoryBytes -= it.next().data().length;
+            it.remove();
+        }
+    }
+
+    // ── Nivel de disco ────────────────────────────────────────────────────────
+
+    /**
+     * Crea el directorio y reconstruye el índice de disco, ordenado por la
+     * última vez que se usó cada fichero en sesiones anteriores.
+     */
+    private Path openDirectory(Path dir) {
+        if (dir == null) return null;
+        try {
+            Files.createDirectories(dir);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+                stream.forEach(files::add);
+            }
+            files.sort(Comparator.comparingLong(TtsCache::lastModified));
+            synchronized (diskLock) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    long size = Files.size(file);
+                    diskIndex.put(name.substring(0, name.length() - EXTENSION.length()), size);
+                    diskBytes += size;
+                }
+            }
+            return dir;
+        } catch (IOException e) {
+            log.warning("Caché de TTS en disco desactivada: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void touchDisk(String key) {
+        if (directory == null) return;
+        synchronized (diskLock) {
+            diskIndex.get(key);
+        }
+    }
+
+    /**
+     * Lee una frase con una sola lectura del fichero; el PCM se usa en el mismo
+     * array, a continuación de la cabecera. No se mapea el fichero: un mapeo
+     * vivo impediría borrarlo (en Windows) hasta que lo liberase el GC.
+     */
+    private AudioPlayer.Pcm fromDisk(String key) {
+        if (directory == null) return null;
+        synchronized (diskLock) {
+            if (diskIndex.get(key) == null) return null;
+        }
+        Path file = directory.resolve(key + EXTENSION);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) throw new IOException("Tamaño no válido: " + size);
+            byte[] contents = new byte[(int) size];
+            ByteBuffer buffer = ByteBuffer.wrap(contents);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) throw new IOException("Fichero truncado");
+            }
+            if (buffer.getInt(0) != MAGIC) throw new IOException("Cabecera no válida");
+            int sampleRate = buffer.getInt(4);
+            int bits = buffer.getShort(8);
+            int channels = buffer.getShort(10);
+            int length = buffer.getInt(12);
+            if (length < 0 || HEADER_BYTES + (long) length > size) throw new IOException("Fichero truncado");
+
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis())); // orden LRU entre sesiones
+            return new AudioPlayer.Pcm(AudioPlayer.pcmFormat(sampleRate, bits, channels), contents, HEADER_BYTES, length);
+        } catch (IOException | RuntimeException e) {
+            log.warning("Entrada de caché de TTS descartada (" + file.getFileName() + "): " + e.getMessage());
+            removeFromDisk(key);
+            return null;
+        }
+    }
+
+    private void toDisk(String key, AudioPlayer.Pcm pcm) {
+        if (directory == null) return;
+        AudioFormat format = pcm.format();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt((int) format.getSampleRate())
+                .putShort((short) format.getSampleSizeInBits())
+                .putShort((short) format.getChannels())
+                .putInt(pcm.length())
+                .flip();
+        ByteBuffer samples = ByteBuffer.wrap(pcm.data(), pcm.offset(), pcm.length());
+
+        Path file = directory.resolve(key + EXTENSION);
+        Path temp = directory.resolve(key + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer[] parts = {header, samples};
+                while (header.hasRemaining() || samples.hasRemaining()) channel.write(parts);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (diskLock) {
+                Long previous = diskIndex.put(key, (long) HEADER_BYTES + pcm.length());
+                diskBytes += HEADER_BYTES + pcm.length() - (previous == null ? 0 : previous);
+                trimDisk();
+            }
+        } catch (IOException e) {
+            log.warning("No se pudo guardar la locución en disco: " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Borra las frases usadas hace más tiempo hasta volver al presupuesto.
+     * Un fichero que no se puede borrar sigue en el índice (y contando) para
+     * reintentarlo en el siguiente recorte. Se llama con diskLock tomado.
+     */
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> it = diskIndex.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey() + EXTENSION));
+            } catch (IOException e) {
+                log.warning("No se pudo borrar de la caché de TTS: " + e.getMessage());
+                continue;
+            }
+            diskBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    private void removeFromDisk(String key) {
+        synchronized (diskLock) {
+            Long size = diskIndex.remove(key);
+            if (size != null) diskBytes -= size;
+            try {
+                Files.deleteIfExists(directory.resolve(key + EXTENSION));
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
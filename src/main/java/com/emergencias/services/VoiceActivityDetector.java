@@ -0,0 +1,133 @@
+package com.emergencias.services;
+
+/**
+ * Detector de actividad de voz (VAD) ligero para PCM de 16 bits mono little-endian.
+ *
+ * Trabaja por tramas de 20 ms con dos medidas baratas: la energía (RMS) y la
+ * tasa de cruces por cero (ZCR). Una trama es voz si su energía supera con
+ * holgura el ruido de fondo, o si la supera algo menos pero cruza mucho por
+ * cero (consonantes sordas como la "s" o la "f"). El ruido de fondo se estima
+ * en las primeras tramas y se sigue actualizando mientras no se habla.
+ *
+ * - La voz empieza tras {@code ONSET_FRAMES} tramas de voz seguidas.
+ * - Termina tras {@code HANGOVER_MS} de silencio, o al llegar a {@code MAX_SPEECH_MS}.
+ * - Si nadie habla en {@code NO_SPEECH_MS}, se abandona la escucha.
+ */
+public final class VoiceActivityDetector {
+
+    public enum Event { NONE, SPEECH_START, SPEECH_END, NO_SPEECH }
+
+    private static final int FRAME_MS = 20;
+    private static final int CALIBRATION_FRAMES = 10;    // 200 ms para estimar el ruido
+    private static final int ONSET_FRAMES = 3;           // 60 ms de voz para empezar
+    private static final int HANGOVER_MS = 500;
+    private static final int NO_SPEECH_MS = 5_000;
+    private static final int MAX_SPEECH_MS = 15_000;
+
+    private static final double MIN_RMS = 300;           // suelo absoluto (~ -40 dBFS)
+    private static final double SPEECH_RATIO = 3.0;      // voz sonora: 3x el ruido
+    private static final double UNVOICED_RATIO = 1.8;    // voz sorda: 1.8x el ruido...
+    private static final double UNVOICED_ZCR = 0.25;     // ...con muchos cruces por cero
+    private static final double NOISE_ADAPTATION = 0.05; // media móvil del ruido
+    private static final double MAX_NOISE_FLOOR = 500;   // si se habla al pulsar, no tomarlo por ruido
+
+    private final int frameSamples;
+    private final int hangoverFrames;
+    private final int noSpeechFrames;
+    private final int maxSpeechFrames;
+
+    private double noiseFloor = 0;
+    private int frames = 0;
+    private int speechRun = 0;
+    private int silenceRun = 0;
+    private int speechFrames = 0;
+    private boolean speaking = false;
+    private boolean finished = false;
+
+    public VoiceActivityDetector(int sampleRate) {
+        if (sampleRate <= 0) throw new IllegalArgumentException("sampleRate debe ser positivo");
+        this.frameSamples = sampleRate * FRAME_MS / 1000;
+        this.hangoverFrames = HANGOVER_MS / FRAME_MS;
+        this.noSpeechFrames = NO_SPEECH_MS / FRAME_MS;
+        this.maxSpeechFrames = MAX_SPEECH_MS / FRAME_MS;
+    }
+
+    /**
+     * Tamaño en bytes de una trama (20 ms).
+     */
+    public int frameBytes() {
+        return frameSamples * 2;
+    }
+
+    public boolean isSpeaking() {
+        return speaking;
+    }
+
+    /**
+     * Analiza la trama que empieza en {@code offset} ({@link #frameBytes()} bytes).
+     */
+    public Event accept(byte[] pcm, int offset) {
+        if (finished) return Event.NONE;
+        double rms = rms(pcm, offset, frameSamples);
+        double zcr = zeroCrossingRate(pcm, offset, frameSamples);
+        frames++;
+
+        if (frames <= CALIBRATION_FRAMES) {
+            noiseFloor = Math.min(MAX_NOISE_FLOOR, noiseFloor + (rms - noiseFloor) / frames);
+            return Event.NONE;
+        }
+
+        boolean voice = rms > Math.max(MIN_RMS, noiseFloor * SPEECH_RATIO)
+                || (rms > Math.max(MIN_RMS / 2, noiseFloor * UNVOICED_RATIO) && zcr > UNVOICED_ZCR);
+
+        if (!speaking) {
+            if (!voice) noiseFloor = Math.min(MAX_NOISE_FLOOR, noiseFloor + (rms - noiseFloor) * NOISE_ADAPTATION);
+            speechRun = voice ? speechRun + 1 : 0;
+            if (speechRun >= ONSET_FRAMES) {
+                speaking = true;
+                speechFrames = speechRun;
+                return Event.SPEECH_START;
+            }
+            if (frames >= noSpeechFrames) {
+                finished = true;
+                return Event.NO_SPEECH;
+            }
+            return Event.NONE;
+        }
+
+        speechFrames++;
+        silenceRun = voice ? 0 : silenceRun + 1;
+        if (silenceRun >= hangoverFrames || speechFrames >= maxSpeechFrames) {
+            speaking = false;
+            finished = true;
+            return Event.SPEECH_END;
+        }
+        return Event.NONE;
+    }
+
+    // ── Medidas ───────────────────────────────────────────────────────────────
+
+    static double rms(byte[] pcm, int offset, int samples) {
+        double sum = 0;
+        for (int i = 0; i < samples; i++) {
+            int s = sample(pcm, offset + 2 * i);
+            sum += (double) s * s;
+        }
+        return Math.sqrt(sum / samples);
+    }
+
+    static double zeroCrossingRate(byte[] pcm, int offset, int samples) {
+        int crossings = 0;
+        boolean previous = sample(pcm, offset) >= 0;
+        for (int i = 1; i < samples; i++) {
+            boolean positive = sample(pcm, offset + 2 * i) >= 0;
+            if (positive != previous) crossings++;
+            previous = positive;
+        }
+        return (double) crossings / samples;
+    }
+
+    private static int sample(byte[] pcm, int pos) {
+        return (short) ((pcm[pos] & 0xFF) | pcm[pos + 1] << 8);
+    }
+}
@@ -0,0 +1,25 @@
+package com.emergencias.services;
+
+/**
+ * Resultado combinado de una frase hablada: transcripción de /stt y emoción de
+ * /analyze-emotion. Si el análisis de emoción no llegó a tiempo,
+ * {@code emotionAnalyzed} es false y la emoción es la que /stt haya incluido
+ * (o "unknown").
+ */
+public record VoiceAnalysis(String text, String emotion, double emotionConfidence,
+                            String urgency, boolean emotionAnalyzed) {
+
+    /**
+     * Indica si hay transcripción utilizable.
+     */
+    public boolean hasText() {
+        return text != null && !text.isBlank();
+    }
+
+    /**
+     * Indica si la voz del usuario denota urgencia alta (miedo, enfado...).
+     */
+    public boolean isUrgent() {
+        return "high".equals(urgency);
+    }
+}
@@ -0,0 +1,134 @@
+package com.emergencias.services;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.TargetDataLine;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.logging.Logger;
+
+/**
+ * Graba una frase del micrófono y la transcribe.
+ *
+ * La captura se hace en Java (javax.sound.sampled, PCM 16 kHz mono) y un
+ * {@link VoiceActivityDetector} decide cuándo empieza y acaba la voz: la
+ * grabación dura lo que dura la frase, no un tiempo fijo. En cuanto se detecta
+ * voz se abre la subida a /stt y el audio se va enviando mientras se habla,
+ * incluidos los ~300 ms previos para no cortar la primera sílaba.
+ */
+public class VoiceCapture {
+
+    private static final Logger log = Logger.getLogger(VoiceCapture.class.getName());
+
+    public static final int SAMPLE_RATE = 16_000;
+    public static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+
+    private static final int PRE_ROLL_FRAMES = 15; // 300 ms
+
+    public enum Phase { SPEAKING, TRANSCRIBING }
+
+    private final IntFunction<SpeechUpload> uploads;
+    private volatile boolean stopRequested = false;
+
+    public VoiceCapture(AIClassifierClient client) {
+        this(client::startTranscription);
+    }
+
+    VoiceCapture(IntFunction<SpeechUpload> uploads) {
+        this.uploads = uploads;
+    }
+
+    /**
+     * Abre el micrófono y escucha una frase en un hilo propio. Devuelve el JSON
+     * de /stt, null si no se habló, o termina con excepción si no hay micrófono.
+     *
+     * @param onPhase avisa cuando se detecta voz y cuando empieza la transcripción
+     */
+    public CompletableFuture<String> start(Consumer<Phase> onPhase) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        TargetDataLine line;
+        try {
+            line = AudioSystem.getTargetDataLine(FORMAT);
+            line.open(FORMAT);
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        stopRequested = false;
+        Thread.ofVirtual().name("voice-capture").start(() -> {
+            CompletableFuture<String> transcript;
+            try {
+                line.start();
+                transcript = capture(new AudioInputStream(line), onPhase);
+            } catch (RuntimeException e) {
+                transcript = CompletableFuture.failedFuture(e);
+            } finally {
+                line.close();
+            }
+            transcript.whenComplete((json, error) -> {
+                if (error != null) result.completeExceptionally(error);
+                else result.complete(json);
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Termina la escucha ya (botón de parar): lo grabado hasta ahora se transcribe.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Bucle de captura: lee tramas, las pasa por el VAD y las sube mientras hay voz.
+     * Devuelve cuando la frase termina; la transcripción llega en el future.
+     */
+    CompletableFuture<String> capture(InputStream in, Consumer<Phase> onPhase) {
+        VoiceActivityDetector vad = new VoiceActivityDetector(SAMPLE_RATE);
+        int frameBytes = vad.frameBytes();
+        byte[] frame = new byte[frameBytes];
+        byte[] preRoll = new byte[PRE_ROLL_FRAMES * frameBytes]; // anillo de tramas
+        int preRollFrames = 0;
+        SpeechUpload upload = null;
+
+        try {
+            while (!stopRequested && readFrame(in, frame)) {
+                VoiceActivityDetector.Event event = vad.accept(frame, 0);
+                if (upload == null) {
+                    System.arraycopy(frame, 0, preRoll, (preRollFrames % PRE_ROLL_FRAMES) * frameBytes, frameBytes);
+                    preRollFrames++;
+                    if (event == VoiceActivityDetector.Event.SPEECH_START) {
+                        upload = uploads.apply(SAMPLE_RATE);
+                        int kept = Math.min(preRollFrames, PRE_ROLL_FRAMES);
+                        for (int i = preRollFrames - kept; i < preRollFrames; i++) {
+                            upload.write(preRoll, (i % PRE_ROLL_FRAMES) * frameBytes, frameBytes);
+                        }
+                        onPhase.accept(Phase.SPEAKING);
+                    } else if (event == VoiceActivityDetector.Event.NO_SPEECH) {
+                        break;
+                    }
+                } else {
+                    upload.write(frame, 0, frameBytes);
+                    if (event == VoiceActivityDetector.Event.SPEECH_END) break;
+                }
+            }
+        } catch (IOException e) {
+            log.warning("Error leyendo el micrófono: " + e.getMessage());
+            if (upload != null) upload.cancel();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (upload == null) return CompletableFuture.completedFuture(null);
+        onPhase.accept(Phase.TRANSCRIBING);
+        return upload.finish();
+    }
+
+    private static boolean readFrame(InputStream in, byte[] frame) throws IOException {
+        return in.readNBytes(frame, 0, frame.length) == frame.length;
+    }
+}
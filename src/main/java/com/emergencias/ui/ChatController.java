@@ -2,49 +2,66 @@ package com.emergencias.ui;
 
 import com.emergencias.model.UserData;
 import com.emergencias.services.AIClassifierClient;
-import javafx.application.Platform;
+import com.emergencias.services.AudioPlayer;
+import com.emergencias.services.ChatResponse;
+import com.emergencias.services.ChatStreamListener;
+import com.emergencias.services.GeoResponse;
+import com.emergencias.services.KeywordMatcher;
+import com.emergencias.services.ResponseParser;
+import com.emergencias.services.SpeechPipeline;
+import com.emergencias.services.TaskRunner;
+import com.emergencias.services.TtsCache;
+import com.emergencias.services.VoiceCapture;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
-import javafx.geometry.Insets;
-import javafx.geometry.Pos;
 import javafx.scene.control.*;
-import javafx.scene.layout.*;
-import javafx.scene.text.Text;
-import javafx.scene.text.TextFlow;
 
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.ResourceBundle;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
-import java.io.File;
-import java.io.FileOutputStream;
 
-import com.emergencias.alert.AlertSender;
+import com.emergencias.alert.AlertDispatcher;
 import com.emergencias.model.CentroSalud;
+import com.emergencias.model.CentroSaludIndex;
 import com.emergencias.model.CentroSaludUtils;
 import com.emergencias.model.EmergencyEvent;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  Controlador para la pantalla de chat conversacional.
  */
 public class ChatController implements Initializable {
 
-    @FXML private ScrollPane chatScrollPane;
-    @FXML private VBox chatMessages;
+    @FXML private ListView<ChatMessage> chatList;
     @FXML private TextField messageInput;
     @FXML private Button voiceButton;
     @FXML private Label statusLabel;
     @FXML private Label aiStatusLabel;
+
+    // Frases sintetizadas por adelantado mientras suena la actual
+    private static final int TTS_LOOKAHEAD = 2;
+    private static final Path TTS_CACHE_DIR = Path.of("cache", "tts");
+    private static final long TTS_CACHE_MEMORY_BYTES = 16L * 1024 * 1024;
+    private static final long TTS_CACHE_DISK_BYTES = 128L * 1024 * 1024;
+    // Frases que Soteria repite en casi todas las conversaciones
+    private static final List<String> COMMON_PHRASES = List.of(
+        "Mantenga la calma.", "Llame al 112.", "La ayuda está en camino.");
     
     private AIClassifierClient aiClient;
     private UserData currentUser; // Guardar datos del usuario
-    private boolean aiAvailable = false;
+    private volatile boolean aiAvailable = false;
     private boolean isRecording = false;
-    private MediaPlayer mediaPlayer; // Referencia fuerte para evitar GC
+    private final AudioPlayer audioPlayer = new AudioPlayer(); // Reproducción desde memoria, sin ficheros temporales
     private java.util.List<String> chatHistory = new java.util.ArrayList<>(); // Historial de mensajes
+    private VoiceCapture voiceCapture; // Micrófono + VAD + subida a /stt mientras se habla
+    private TtsCache ttsCache; // Locuciones ya sintetizadas (memoria + disco)
+    private SpeechPipeline<AudioPlayer.Pcm> speech; // Locución en orden con síntesis adelantada
+    private boolean speechPrewarmed = false;
+    private final TaskRunner tasks = TaskRunner.shared(); // Hilos virtuales, se cierran con la aplicación
+    private TaskRunner.Scope currentTurn; // Tareas de la respuesta en curso
+    private UiUpdateBatcher ui; // Cambios desde hilos de fondo, aplicados una vez por fotograma
+    private ChatTranscript transcript; // Mensajes; solo las burbujas visibles tienen nodos
 
     @FXML
     private void handleSendMessage() {
@@ -59,45 +76,62 @@ public class ChatController implements Initializable {
 
     @FXML
     private void handleVoiceInput() {
-        if (!aiAvailable || isRecording) return;
+        if (isRecording) {
+            voiceCapture.stop(); // Segundo toque: terminar la frase ya
+            return;
+        }
+        if (!aiAvailable) return;
         
         isRecording = true;
         voiceButton.setText("⏹️");
         voiceButton.setStyle("-fx-background-color: #ef4444;");
-        setStatus("🎤 Grabando... (5 seg)");
+        setStatus("🎤 Habla ahora...");
         
-        new Thread(() -> {
-            try {
-                String text = recordAndTranscribe(5);
-                Platform.runLater(() -> {
-                    isRecording = false;
-                    voiceButton.setText("🎤");
-                    voiceButton.setStyle("");
-                    setStatus("Listo");
-                    
-                    if (text != null && !text.isEmpty()) {
-                        addUserMessage(text);
-                        processMessage(text);
-                    } else {
-                        addBotMessage("❌ No se entendió. Intenta de nuevo.");
-                    }
-                });
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    isRecording = false;
-                    voiceButton.setText("🎤");
-                    voiceButton.setStyle("");
-                    setStatus("Error");
-                    addBotMessage("❌ Error: " + e.getMessage());
-                });
+        listen().whenComplete((text, error) -> ui.post(() -> {
+            isRecording = false;
+            voiceButton.setText("🎤");
+            voiceButton.setStyle("");
+            if (error != null) {
+                setStatus("Error");
+                addBotMessage("❌ Error: " + error.getMessage());
+            } else if (text != null && !text.isEmpty()) {
+                setStatus("Listo");
+                addUserMessage(text);
+                processMessage(text);
+            } else {
+                setStatus("Listo");
+                addBotMessage("❌ No se entendió. Intenta de nuevo.");
             }
-        }).start();
+        }));
     }
 
+    /**
+     * Escucha una frase con el micrófono (la grabación termina sola al callar) y
+     * devuelve el texto. Si Java no puede abrir el micrófono, graba el backend.
+     */
+    private CompletableFuture<String> listen() {
+        return voiceCapture.start(phase ->
+                    ui.status(phase == VoiceCapture.Phase.SPEAKING ? "🎤 Escuchando..." : "⏳ Transcribiendo..."))
+                .thenApply(json -> json == null ? null : ResponseParser.stringField(json, "text"))
+                .exceptionallyCompose(e -> {
+                    System.err.println("Micrófono no disponible (" + e.getMessage() + "), grabando en el servidor");
+                    return tasks.submit(() -> recordAndTranscribe(5));
+                });
+    }
+
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
+        transcript = ChatTranscript.attach(chatList);
+        ui = UiUpdateBatcher.onPulse(this::updateLastBotMessage, this::setStatus);
         aiClient = new AIClassifierClient("http://localhost:8000");
+        voiceCapture = new VoiceCapture(aiClient);
+        ttsCache = new TtsCache(aiClient::synthesizeAsync, TTS_CACHE_DIR, TTS_CACHE_MEMORY_BYTES, TTS_CACHE_DISK_BYTES);
+        speech = new SpeechPipeline<>(text -> ttsCache.get(text, "neutral"), audioPlayer::play, TTS_LOOKAHEAD);
         checkAIAvailability();
+
+        // Precargar el índice de centros de salud para que la primera alerta no pague el parseo
+        tasks.run(() -> CentrosHolder.INDEX.size());
         
         // Configurar evento de clic para alternar grabación (Toggle)
         voiceButton.setOnAction(event -> toggleRecording());
@@ -115,20 +149,31 @@ public class ChatController implements Initializable {
     }
 
     private void checkAIAvailability() {
-        new Thread(() -> {
-            aiAvailable = aiClient.isAvailable();
-            Platform.runLater(() -> {
-                if (aiAvailable) {
-                    aiStatusLabel.setText("Soteria: ✅ Conectada");
-                    aiStatusLabel.setStyle("-fx-text-fill: #10b981;");
-                } else {
-                    aiStatusLabel.setText("Soteria: ❌ Desconectada");
-                    aiStatusLabel.setStyle("-fx-text-fill: #ef4444;");
+        // El cliente sondea /health en segundo plano; aquí solo se reflejan los cambios
+        aiClient.addAvailabilityListener(available -> ui.post(() -> showAIStatus(available)));
+
+        tasks.run(() -> {
+            boolean available = aiClient.isAvailable();
+            ui.post(() -> {
+                showAIStatus(available);
+                if (!available) {
                     addBotMessage("⚠️ Servidor de Soteria no disponible.\nModo básico activado.\n\n" +
-                                 "Para activar Soteria completa:\ncd python-backend && python -m uvicorn server:app --host 0.0.0.0 --port 8000");
+                         "Para activar Soteria completa:\ncd python-backend && python -m uvicorn server:app --host 0.0.0.0 --port 8000");
                 }
             });
-        }).start();
+        });
+    }
+
+    private void showAIStatus(boolean available) {
+        aiAvailable = available;
+        if (available) {
+            prewarmSpeech();
+            aiStatusLabel.setText("Soteria: ✅ Conectada");
+            aiStatusLabel.setStyle("-fx-text-fill: #10b981;");
+        } else {
+            aiStatusLabel.setText("Soteria: ❌ Desconectada");
+            aiStatusLabel.setStyle("-fx-text-fill: #ef4444;");
+        }
     }
 
     private void toggleRecording() {
@@ -147,8 +192,8 @@ public class ChatController implements Initializable {
                     .send(request, java.net.http.HttpResponse.BodyHandlers.ofString(java.nio.charset.StandardCharsets.UTF_8));
 
             String body = response.body();
-            if (body.contains("\"error\"")) return null;
-            return AIClassifierClient.extractString(body, "text");
+            if (ResponseParser.stringField(body, "error") != null) return null;
+            return ResponseParser.stringField(body, "text");
         } catch (Exception e) {
             return null;
         }
@@ -165,7 +210,9 @@ public class ChatController implements Initializable {
         chatHistory.add("Usuario: " + message);
         if (chatHistory.size() > 10) chatHistory.remove(0);
 
-        new Thread(() -> {
+        // Un mensaje nuevo sustituye a la respuesta que aún se esté generando
+        TaskRunner.Scope turn = startTurn();
+        turn.fork(() -> {
             try {
                 // 3. Construir contexto con datos del usuario e historial
                 StringBuilder context = new StringBuilder();
@@ -182,34 +229,48 @@ public class ChatController implements Initializable {
                     context.append(hist).append("\n");
                 }
 
-                // USAR LLM para conversación avanzada
-                String llmResponse = aiClient.chat(message, context.toString());
-                
-                if (llmResponse != null) {
-                    String responseText = AIClassifierClient.extractString(llmResponse, "response");
-                    boolean success = llmResponse.contains("\"success\":") && llmResponse.contains("true");
-                    
-                    if (success && responseText != null && !responseText.isEmpty()) {
-                        // Añadir respuesta al historial
-                        chatHistory.add("Soteria: " + responseText);
-                        
-                        String formattedText = responseText
-                            .replace("\\n\\n", "\n\n")
-                            .replace("\\n", "\n")
-                            .replace("**", "");
-                        
-                        // Iniciar streaming sincronizado de texto y audio
-                        streamTextAndAudio(formattedText);
-                    } else {
-                        // Mensaje de error simple
-                        Platform.runLater(() -> {
-                            addBotMessage("Lo siento, no pude procesar tu mensaje. Por favor, intenta de nuevo.");
-                            setStatus("Listo");
-                        });
+                // USAR LLM en streaming: el texto aparece según llega y cada frase
+                // completa se envía al TTS sin esperar al resto de la respuesta
+                StringBuilder shown = new StringBuilder();
+                ChatResponse llmResponse = aiClient.chatStream(message, context.toString(), new ChatStreamListener() {
+                    @Override
+                    public void onToken(String token) {
+                        if (turn.isCancelled()) return;
+                        boolean first = shown.length() == 0;
+                        shown.append(token);
+                        String visible = token.replace("**", "");
+                        if (first) {
+                            ui.post(() -> addBotMessage(visible.stripLeading())); // Crear burbuja nueva
+                            ui.status("Soteria está respondiendo...");
+                        } else {
+                            ui.append(visible); // Se junta con los demás tokens del fotograma
+                        }
+                    }
+
+                    @Override
+                    public void onSentence(String sentence) {
+                        if (!turn.isCancelled()) speakSentence(sentence);
                     }
+                });
+                if (turn.isCancelled()) return;
+
+                if (shown.length() > 0) {
+                    // Añadir respuesta al historial (aunque el stream se haya cortado)
+                    chatHistory.add("Soteria: " + shown);
+                    boolean complete = llmResponse != null && llmResponse.success();
+                    ui.post(() -> {
+                        if (!complete) updateLastBotMessage("\n⚠️ Respuesta interrumpida.");
+                        setStatus("Listo");
+                    });
+                } else if (llmResponse != null) {
+                    // Mensaje de error simple
+                    ui.post(() -> {
+                        addBotMessage("Lo siento, no pude procesar tu mensaje. Por favor, intenta de nuevo.");
+                        setStatus("Listo");
+                    });
                 } else {
                     // Sin conexión al servidor
-                    Platform.runLater(() -> {
+                    ui.post(() -> {
                         addBotMessage("No puedo conectarme al servidor. Verifica que esté ejecutándose.");
                         setStatus("Error");
                     });
@@ -218,160 +279,84 @@ public class ChatController implements Initializable {
             } catch (Exception e) {
                 System.err.println("[ERROR] Error procesando mensaje: " + e.getMessage());
                 e.printStackTrace();
-                Platform.runLater(() -> {
+                ui.post(() -> {
                     addBotMessage("❌ Error: " + e.getMessage());
                     setStatus("Error");
                 });
             }
-        }).start();
+        });
+    }
+
+    /**
+     * Abre el ámbito de un turno nuevo cancelando el anterior: su petición al
+     * LLM se aborta y las frases que aún no habían sonado se descartan.
+     */
+    private TaskRunner.Scope startTurn() {
+        if (currentTurn != null) {
+            currentTurn.cancel();
+            speech.clear();
+        }
+        currentTurn = tasks.openScope();
+        return currentTurn;
+    }
+
+    /**
+     * Libera micrófono, audio y conexiones al cerrar la aplicación.
+     */
+    public void shutdown() {
+        if (currentTurn != null) currentTurn.cancel();
+        voiceCapture.stop();
+        speech.close();
+        audioPlayer.close();
+        aiClient.close();
     }
 
     private void addUserMessage(String message) {
-        HBox messageBox = new HBox();
-        messageBox.setAlignment(Pos.CENTER_RIGHT);
-        messageBox.setPadding(new Insets(5, 0, 5, 50));
-        
-        VBox bubble = new VBox();
-        bubble.setStyle("-fx-background-color: #2563eb; -fx-background-radius: 15; -fx-padding: 10 15;");
-        
-        Text text = new Text(message);
-        text.setStyle("-fx-fill: white; -fx-font-size: 14;");
-        text.setWrappingWidth(300);
-        
-        bubble.getChildren().add(text);
-        messageBox.getChildren().add(bubble);
-        chatMessages.getChildren().add(messageBox);
-        scrollToBottom();
+        transcript.addUser(message);
     }
 
     private void addBotMessage(String message) {
-        HBox messageBox = new HBox();
-        messageBox.setAlignment(Pos.CENTER_LEFT);
-        messageBox.setPadding(new Insets(5, 50, 5, 0));
-        
-        VBox bubble = new VBox();
-        bubble.setStyle("-fx-background-color: #f1f5f9; -fx-background-radius: 15; -fx-padding: 10 15;");
-        
-        TextFlow textFlow = new TextFlow();
-        for (String line : message.split("\n")) {
-            Text text = new Text(line + "\n");
-            text.setStyle("-fx-fill: #1e293b; -fx-font-size: 14;");
-            textFlow.getChildren().add(text);
-        }
-        
-        bubble.getChildren().add(textFlow);
-        messageBox.getChildren().add(bubble);
-        chatMessages.getChildren().add(messageBox);
-        scrollToBottom();
+        transcript.addBot(message);
     }
     
-    private void streamTextAndAudio(String message) {
-        new Thread(() -> {
-            try {
-                // Dividir el mensaje en oraciones
-                String[] sentences = message.split("(?<=[.!?])\\s+");
-                StringBuilder currentText = new StringBuilder();
-                
-                for (int i = 0; i < sentences.length; i++) {
-                    String sentence = sentences[i];
-                    // Limpiar Markdown y caracteres de escape antes del TTS
-                    String clean = sentence
-                        .replace("**", "")
-                        .replace("\\", "")
-                        .replaceAll("[^a-zA-ZáéíóúÁÉÍÓÚñÑüÜ0-9\\s.,;:!¿?¡]", " ")
-                        .trim();
-                    
-                    if (clean.length() < 2) continue;
-
-                    // Solicitar audio de esta oración
-                    byte[] audioData = aiClient.synthesize(clean, "neutral");
-                    
-                    if (audioData != null && audioData.length > 0) {
-                        // Esperar a que el audio anterior termine
-                        synchronized (this) {
-                            while (mediaPlayer != null && mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING) {
-                                Thread.sleep(50);
-                            }
-                        }
+    /**
+     * Encola una frase para locución. La síntesis de las siguientes frases se
+     * pide mientras suena la actual, así que no hay silencios entre ellas.
+     */
+    private void speakSentence(String sentence) {
+        String clean = cleanForSpeech(sentence);
+        if (clean.length() >= 2) speech.speak(clean);
+    }
 
-                        // Mostrar esta parte del texto y reproducir audio
-                        final String textToShow = sentence + " ";
-                        Platform.runLater(() -> {
-                            if (currentText.length() == 0) {
-                                addBotMessage(textToShow); // Crear burbuja nueva
-                            } else {
-                                updateLastBotMessage(textToShow); // Añadir a la burbuja existente
-                            }
-                            currentText.append(textToShow);
-                            
-                            try {
-                                File temp = File.createTempFile("soteria_stream_", ".wav");
-                                temp.deleteOnExit();
-                                try (FileOutputStream fos = new FileOutputStream(temp)) {
-                                    fos.write(audioData);
-                                    fos.flush();
-                                }
-                                
-                                Media media = new Media(temp.toURI().toString());
-                                mediaPlayer = new MediaPlayer(media);
-                                mediaPlayer.setOnEndOfMedia(() -> {
-                                    // Pequeño retraso para asegurar que el hardware terminó de sonar
-                                    new Thread(() -> {
-                                        try { Thread.sleep(100); } catch (Exception ignored) {}
-                                        Platform.runLater(() -> {
-                                            if (mediaPlayer != null) {
-                                                mediaPlayer.dispose();
-                                                mediaPlayer = null;
-                                            }
-                                            temp.delete();
-                                        });
-                                    }).start();
-                                });
-                                mediaPlayer.play();
-                            } catch (Exception e) {
-                                System.err.println("Error en stream audio: " + e.getMessage());
-                            }
-                        });
-                    }
-                }
-                Platform.runLater(() -> setStatus("Listo"));
-            } catch (Exception e) {
-                System.err.println("Error en stream sincronizado: " + e.getMessage());
-                Platform.runLater(() -> addBotMessage(message));
-            }
-        }).start();
+    /**
+     * Sintetiza en segundo plano las frases habituales y las instrucciones del
+     * catálogo (emergency_config.json) para que suenen sin esperar al TTS.
+     * Solo la primera vez que el backend está disponible.
+     */
+    private void prewarmSpeech() {
+        if (speechPrewarmed) return;
+        speechPrewarmed = true;
+        List<String> phrases = new java.util.ArrayList<>(COMMON_PHRASES);
+        phrases.addAll(KeywordMatcher.getDefault().allInstructions());
+        ttsCache.prewarm(phrases.stream().map(ChatController::cleanForSpeech).filter(p -> p.length() >= 2).toList(), "neutral");
     }
 
     /**
-     * Actualiza el último mensaje del bot añadiendo más texto.
+     * Limpia Markdown y caracteres de escape antes del TTS.
      */
-    private void updateLastBotMessage(String additionalText) {
-        if (chatMessages.getChildren().isEmpty()) return;
-        
-        HBox lastBox = (HBox) chatMessages.getChildren().get(chatMessages.getChildren().size() - 1);
-        VBox bubble = (VBox) lastBox.getChildren().get(0);
-        TextFlow textFlow = (TextFlow) bubble.getChildren().get(0);
-        
-        Text text = new Text(additionalText);
-        text.setStyle("-fx-fill: #1e293b; -fx-font-size: 14;");
-        textFlow.getChildren().add(text);
-        
-        scrollToBottom();
+    private static String cleanForSpeech(String sentence) {
+        return sentence
+            .replace("**", "")
+            .replace("\\", "")
+            .replaceAll("[^a-zA-ZáéíóúÁÉÍÓÚñÑüÜ0-9\\s.,;:!¿?¡]", " ")
+            .trim();
     }
 
-    private void scrollToBottom() {
-        // Usar un pequeño retraso para asegurar que el layout se complete antes del scroll
-        new Thread(() -> {
-            try {
-                Thread.sleep(50); // Pequeña pausa para que el layout se actualice
-                Platform.runLater(() -> {
-                    chatScrollPane.layout();
-                    chatScrollPane.setVvalue(1.0);
-                });
-            } catch (InterruptedException e) {
-                Platform.runLater(() -> chatScrollPane.setVvalue(1.0));
-            }
-        }).start();
+    /**
+     * Actualiza el último mensaje del bot añadiendo más texto.
+     */
+    private void updateLastBotMessage(String additionalText) {
+        transcript.appendToLastBot(additionalText);
     }
 
     private void setStatus(String status) {
@@ -382,15 +367,7 @@ public class ChatController implements Initializable {
      * Detecta si el mensaje es un comando de emergencia directo.
      */
     private boolean isEmergencyCommand(String message) {
-        String msg = message.toLowerCase();
-        return msg.contains("112") || 
-               msg.contains("alerta") || 
-               msg.contains("emergencia") || 
-               msg.contains("socorro") || 
-               msg.contains("ayuda") ||
-               msg.contains("ambulancia") ||
-               msg.contains("policía") ||
-               msg.contains("bomberos");
+        return KeywordMatcher.getDefault().contains(message, "ALERT");
     }
 
     /**
@@ -399,40 +376,17 @@ public class ChatController implements Initializable {
     private void handleEmergencyAlert(String message) {
         setStatus("🚨 ENVIANDO ALERTA...");
         
-        new Thread(() -> {
+        tasks.run(() -> {
             try {
                 // 1. Obtener ubicación real por IP (usando el servidor Python)
-                String geoResponse = aiClient.geolocate();
+                GeoResponse geo = aiClient.geolocate();
                 String locationStr = "Ubicación desconocida";
                 double userLat = 0, userLon = 0;
                 
-                if (geoResponse != null && !geoResponse.contains("\"error\"")) {
-                    String city = AIClassifierClient.extractString(geoResponse, "city");
-                    String region = AIClassifierClient.extractString(geoResponse, "region");
-                    
-                    // Extraer coordenadas de forma más robusta (pueden ser números en el JSON)
-                    String latStr = "0";
-                    String lonStr = "0";
-                    
-                    if (geoResponse.contains("\"lat\":")) {
-                        int start = geoResponse.indexOf("\"lat\":") + 6;
-                        int end = geoResponse.indexOf(",", start);
-                        if (end == -1) end = geoResponse.indexOf("}", start);
-                        latStr = geoResponse.substring(start, end).trim();
-                    }
-                    
-                    if (geoResponse.contains("\"lon\":")) {
-                        int start = geoResponse.indexOf("\"lon\":") + 6;
-                        int end = geoResponse.indexOf(",", start);
-                        if (end == -1) end = geoResponse.indexOf("}", start);
-                        lonStr = geoResponse.substring(start, end).trim();
-                    }
-                    
-                    locationStr = city + ", " + region + " (Lat: " + latStr + ", Lon: " + lonStr + ")";
-                    try {
-                        userLat = Double.parseDouble(latStr);
-                        userLon = Double.parseDouble(lonStr);
-                    } catch (Exception ignored) {}
+                if (geo != null) {
+                    userLat = geo.lat();
+                    userLon = geo.lon();
+                    locationStr = geo.city() + ", " + geo.region() + " (Lat: " + userLat + ", Lon: " + userLon + ")";
                 }
 
                 // 2. Crear el evento de emergencia
@@ -443,15 +397,19 @@ public class ChatController implements Initializable {
                     currentUser != null ? currentUser.getFullName() : "Usuario Desconocido"
                 );
 
-                // 3. Enviar la alerta
-                AlertSender sender = new AlertSender();
-                boolean success = sender.send(event);
+                // 3. Encolar la alerta (gravedad 10: no espera tras avisos leves)
+                CompletableFuture<Boolean> sent = AlertDispatcher.shared().dispatch(event);
 
-                // 4. Buscar centros de salud cercanos
+                // 4. Buscar centros de salud cercanos mientras se envía
                 final String centrosCercanos = buscarCentrosCercanos(userLat, userLon);
                 final String finalLocation = locationStr;
+                // Un envío fallido o cancelado (p. ej. al cerrar) se trata como no enviado
+                final boolean success = sent.handle((ok, error) -> {
+                    if (error != null) System.err.println("Error enviando alerta: " + error);
+                    return error == null && ok;
+                }).join();
 
-                Platform.runLater(() -> {
+                ui.post(() -> {
                     if (success) {
                         addBotMessage("🚨 **ALERTA ENVIADA AL 112** 🚨\n\n" +
                                      "He enviado tu ubicación y datos de contacto a los servicios de emergencia.\n" +
@@ -467,9 +425,9 @@ public class ChatController implements Initializable {
                 });
             } catch (Exception e) {
                 System.err.println("Error enviando alerta: " + e.getMessage());
-                Platform.runLater(() -> setStatus("Error"));
+                ui.status("Error");
             }
-        }).start();
+        });
     }
 
     /**
@@ -479,40 +437,16 @@ public class ChatController implements Initializable {
         if (lat == 0 && lon == 0) return "No se pudo determinar la ubicación para buscar centros cercanos.";
         
         try {
-            List<CentroSalud> centros = CentroSaludUtils.cargarCentros("/CentrosdeSaludMurcia.json");
-            if (centros == null || centros.isEmpty()) return "";
+            CentroSaludIndex index = CentrosHolder.INDEX;
+            if (index.size() == 0) return "";
 
-            // Calcular distancias y ordenar
-            final double uLat = lat;
-            final double uLon = lon;
-            
-            List<CentroSalud> cercanos = centros.stream()
-                .filter(c -> {
-                    try {
-                        return c.getLatitud() != null && c.getLongitud() != null;
-                    } catch (Exception e) { return false; }
-                })
-                .sorted(Comparator.comparingDouble(c -> {
-                    try {
-                        double cLat = Double.parseDouble(c.getLatitud().replace(",", "."));
-                        double cLon = Double.parseDouble(c.getLongitud().replace(",", "."));
-                        return calcularDistancia(uLat, uLon, cLat, cLon);
-                    } catch (Exception e) { return Double.MAX_VALUE; }
-                }))
-                .limit(3)
-                .collect(Collectors.toList());
+            List<CentroSaludIndex.CentroCercano> cercanos = index.nearest(lat, lon, 3);
 
             StringBuilder sb = new StringBuilder("🏥 **Centros de salud más cercanos:**\n");
-            for (CentroSalud c : cercanos) {
-                double dist = 0;
-                try {
-                    double cLat = Double.parseDouble(c.getLatitud().replace(",", "."));
-                    double cLon = Double.parseDouble(c.getLongitud().replace(",", "."));
-                    dist = calcularDistancia(uLat, uLon, cLat, cLon);
-                } catch (Exception ignored) {}
-                
+            for (CentroSaludIndex.CentroCercano cercano : cercanos) {
+                CentroSalud c = cercano.getCentro();
                 sb.append("• ").append(c.getNombre())
-                  .append(" (").append(String.format("%.2f", dist)).append(" km)\n")
+                  .append(" (").append(String.format("%.2f", cercano.getDistanciaKm())).append(" km)\n")
                   .append("  📍 ").append(c.getDireccion()).append("\n");
             }
             return sb.toString();
@@ -523,16 +457,11 @@ public class ChatController implements Initializable {
     }
 
     /**
-     * Calcula la distancia en km entre dos puntos (Haversine).
+     * Índice de centros de salud, cargado una sola vez (inicialización perezosa thread-safe).
      */
-    private double calcularDistancia(double lat1, double lon1, double lat2, double lon2) {
-        double R = 6371; // Radio de la Tierra en km
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+    private static class CentrosHolder {
+        static final CentroSaludIndex INDEX =
+            CentroSaludIndex.build(CentroSaludUtils.cargarCentros("/CentrosdeSaludMurcia.json"),
+                                   CentroSaludIndex.Region.MURCIA);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package com.emergencias.ui;
+
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+/**
+ * Mensaje de la conversación. La transcripción guarda solo estos objetos; los
+ * nodos que los pintan son celdas reutilizables. El texto es observable para
+ * que una respuesta en streaming crezca en la celda que la esté mostrando.
+ */
+final class ChatMessage {
+
+    enum Sender { USER, BOT }
+
+    private final Sender sender;
+    private final ReadOnlyStringWrapper text;
+
+    ChatMessage(Sender sender, String text) {
+        this.sender = sender;
+        this.text = new ReadOnlyStringWrapper(text);
+    }
+
+    Sender sender() {
+        return sender;
+    }
+
+    String text() {
+        return text.get();
+    }
+
+    ReadOnlyStringProperty textProperty() {
+        return text.getReadOnlyProperty();
+    }
+
+    /**
+     * Añade texto al final (respuesta en streaming). Solo desde el hilo de FX.
+     */
+    void append(String more) {
+        text.set(text.get() + more);
+    }
+}
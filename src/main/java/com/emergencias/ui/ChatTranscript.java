@@ -0,0 +1,144 @@
+package com.emergencias.ui;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Transcripción del chat virtualizada.
+ *
+ * Los mensajes viven en una lista observable y un {@link ListView} los pinta
+ * con celdas reutilizables: solo existen nodos para las burbujas visibles, así
+ * que el grafo de escena no crece con la duración de la sesión y el layout y
+ * el scroll cuestan lo mismo con diez mensajes que con diez mil.
+ */
+final class ChatTranscript {
+
+    private static final String USER_BUBBLE_STYLE =
+            "-fx-background-color: #2563eb; -fx-background-radius: 15; -fx-padding: 10 15;";
+    private static final String BOT_BUBBLE_STYLE =
+            "-fx-background-color: #f1f5f9; -fx-background-radius: 15; -fx-padding: 10 15;";
+    private static final String USER_TEXT_STYLE = "-fx-fill: white; -fx-font-size: 14;";
+    private static final String BOT_TEXT_STYLE = "-fx-fill: #1e293b; -fx-font-size: 14;";
+    private static final Insets USER_ROW_PADDING = new Insets(5, 0, 5, 50);
+    private static final Insets BOT_ROW_PADDING = new Insets(5, 50, 5, 0);
+    // Texto de 300 px más el relleno horizontal de la burbuja
+    private static final double USER_BUBBLE_MAX_WIDTH = 330;
+    // Margen lateral de la fila más el relleno de la lista y la barra de scroll
+    private static final double BOT_HORIZONTAL_MARGIN = 80;
+
+    private final ObservableList<ChatMessage> messages = FXCollections.observableArrayList();
+    private final List<ChatMessage> readOnly = Collections.unmodifiableList(messages);
+    private Runnable onAdded = () -> {};
+
+    /**
+     * Transcripción conectada a una vista: le da los mensajes, las celdas de
+     * burbuja y el desplazamiento automático al último mensaje.
+     */
+    static ChatTranscript attach(ListView<ChatMessage> view) {
+        ChatTranscript transcript = new ChatTranscript();
+        view.setItems(transcript.messages);
+        view.setCellFactory(v -> new BubbleCell(v));
+        view.setFocusTraversable(false);
+        transcript.onAdded = () -> scrollToEnd(view);
+        return transcript;
+    }
+
+    ChatMessage addUser(String text) {
+        return add(new ChatMessage(ChatMessage.Sender.USER, text));
+    }
+
+    ChatMessage addBot(String text) {
+        return add(new ChatMessage(ChatMessage.Sender.BOT, text));
+    }
+
+    /**
+     * Añade texto a la última burbuja si es del bot; si la última es del
+     * usuario (escribió mientras llegaba la respuesta) no hace nada.
+     */
+    boolean appendToLastBot(String text) {
+        if (messages.isEmpty()) return false;
+        ChatMessage last = messages.get(messages.size() - 1);
+        if (last.sender() != ChatMessage.Sender.BOT) return false;
+        last.append(text);
+        onAdded.run();
+        return true;
+    }
+
+    List<ChatMessage> messages() {
+        return readOnly;
+    }
+
+    private ChatMessage add(ChatMessage message) {
+        messages.add(message);
+        onAdded.run();
+        return message;
+    }
+
+    private static void scrollToEnd(ListView<ChatMessage> view) {
+        // Hasta el final del contenido, aunque la última burbuja sea más alta que la vista
+        if (view.lookup(".virtual-flow") instanceof VirtualFlow<?> flow) {
+            flow.setPosition(1.0);
+        } else {
+            view.scrollTo(view.getItems().size() - 1);
+        }
+    }
+
+    /**
+     * Celda de burbuja. Sus nodos se crean una vez y se reutilizan para el
+     * mensaje que toque mostrar; el texto se enlaza al del mensaje.
+     */
+    private static final class BubbleCell extends ListCell<ChatMessage> {
+        private final HBox row = new HBox();
+        private final VBox bubble = new VBox();
+        private final Text text = new Text();
+        private final ListView<ChatMessage> view;
+
+        BubbleCell(ListView<ChatMessage> view) {
+            this.view = view;
+            // El TextFlow parte las líneas al ancho máximo de la burbuja
+            bubble.getChildren().add(new TextFlow(text));
+            row.getChildren().add(bubble);
+            setPrefWidth(0); // Que mande el ancho de la lista, sin scroll horizontal
+            setText(null);
+        }
+
+        @Override
+        protected void updateItem(ChatMessage message, boolean empty) {
+            super.updateItem(message, empty);
+            text.textProperty().unbind();
+            bubble.maxWidthProperty().unbind();
+            if (empty || message == null) {
+                text.setText(null);
+                setGraphic(null);
+                return;
+            }
+            text.textProperty().bind(message.textProperty());
+            if (message.sender() == ChatMessage.Sender.USER) {
+                row.setAlignment(Pos.CENTER_RIGHT);
+                row.setPadding(USER_ROW_PADDING);
+                bubble.setStyle(USER_BUBBLE_STYLE);
+                bubble.setMaxWidth(USER_BUBBLE_MAX_WIDTH);
+                text.setStyle(USER_TEXT_STYLE);
+            } else {
+                row.setAlignment(Pos.CENTER_LEFT);
+                row.setPadding(BOT_ROW_PADDING);
+                bubble.setStyle(BOT_BUBBLE_STYLE);
+                bubble.maxWidthProperty().bind(view.widthProperty().subtract(BOT_HORIZONTAL_MARGIN));
+                text.setStyle(BOT_TEXT_STYLE);
+            }
+            setGraphic(row);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.emergencias.ui;
 
 import com.emergencias.model.UserData;
+import com.emergencias.alert.AlertDispatcher;
+import com.emergencias.alert.EmergencyRepository;
+import com.emergencias.alert.Journal;
+import com.emergencias.services.TaskRunner;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
@@ -16,6 +20,7 @@ public class MainApp extends Application {
     private Stage primaryStage;
     private Scene loginScene;
     private Scene chatScene;
+    private ChatController chatController;
 
     @Override
     public void start(Stage primaryStage) throws Exception {
@@ -51,7 +56,8 @@ public class MainApp extends Application {
         FXMLLoader chatLoader = new FXMLLoader(getClass().getResource("/fxml/chat-view.fxml"));
         Parent chatRoot = chatLoader.load();
         
-        ChatController chatController = chatLoader.getController();
+        if (chatController != null) chatController.shutdown(); // Sesión anterior
+        chatController = chatLoader.getController();
         chatController.setUserData(userData);
         
         chatScene = new Scene(chatRoot, 800, 700);
@@ -69,6 +75,20 @@ public class MainApp extends Application {
         primaryStage.setTitle("SoterIA - Sistema de Gestión de Emergencias");
     }
 
+    /**
+     Al cerrar la ventana: libera el chat y cancela las tareas en segundo plano.
+     Las alertas y tareas que aún escriben en los diarios o en el historial
+     se terminan antes de cerrarlos.
+     */
+    @Override
+    public void stop() {
+        if (chatController != null) chatController.shutdown();
+        AlertDispatcher.closeShared();
+        TaskRunner.shared().close();
+        Journal.closeAll();
+        EmergencyRepository.closeShared();
+    }
+
     /**
      Método main para ejecutar la aplicación JavaFX
      */
@@ -1,32 +1,42 @@
 package com.emergencias.ui;
 
-import com.emergencias.alert.AlertSender;
+import com.emergencias.alert.AlertDispatcher;
 import com.emergencias.alert.EmergencyLogger;
+import com.emergencias.detector.EmergencyDetector;
+import com.emergencias.detector.EmergencyDetector.DetectionResult;
 import com.emergencias.model.EmergencyEvent;
 import com.emergencias.services.AIClassifierClient;
-import com.emergencias.services.IAlert;
+import com.emergencias.services.CachedEmergencyClassifier;
+import com.emergencias.services.IEmergencyClassifier;
+import com.emergencias.services.KeywordMatcher;
+import com.emergencias.services.ResponseParser;
+import com.emergencias.services.TaskRunner;
+import com.emergencias.services.VoiceCapture;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
-import javafx.geometry.Insets;
-import javafx.geometry.Pos;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
-import javafx.scene.text.Text;
-import javafx.scene.text.TextFlow;
 
 import java.net.URL;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  Controlador principal del chat conversacional de emergencias.
  */
 public class MainController implements Initializable {
 
+    // Plazo para la respuesta de la IA antes de contestar con el análisis local
+    private static final Duration AI_DEADLINE = EmergencyDetector.DEFAULT_REMOTE_DEADLINE;
+
     // Componentes del chat
     @FXML private VBox chatPanel;
-    @FXML private ScrollPane chatScrollPane;
-    @FXML private VBox chatMessages;
+    @FXML private ListView<ChatMessage> chatList;
     @FXML private TextField messageInput;
     @FXML private Button voiceButton;
     @FXML private Button sendButton;
@@ -35,15 +45,24 @@ public class MainController implements Initializable {
     
     // Servicios
     private AIClassifierClient aiClient;
-    private IAlert alertSender;
+    private IEmergencyClassifier classifier; // aiClient con caché de clasificaciones
+    private EmergencyDetector detector;      // IA y análisis local en paralelo; se crea en segundo plano
+    private AlertDispatcher alerts;
+    private final KeywordMatcher keywords = KeywordMatcher.getDefault();
     private EmergencyLogger logger;
-    private boolean aiAvailable = false;
+    private volatile boolean aiAvailable = false;
     private boolean isRecording = false;
+    private VoiceCapture voiceCapture; // Micrófono + VAD + subida a /stt mientras se habla
+    private final TaskRunner tasks = TaskRunner.shared(); // Hilos virtuales, se cierran con la aplicación
+    private ChatTranscript transcript; // Mensajes; solo las burbujas visibles tienen nodos
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
+        transcript = ChatTranscript.attach(chatList);
         aiClient = new AIClassifierClient("http://localhost:8000");
-        alertSender = new AlertSender();
+        classifier = new CachedEmergencyClassifier(aiClient);
+        voiceCapture = new VoiceCapture(aiClient);
+        alerts = AlertDispatcher.shared();
         logger = new EmergencyLogger();
         
         checkAIAvailability();
@@ -57,22 +76,32 @@ public class MainController implements Initializable {
     }
 
     private void checkAIAvailability() {
-        new Thread(() -> {
-            aiAvailable = aiClient.isAvailable();
+        // El cliente sondea /health en segundo plano; aquí solo se reflejan los cambios
+        aiClient.addAvailabilityListener(available -> Platform.runLater(() -> showAIStatus(available)));
+
+        tasks.run(() -> {
+            boolean available = aiClient.isAvailable();
             Platform.runLater(() -> {
-                if (aiAvailable) {
-                    aiStatusLabel.setText("IA: ✅ Conectada");
-                    aiStatusLabel.setStyle("-fx-text-fill: #10b981;");
-                } else {
-                    aiStatusLabel.setText("IA: ❌ Desconectada");
-                    aiStatusLabel.setStyle("-fx-text-fill: #ef4444;");
+                showAIStatus(available);
+                if (!available) {
                     addBotMessage("⚠️ El servidor de IA no está disponible.\n" +
-                                 "Puedo ayudarte en modo básico.\n\n" +
-                                 "Para activar la IA, ejecuta:\n" +
-                                 "cd python-backend && python -m uvicorn server:app --host 0.0.0.0 --port 8000");
+                         "Puedo ayudarte en modo básico.\n\n" +
+                         "Para activar la IA, ejecuta:\n" +
+                         "cd python-backend && python -m uvicorn server:app --host 0.0.0.0 --port 8000");
                 }
             });
-        }).start();
+        });
+    }
+
+    private void showAIStatus(boolean available) {
+        aiAvailable = available;
+        if (available) {
+            aiStatusLabel.setText("IA: ✅ Conectada");
+            aiStatusLabel.setStyle("-fx-text-fill: #10b981;");
+        } else {
+            aiStatusLabel.setText("IA: ❌ Desconectada");
+            aiStatusLabel.setStyle("-fx-text-fill: #ef4444;");
+        }
     }
 
     @FXML
@@ -88,46 +117,53 @@ public class MainController implements Initializable {
 
     @FXML
     private void handleVoiceInput() {
+        if (isRecording) {
+            voiceCapture.stop(); // Segundo toque: terminar la frase ya
+            return;
+        }
+
         if (!aiAvailable) {
             addBotMessage("❌ El reconocimiento de voz requiere el servidor de IA.\n" +
                          "Por favor, escribe tu emergencia.");
             return;
         }
         
-        if (isRecording) return;
-        
         isRecording = true;
         voiceButton.setText("⏹️");
         voiceButton.setStyle("-fx-background-color: #ef4444;");
-        setStatus("🎤 Grabando... Habla ahora (5 segundos)");
+        setStatus("🎤 Habla ahora...");
         addBotMessage("🎤 Escuchando... Describe tu emergencia.");
         
-        new Thread(() -> {
-            try {
-                String text = recordAndTranscribe();
-                Platform.runLater(() -> {
-                    isRecording = false;
-                    voiceButton.setText("🎤");
-                    voiceButton.setStyle("");
-                    setStatus("Listo");
-                    
-                    if (text != null && !text.isEmpty()) {
-                        addUserMessage(text);
-                        processMessage(text);
-                    } else {
-                        addBotMessage("❌ No se pudo entender el audio. Intenta de nuevo o escribe tu emergencia.");
-                    }
-                });
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    isRecording = false;
-                    voiceButton.setText("🎤");
-                    voiceButton.setStyle("");
-                    setStatus("Error en grabación");
-                    addBotMessage("❌ Error al grabar: " + e.getMessage());
-                });
+        listen().whenComplete((text, error) -> Platform.runLater(() -> {
+            isRecording = false;
+            voiceButton.setText("🎤");
+            voiceButton.setStyle("");
+            if (error != null) {
+                setStatus("Error en grabación");
+                addBotMessage("❌ Error al grabar: " + error.getMessage());
+            } else if (text != null && !text.isEmpty()) {
+                setStatus("Listo");
+                addUserMessage(text);
+                processMessage(text);
+            } else {
+                setStatus("Listo");
+                addBotMessage("❌ No se pudo entender el audio. Intenta de nuevo o escribe tu emergencia.");
             }
-        }).start();
+        }));
+    }
+
+    /**
+     * Escucha una frase con el micrófono (la grabación termina sola al callar) y
+     * devuelve el texto. Si Java no puede abrir el micrófono, graba el backend.
+     */
+    private CompletableFuture<String> listen() {
+        return voiceCapture.start(phase -> Platform.runLater(() ->
+                    setStatus(phase == VoiceCapture.Phase.SPEAKING ? "🎤 Escuchando..." : "⏳ Transcribiendo...")))
+                .thenApply(json -> json == null ? null : ResponseParser.stringField(json, "text"))
+                .exceptionallyCompose(e -> {
+                    System.err.println("Micrófono no disponible (" + e.getMessage() + "), grabando en el servidor");
+                    return tasks.submit(this::recordAndTranscribe);
+                });
     }
 
     private String recordAndTranscribe() {
@@ -142,8 +178,8 @@ public class MainController implements Initializable {
                     .send(request, java.net.http.HttpResponse.BodyHandlers.ofString(java.nio.charset.StandardCharsets.UTF_8));
 
             String body = response.body();
-            if (body.contains("\"error\"")) return null;
-            return AIClassifierClient.extractString(body, "text");
+            if (ResponseParser.stringField(body, "error") != null) return null;
+            return ResponseParser.stringField(body, "text");
         } catch (Exception e) {
             System.err.println("Error en transcripción: " + e.getMessage());
             return null;
@@ -151,89 +187,104 @@ public class MainController implements Initializable {
     }
 
     private void processMessage(String message) {
-        new Thread(() -> {
-            try {
-                if (aiAvailable) {
-                    String jsonResponse = aiClient.classify(message);
-                    Platform.runLater(() -> {
-                        if (jsonResponse != null) {
-                            processAIResponse(jsonResponse);
-                        } else {
-                            processManually(message);
-                        }
-                    });
+        if (!aiAvailable) {
+            processManually(message);
+            return;
+        }
+
+        // La IA y el análisis local compiten dentro del detector: si la IA no
+        // responde en el plazo se contesta con el análisis local y la respuesta
+        // de la IA llega después como refinamiento
+        tasks.run(() -> {
+            // Lo que se contestó primero; ambos runLater se ejecutan en orden en el hilo de JavaFX
+            AtomicReference<DetectionResult> shown = new AtomicReference<>();
+            DetectionResult result = detector().classifyHybrid(message, AI_DEADLINE,
+                    refined -> Platform.runLater(() -> showRefinement(shown.get(), refined)));
+            Platform.runLater(() -> {
+                shown.set(result);
+                if (result.isDetected()) {
+                    showDetection(result, "🔍 **Análisis completado**", true);
                 } else {
-                    Platform.runLater(() -> processManually(message));
+                    processManually(message); // Confirmaciones, cancelaciones y menú de tipos
                 }
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    addBotMessage("❌ Error al procesar: " + e.getMessage());
-                    setStatus("Error");
-                });
-            }
-        }).start();
+            });
+        });
     }
 
-    private void processAIResponse(String jsonResponse) {
-        String[] emergencies = AIClassifierClient.extractEmergencies(jsonResponse);
-        
-        if (emergencies.length > 0) {
-            String primaryEmergency = emergencies[0];
-            String typeName = AIClassifierClient.extractString(primaryEmergency, "type_name");
-            double confidence = AIClassifierClient.extractDouble(primaryEmergency, "confidence");
-            String context = AIClassifierClient.extractString(primaryEmergency, "context");
-            String[] instructions = AIClassifierClient.extractStringArray(primaryEmergency, "instructions");
-            
-            StringBuilder response = new StringBuilder();
-            response.append("🔍 **Análisis completado**\n\n");
-            response.append("Tipo: ").append(typeName).append("\n");
-            response.append("Confianza: ").append(String.format("%.0f%%", confidence * 100)).append("\n");
-            response.append("Contexto: ").append(context).append("\n\n");
-            
-            if (instructions.length > 0) {
-                response.append("📋 **Instrucciones:**\n");
-                for (String instruction : instructions) {
-                    response.append("• ").append(instruction).append("\n");
-                }
+    /**
+     * Detector compartido por los mensajes. Se crea la primera vez que hace
+     * falta, ya en segundo plano, porque carga el modelo local.
+     */
+    private synchronized EmergencyDetector detector() {
+        if (detector == null) {
+            detector = new EmergencyDetector(null, classifier); // Sin usuario: aquí no se usa createEvent
+        }
+        return detector;
+    }
+
+    /**
+     * Muestra la clasificación de la IA que llega después del análisis local.
+     * Si no cambia el tipo ni las instrucciones no se muestra, y solo se
+     * pregunta por el 112 si la primera respuesta no llegó a preguntarlo.
+     */
+    private void showRefinement(DetectionResult shown, DetectionResult refined) {
+        boolean firstDetected = shown != null && shown.isDetected();
+        if (firstDetected
+                && Objects.equals(shown.getTypeName(), refined.getTypeName())
+                && Arrays.equals(shown.getInstructions(), refined.getInstructions())) {
+            return;
+        }
+        showDetection(refined, "🔍 **Análisis actualizado por la IA**", !firstDetected);
+    }
+
+    private void showDetection(DetectionResult result, String title, boolean askToAlert) {
+        StringBuilder response = new StringBuilder();
+        response.append(title).append("\n\n");
+        response.append("Tipo: ").append(result.getTypeName()).append("\n");
+        response.append("Confianza: ").append(String.format("%.0f%%", result.getConfidence() * 100)).append("\n");
+        response.append("Contexto: ").append(result.getContext()).append("\n\n");
+
+        if (result.getInstructions().length > 0) {
+            response.append("📋 **Instrucciones:**\n");
+            for (String instruction : result.getInstructions()) {
+                response.append("• ").append(instruction).append("\n");
             }
-            
-            addBotMessage(response.toString());
+        }
+
+        addBotMessage(response.toString());
+        if (askToAlert) {
             addBotMessage("¿Quieres que envíe una alerta al 112? (responde 'sí' o 'no')");
             setStatus("Esperando confirmación");
-        } else {
-            addBotMessage("No pude identificar una emergencia clara.\n" +
-                         "Por favor, describe con más detalle lo que está pasando.");
-            setStatus("Listo");
         }
     }
 
     private void processManually(String message) {
-        String lowerMessage = message.toLowerCase();
+        KeywordMatcher.Matches matches = keywords.scan(message);
         
-        if (lowerMessage.contains("fuego") || lowerMessage.contains("incendio")) {
+        if (matches.has(keywords.groupId("FIRE"))) {
             addBotMessage("🔥 **Incendio detectado**\n\n" +
                          "Instrucciones:\n" +
                          "• Evacua la zona inmediatamente\n" +
                          "• Llama al 112\n" +
                          "• No uses ascensores\n\n" +
                          "¿Quieres que envíe una alerta al 112?");
-        } else if (lowerMessage.contains("accidente") || lowerMessage.contains("coche")) {
+        } else if (matches.has(keywords.groupId("TRAFFIC"))) {
             addBotMessage("🚗 **Accidente de tráfico detectado**\n\n" +
                          "Instrucciones:\n" +
                          "• Señaliza el lugar del accidente\n" +
                          "• No muevas a los heridos\n" +
                          "• Llama al 112\n\n" +
                          "¿Quieres que envíe una alerta al 112?");
-        } else if (lowerMessage.contains("duele") || lowerMessage.contains("médico")) {
+        } else if (matches.has(keywords.groupId("MEDICAL"))) {
             addBotMessage("🏥 **Emergencia médica detectada**\n\n" +
                          "Instrucciones:\n" +
                          "• Mantén la calma\n" +
                          "• Siéntate o acuéstate\n" +
                          "• Llama al 112\n\n" +
                          "¿Quieres que envíe una alerta al 112?");
-        } else if (lowerMessage.contains("sí") || lowerMessage.contains("si")) {
+        } else if (matches.has(keywords.groupId("CONFIRM"))) {
             sendEmergencyAlert();
-        } else if (lowerMessage.contains("no")) {
+        } else if (matches.has(keywords.groupId("CANCEL"))) {
             addBotMessage("✅ Entendido. Si necesitas ayuda más tarde, aquí estaré.");
         } else {
             addBotMessage("¿Podrías indicarme si es:\n" +
@@ -250,7 +301,7 @@ public class MainController implements Initializable {
         addBotMessage("📤 Enviando alerta al 112...");
         setStatus("Enviando alerta...");
         
-        new Thread(() -> {
+        tasks.run(() -> {
             try {
                 EmergencyEvent event = new EmergencyEvent(
                     "Emergencia reportada por chat",
@@ -262,7 +313,7 @@ public class MainController implements Initializable {
                 // Registrar el evento en el logger
                 logger.logEmergency(event);
                 
-                boolean sent = alertSender.send(event);
+                boolean sent = alerts.dispatch(event).get();
                 
                 Platform.runLater(() -> {
                     if (sent) {
@@ -281,52 +332,15 @@ public class MainController implements Initializable {
                     setStatus("Error");
                 });
             }
-        }).start();
+        });
     }
 
     private void addUserMessage(String message) {
-        HBox messageBox = new HBox();
-        messageBox.setAlignment(Pos.CENTER_RIGHT);
-        messageBox.setPadding(new Insets(5, 0, 5, 50));
-        
-        VBox bubble = new VBox();
-        bubble.setStyle("-fx-background-color: #2563eb; -fx-background-radius: 15; -fx-padding: 10 15;");
-        
-        Text text = new Text(message);
-        text.setStyle("-fx-fill: white; -fx-font-size: 14;");
-        text.setWrappingWidth(300);
-        
-        bubble.getChildren().add(text);
-        messageBox.getChildren().add(bubble);
-        chatMessages.getChildren().add(messageBox);
-        scrollToBottom();
+        transcript.addUser(message);
     }
 
     private void addBotMessage(String message) {
-        HBox messageBox = new HBox();
-        messageBox.setAlignment(Pos.CENTER_LEFT);
-        messageBox.setPadding(new Insets(5, 50, 5, 0));
-        
-        VBox bubble = new VBox();
-        bubble.setStyle("-fx-background-color: #f1f5f9; -fx-background-radius: 15; -fx-padding: 10 15;");
-        
-        TextFlow textFlow = new TextFlow();
-        String[] lines = message.split("\n");
-        
-        for (String line : lines) {
-            Text text = new Text(line + "\n");
-            text.setStyle("-fx-fill: #1e293b; -fx-font-size: 14;");
-            textFlow.getChildren().add(text);
-        }
-        
-        bubble.getChildren().add(textFlow);
-        messageBox.getChildren().add(bubble);
-        chatMessages.getChildren().add(messageBox);
-        scrollToBottom();
-    }
-
-    private void scrollToBottom() {
-        Platform.runLater(() -> chatScrollPane.setVvalue(1.0));
+        transcript.addBot(message);
     }
 
     private void setStatus(String status) {
@@ -0,0 +1,150 @@
+package com.emergencias.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Agrupa las actualizaciones de la interfaz que llegan desde hilos de fondo y
+ * las aplica una vez por pulso de JavaFX.
+ *
+ * Con una respuesta en streaming llegan decenas de tokens por segundo; en vez
+ * de encolar un {@code Platform.runLater} por token, los fragmentos seguidos
+ * para la última burbuja se concatenan y el estado solo conserva el último
+ * valor. Un {@link AnimationTimer} aplica el lote en el siguiente fotograma y
+ * se detiene en cuanto no queda nada pendiente, así que en reposo no cuesta
+ * nada. Las operaciones se aplican en el orden en que se pidieron.
+ */
+final class UiUpdateBatcher {
+
+    private final Consumer<String> appendToLastBot;
+    private final Consumer<String> statusSink;
+    private final Runnable wakeUp;
+
+    private final Object lock = new Object();
+    private List<Object> pending = new ArrayList<>(); // Runnable, StringBuilder (texto) o Status
+    private Status pendingStatus;
+    private boolean awake = false;
+
+    private record Status(String text) {}
+
+    /**
+     * @param appendToLastBot añade texto a la última burbuja del bot (hilo de FX)
+     * @param statusSink      muestra un estado (hilo de FX)
+     * @param wakeUp          programa un {@link #flush()} en el hilo de FX; se llama
+     *                        una sola vez por ráfaga de actualizaciones
+     */
+    UiUpdateBatcher(Consumer<String> appendToLastBot, Consumer<String> statusSink, Runnable wakeUp) {
+        this.appendToLastBot = appendToLastBot;
+        this.statusSink = statusSink;
+        this.wakeUp = wakeUp;
+    }
+
+    /**
+     * Batcher que se vacía en los pulsos de JavaFX mediante un AnimationTimer.
+     */
+    static UiUpdateBatcher onPulse(Consumer<String> appendToLastBot, Consumer<String> statusSink) {
+        PulseDriver driver = new PulseDriver();
+        UiUpdateBatcher batcher = new UiUpdateBatcher(appendToLastBot, statusSink,
+                () -> Platform.runLater(driver::start));
+        driver.batcher = batcher;
+        return batcher;
+    }
+
+    private static final class PulseDriver extends AnimationTimer {
+        private UiUpdateBatcher batcher;
+
+        @Override
+        public void handle(long now) {
+            if (!batcher.flush()) stop();
+        }
+    }
+
+    // ── Desde cualquier hilo ──────────────────────────────────────────────────
+
+    /**
+     * Añade texto a la última burbuja del bot.
+     */
+    void append(String text) {
+        if (text == null || text.isEmpty()) return;
+        boolean wake;
+        synchronized (lock) {
+            Object last = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+            if (last instanceof StringBuilder buffer) {
+                buffer.append(text);
+            } else {
+                pending.add(new StringBuilder(text));
+            }
+            wake = markAwake();
+        }
+        if (wake) wakeUp.run();
+    }
+
+    /**
+     * Cambia el texto de estado; si hay otro pendiente, solo cuenta el último.
+     */
+    void status(String text) {
+        boolean wake;
+        synchronized (lock) {
+            if (pendingStatus != null) pending.remove(pendingStatus);
+            pendingStatus = new Status(text);
+            pending.add(pendingStatus);
+            wake = markAwake();
+        }
+        if (wake) wakeUp.run();
+    }
+
+    /**
+     * Encola una modificación arbitraria (p. ej. crear una burbuja nueva).
+     */
+    void post(Runnable action) {
+        boolean wake;
+        synchronized (lock) {
+            pending.add(action);
+            wake = markAwake();
+        }
+        if (wake) wakeUp.run();
+    }
+
+    private boolean markAwake() {
+        if (awake) return false;
+        awake = true;
+        return true;
+    }
+
+    // ── Hilo de FX ────────────────────────────────────────────────────────────
+
+    /**
+     * Aplica todo lo pendiente. Devuelve false si no había nada; entonces el
+     * batcher queda dormido y la siguiente actualización lo vuelve a despertar.
+     */
+    boolean flush() {
+        List<Object> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                awake = false;
+                return false;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+            pendingStatus = null;
+        }
+        for (Object op : batch) {
+            try {
+                if (op instanceof StringBuilder text) {
+                    appendToLastBot.accept(text.toString());
+                } else if (op instanceof Status status) {
+                    statusSink.accept(status.text());
+                } else {
+                    ((Runnable) op).run();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error actualizando la interfaz: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+}
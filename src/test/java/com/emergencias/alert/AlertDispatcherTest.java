@@ -0,0 +1,124 @@
+package com.emergencias.alert;
+
+import com.emergencias.model.EmergencyEvent;
+import com.emergencias.model.UserData;
+import com.emergencias.services.IAlert;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlertDispatcherTest {
+
+    /**
+     * Canal falso: registra el orden de envío y bloquea los eventos de tipo
+     * "BLOQUEO" hasta que se abre la barrera.
+     */
+    private static final class FakeChannel implements IAlert {
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+
+        @Override
+        public boolean send(EmergencyEvent event) {
+            if (event.getEmergencyType().equals("FALLO")) throw new IllegalStateException("canal caído");
+            if (event.getEmergencyType().startsWith("BLOQUEO")) {
+                blocked.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            sent.add(event.getEmergencyType());
+            return true;
+        }
+
+        @Override
+        public void notifyContacts(UserData userData, EmergencyEvent event) {}
+
+        @Override
+        public String getAlertType() {
+            return "Falso";
+        }
+    }
+
+    private static EmergencyEvent event(String type, int severity) {
+        return new EmergencyEvent(type, "Calle Test", severity, "Usuario Test");
+    }
+
+    @Test
+    @DisplayName("Las alertas salen por gravedad y, a igual gravedad, por orden de llegada")
+    void ordersBySeverityThenArrival() throws Exception {
+        FakeChannel channel = new FakeChannel();
+        try (AlertDispatcher dispatcher = new AlertDispatcher(channel, 1, 0)) {
+            CompletableFuture<Boolean> first = dispatcher.dispatch(event("BLOQUEO", 1));
+            assertTrue(channel.blocked.await(2, TimeUnit.SECONDS));
+
+            CompletableFuture<?>[] queued = {
+                    dispatcher.dispatch(event("leve", 3)),
+                    dispatcher.dispatch(event("grave-a", 7)),
+                    dispatcher.dispatch(event("grave-b", 7)),
+                    dispatcher.dispatch(event("critica", 10))
+            };
+            assertEquals(4, dispatcher.pending());
+
+            channel.gate.countDown();
+            CompletableFuture.allOf(queued).get(2, TimeUnit.SECONDS);
+            assertTrue(first.get(2, TimeUnit.SECONDS));
+            assertEquals(List.of("BLOQUEO", "critica", "grave-a", "grave-b", "leve"), channel.sent);
+        }
+    }
+
+    @Test
+    @DisplayName("Una alerta crítica no espera aunque los trabajadores generales estén ocupados")
+    void criticalAlertBypassesBusyWorkers() throws Exception {
+        FakeChannel channel = new FakeChannel();
+        try (AlertDispatcher dispatcher = new AlertDispatcher(channel, 1)) {
+            dispatcher.dispatch(event("BLOQUEO", 2));
+            assertTrue(channel.blocked.await(2, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> low = dispatcher.dispatch(event("leve", 2));
+
+            CompletableFuture<Boolean> critical = dispatcher.dispatch(event("critica", 10));
+
+            assertTrue(critical.get(2, TimeUnit.SECONDS));
+            assertFalse(low.isDone());
+            channel.gate.countDown();
+            assertTrue(low.get(2, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Cancelar o cerrar retira de la cola las alertas pendientes y los errores llegan al future")
+    void cancelsPendingAndReportsFailures() throws Exception {
+        FakeChannel channel = new FakeChannel();
+        AlertDispatcher dispatcher = new AlertDispatcher(channel, 1, 0);
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> dispatcher.dispatch(event("FALLO", 5)).get(2, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertFalse(dispatcher.dispatch(null).get());
+
+        dispatcher.dispatch(event("BLOQUEO", 5));
+        assertTrue(channel.blocked.await(2, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> withdrawn = dispatcher.dispatch(event("retirada", 5));
+        CompletableFuture<Boolean> dropped = dispatcher.dispatch(event("descartada", 5));
+        withdrawn.cancel(false);
+        assertEquals(1, dispatcher.pending());
+
+        channel.gate.countDown();
+        dispatcher.close();
+        assertThrows(CancellationException.class, () -> dispatcher.dispatch(event("tarde", 10)).join());
+        assertFalse(channel.sent.contains("retirada"));
+        assertFalse(channel.sent.contains("tarde"));
+        assertTrue(dropped.isDone());
+    }
+}
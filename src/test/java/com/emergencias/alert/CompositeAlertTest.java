@@ -0,0 +1,165 @@
+package com.emergencias.alert;
+
+import com.emergencias.alert.CompositeAlert.Delivery;
+import com.emergencias.alert.CompositeAlert.DeliveryReport;
+import com.emergencias.alert.CompositeAlert.Policy;
+import com.emergencias.alert.CompositeAlert.Status;
+import com.emergencias.model.EmergencyEvent;
+import com.emergencias.model.UserData;
+import com.emergencias.services.IAlert;
+import com.emergencias.services.TaskRunner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompositeAlertTest {
+
+    private final TaskRunner runner = new TaskRunner("test-alert-");
+    private final EmergencyEvent event = new EmergencyEvent("FUEGO", "Calle Test", 9, "Usuario Test");
+
+    @AfterEach
+    void tearDown() {
+        runner.close();
+    }
+
+    /**
+     * Canal falso que tarda {@code delayMs} en enviar y en avisar a los contactos.
+     */
+    private static IAlert channel(String name, long delayMs, Supplier<Boolean> result) {
+        return new IAlert() {
+            @Override
+            public boolean send(EmergencyEvent event) {
+                pause(delayMs);
+                return result.get();
+            }
+
+            @Override
+            public void notifyContacts(UserData userData, EmergencyEvent event) {
+                pause(delayMs);
+            }
+
+            @Override
+            public String getAlertType() {
+                return name;
+            }
+        };
+    }
+
+    private static void pause(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("interrumpido", e);
+        }
+    }
+
+    @Test
+    @DisplayName("Con ALL_SUCCESS la latencia es la del canal más lento, no la suma")
+    void fansOutConcurrently() throws Exception {
+        CompositeAlert composite = new CompositeAlert(Policy.ALL_SUCCESS, runner)
+                .register(channel("sms", 300, () -> true))
+                .register(channel("llamada", 300, () -> true))
+                .register(channel("email", 300, () -> true));
+
+        DeliveryReport report = composite.deliver(event).get(2, TimeUnit.SECONDS);
+
+        assertTrue(report.success());
+        assertEquals(List.of("sms", "llamada", "email"),
+                report.deliveries().stream().map(Delivery::channel).toList());
+        assertTrue(report.deliveries().stream().allMatch(Delivery::delivered));
+        assertTrue(report.elapsed().toMillis() < 800, "tardó " + report.elapsed());
+        assertTrue(report.failures().isEmpty());
+
+        long start = System.nanoTime();
+        composite.notifyContacts(null, event);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 800);
+        assertEquals("Alerta multicanal (sms, llamada, email)", composite.getAlertType());
+    }
+
+    @Test
+    @DisplayName("Tiempos agotados, rechazos y excepciones quedan reflejados por canal")
+    void reportsPerChannelFailures() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        IAlert hung = new IAlert() {
+            @Override
+            public boolean send(EmergencyEvent event) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return true;
+            }
+
+            @Override
+            public void notifyContacts(UserData userData, EmergencyEvent event) {}
+
+            @Override
+            public String getAlertType() {
+                return "colgado";
+            }
+        };
+        CompositeAlert composite = new CompositeAlert(Policy.ALL_SUCCESS, runner)
+                .register(channel("ok", 10, () -> true))
+                .register(hung, Duration.ofMillis(200))
+                .register(channel("rechaza", 10, () -> false))
+                .register(channel("roto", 10, () -> { throw new IllegalStateException("sin red"); }));
+
+        DeliveryReport report = composite.deliver(event).get(2, TimeUnit.SECONDS);
+
+        assertFalse(report.success());
+        List<Status> statuses = report.deliveries().stream().map(Delivery::status).toList();
+        assertEquals(List.of(Status.DELIVERED, Status.TIMED_OUT, Status.REJECTED, Status.FAILED), statuses);
+        assertEquals(3, report.failures().size());
+        assertEquals("sin red", report.deliveries().get(3).error().getMessage());
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS), "el canal colgado debe interrumpirse");
+        assertFalse(composite.send(event));
+    }
+
+    @Test
+    @DisplayName("Con FIRST_SUCCESS se completa con el primer canal que entrega")
+    void firstSuccessCompletesEarly() throws Exception {
+        CompositeAlert composite = new CompositeAlert(Policy.FIRST_SUCCESS, runner)
+                .register(channel("lento", 1500, () -> true))
+                .register(channel("falla", 10, () -> false))
+                .register(channel("rapido", 50, () -> true));
+
+        DeliveryReport report = composite.deliver(event).get(1, TimeUnit.SECONDS);
+
+        assertTrue(report.success());
+        assertEquals(Status.PENDING, report.deliveries().get(0).status());
+        assertEquals(Status.DELIVERED, report.deliveries().get(2).status());
+        assertTrue(composite.send(event));
+
+        CompositeAlert empty = new CompositeAlert(Policy.FIRST_SUCCESS, runner);
+        assertFalse(empty.send(event));
+    }
+
+    @Test
+    @DisplayName("Al cerrar se espera a los canales que perdieron la carrera con FIRST_SUCCESS")
+    void closeWaitsForLosingChannels() throws Exception {
+        CountDownLatch slowDone = new CountDownLatch(1);
+        CompositeAlert composite = new CompositeAlert(Policy.FIRST_SUCCESS, runner)
+                .register(channel("rapido", 10, () -> true))
+                .register(channel("lento", 400, () -> {
+                    slowDone.countDown();
+                    return true;
+                }));
+        AlertDispatcher dispatcher = new AlertDispatcher(composite, 1);
+
+        assertTrue(dispatcher.dispatch(event).get(1, TimeUnit.SECONDS));
+        assertEquals(1, slowDone.getCount(), "el canal lento sigue enviando");
+        dispatcher.close();
+
+        assertEquals(0, slowDone.getCount(), "close() debe esperar al canal lento");
+        assertTrue(composite.awaitDeliveries(Duration.ZERO));
+    }
+}
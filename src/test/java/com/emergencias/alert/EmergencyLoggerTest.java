@@ -1,19 +1,38 @@
 package com.emergencias.alert;
 
 import com.emergencias.model.EmergencyEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class EmergencyLoggerTest {
 
+    @TempDir
+    Path dir;
+
+    private EmergencyRepository repository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = new EmergencyRepository(dir.resolve("historial.db"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
     @Test
     @DisplayName("logEmergency devuelve un UUID válido para un evento válido")
     void logEmergencyReturnsValidUuid() {
-        EmergencyLogger logger = new EmergencyLogger();
+        EmergencyLogger logger = new EmergencyLogger(repository);
         EmergencyEvent event = new EmergencyEvent("Incendio", "Calle Test " + System.nanoTime(), 4, "TestUser");
 
         String id = logger.logEmergency(event);
@@ -25,7 +44,7 @@ class EmergencyLoggerTest {
     @Test
     @DisplayName("logEmergency rechaza eventos null con IllegalArgumentException")
     void logEmergencyRejectsNull() {
-        EmergencyLogger logger = new EmergencyLogger();
+        EmergencyLogger logger = new EmergencyLogger(repository);
         assertThrows(IllegalArgumentException.class, () -> logger.logEmergency(null));
     }
 }
@@ -0,0 +1,166 @@
+package com.emergencias.alert;
+
+import com.emergencias.alert.EmergencyRepository.EmergencyRecord;
+import com.emergencias.alert.EmergencyRepository.HourlyCount;
+import com.emergencias.model.EmergencyEvent;
+import com.emergencias.model.UserFeedback;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmergencyRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 10, 0);
+
+    @TempDir
+    Path dir;
+
+    private EmergencyRepository repository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = new EmergencyRepository(dir.resolve("db/historial.db"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    private static EmergencyRecord record(String id, String type, int severity, LocalDateTime at) {
+        return new EmergencyRecord(id, new EmergencyEvent(type, "Calle " + id, severity, "Usuario " + id, at));
+    }
+
+    @Test
+    @DisplayName("Guarda emergencias y feedback y los recupera por fechas, tipo y gravedad")
+    void savesAndQueriesByRange() throws Exception {
+        repository.saveAll(List.of(
+                record("a", "FUEGO", 8, T0.plusMinutes(5)),
+                record("b", "MEDICA", 3, T0.plusMinutes(20)),
+                record("c", "FUEGO", 10, T0.plusMinutes(70)),
+                record("d", "TRAFICO", 6, T0.plusHours(3))));
+        repository.saveFeedback(new UserFeedback("a", 5, "Muy rápido", T0.plusHours(1)));
+        repository.saveFeedback(new UserFeedback("a", 4, "Bien", T0.plusHours(2)));
+
+        List<EmergencyRecord> firstHours = repository.findBetween(T0, T0.plusHours(2), 10);
+        assertEquals(List.of("a", "b", "c"), firstHours.stream().map(EmergencyRecord::id).toList());
+        EmergencyEvent a = firstHours.get(0).event();
+        assertEquals("FUEGO", a.getEmergencyType());
+        assertEquals("Calle a", a.getLocation());
+        assertEquals(8, a.getSeverityLevel());
+        assertEquals(T0.plusMinutes(5), a.getTimestamp());
+
+        assertEquals(List.of("a", "c"), repository.findByType("FUEGO", T0, T0.plusDays(1), 10).stream()
+                .map(EmergencyRecord::id).toList());
+        assertEquals(List.of("d", "c", "a"), repository.findSevere(6, T0, T0.plusDays(1), 10).stream()
+                .map(EmergencyRecord::id).toList());
+        assertEquals(1, repository.findBetween(T0, T0.plusDays(1), 1).size());
+
+        List<UserFeedback> feedback = repository.findFeedback("a");
+        assertEquals(2, feedback.size());
+        assertEquals(5, feedback.get(0).getSatisfactionRating());
+        assertEquals(T0.plusHours(2), feedback.get(1).getFeedbackTime());
+
+        try (Connection raw = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("db/historial.db"));
+             ResultSet rs = raw.createStatement().executeQuery("PRAGMA journal_mode")) {
+            assertEquals("wal", rs.getString(1));
+        }
+    }
+
+    @Test
+    @DisplayName("Conteos por tipo y hora y percentil 95 de gravedad")
+    void aggregatesPerHour() throws Exception {
+        List<EmergencyRecord> records = new ArrayList<>();
+        for (int i = 0; i < 19; i++) records.add(record("f" + i, "FUEGO", 2, T0.plusMinutes(i)));
+        records.add(record("f19", "FUEGO", 9, T0.plusMinutes(30)));
+        records.add(record("m0", "MEDICA", 5, T0.plusMinutes(45)));
+        records.add(record("m1", "MEDICA", 7, T0.plusHours(1).plusMinutes(10)));
+        repository.saveAll(records);
+        repository.save("m2", new EmergencyEvent("MEDICA", "Plaza", 7, "Usuario", T0.plusHours(1).plusMinutes(50)));
+
+        assertEquals(List.of(
+                        new HourlyCount(T0, "FUEGO", 20),
+                        new HourlyCount(T0, "MEDICA", 1),
+                        new HourlyCount(T0.plusHours(1), "MEDICA", 2)),
+                repository.countsPerTypePerHour(T0, T0.plusHours(2)));
+        assertEquals(List.of(new HourlyCount(T0.plusHours(1), "MEDICA", 2)),
+                repository.countsPerTypePerHour(T0.plusHours(1), T0.plusHours(1).plusMinutes(1)));
+
+        assertEquals(23, repository.count(T0, T0.plusHours(2)));
+        assertEquals(3, repository.count(T0.plusMinutes(30), T0.plusHours(1).plusMinutes(20)));
+        assertEquals(OptionalInt.of(7), repository.p95Severity(T0, T0.plusHours(2)));
+        assertEquals(OptionalInt.of(2), repository.severityPercentile(T0, T0.plusHours(1), 0.5));
+        assertEquals(OptionalInt.of(9), repository.p95Severity(T0.plusMinutes(19), T0.plusMinutes(40)));
+        assertEquals(OptionalInt.empty(), repository.p95Severity(T0.minusDays(1), T0));
+    }
+
+    @Test
+    @DisplayName("Los agregados sobre el resumen horario coinciden con los eventos en cualquier intervalo")
+    void aggregatesMatchRawEvents() throws Exception {
+        Random random = new Random(42);
+        String[] types = {"FUEGO", "MEDICA", "TRAFICO", "SEGURIDAD"};
+        List<EmergencyRecord> records = new ArrayList<>();
+        int[] minuteOf = new int[25_000];
+        int[] severityOf = new int[minuteOf.length];
+        for (int i = 0; i < minuteOf.length; i++) {
+            minuteOf[i] = random.nextInt(48 * 60);
+            severityOf[i] = 1 + random.nextInt(10);
+            records.add(record("e" + i, types[i % types.length], severityOf[i], T0.plusMinutes(minuteOf[i])));
+        }
+        repository.saveAll(records);
+
+        for (int q = 0; q < 20; q++) {
+            int from = random.nextInt(48 * 60), to = from + random.nextInt(48 * 60 - from + 1);
+            long expected = 0;
+            int[] histogram = new int[11];
+            for (int i = 0; i < minuteOf.length; i++) {
+                if (minuteOf[i] >= from && minuteOf[i] < to) {
+                    expected++;
+                    histogram[severityOf[i]]++;
+                }
+            }
+            assertEquals(expected, repository.count(T0.plusMinutes(from), T0.plusMinutes(to)));
+
+            OptionalInt p95 = repository.p95Severity(T0.plusMinutes(from), T0.plusMinutes(to));
+            if (expected == 0) {
+                assertTrue(p95.isEmpty());
+            } else {
+                long rank = (long) Math.ceil(0.95 * expected), seen = 0;
+                int severity = 0;
+                while (seen < rank) seen += histogram[++severity];
+                assertEquals(OptionalInt.of(severity), p95);
+            }
+        }
+        long total = repository.countsPerTypePerHour(T0, T0.plusDays(2)).stream()
+                .mapToLong(HourlyCount::count).sum();
+        assertEquals(minuteOf.length, total);
+    }
+
+    @Test
+    @DisplayName("EmergencyLogger guarda también en el historial SQLite")
+    void loggerWritesToRepository() throws Exception {
+        EmergencyLogger logger = new EmergencyLogger(repository);
+        EmergencyEvent event = new EmergencyEvent("Incendio", "Calle Test", 7, "TestUser");
+
+        String id = logger.logEmergency(event);
+
+        List<EmergencyRecord> stored = repository.findByType("Incendio",
+                event.getTimestamp().minusMinutes(1), event.getTimestamp().plusMinutes(1), 10);
+        assertEquals(1, stored.size());
+        assertEquals(id, stored.get(0).id());
+    }
+}
@@ -0,0 +1,111 @@
+package com.emergencias.alert;
+
+import com.emergencias.alert.Journal.FlushPolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Los registros concurrentes llegan enteros y se vuelcan en grupo")
+    void groupCommitsConcurrentAppends() throws Exception {
+        Path file = dir.resolve("sub/alertas.log");
+        int writers = 32, perWriter = 50;
+        long forces;
+        try (Journal journal = new Journal(file, FlushPolicy.always());
+             ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Void>> tasks = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int id = w;
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < perWriter; i++) {
+                        try {
+                            journal.write("escritor-" + id + " registro-" + i + " " + "x".repeat(100) + "\n");
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }
+                }, pool));
+            }
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture<?>[]::new)).join();
+            forces = journal.forceCount();
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(writers * perWriter, lines.size());
+        Set<String> unique = new HashSet<>(lines);
+        assertEquals(writers * perWriter, unique.size());
+        assertTrue(lines.stream().allMatch(l -> l.matches("escritor-\\d+ registro-\\d+ x{100}")));
+        assertTrue(forces > 0 && forces < writers * perWriter, "force() por lote, no por registro: " + forces);
+    }
+
+    @Test
+    @DisplayName("Con volcado periódico se confirma sin esperar al disco y se conserva el orden")
+    void periodicPolicyKeepsOrder() throws Exception {
+        Path file = dir.resolve("historial.log");
+        Files.writeString(file, "previo\n");
+        Journal journal = new Journal(file, FlushPolicy.every(Duration.ofMillis(50)));
+        for (int i = 0; i < 100; i++) journal.append("linea " + i + "\n");
+        journal.append("ultima\n").join();
+        Thread.sleep(200);
+        assertTrue(journal.forceCount() >= 1, "el volcado periódico debe llegar aunque no haya más registros");
+        journal.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals("previo", lines.get(0));
+        assertEquals("linea 0", lines.get(1));
+        assertEquals("linea 99", lines.get(100));
+        assertEquals("ultima", lines.get(101));
+    }
+
+    @Test
+    @DisplayName("Un registro vacío al final del lote no impide escribir los anteriores")
+    void writesBatchEndingWithEmptyRecord() throws Exception {
+        Path file = dir.resolve("vacio.log");
+        try (Journal journal = new Journal(file, FlushPolicy.always())) {
+            List<CompletableFuture<Void>> batch = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                batch.add(journal.append("registro " + i + "\n"));
+                batch.add(journal.append(""));
+            }
+            CompletableFuture.allOf(batch.toArray(CompletableFuture<?>[]::new)).join();
+        }
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(50, lines.size());
+        assertEquals("registro 49", lines.get(49));
+    }
+
+    @Test
+    @DisplayName("Tras cerrar, anexar falla con IOException")
+    void rejectsAppendsAfterClose() throws Exception {
+        Journal journal = new Journal(dir.resolve("cerrado.log"), FlushPolicy.onClose());
+        journal.write("dentro\n");
+        journal.close();
+        journal.close();
+
+        assertThrows(IOException.class, () -> journal.write("fuera\n"));
+        assertEquals(List.of("dentro"), Files.readAllLines(dir.resolve("cerrado.log")));
+        assertThrows(IllegalArgumentException.class, () -> FlushPolicy.every(Duration.ZERO));
+    }
+}
@@ -3,10 +3,20 @@ package com.emergencias.detector;
 import com.emergencias.detector.EmergencyDetector.DetectionResult;
 import com.emergencias.model.EmergencyEvent;
 import com.emergencias.model.UserData;
+import com.emergencias.services.ClassifyResponse;
+import com.emergencias.services.IEmergencyClassifier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class EmergencyDetectorTest {
@@ -30,6 +40,8 @@ class EmergencyDetectorTest {
         assertTrue(incendio.isDetected());
         assertEquals("Incendio", incendio.getTypeName());
         assertTrue(fuego.getInstructions().length > 0);
+        assertEquals("un incendio en la cocina", fuego.getContext());
+        assertEquals("un incendio", incendio.getContext());
     }
 
     @Test
@@ -56,6 +68,64 @@ class EmergencyDetectorTest {
         assertEquals(0.0, result.getConfidence());
     }
 
+    @Test
+    @DisplayName("El modelo local aporta una confianza real al fallback manual")
+    void fallbackReportsLocalConfidence() {
+        DetectionResult fuego = detector.classifyEmergency("hay fuego en la cocina");
+        assertTrue(fuego.getConfidence() > 0.5, "confianza: " + fuego.getConfidence());
+
+        UserData user = new UserData("Test User", "600123456", "Ninguna", "Familiar 600000000");
+        EmergencyDetector keywordsOnly = new EmergencyDetector(user, null, null);
+        DetectionResult sinModelo = keywordsOnly.classifyEmergency("hay fuego en la cocina");
+        assertEquals("Incendio", sinModelo.getTypeName());
+        assertEquals(0.0, sinModelo.getConfidence());
+    }
+
+    @Test
+    @DisplayName("Híbrido: si la IA responde dentro del plazo se usa su resultado sin consultar /health")
+    void hybridUsesFastAIResult() {
+        SlowClassifier ai = new SlowClassifier(0);
+        EmergencyDetector hybrid = new EmergencyDetector(testUser(), ai, null);
+
+        DetectionResult result = hybrid.classifyHybrid("hay fuego en la cocina", Duration.ofSeconds(2), null);
+
+        assertEquals("Incendio en cocina (IA)", result.getTypeName());
+        assertEquals(0, ai.availabilityChecks.get());
+    }
+
+    @Test
+    @DisplayName("Híbrido: si la IA no llega a tiempo se devuelve el local y después el refinado")
+    void hybridReturnsLocalThenRefines() throws Exception {
+        SlowClassifier ai = new SlowClassifier(300);
+        EmergencyDetector hybrid = new EmergencyDetector(testUser(), ai, null);
+        CountDownLatch refinedLatch = new CountDownLatch(1);
+        AtomicReference<DetectionResult> refined = new AtomicReference<>();
+
+        long start = System.nanoTime();
+        DetectionResult first = hybrid.classifyHybrid("hay fuego en la cocina", Duration.ofMillis(50), r -> {
+            refined.set(r);
+            refinedLatch.countDown();
+        });
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("Incendio", first.getTypeName());
+        assertTrue(elapsedMs < 250, "tardó " + elapsedMs + " ms");
+        assertTrue(refinedLatch.await(5, TimeUnit.SECONDS));
+        assertEquals("Incendio en cocina (IA)", refined.get().getTypeName());
+    }
+
+    @Test
+    @DisplayName("Híbrido: un fallo de la IA dentro del plazo devuelve el resultado local")
+    void hybridFallsBackOnAIFailure() {
+        SlowClassifier ai = new SlowClassifier(0);
+        ai.fail = true;
+        EmergencyDetector hybrid = new EmergencyDetector(testUser(), ai, null);
+
+        DetectionResult result = hybrid.classifyEmergency("he tenido un accidente con el coche");
+
+        assertEquals("Accidente de tráfico", result.getTypeName());
+    }
+
     @Test
     @DisplayName("isValidSeverity respeta los límites [1,10]")
     void validatesSeverityBounds() {
@@ -81,4 +151,42 @@ class EmergencyDetectorTest {
         assertEquals("Incendio", eventReal.getEmergencyType());
         assertEquals(7, eventReal.getSeverityLevel());
     }
+
+    private static UserData testUser() {
+        return new UserData("Test User", "600123456", "Ninguna", "Familiar 600000000");
+    }
+
+    /**
+     * Clasificador remoto simulado que responde tras un retardo.
+     */
+    private static class SlowClassifier implements IEmergencyClassifier {
+        final AtomicInteger availabilityChecks = new AtomicInteger();
+        final long delayMs;
+        boolean fail = false;
+
+        SlowClassifier(long delayMs) {
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public String classify(String text) {
+            return null;
+        }
+
+        @Override
+        public CompletableFuture<ClassifyResponse> classifyDetailedAsync(String text) {
+            return CompletableFuture.supplyAsync(() -> {
+                if (fail) throw new IllegalStateException("backend caído");
+                ClassifyResponse.Emergency fire = new ClassifyResponse.Emergency(
+                        "FIRE", "Incendio en cocina (IA)", 0.97, "un incendio en la cocina", List.of("Tape la sarten"));
+                return new ClassifyResponse(8, text, List.of(fire));
+            }, CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public boolean isAvailable() {
+            availabilityChecks.incrementAndGet();
+            return true;
+        }
+    }
 }
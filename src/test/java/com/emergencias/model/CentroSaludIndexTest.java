@@ -0,0 +1,128 @@
+package com.emergencias.model;
+
+import com.emergencias.model.CentroSaludIndex.Region;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CentroSaludIndexTest {
+
+    private static List<CentroSalud> centros;
+    private static CentroSaludIndex index;
+
+    @BeforeAll
+    static void setUp() {
+        centros = CentroSaludUtils.cargarCentros("/CentrosdeSaludMurcia.json");
+        index = CentroSaludIndex.build(centros, Region.MURCIA);
+    }
+
+    @Test
+    @DisplayName("Indexa solo los centros con coordenadas válidas")
+    void indexesCentresWithCoordinates() {
+        assertNotNull(centros);
+        long conCoordenadas = centros.stream()
+                .filter(c -> c.getLatitud() != null && c.getLongitud() != null)
+                .count();
+        assertEquals(conCoordenadas, index.size());
+    }
+
+    @Test
+    @DisplayName("Coordenadas UTM e invertidas se normalizan a grados dentro de Murcia")
+    void normalizesCoordinates() {
+        // Fortuna (UTM 30N)
+        double[] utm = CentroSaludIndex.parsearCoordenadas("4227950", "664326", Region.MURCIA);
+        assertEquals(38.18, utm[0], 0.05);
+        assertEquals(-1.12, utm[1], 0.05);
+
+        // Cehegín (lat/lon invertidos en el JSON)
+        double[] invertidas = CentroSaludIndex.parsearCoordenadas("-1.7953087", "38.0927154", Region.MURCIA);
+        assertEquals(38.0927154, invertidas[0], 1e-9);
+        assertEquals(-1.7953087, invertidas[1], 1e-9);
+
+        assertArrayEquals(new double[]{37.98, -1.13},
+                CentroSaludIndex.parsearCoordenadas("37,98", "-1,13", Region.MURCIA), 1e-9);
+        assertNull(CentroSaludIndex.parsearCoordenadas("abc", "1.0", Region.MURCIA));
+        assertNull(CentroSaludIndex.parsearCoordenadas(null, "1.0", Region.MURCIA));
+    }
+
+    @Test
+    @DisplayName("El huso UTM sale de la región del dataset y se descarta lo que cae fuera")
+    void usesRegionZoneAndBounds() {
+        // Santiago de Compostela (UTM 29N): con el huso de Galicia cae en su sitio
+        Region galicia = new Region("Galicia", 29, 41.8, 43.8, -9.3, -6.7);
+        double[] santiago = CentroSaludIndex.parsearCoordenadas("4747000", "537000", galicia);
+        assertEquals(42.87, santiago[0], 0.05);
+        assertEquals(-8.55, santiago[1], 0.05);
+
+        // Las mismas coordenadas leídas con el huso de Murcia quedan fuera de la región
+        assertNull(CentroSaludIndex.parsearCoordenadas("4747000", "537000", Region.MURCIA));
+        // Ni los centros de Murcia ni sus grados caen dentro de otra región
+        assertNull(CentroSaludIndex.parsearCoordenadas("4227950", "664326", galicia));
+        assertNull(CentroSaludIndex.parsearCoordenadas("42.87", "-8.55", Region.MURCIA));
+
+        assertThrows(IllegalArgumentException.class, () -> new Region("X", 0, 1, 2, 1, 2));
+        assertThrows(IllegalArgumentException.class, () -> new Region("X", 30, 2, 1, 1, 2));
+    }
+
+    @Test
+    @DisplayName("nearest() coincide con la búsqueda por fuerza bruta")
+    void nearestMatchesBruteForce() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            double lat = 37.3 + random.nextDouble() * 1.5;
+            double lon = -2.3 + random.nextDouble() * 1.7;
+
+            List<CentroSaludIndex.CentroCercano> esperado = bruteForce(lat, lon);
+            List<CentroSaludIndex.CentroCercano> obtenido = index.nearest(lat, lon, 3);
+
+            assertEquals(3, obtenido.size());
+            for (int j = 0; j < 3; j++) {
+                assertEquals(esperado.get(j).getDistanciaKm(), obtenido.get(j).getDistanciaKm(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("withinRadius() devuelve solo centros dentro del radio, ordenados")
+    void withinRadiusFiltersAndSorts() {
+        double lat = 37.9922, lon = -1.1307; // Murcia capital
+        List<CentroSaludIndex.CentroCercano> cercanos = index.withinRadius(lat, lon, 10);
+
+        long esperados = bruteForce(lat, lon).stream().filter(c -> c.getDistanciaKm() <= 10).count();
+        assertEquals(esperados, cercanos.size());
+        assertFalse(cercanos.isEmpty());
+        for (int i = 1; i < cercanos.size(); i++) {
+            assertTrue(cercanos.get(i - 1).getDistanciaKm() <= cercanos.get(i).getDistanciaKm());
+        }
+        assertEquals(2, index.withinRadius(lat, lon, 10, 2).size());
+    }
+
+    @Test
+    @DisplayName("Consultas sobre índice vacío o con k no positivo devuelven lista vacía")
+    void handlesEmptyInputs() {
+        CentroSaludIndex vacio = CentroSaludIndex.build(null, Region.MURCIA);
+        assertEquals(0, vacio.size());
+        assertTrue(vacio.nearest(38, -1, 3).isEmpty());
+        assertTrue(index.nearest(38, -1, 0).isEmpty());
+        assertTrue(index.withinRadius(38, -1, -1).isEmpty());
+    }
+
+    private static List<CentroSaludIndex.CentroCercano> bruteForce(double lat, double lon) {
+        return centros.stream()
+                .map(c -> {
+                    double[] ll = CentroSaludIndex.parsearCoordenadas(c.getLatitud(), c.getLongitud(), Region.MURCIA);
+                    if (ll == null) return null;
+                    return new CentroSaludIndex.CentroCercano(c,
+                            CentroSaludIndex.calcularDistancia(lat, lon, ll[0], ll[1]));
+                })
+                .filter(c -> c != null)
+                .sorted(Comparator.comparingDouble(CentroSaludIndex.CentroCercano::getDistanciaKm))
+                .toList();
+    }
+}
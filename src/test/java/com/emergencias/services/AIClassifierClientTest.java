@@ -1,8 +1,25 @@
 package com.emergencias.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class AIClassifierClientTest {
@@ -24,6 +41,19 @@ class AIClassifierClientTest {
         assertNull(client.classify("hay un incendio"));
     }
 
+    @Test
+    @DisplayName("Una sonda de /health fallida cuenta como un fallo, no abre los breakers por sí sola")
+    void failedHealthProbeDoesNotTripBreakers() {
+        AIClassifierClient client = new AIClassifierClient(DEAD_URL);
+
+        assertFalse(client.isAvailable());
+
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker("classify").getState());
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker("tts").getState());
+        assertTrue(client.getCircuitBreaker("classify").getFailureRate() > 0);
+        client.close();
+    }
+
     @Test
     @DisplayName("Circuit breaker abre tras fallos consecutivos: isAvailable() rápido sin reintentos")
     void circuitBreakerOpensAfterConsecutiveFailures() {
@@ -48,10 +78,11 @@ class AIClassifierClientTest {
     void classifyFastFailsWhenCircuitOpen() {
         AIClassifierClient client = new AIClassifierClient(DEAD_URL);
 
-        // Abrir el breaker
-        client.isAvailable();
-        client.isAvailable();
+        // Abrir el breaker: la sonda de /health y dos peticiones fallidas alcanzan el umbral
         client.isAvailable();
+        client.classify("texto de prueba");
+        client.classify("texto de prueba");
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreaker("classify").getState());
 
         long start = System.currentTimeMillis();
         String result = client.classify("texto de prueba");
@@ -62,42 +93,401 @@ class AIClassifierClientTest {
     }
 
     @Test
-    @DisplayName("extractString extrae valor de clave simple")
-    void extractStringWorksOnSimpleKey() {
-        String json = "{\"type\":\"fire\",\"type_name\":\"Incendio\"}";
-        assertEquals("fire", AIClassifierClient.extractString(json, "type"));
-        assertEquals("Incendio", AIClassifierClient.extractString(json, "type_name"));
+    @DisplayName("classifyAsync() completa con null (no con excepción) cuando el servidor no existe")
+    void classifyAsyncCompletesWithNullWhenServerDown() throws Exception {
+        AIClassifierClient client = new AIClassifierClient(DEAD_URL);
+        CompletableFuture<String> future = client.classifyAsync("hay un incendio");
+
+        assertNull(future.get(10, TimeUnit.SECONDS));
+        assertFalse(future.isCompletedExceptionally());
+    }
+
+    @Test
+    @DisplayName("Los reintentos asíncronos no ocupan el hilo que llama")
+    void classifyAsyncReturnsImmediately() {
+        AIClassifierClient client = new AIClassifierClient(DEAD_URL);
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<String> future = client.classifyAsync("texto de prueba");
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed < 200, "classifyAsync no debe bloquear (<200 ms), fue: " + elapsed + " ms");
+        assertTrue(future.cancel(true));
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    @DisplayName("Cada endpoint tiene su propio breaker: un TTS caído no bloquea la clasificación")
+    void breakersArePerEndpoint() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/tts", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.createContext("/classify", exchange -> {
+            byte[] body = "{\"priority\":8,\"corrected_text\":\"hay fuego\",\"emergencies\":[]}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            AIClassifierClient client = new AIClassifierClient("http://localhost:" + server.getAddress().getPort());
+            for (int i = 0; i < 3; i++) assertNull(client.synthesize("hola", "neutral"));
+
+            assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreaker("tts").getState());
+            assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker("classify").getState());
+            assertNotNull(client.classify("hay fuego"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("Cancelar una petición en curso no cuenta como fallo del endpoint")
+    void cancelledRequestsDoNotCountAsFailures() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        CountDownLatch received = new CountDownLatch(3);
+        server.createContext("/tts", exchange -> {
+            received.countDown();
+            try {
+                Thread.sleep(2_000);
+            } catch (InterruptedException ignored) {
+            }
+            exchange.close();
+        });
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.start();
+        try {
+            AIClassifierClient client = new AIClassifierClient("http://localhost:" + server.getAddress().getPort());
+            List<CompletableFuture<byte[]>> pending = new ArrayList<>();
+            for (int i = 0; i < 3; i++) pending.add(client.synthesizeAsync("hola", "neutral"));
+            assertTrue(received.await(2, TimeUnit.SECONDS));
+            for (CompletableFuture<byte[]> future : pending) assertTrue(future.cancel(true));
+
+            CircuitBreaker tts = client.getCircuitBreaker("tts");
+            assertEquals(CircuitBreaker.State.CLOSED, tts.getState());
+            assertEquals(0.0, tts.getFailureRate());
+        } finally {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("classifyBatch trocea la entrada, solapa bloques y conserva el orden")
+    void classifyBatchChunksAndPreservesOrder() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        server.setExecutor(pool);
+        server.createContext("/classify/batch", exchange -> {
+            requests.incrementAndGet();
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                // Eco: cada texto vuelve como corrected_text para comprobar el orden
+                JsonNode texts = new ObjectMapper().readTree(exchange.getRequestBody()).get("texts");
+                StringBuilder body = new StringBuilder("{\"results\": [");
+                for (int i = 0; i < texts.size(); i++) {
+                    if (i > 0) body.append(',');
+                    body.append("{\"priority\": 5, \"corrected_text\": \"")
+                        .append(texts.get(i).asText()).append("\", \"emergencies\": []}");
+                }
+                body.append("]}");
+                Thread.sleep(50);
+                byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        });
+        server.start();
+        try {
+            AIClassifierClient client = new AIClassifierClient("http://localhost:" + server.getAddress().getPort());
+            List<String> texts = new ArrayList<>();
+            for (int i = 0; i < 300; i++) texts.add("texto " + i);
+
+            List<ClassifyResponse> results = client.classifyBatchAsync(texts).get(30, TimeUnit.SECONDS);
+
+            assertEquals(300, results.size());
+            for (int i = 0; i < 300; i++) assertEquals("texto " + i, results.get(i).correctedText());
+            assertEquals(5, requests.get(), "300 textos en bloques de 64");
+            assertTrue(maxConcurrent.get() > 1, "los bloques deberían viajar en paralelo");
+            assertTrue(maxConcurrent.get() <= 4);
+            assertTrue(client.classifyBatch(List.of()).isEmpty());
+        } finally {
+            server.stop(0);
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("chatStream entrega tokens y frases según llegan y devuelve la respuesta completa")
+    void chatStreamDeliversTokensAsTheyArrive() throws Exception {
+        CountDownLatch firstSentenceSeen = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/chat/stream", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                writeLine(out, "{\"type\": \"token\", \"text\": \"Mantenga la calma.\"}");
+                writeLine(out, "{\"type\": \"token\", \"text\": \" ¿Respira\"}");
+                // El resto no se envía hasta que el cliente ha visto la primera frase
+                if (!firstSentenceSeen.await(5, TimeUnit.SECONDS)) throw new IOException("sin streaming");
+                writeLine(out, "{\"type\": \"token\", \"text\": \"?\"}");
+                writeLine(out, "{\"type\": \"done\", \"model_used\": \"test-model\"}");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+        try {
+            AIClassifierClient client = new AIClassifierClient("http://localhost:" + server.getAddress().getPort());
+            List<String> tokens = new CopyOnWriteArrayList<>();
+            List<String> sentences = new CopyOnWriteArrayList<>();
+
+            ChatResponse response = client.chatStreamAsync("hola", "", new ChatStreamListener() {
+                @Override
+                public void onToken(String text) {
+                    tokens.add(text);
+                }
+
+                @Override
+                public void onSentence(String sentence) {
+                    sentences.add(sentence);
+                    firstSentenceSeen.countDown();
+                }
+            }).get(10, TimeUnit.SECONDS);
+
+            assertEquals(List.of("Mantenga la calma.", " ¿Respira", "?"), tokens);
+            assertEquals(List.of("Mantenga la calma.", "¿Respira?"), sentences);
+            assertTrue(response.hasText());
+            assertEquals("Mantenga la calma. ¿Respira?", response.response());
+            assertEquals("test-model", response.modelUsed());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("chatStream recurre a /chat si el backend no tiene /chat/stream")
+    void chatStreamFallsBackToChat() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/chat", exchange -> {
+            boolean stream = exchange.getRequestURI().getPath().equals("/chat/stream");
+            byte[] bytes = (stream ? "{\"detail\": \"Not Found\"}"
+                    : "{\"success\": true, \"response\": \"Hola. Le escucho.\", \"model_used\": \"m\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(stream ? 404 : 200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        try {
+            AIClassifierClient client = new AIClassifierClient("http://localhost:" + server.getAddress().getPort());
+            List<String> sentences = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+
+            ChatResponse response = client.chatStream("hola", "", new ChatStreamListener() {
+                @Override
+                public void onToken(String token) {
+                    text.append(token);
+                }
+
+                @Override
+                public void onSentence(String sentence) {
+                    sentences.add(sentence);
+                }
+            });
+
+            assertEquals("Hola. Le escucho.", response.response());
+            assertEquals("Hola. Le escucho.", text.toString());
+            assertEquals(List.of("Hola.", "Le escucho."), sentences);
+        } finally {
+            server.stop(0);
+        }
     }
 
     @Test
-    @DisplayName("extractString devuelve null cuando la clave no existe")
-    void extractStringReturnsNullForMissingKey() {
-        assertNull(AIClassifierClient.extractString("{\"a\":\"b\"}", "missing"));
+    @DisplayName("startTranscription envía el audio troceado mientras se escribe")
+    void streamsAudioToStt() throws Exception {
+        CompletableFuture<String> received = new CompletableFuture<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/stt", exchange -> {
+            String encoding = exchange.getRequestHeaders().getFirst("Transfer-encoding");
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1);
+            received.complete(encoding + "|" + body);
+            byte[] bytes = "{\"success\": true, \"text\": \"hola\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        try {
+            AIClassifierClient client = new AIClassifierClient("http://localhost:" + server.getAddress().getPort());
+            SpeechUpload upload = client.startTranscription(16000);
+            byte[] frame = new byte[640];
+            for (int i = 0; i < 20; i++) {
+                java.util.Arrays.fill(frame, (byte) ('a' + i));
+                upload.write(frame, 0, frame.length);
+            }
+            assertFalse(received.isDone(), "el servidor espera al final del cuerpo");
+
+            assertEquals("{\"success\": true, \"text\": \"hola\"}", upload.finish().get(10, TimeUnit.SECONDS));
+            String[] parts = received.get(5, TimeUnit.SECONDS).split("\\|", 2);
+            assertEquals("chunked", parts[0]);
+            String body = parts[1];
+            assertTrue(body.contains("name=\"sample_rate\"\r\n\r\n16000\r\n"));
+            int audioStart = body.indexOf("\r\n\r\n", body.indexOf("name=\"audio\"")) + 4;
+            int audioEnd = body.lastIndexOf("\r\n--");
+            assertEquals(20 * 640, audioEnd - audioStart);
+            assertEquals('a', body.charAt(audioStart));
+            assertEquals('t', body.charAt(audioEnd - 1));
+        } finally {
+            server.stop(0);
+        }
     }
 
     @Test
-    @DisplayName("extractDouble extrae confidence correctamente")
-    void extractDoubleExtractsConfidence() {
-        String json = "{\"confidence\":0.87}";
-        assertEquals(0.87, AIClassifierClient.extractDouble(json, "confidence"), 0.001);
+    @DisplayName("analyzeVoice lanza /stt y /analyze-emotion en paralelo y une los resultados")
+    void analyzeVoiceRunsBothRequestsConcurrently() throws Exception {
+        CountDownLatch bothArrived = new CountDownLatch(2);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.createContext("/stt", exchange -> respondWhenBothArrive(exchange, bothArrived,
+                "{\"success\": true, \"text\": \"me duele el pecho\", \"emotion\": \"neutral\", \"confidence\": 0.4}"));
+        server.createContext("/analyze-emotion", exchange -> respondWhenBothArrive(exchange, bothArrived,
+                "{\"emotion\": \"fear\", \"confidence\": 0.9, \"urgency\": \"high\"}"));
+        server.start();
+        try {
+            AIClassifierClient client = new AIClassifierClient("http://localhost:" + server.getAddress().getPort());
+            VoiceAnalysis analysis = client.analyzeVoiceAsync(new byte[3200], 16000).get(10, TimeUnit.SECONDS);
+
+            assertEquals("me duele el pecho", analysis.text());
+            assertEquals("fear", analysis.emotion());
+            assertEquals(0.9, analysis.emotionConfidence(), 1e-9);
+            assertTrue(analysis.emotionAnalyzed());
+            assertTrue(analysis.isUrgent());
+        } finally {
+            server.stop(0);
+        }
     }
 
     @Test
-    @DisplayName("extractEmergencies parsea el array de objetos JSON")
-    void extractEmergenciesParsesArray() {
-        String json = "{\"priority\":1,\"corrected_text\":\"incendio\",\"emergencies\":[" +
-                      "{\"type\":\"fire\",\"confidence\":0.9}," +
-                      "{\"type\":\"medical\",\"confidence\":0.1}]}";
-        String[] result = AIClassifierClient.extractEmergencies(json);
-        assertEquals(2, result.length);
-        assertTrue(result[0].contains("\"type\":\"fire\""));
-        assertTrue(result[1].contains("\"type\":\"medical\""));
+    @DisplayName("analyzeVoice no espera a una emoción lenta: entrega la transcripción sin ella")
+    void analyzeVoiceDegradesWhenEmotionIsSlow() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.createContext("/stt", exchange -> respond(exchange,
+                "{\"success\": true, \"text\": \"hay humo\", \"emotion\": \"sad\", \"confidence\": 0.7}"));
+        server.createContext("/analyze-emotion", exchange -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException ignored) {
+            }
+            respond(exchange, "{\"emotion\": \"fear\", \"confidence\": 0.9, \"urgency\": \"high\"}");
+        });
+        server.start();
+        try {
+            AIClassifierClient client = new AIClassifierClient("http://localhost:" + server.getAddress().getPort());
+            long start = System.nanoTime();
+            VoiceAnalysis analysis = client.analyzeVoice(new byte[3200], 16000);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(elapsedMs < 3000, "no debe esperar a /analyze-emotion, tardó " + elapsedMs + " ms");
+            assertEquals("hay humo", analysis.text());
+            assertFalse(analysis.emotionAnalyzed());
+            assertEquals("sad", analysis.emotion());
+            assertEquals("medium", analysis.urgency());
+        } finally {
+            server.stop(0);
+        }
     }
 
     @Test
-    @DisplayName("extractEmergencies devuelve array vacío para JSON sin el campo")
-    void extractEmergenciesHandlesMissingField() {
-        String[] result = AIClassifierClient.extractEmergencies("{\"priority\":1}");
-        assertEquals(0, result.length);
+    @DisplayName("Si /health anuncia slpc, el audio sube comprimido y se recupera sin pérdidas")
+    void compressesAudioWhenServerAdvertisesIt() throws Exception {
+        CompletableFuture<byte[]> received = new CompletableFuture<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/health", exchange -> {
+            exchange.getResponseHeaders().add("X-Audio-Encodings", "slpc");
+            respond(exchange, "{\"status\": \"ok\"}");
+        });
+        server.createContext("/stt", exchange -> {
+            String encoding = exchange.getRequestHeaders().getFirst("X-Audio-Encoding");
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String text = new String(body, StandardCharsets.ISO_8859_1);
+            int start = text.indexOf("\r\n\r\n", text.indexOf("name=\"audio\"")) + 4;
+            int end = text.indexOf("\r\n--", start);
+            received.complete("slpc".equals(encoding) ? java.util.Arrays.copyOfRange(body, start, end) : null);
+            respond(exchange, "{\"success\": true, \"text\": \"ok\"}");
+        });
+        server.start();
+        try {
+            AIClassifierClient client = new AIClassifierClient("http://localhost:" + server.getAddress().getPort());
+            assertFalse(client.isAudioCompressed(), "sin sonda todavía no se sabe si el backend lo admite");
+            assertTrue(client.isAvailable());
+            assertTrue(client.isAudioCompressed());
+
+            byte[] pcm = new byte[32000];
+            for (int i = 0; i < pcm.length / 2; i++) {
+                int v = (int) (8000 * Math.sin(i / 10.0));
+                pcm[2 * i] = (byte) v;
+                pcm[2 * i + 1] = (byte) (v >> 8);
+            }
+            assertEquals("{\"success\": true, \"text\": \"ok\"}", client.transcribeAdvanced(pcm, 16000));
+
+            byte[] uploaded = received.get(5, TimeUnit.SECONDS);
+            assertNotNull(uploaded, "falta la cabecera X-Audio-Encoding");
+            assertTrue(uploaded.length < pcm.length / 2);
+            assertArrayEquals(pcm, AudioCodec.decode(uploaded).pcm());
+            client.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Solo responde cuando han llegado las dos peticiones: si el cliente las
+     * enviara una detrás de otra, la primera no terminaría nunca.
+     */
+    private static void respondWhenBothArrive(com.sun.net.httpserver.HttpExchange exchange,
+                                              CountDownLatch bothArrived, String json) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        bothArrived.countDown();
+        try {
+            if (!bothArrived.await(5, TimeUnit.SECONDS)) {
+                exchange.sendResponseHeaders(504, -1);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        respond(exchange, json);
+    }
+
+    private static void respond(com.sun.net.httpserver.HttpExchange exchange, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void writeLine(OutputStream out, String json) throws IOException {
+        out.write((json + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
     }
 }
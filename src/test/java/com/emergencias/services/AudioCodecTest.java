@@ -0,0 +1,82 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioCodecTest {
+
+    @Test
+    @DisplayName("La voz sintética se recupera exacta y ocupa bastante menos que en crudo pese al ruido de fondo")
+    void roundTripsAndCompresses() throws IOException {
+        int samples = AudioCodec.BLOCK_SAMPLES * 3 + 123;
+        byte[] pcm = new byte[samples * 2];
+        Random random = new Random(7);
+        for (int i = 0; i < samples; i++) {
+            double t = i / 16000.0;
+            double v = 6000 * Math.sin(2 * Math.PI * 220 * t) * (0.5 + 0.5 * Math.sin(2 * Math.PI * 3 * t))
+                    + 1500 * Math.sin(2 * Math.PI * 910 * t) + random.nextGaussian() * 40;
+            put(pcm, i, (int) v);
+        }
+
+        byte[] encoded = AudioCodec.encode(pcm, 0, pcm.length, 16000);
+        assertTrue(encoded.length < pcm.length * 2 / 3, "comprimido: " + encoded.length + " de " + pcm.length);
+
+        AudioCodec.Decoded decoded = AudioCodec.decode(encoded);
+        assertEquals(16000, decoded.sampleRate());
+        assertArrayEquals(pcm, decoded.pcm());
+    }
+
+    @Test
+    @DisplayName("Saltos extremos usan el escape y siguen siendo sin pérdidas, también por bloques sueltos")
+    void handlesExtremeValuesAndStreamedBlocks() throws IOException {
+        byte[] pcm = new byte[2000];
+        for (int i = 0; i < 1000; i++) put(pcm, i, i % 97 == 0 ? Short.MIN_VALUE : (i % 2 == 0 ? 12 : Short.MAX_VALUE));
+
+        byte[] header = AudioCodec.header(8000);
+        byte[] first = AudioCodec.encodeBlock(pcm, 0, 1000);
+        byte[] second = AudioCodec.encodeBlock(pcm, 1000, 1000);
+        byte[] stream = new byte[header.length + first.length + second.length];
+        System.arraycopy(header, 0, stream, 0, header.length);
+        System.arraycopy(first, 0, stream, header.length, first.length);
+        System.arraycopy(second, 0, stream, header.length + first.length, second.length);
+
+        AudioCodec.Decoded decoded = AudioCodec.decode(stream);
+        assertEquals(8000, decoded.sampleRate());
+        assertArrayEquals(pcm, decoded.pcm());
+        assertThrows(IOException.class, () -> AudioCodec.decode(java.util.Arrays.copyOf(stream, stream.length - 3)));
+    }
+
+    @Test
+    @DisplayName("Un flujo escrito a mano se decodifica igual que en el backend (test_stt_service.py)")
+    void decodesReferenceStream() throws IOException {
+        // Orden 1, k = 1: muestra inicial 100 y residuos 1, 2, -3
+        byte[] stream = HexFormat.of().parseHex("534c50430100003e80" + "0004" + "01" + "01" + "0064" + "99a0");
+
+        AudioCodec.Decoded decoded = AudioCodec.decode(stream);
+        assertEquals(16000, decoded.sampleRate());
+        assertEquals("6400650067006400", HexFormat.of().formatHex(decoded.pcm()));
+    }
+
+    @Test
+    @DisplayName("El remuestreo a 16 kHz promedia las muestras y conserva la duración")
+    void downsamplesTo16k() {
+        byte[] pcm = new byte[48000 * 2];
+        for (int i = 0; i < 48000; i++) put(pcm, i, i % 3 == 0 ? 300 : 0);
+
+        byte[] out = AudioCodec.downsample(pcm, 48000, 16000);
+        assertEquals(16000 * 2, out.length);
+        assertEquals(100, (short) ((out[0] & 0xFF) | (out[1] << 8)));
+        assertSame(pcm, AudioCodec.downsample(pcm, 16000, 16000));
+    }
+
+    private static void put(byte[] pcm, int index, int value) {
+        pcm[2 * index] = (byte) value;
+        pcm[2 * index + 1] = (byte) (value >> 8);
+    }
+}
@@ -0,0 +1,78 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioPlayerTest {
+
+    @Test
+    @DisplayName("parseWav localiza las muestras sin copiarlas y salta chunks desconocidos")
+    void parsesWavInPlace() throws IOException {
+        byte[] samples = new byte[480]; // 10 ms a 24 kHz, mono, 16 bits
+        byte[] wav = wav(1, 24000, 16, samples, true);
+
+        AudioPlayer.Pcm pcm = AudioPlayer.parseWav(wav);
+
+        assertSame(wav, pcm.data());
+        assertEquals(samples.length, pcm.length());
+        assertEquals(wav.length - samples.length, pcm.offset());
+        AudioFormat format = pcm.format();
+        assertEquals(24000f, format.getSampleRate());
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(1, format.getChannels());
+        assertEquals(AudioFormat.Encoding.PCM_SIGNED, format.getEncoding());
+        assertFalse(format.isBigEndian());
+    }
+
+    @Test
+    @DisplayName("parseWav rechaza datos que no son WAV PCM")
+    void rejectsInvalidWav() {
+        assertThrows(IOException.class, () -> AudioPlayer.parseWav("no es audio".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IOException.class, () -> AudioPlayer.parseWav(wav(3, 24000, 32, new byte[8], false)));
+        assertThrows(IOException.class, () -> AudioPlayer.parseWav(null));
+    }
+
+    @Test
+    @DisplayName("play() siempre completa su future, haya o no salida de audio")
+    void playAlwaysCompletes() throws Exception {
+        AudioPlayer player = new AudioPlayer();
+        try {
+            player.play(wav(1, 24000, 16, new byte[480], false)).get(5, TimeUnit.SECONDS);
+            player.play("roto".getBytes(StandardCharsets.UTF_8)).get(5, TimeUnit.SECONDS);
+        } finally {
+            player.close();
+        }
+        assertTrue(player.play(wav(1, 24000, 16, new byte[480], false)).isDone(), "tras close() no se encola nada");
+    }
+
+    private static byte[] wav(int encoding, int sampleRate, int bits, byte[] samples, boolean withList) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocate(36).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(0)
+              .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+              .put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16)
+              .putShort((short) encoding).putShort((short) 1).putInt(sampleRate)
+              .putInt(sampleRate * bits / 8).putShort((short) (bits / 8)).putShort((short) bits);
+        out.write(header.array());
+        if (withList) {
+            // Chunk de tamaño impar: lleva un byte de relleno
+            out.write("LIST".getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[] {3, 0, 0, 0, 'a', 'b', 'c', 0});
+        }
+        ByteBuffer data = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        data.put("data".getBytes(StandardCharsets.US_ASCII)).putInt(samples.length);
+        out.write(data.array());
+        out.write(samples);
+        return out.toByteArray();
+    }
+}
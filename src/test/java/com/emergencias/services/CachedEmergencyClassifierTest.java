@@ -0,0 +1,153 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedEmergencyClassifierTest {
+
+    private static final String JSON = "{\"priority\":8,\"corrected_text\":\"hay fuego\",\"emergencies\":" +
+            "[{\"type\":\"FIRE\",\"type_name\":\"Incendio\",\"confidence\":0.9,\"context\":\"un incendio\"," +
+            "\"instructions\":[\"Evacue la zona\"]}]}";
+
+    private CountingClassifier backend;
+    private AtomicLong now;
+
+    @BeforeEach
+    void setUp() {
+        backend = new CountingClassifier();
+        now = new AtomicLong();
+    }
+
+    @Test
+    @DisplayName("normalize quita tildes, mayúsculas, puntuación y espacios repetidos")
+    void normalizesText() {
+        assertEquals("mi padre se ha caido", CachedEmergencyClassifier.normalize("  Mi PADRE se ha caído!! "));
+        assertEquals("hay fuego en la cocina", CachedEmergencyClassifier.normalize("hay   fuego, en la cocína"));
+        assertEquals("", CachedEmergencyClassifier.normalize(null));
+    }
+
+    @Test
+    @DisplayName("Textos casi idénticos se sirven desde la caché sin llamar al backend")
+    void repeatedQueriesHitCache() {
+        CachedEmergencyClassifier cache = newCache(100, Duration.ofMinutes(1), 1_000_000);
+
+        assertEquals(JSON, cache.classify("Hay fuego en la cocina"));
+        assertEquals(JSON, cache.classify("hay fuego en la cocína!"));
+        assertEquals("Incendio", cache.classifyDetailed("HAY FUEGO EN LA COCINA").primary().typeName());
+        assertEquals("Incendio", cache.classifyDetailed("hay fuego en la cocina").primary().typeName());
+
+        assertEquals(1, backend.classifyCalls.get());
+        assertEquals(1, backend.detailedCalls.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    @DisplayName("Las entradas caducan tras el TTL")
+    void entriesExpireAfterTtl() {
+        CachedEmergencyClassifier cache = newCache(100, Duration.ofSeconds(10), 1_000_000);
+
+        cache.classify("hay fuego");
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        cache.classify("hay fuego");
+        assertEquals(1, backend.classifyCalls.get());
+
+        now.addAndGet(Duration.ofSeconds(6).toNanos());
+        cache.classify("hay fuego");
+        assertEquals(2, backend.classifyCalls.get());
+    }
+
+    @Test
+    @DisplayName("Se expulsa la entrada menos usada al superar el máximo de entradas")
+    void evictsLeastRecentlyUsed() {
+        CachedEmergencyClassifier cache = newCache(2, Duration.ofMinutes(1), 1_000_000);
+
+        cache.classify("a uno");
+        cache.classify("b dos");
+        cache.classify("a uno");     // 'a' pasa a ser la más reciente
+        cache.classify("c tres");    // expulsa 'b'
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        cache.classify("a uno");
+        assertEquals(3, backend.classifyCalls.get());
+        cache.classify("b dos");
+        assertEquals(4, backend.classifyCalls.get());
+    }
+
+    @Test
+    @DisplayName("El presupuesto de memoria limita el tamaño de la caché")
+    void respectsMemoryBudget() {
+        CachedEmergencyClassifier cache = newCache(1_000, Duration.ofMinutes(1), 2_000);
+
+        for (int i = 0; i < 50; i++) cache.classify("texto numero " + i);
+
+        assertTrue(cache.getEstimatedBytes() <= 2_000);
+        assertTrue(cache.size() < 50);
+        assertTrue(cache.getEvictions() > 0);
+    }
+
+    @Test
+    @DisplayName("Los fallos del backend (null) no se cachean")
+    void doesNotCacheFailures() {
+        backend.fail = true;
+        CachedEmergencyClassifier cache = newCache(100, Duration.ofMinutes(1), 1_000_000);
+
+        assertNull(cache.classify("hay fuego"));
+        assertNull(cache.classify("hay fuego"));
+        assertEquals(2, backend.classifyCalls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("La variante asíncrona también usa la caché")
+    void asyncUsesCache() throws Exception {
+        CachedEmergencyClassifier cache = newCache(100, Duration.ofMinutes(1), 1_000_000);
+
+        assertNotNull(cache.classifyDetailedAsync("hay fuego").get());
+        assertTrue(cache.classifyDetailedAsync("Hay fuego").isDone());
+        assertEquals(1, backend.detailedCalls.get());
+    }
+
+    private CachedEmergencyClassifier newCache(int maxEntries, Duration ttl, long maxBytes) {
+        return new CachedEmergencyClassifier(backend, maxEntries, ttl, maxBytes, now::get);
+    }
+
+    private static class CountingClassifier implements IEmergencyClassifier {
+        final AtomicInteger classifyCalls = new AtomicInteger();
+        final AtomicInteger detailedCalls = new AtomicInteger();
+        boolean fail = false;
+
+        @Override
+        public String classify(String text) {
+            classifyCalls.incrementAndGet();
+            return fail ? null : JSON;
+        }
+
+        @Override
+        public ClassifyResponse classifyDetailed(String text) {
+            detailedCalls.incrementAndGet();
+            if (fail) return null;
+            try {
+                return ResponseParser.parseClassify(JSON);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+    }
+}
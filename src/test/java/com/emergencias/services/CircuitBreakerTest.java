@@ -0,0 +1,120 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private AtomicLong now;
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_000);
+        breaker = new CircuitBreaker("test", 10, 4, 0.5, Duration.ofSeconds(30), 2, now::get);
+    }
+
+    /**
+     * Abre el breaker con las llamadas mínimas, todas fallidas.
+     */
+    private void abrir() {
+        for (int i = 0; i < 4; i++) breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Se abre cuando la tasa de fallos de la ventana alcanza el umbral")
+    void opensOnFailureRate() {
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(), "aún no hay llamadas mínimas");
+
+        breaker.recordSuccess();
+        breaker.recordSuccess();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(), "3/7 fallos, por debajo del 50 %");
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("La ventana deslizante olvida los fallos antiguos")
+    void slidingWindowForgetsOldOutcomes() {
+        for (int i = 0; i < 3; i++) breaker.recordFailure();
+        for (int i = 0; i < 10; i++) breaker.recordSuccess();
+
+        assertEquals(0.0, breaker.getFailureRate(), 1e-9);
+        breaker.recordFailure();
+        assertEquals(0.1, breaker.getFailureRate(), 1e-9);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Tras el timeout admite un número limitado de sondas y un éxito lo cierra")
+    void halfOpenAdmitsLimitedProbes() {
+        abrir();
+        assertFalse(breaker.tryAcquire());
+
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire(), "solo 2 sondas simultáneas");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.isOpen());
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(0.0, breaker.getFailureRate(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Un fallo en semiabierto vuelve a abrir y reinicia el timeout")
+    void halfOpenFailureReopens() {
+        abrir();
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("allowProbe pasa a semiabierto sin esperar al timeout")
+    void allowProbeSkipsTimeout() {
+        abrir();
+        breaker.allowProbe();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Las sondas perdidas caducan y permiten una nueva ronda")
+    void lostProbesExpire() {
+        abrir();
+        breaker.allowProbe();
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertTrue(breaker.tryAcquire());
+    }
+}
@@ -0,0 +1,152 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HealthMonitorTest {
+
+    @Test
+    @DisplayName("La disponibilidad es una instantánea: leerla no lanza sondas")
+    void snapshotReadsDoNotProbe() {
+        AtomicInteger probes = new AtomicInteger();
+        HealthMonitor monitor = new HealthMonitor(() -> {
+            probes.incrementAndGet();
+            return CompletableFuture.completedFuture(true);
+        }, Duration.ofMinutes(1), 0.2);
+
+        assertFalse(monitor.hasResult());
+        assertTrue(monitor.awaitAvailability(Duration.ofSeconds(1)));
+        for (int i = 0; i < 1_000; i++) assertTrue(monitor.isAvailable());
+        assertTrue(monitor.awaitAvailability(Duration.ofSeconds(1)));
+
+        assertEquals(1, probes.get());
+        assertTrue(monitor.getLastCheckNanos() > 0);
+    }
+
+    @Test
+    @DisplayName("Las sondas concurrentes se comparten en lugar de solaparse")
+    void concurrentChecksShareOneProbe() {
+        AtomicInteger probes = new AtomicInteger();
+        CompletableFuture<Boolean> pending = new CompletableFuture<>();
+        HealthMonitor monitor = new HealthMonitor(() -> {
+            probes.incrementAndGet();
+            return pending;
+        }, Duration.ofMinutes(1), 0.0);
+
+        CompletableFuture<Boolean> a = monitor.checkNow();
+        CompletableFuture<Boolean> b = monitor.checkNow();
+        pending.complete(false);
+
+        assertSame(a, b);
+        assertFalse(a.join());
+        assertEquals(1, probes.get());
+    }
+
+    @Test
+    @DisplayName("Los oyentes reciben los cambios de estado y una sonda que falla cuenta como caída")
+    void listenersReceiveTransitions() {
+        AtomicBoolean up = new AtomicBoolean(true);
+        HealthMonitor monitor = new HealthMonitor(() -> up.get()
+                ? CompletableFuture.completedFuture(true)
+                : CompletableFuture.failedFuture(new IOException("connection refused")),
+                Duration.ofMinutes(1), 0.0);
+        List<Boolean> changes = new CopyOnWriteArrayList<>();
+        monitor.addListener(changes::add);
+
+        monitor.checkNow().join();
+        monitor.checkNow().join();
+        up.set(false);
+        monitor.checkNow().join();
+        assertFalse(monitor.isAvailable());
+        up.set(true);
+        monitor.checkNow().join();
+
+        assertEquals(List.of(false, true), changes);
+    }
+
+    @Test
+    @DisplayName("El intervalo se aleatoriza dentro del margen de jitter")
+    void jitterStaysWithinBounds() {
+        HealthMonitor monitor = new HealthMonitor(() -> CompletableFuture.completedFuture(true),
+                Duration.ofSeconds(10), 0.2);
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (int i = 0; i < 1_000; i++) {
+            long delay = monitor.nextDelayNanos();
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        assertTrue(min >= TimeUnit.SECONDS.toNanos(8));
+        assertTrue(max <= TimeUnit.SECONDS.toNanos(12));
+        assertTrue(max - min > TimeUnit.SECONDS.toNanos(1), "el intervalo debería variar");
+    }
+
+    @Test
+    @DisplayName("start() sondea periódicamente en segundo plano hasta close()")
+    void probesPeriodicallyUntilClosed() throws Exception {
+        AtomicInteger probes = new AtomicInteger();
+        HealthMonitor monitor = new HealthMonitor(() -> {
+            probes.incrementAndGet();
+            return CompletableFuture.completedFuture(true);
+        }, Duration.ofMillis(20), 0.5);
+
+        monitor.start();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (probes.get() < 3 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        monitor.close();
+        int afterClose = probes.get();
+        Thread.sleep(100);
+
+        assertTrue(afterClose >= 3);
+        assertTrue(probes.get() <= afterClose + 1);
+        assertTrue(monitor.isAvailable());
+    }
+
+    @Test
+    @DisplayName("Un close() concurrente con start() no deja el monitor sondeando")
+    void closeRacingStartStopsProbing() throws Exception {
+        AtomicInteger probes = new AtomicInteger();
+        for (int i = 0; i < 200; i++) {
+            HealthMonitor monitor = new HealthMonitor(() -> {
+                probes.incrementAndGet();
+                return CompletableFuture.completedFuture(true);
+            }, Duration.ofMillis(10), 0.0);
+            CountDownLatch go = new CountDownLatch(1);
+            Thread starter = Thread.ofPlatform().start(() -> {
+                awaitQuietly(go);
+                monitor.start();
+            });
+            Thread closer = Thread.ofPlatform().start(() -> {
+                awaitQuietly(go);
+                monitor.close();
+            });
+            go.countDown();
+            starter.join();
+            closer.join();
+        }
+        Thread.sleep(100);
+        int settled = probes.get();
+        Thread.sleep(200);
+
+        assertEquals(settled, probes.get(), "ningún monitor cerrado debe seguir sondeando");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
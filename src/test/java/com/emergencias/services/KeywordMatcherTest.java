@@ -0,0 +1,86 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordMatcherTest {
+
+    private final KeywordMatcher matcher = KeywordMatcher.getDefault();
+
+    @Test
+    @DisplayName("Una sola pasada informa de todas las etiquetas y subcontextos presentes")
+    void reportsEveryMatchingGroup() {
+        KeywordMatcher.Matches matches = matcher.scan("¡Hay FUEGO en la cocina y mi padre se ha caído por la escalera!");
+
+        assertTrue(matches.has(matcher.groupId("FIRE")));
+        assertTrue(matches.has(matcher.groupId("FIRE:cocina|sarten|aceite|gas")));
+        assertTrue(matches.has(matcher.groupId("MEDICAL:caido|caida|cayó|cayo|tropezado|escalera")));
+        assertFalse(matches.has(matcher.groupId("TRAFFIC")));
+        assertFalse(matches.has(matcher.groupId("NATURAL")));
+    }
+
+    @Test
+    @DisplayName("Las tildes, mayúsculas y signos no impiden encontrar palabras clave")
+    void matchesOverNormalizedText() {
+        assertTrue(matcher.contains("Llamad a la POLICÍA", "ALERT"));
+        assertTrue(matcher.contains("una inundación en el garaje", "NATURAL"));
+        assertTrue(matcher.contains("inceńdio", "FIRE"));   // marca combinante suelta
+        assertFalse(matcher.contains("hola, solo estoy probando la app", "ALERT"));
+        assertFalse(matcher.contains(null, "FIRE"));
+    }
+
+    @Test
+    @DisplayName("Los espacios en los extremos anclan la palabra clave a límites de palabra")
+    void anchorsKeywordsWithSpaces() {
+        assertTrue(matcher.contains("sí", "CONFIRM"));
+        assertTrue(matcher.contains("Si, por favor", "CONFIRM"));
+        assertFalse(matcher.contains("sigue sin contestar", "CONFIRM"));
+        assertTrue(matcher.contains("no", "CANCEL"));
+        assertFalse(matcher.contains("ahora noto algo raro", "CANCEL"));
+        assertFalse(matcher.contains("saltó la alarma", "SECURITY"));
+        assertTrue(matcher.contains("lleva un arma", "SECURITY"));
+    }
+
+    @Test
+    @DisplayName("Contexto e instrucciones siguen las reglas del backend con _default como respaldo")
+    void resolvesContextLikeBackend() {
+        KeywordMatcher.Matches cocina = matcher.scan("sale humo de la sarten");
+        assertEquals("un incendio en la cocina", matcher.contextFor("FIRE", cocina));
+        assertTrue(matcher.instructionsFor("FIRE", cocina).get(0).contains("aceite"));
+
+        KeywordMatcher.Matches generico = matcher.scan("hay fuego");
+        assertEquals("un incendio", matcher.contextFor("FIRE", generico));
+        assertEquals("Evacue la zona inmediatamente", matcher.instructionsFor("FIRE", generico).get(0));
+        assertEquals(List.of(), matcher.instructionsFor("DESCONOCIDA", generico));
+
+        List<String> catalogue = matcher.allInstructions();
+        assertTrue(catalogue.contains("Evacue la zona inmediatamente"));
+        assertEquals(catalogue.size(), catalogue.stream().distinct().count());
+    }
+
+    @Test
+    @DisplayName("Patrones solapados y sufijos comunes se detectan (enlaces de fallo)")
+    void handlesOverlappingPatterns() {
+        Map<String, String> groups = new LinkedHashMap<>();
+        groups.put("A", "he|she");
+        groups.put("B", "hers");
+        groups.put("C", "his");
+        KeywordMatcher custom = new KeywordMatcher(groups);
+
+        KeywordMatcher.Matches matches = custom.newMatches();
+        custom.scan("ushers", matches);
+        assertTrue(matches.has(custom.groupId("A")));
+        assertTrue(matches.has(custom.groupId("B")));
+        assertFalse(matches.has(custom.groupId("C")));
+
+        custom.scan("nada", matches);
+        assertTrue(matches.isEmpty());
+        assertEquals(-1, custom.groupId("Z"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalEmergencyClassifierTest {
+
+    private static LocalEmergencyClassifier model;
+
+    @BeforeAll
+    static void setUp() {
+        model = LocalEmergencyClassifier.loadDefault();
+    }
+
+    @Test
+    @DisplayName("El modelo incluido se carga desde el classpath")
+    void loadsBundledModel() {
+        assertNotNull(model);
+        assertTrue(model.isAvailable());
+        assertEquals(5, model.getLabels().length);
+        assertEquals("Incendio", model.getLabelName("FIRE"));
+    }
+
+    @Test
+    @DisplayName("Clasifica frases claras con confianza alta")
+    void classifiesClearExamples() {
+        assertPrimary("FIRE", "hay fuego en la cocina");
+        assertPrimary("TRAFFIC", "he tenido un accidente con el coche");
+        assertPrimary("MEDICAL", "mi abuela no respira");
+        assertTrue(model.classifyDetailed("hay fuego").primary().confidence() > 0.8);
+    }
+
+    @Test
+    @DisplayName("Las probabilidades suman 1")
+    void probabilitiesSumToOne() {
+        double sum = 0;
+        for (double p : model.predictProbabilities("mi padre se ha caído")) sum += p;
+        assertEquals(1.0, sum, 1e-9);
+    }
+
+    @Test
+    @DisplayName("classify() devuelve el mismo formato JSON que el backend")
+    void classifyProducesBackendJson() throws IOException {
+        ClassifyResponse parsed = ResponseParser.parseClassify(model.classify("hay fuego en la cocina"));
+        assertEquals("FIRE", parsed.primary().type());
+        assertEquals(8, parsed.priority());
+    }
+
+    @Test
+    @DisplayName("Entrenar, guardar y cargar conserva las predicciones")
+    void trainSaveLoadRoundTrip() throws IOException {
+        LocalEmergencyClassifier trained = LocalEmergencyClassifier.train(
+                List.of("hay fuego en casa", "se quema el edificio", "me duele el pecho", "se ha desmayado"),
+                List.of("FIRE", "FIRE", "MEDICAL", "MEDICAL"),
+                Map.of("FIRE", "Incendio", "MEDICAL", "Emergencia Medica"),
+                Map.of("FIRE", 8, "MEDICAL", 9));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trained.save(out);
+        LocalEmergencyClassifier loaded = LocalEmergencyClassifier.load(new ByteArrayInputStream(out.toByteArray()));
+
+        assertArrayEquals(trained.predictProbabilities("fuego en el edificio"),
+                          loaded.predictProbabilities("fuego en el edificio"), 1e-6);
+        assertEquals("FIRE", loaded.classifyDetailed("fuego en el edificio").primary().type());
+    }
+
+    @Test
+    @DisplayName("Un fichero que no es un modelo se rechaza")
+    void rejectsInvalidModel() {
+        assertThrows(IOException.class, () -> LocalEmergencyClassifier.load(new ByteArrayInputStream(new byte[]{1, 2, 3})));
+    }
+
+    private static void assertPrimary(String label, String text) {
+        assertEquals(label, model.classifyDetailed(text).primary().type(), text);
+    }
+}
@@ -0,0 +1,99 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartBodyTest {
+
+    @Test
+    @DisplayName("El cuerpo es multipart válido y su longitud coincide con lo publicado")
+    void publishesWholeBody() {
+        byte[] audio = new byte[MultipartBody.SLICE_BYTES * 2 + 10];
+        for (int i = 0; i < audio.length; i++) audio[i] = (byte) ('a' + i % 26);
+        MultipartBody body = new MultipartBody(ByteBuffer.wrap(audio), 16000);
+
+        byte[] sent = collect(body, Long.MAX_VALUE);
+        assertEquals(body.contentLength(), sent.length);
+
+        String text = new String(sent, StandardCharsets.ISO_8859_1);
+        String boundary = "--" + MultipartBody.BOUNDARY;
+        assertTrue(text.startsWith(boundary + "\r\n"));
+        assertTrue(text.endsWith("\r\n" + boundary + "--\r\n"));
+        assertTrue(text.contains("name=\"sample_rate\"\r\n\r\n16000\r\n"));
+        int audioStart = text.indexOf("\r\n\r\n") + 4;
+        assertEquals(new String(audio, StandardCharsets.ISO_8859_1),
+                text.substring(audioStart, audioStart + audio.length));
+
+        // Una segunda suscripción (reintento) vuelve a enviar el cuerpo completo
+        assertArrayEquals(sent, collect(body, 1));
+    }
+
+    @Test
+    @DisplayName("El audio no se copia: se publican vistas de solo lectura del búfer original")
+    void wrapsAudioWithoutCopying() {
+        byte[] audio = new byte[100];
+        MultipartBody body = new MultipartBody(ByteBuffer.wrap(audio), 8000);
+        audio[0] = 'Z';
+
+        String text = new String(collect(body, Long.MAX_VALUE), StandardCharsets.ISO_8859_1);
+        assertEquals('Z', text.charAt(text.indexOf("\r\n\r\n") + 4));
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        body.subscribe(subscriber(Long.MAX_VALUE, buffers::add));
+        assertTrue(buffers.stream().allMatch(ByteBuffer::isReadOnly));
+    }
+
+    /**
+     * Se suscribe pidiendo {@code batch} búferes cada vez y concatena lo recibido.
+     */
+    private static byte[] collect(MultipartBody body, long batch) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.subscribe(subscriber(batch, buffer -> {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.writeBytes(bytes);
+        }));
+        return out.toByteArray();
+    }
+
+    private static Flow.Subscriber<ByteBuffer> subscriber(long batch, java.util.function.Consumer<ByteBuffer> sink) {
+        return new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+            private long outstanding;
+
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription = s;
+                outstanding = batch;
+                s.request(batch);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                sink.accept(item);
+                if (--outstanding == 0) {
+                    outstanding = batch;
+                    subscription.request(batch);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                fail(t);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        };
+    }
+}
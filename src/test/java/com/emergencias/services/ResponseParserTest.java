@@ -0,0 +1,155 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseParserTest {
+
+    @Test
+    @DisplayName("parseClassify decodifica prioridad, texto corregido y emergencias desde un InputStream")
+    void parsesClassifyFromStream() throws IOException {
+        String json = "{\"priority\": 9, \"corrected_text\": \"mi padre se ha caido\", \"emergencies\": [" +
+                      "{\"type\": \"MEDICAL\", \"type_name\": \"Emergencia Medica\", \"confidence\": 0.87," +
+                      " \"context\": \"una caida\", \"instructions\": [\"No mueva a la persona\", \"Llame al 112\"]}," +
+                      "{\"type\": \"FIRE\", \"type_name\": \"Incendio\", \"confidence\": 0.21," +
+                      " \"context\": \"un incendio\", \"instructions\": []}]}";
+
+        ClassifyResponse response = ResponseParser.parseClassify(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(9, response.priority());
+        assertEquals("mi padre se ha caido", response.correctedText());
+        assertEquals(2, response.emergencies().size());
+        ClassifyResponse.Emergency primary = response.primary();
+        assertEquals("MEDICAL", primary.type());
+        assertEquals("Emergencia Medica", primary.typeName());
+        assertEquals(0.87, primary.confidence(), 1e-9);
+        assertEquals(List.of("No mueva a la persona", "Llame al 112"), primary.instructions());
+        assertTrue(response.emergencies().get(1).instructions().isEmpty());
+    }
+
+    @Test
+    @DisplayName("parseClassifyBatch devuelve un resultado por texto en el mismo orden")
+    void parsesClassifyBatch() throws IOException {
+        String json = "{\"results\": [" +
+                      "{\"priority\": 8, \"corrected_text\": \"hay fuego\", \"emergencies\": [" +
+                      "{\"type\": \"FIRE\", \"type_name\": \"Incendio\", \"confidence\": 0.9," +
+                      " \"context\": \"un incendio\", \"instructions\": []}]}," +
+                      "{\"priority\": 9, \"corrected_text\": \"me duele el pecho\", \"emergencies\": []}]}";
+
+        List<ClassifyResponse> results = ResponseParser.parseClassifyBatch(json);
+
+        assertEquals(2, results.size());
+        assertEquals("FIRE", results.get(0).primary().type());
+        assertEquals(9, results.get(1).priority());
+        assertNull(results.get(1).primary());
+        assertThrows(IOException.class, () -> ResponseParser.parseClassifyBatch("{\"otro\": 1}"));
+    }
+
+    @Test
+    @DisplayName("Las comillas escapadas y los campos desconocidos no rompen el parseo")
+    void handlesEscapesAndUnknownFields() throws IOException {
+        String json = "{\"extra\": {\"nested\": [1, 2, {\"a\": \"b\"}]}, \"success\": true," +
+                      " \"response\": \"Dijo \\\"socorro\\\"\\nLlame al 112\", \"model_used\": \"x\", \"error\": \"\"}";
+
+        ChatResponse chat = ResponseParser.parseChat(json);
+
+        assertTrue(chat.success());
+        assertTrue(chat.hasText());
+        assertEquals("Dijo \"socorro\"\nLlame al 112", chat.response());
+        assertEquals("x", chat.modelUsed());
+        assertNull(chat.error());
+    }
+
+    @Test
+    @DisplayName("parseChatStreamEvent lee los eventos NDJSON de /chat/stream")
+    void parsesChatStreamEvents() throws IOException {
+        ChatStreamEvent token = ResponseParser.parseChatStreamEvent("{\"type\": \"token\", \"text\": \"¿Está \\\"bien\\\"? \"}");
+        assertTrue(token.isToken());
+        assertEquals("¿Está \"bien\"? ", token.text());
+
+        ChatStreamEvent done = ResponseParser.parseChatStreamEvent("{\"type\": \"done\", \"model_used\": \"m\", \"extra\": [1]}");
+        assertTrue(done.isDone());
+        assertEquals("m", done.modelUsed());
+
+        assertTrue(ResponseParser.parseChatStreamEvent("{\"type\": \"error\", \"error\": \"x\"}").isError());
+        assertThrows(IOException.class, () -> ResponseParser.parseChatStreamEvent("{\"text\": \"sin tipo\"}"));
+    }
+
+    @Test
+    @DisplayName("parseGeo lee coordenadas numéricas y el error si existe")
+    void parsesGeo() throws IOException {
+        GeoResponse ok = ResponseParser.parseGeo("{\"city\":\"Murcia\",\"region\":\"Murcia\",\"country\":\"España\"," +
+                                                 "\"lat\":37.99,\"lon\":-1.13,\"ip\":\"1.2.3.4\"}");
+        assertEquals("Murcia", ok.city());
+        assertEquals(37.99, ok.lat(), 1e-9);
+        assertEquals(-1.13, ok.lon(), 1e-9);
+        assertTrue(ok.hasCoordinates());
+
+        GeoResponse error = ResponseParser.parseGeo("{\"error\": \"No se pudo determinar la ubicacion\"}");
+        assertFalse(error.hasCoordinates());
+    }
+
+    @Test
+    @DisplayName("parseVoiceAnalysis une /stt y /analyze-emotion y tolera que falte la emoción")
+    void parsesVoiceAnalysis() throws IOException {
+        String stt = "{\"success\": true, \"text\": \"socorro\", \"emotion\": \"sad\", \"confidence\": 0.6}";
+
+        VoiceAnalysis merged = ResponseParser.parseVoiceAnalysis(stt,
+                "{\"emotion\": \"angry\", \"confidence\": 0.8, \"urgency\": \"high\"}");
+        assertEquals(new VoiceAnalysis("socorro", "angry", 0.8, "high", true), merged);
+
+        VoiceAnalysis sttOnly = ResponseParser.parseVoiceAnalysis(stt, "no es json");
+        assertEquals(new VoiceAnalysis("socorro", "sad", 0.6, "medium", false), sttOnly);
+
+        VoiceAnalysis failed = ResponseParser.parseVoiceAnalysis("{\"success\": false, \"error\": \"x\"}", null);
+        assertFalse(failed.hasText());
+        assertEquals("unknown", failed.emotion());
+        assertThrows(IOException.class, () -> ResponseParser.parseVoiceAnalysis("[]", null));
+    }
+
+    @Test
+    @DisplayName("Una respuesta que no es un objeto JSON lanza IOException")
+    void rejectsNonObjects() {
+        assertThrows(IOException.class, () -> ResponseParser.parseClassify("[1,2,3]"));
+        assertThrows(IOException.class, () -> ResponseParser.parseChat("no es json"));
+    }
+
+    @Test
+    @DisplayName("stringField lee campos de primer nivel y devuelve null si faltan")
+    void readsTopLevelStringField() {
+        assertEquals("hola mundo", ResponseParser.stringField("{\"text\" : \"hola mundo\"}", "text"));
+        assertNull(ResponseParser.stringField("{\"other\": {\"text\": \"x\"}}", "text"));
+        assertNull(ResponseParser.stringField("roto", "text"));
+        assertNull(ResponseParser.stringField(null, "text"));
+
+        String json = "{\"type\":\"fire\",\"type_name\":\"Incendio\"}";
+        assertEquals("fire", ResponseParser.stringField(json, "type"));
+        assertEquals("Incendio", ResponseParser.stringField(json, "type_name"));
+        assertNull(ResponseParser.stringField("{\"a\":\"b\"}", "missing"));
+    }
+
+    @Test
+    @DisplayName("parseClassify lee el array de emergencias compacto y lo deja vacío si falta")
+    void parsesCompactEmergenciesArray() throws IOException {
+        String json = "{\"priority\":1,\"corrected_text\":\"incendio\",\"emergencies\":[" +
+                      "{\"type\":\"fire\",\"confidence\":0.9}," +
+                      "{\"type\":\"medical\",\"confidence\":0.1}]}";
+        ClassifyResponse response = ResponseParser.parseClassify(json);
+        assertEquals(2, response.emergencies().size());
+        assertEquals("fire", response.emergencies().get(0).type());
+        assertEquals(0.9, response.emergencies().get(0).confidence(), 0.001);
+        assertEquals("medical", response.emergencies().get(1).type());
+
+        assertTrue(ResponseParser.parseClassify("{\"priority\":1}").emergencies().isEmpty());
+        assertEquals(0.87, ResponseParser.parseClassify(
+                "{\"emergencies\":[{\"type\":\"x\",\"confidence\":0.87}]}").primary().confidence(), 0.001);
+    }
+}
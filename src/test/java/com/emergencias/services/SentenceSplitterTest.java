@@ -0,0 +1,42 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SentenceSplitterTest {
+
+    private final List<String> sentences = new ArrayList<>();
+    private final SentenceSplitter splitter = new SentenceSplitter(sentences::add);
+
+    @Test
+    @DisplayName("Emite cada frase en cuanto llega el espacio que sigue al signo final")
+    void emitsSentencesAsSoonAsTheyEnd() {
+        splitter.append("Mantenga la ");
+        splitter.append("calma.");
+        assertTrue(sentences.isEmpty(), "aún no se sabe si la frase ha terminado");
+
+        splitter.append(" ¿Respira");
+        assertEquals(List.of("Mantenga la calma."), sentences);
+
+        splitter.append("? ¡Llame ya! Voy");
+        assertEquals(List.of("Mantenga la calma.", "¿Respira?", "¡Llame ya!"), sentences);
+
+        splitter.flush();
+        assertEquals("Voy", sentences.get(3));
+    }
+
+    @Test
+    @DisplayName("Un punto tras una cifra no corta la frase y flush no emite frases vacías")
+    void keepsNumberedItemsTogether() {
+        splitter.append("1. Llame al 112.\n2. Abra la puerta.  ");
+        splitter.flush();
+        splitter.flush();
+
+        assertEquals(List.of("1. Llame al 112.", "2. Abra la puerta."), sentences);
+    }
+}
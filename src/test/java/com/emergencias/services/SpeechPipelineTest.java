@@ -0,0 +1,87 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpeechPipelineTest {
+
+    // Síntesis y reproducción controladas a mano desde el test
+    private final Map<String, CompletableFuture<byte[]>> requested = new LinkedHashMap<>();
+    private final List<String> played = new ArrayList<>();
+    private final List<CompletableFuture<Void>> playing = new ArrayList<>();
+
+    private final SpeechPipeline<byte[]> pipeline = new SpeechPipeline<>(
+            text -> requested.computeIfAbsent(text, t -> new CompletableFuture<>()),
+            audio -> {
+                played.add(new String(audio, StandardCharsets.UTF_8));
+                CompletableFuture<Void> done = new CompletableFuture<>();
+                playing.add(done);
+                return done;
+            },
+            2);
+
+    @Test
+    @DisplayName("Pide las siguientes frases mientras suena la actual y las reproduce en orden")
+    void prefetchesWhilePlayingInOrder() {
+        pipeline.speak("uno");
+        pipeline.speak("dos");
+        pipeline.speak("tres");
+        pipeline.speak("cuatro");
+        assertEquals(List.of("uno", "dos"), List.copyOf(requested.keySet()), "ventana de 2 síntesis");
+
+        synthesized("dos");
+        assertTrue(played.isEmpty(), "no se salta el orden");
+        synthesized("uno");
+        assertEquals(List.of("uno"), played);
+        assertEquals(List.of("uno", "dos", "tres"), List.copyOf(requested.keySet()),
+                "al empezar a sonar se libera un hueco en la ventana");
+
+        synthesized("tres");
+        assertEquals(List.of("uno"), played, "no se solapan audios");
+        playing.get(0).complete(null);
+        assertEquals(List.of("uno", "dos"), played, "la siguiente suena en cuanto termina la anterior");
+        assertTrue(requested.containsKey("cuatro"));
+
+        playing.get(1).complete(null);
+        assertEquals(List.of("uno", "dos", "tres"), played);
+        assertEquals(1, pipeline.pending());
+    }
+
+    @Test
+    @DisplayName("Una síntesis fallida se salta y clear() cancela lo pendiente")
+    void skipsFailuresAndClears() {
+        pipeline.speak("uno");
+        pipeline.speak("dos");
+        pipeline.speak("tres");
+
+        requested.get("uno").completeExceptionally(new RuntimeException("TTS caído"));
+        synthesized("dos");
+        assertEquals(List.of("dos"), played);
+
+        pipeline.clear();
+        assertTrue(requested.get("tres").isCancelled());
+        assertEquals(0, pipeline.pending());
+
+        playing.get(0).complete(null);
+        pipeline.speak("cinco");
+        synthesized("cinco");
+        assertEquals(List.of("dos", "cinco"), played);
+
+        pipeline.close();
+        pipeline.speak("seis");
+        assertFalse(requested.containsKey("seis"));
+    }
+
+    private void synthesized(String text) {
+        requested.get(text).complete(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
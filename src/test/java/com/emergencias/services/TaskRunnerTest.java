@@ -0,0 +1,76 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskRunnerTest {
+
+    @Test
+    @DisplayName("Las tareas corren en hilos virtuales y sus errores llegan al future")
+    void runsOnVirtualThreads() throws Exception {
+        try (TaskRunner runner = new TaskRunner("test-")) {
+            assertTrue(runner.submit(() -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS));
+
+            CompletableFuture<Void> failing = runner.run(() -> { throw new IllegalStateException("boom"); });
+            ExecutionException e = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+    }
+
+    @Test
+    @DisplayName("Cancelar un ámbito interrumpe sus tareas y las nuevas nacen canceladas")
+    void cancellingScopeInterruptsTasks() throws Exception {
+        try (TaskRunner runner = new TaskRunner("test-")) {
+            TaskRunner.Scope turn = runner.openScope();
+            CountDownLatch started = new CountDownLatch(1);
+            CompletableFuture<Boolean> interrupted = new CompletableFuture<>();
+            turn.fork(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(10_000);
+                    interrupted.complete(false);
+                } catch (InterruptedException e) {
+                    interrupted.complete(true);
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(1, turn.active());
+
+            turn.cancel();
+            assertTrue(interrupted.get(5, TimeUnit.SECONDS));
+            assertTrue(turn.fork(() -> "tarde").isCancelled());
+
+            TaskRunner.Scope other = runner.openScope();
+            assertEquals("ok", other.fork(() -> "ok").get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Al cerrar el ejecutor se interrumpen las tareas y no se aceptan más")
+    void closeStopsEverything() throws Exception {
+        TaskRunner runner = new TaskRunner("test-");
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Boolean> interrupted = new CompletableFuture<>();
+        runner.run(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.complete(true);
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        runner.close();
+        assertTrue(interrupted.get(5, TimeUnit.SECONDS));
+        assertTrue(runner.isShutdown());
+        assertTrue(runner.submit(() -> 1).isCancelled());
+    }
+}
@@ -0,0 +1,152 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TtsCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger syntheses = new AtomicInteger();
+
+    /** Sintetizador falso: un WAV cuyas muestras son los bytes del texto. */
+    private CompletableFuture<byte[]> synthesize(String text, String emotion) {
+        syntheses.incrementAndGet();
+        return CompletableFuture.completedFuture(wav(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("La misma frase (espacios o punto final aparte) se sintetiza una vez y luego sale de memoria")
+    void servesRepeatedPhrasesFromMemory() throws Exception {
+        CompletableFuture<byte[]> pending = new CompletableFuture<>();
+        TtsCache cache = new TtsCache((text, emotion) -> {
+            syntheses.incrementAndGet();
+            return pending;
+        }, null, 1 << 20, 1 << 20);
+
+        CompletableFuture<AudioPlayer.Pcm> first = cache.get("Mantenga la calma.", "neutral");
+        CompletableFuture<AudioPlayer.Pcm> second = cache.get("Mantenga  la calma", "neutral");
+        assertEquals(1, syntheses.get(), "las peticiones simultáneas comparten la síntesis");
+        second.cancel(true);
+        assertFalse(first.isDone(), "cancelar una copia no afecta a las demás");
+
+        pending.complete(wav(new byte[] {1, 2, 3, 4}));
+        assertEquals(4, first.get(1, TimeUnit.SECONDS).length());
+
+        AudioPlayer.Pcm hit = cache.get("Mantenga la calma", "neutral").getNow(null);
+        assertNotNull(hit, "acierto en memoria sin esperar");
+        assertEquals(1, syntheses.get());
+        assertEquals(1, cache.getMemoryHits());
+        assertNotEquals(TtsCache.key("Mantenga la calma", "neutral"), TtsCache.key("Mantenga la calma", "urgent"));
+    }
+
+    @Test
+    @DisplayName("El nivel de disco sobrevive a la instancia y se lee mapeado en memoria")
+    void reloadsFromDisk() throws Exception {
+        TtsCache first = new TtsCache(this::synthesize, dir, 1 << 20, 1 << 20);
+        byte[] expected = sample(first.get("Llame al 112.", "neutral").get(1, TimeUnit.SECONDS));
+
+        TtsCache second = new TtsCache((text, emotion) -> {
+            throw new AssertionError("no debería sintetizar");
+        }, dir, 1 << 20, 1 << 20);
+        AudioPlayer.Pcm pcm = second.get("Llame al 112.", "neutral").get(1, TimeUnit.SECONDS);
+
+        assertArrayEquals(expected, sample(pcm));
+        assertEquals(24000f, pcm.format().getSampleRate());
+        assertEquals(1, second.getDiskHits());
+        assertTrue(second.getDiskBytes() > 0);
+    }
+
+    @Test
+    @DisplayName("Los presupuestos expulsan primero lo menos usado en memoria y en disco")
+    void enforcesBudgets() throws Exception {
+        // Cada WAV de 100 muestras ocupa 144 bytes en memoria y 116 en disco
+        TtsCache cache = new TtsCache((text, emotion) -> {
+            syntheses.incrementAndGet();
+            return CompletableFuture.completedFuture(wav(new byte[100]));
+        }, dir, 300, 250);
+
+        cache.get("uno", "neutral").get();
+        cache.get("dos", "neutral").get();
+        cache.get("uno", "neutral").get();   // "uno" pasa a ser el más reciente
+        cache.get("tres", "neutral").get();
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.getMemoryBytes() <= 300);
+        assertTrue(cache.getDiskBytes() <= 250);
+        try (var files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+
+        cache.clearMemory();
+        cache.get("uno", "neutral").get();
+        cache.get("dos", "neutral").get();
+        assertEquals(4, syntheses.get(), "'dos' se expulsó de memoria y de disco");
+    }
+
+    @Test
+    @DisplayName("prewarm carga todas las frases con un número limitado de síntesis a la vez")
+    void prewarmsWithBoundedConcurrency() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        Map<String, Boolean> seen = new ConcurrentHashMap<>();
+        TtsCache cache = new TtsCache((text, emotion) -> {
+            seen.put(text, true);
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> wav(new byte[2]),
+                            CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS))
+                    .whenComplete((r, t) -> concurrent.decrementAndGet());
+        }, null, 1 << 20, 1 << 20);
+
+        List<String> phrases = List.of("a", "b", "c", "d", "e", "a");
+        cache.prewarm(phrases, "neutral").get(5, TimeUnit.SECONDS);
+
+        assertEquals(5, seen.size());
+        assertEquals(5, cache.size());
+        assertTrue(maxConcurrent.get() <= 2);
+    }
+
+    @Test
+    @DisplayName("Un fichero corrupto en disco se descarta y se vuelve a sintetizar")
+    void discardsCorruptDiskEntries() throws Exception {
+        Files.write(dir.resolve(TtsCache.key("hola", "neutral") + ".pcm"), new byte[] {1, 2, 3});
+        TtsCache cache = new TtsCache(this::synthesize, dir, 1 << 20, 1 << 20);
+
+        assertNotNull(cache.get("hola", "neutral").get(1, TimeUnit.SECONDS));
+        assertEquals(1, syntheses.get());
+        assertEquals(0, cache.getDiskHits());
+    }
+
+    private static byte[] sample(AudioPlayer.Pcm pcm) {
+        return Arrays.copyOfRange(pcm.data(), pcm.offset(), pcm.offset() + pcm.length());
+    }
+
+    private static byte[] wav(byte[] samples) {
+        ByteBuffer b = ByteBuffer.allocate(44 + samples.length).order(ByteOrder.LITTLE_ENDIAN);
+        b.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + samples.length)
+         .put("WAVEfmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16)
+         .putShort((short) 1).putShort((short) 1).putInt(24000).putInt(48000)
+         .putShort((short) 2).putShort((short) 16)
+         .put("data".getBytes(StandardCharsets.US_ASCII)).putInt(samples.length)
+         .put(samples);
+        return b.array();
+    }
+}
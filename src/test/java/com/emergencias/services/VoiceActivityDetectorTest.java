@@ -0,0 +1,81 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoiceActivityDetectorTest {
+
+    private static final int RATE = 16_000;
+
+    @Test
+    @DisplayName("Detecta el inicio de la voz sobre ruido de fondo y el final tras el silencio")
+    void detectsSpeechOnsetAndEnd() {
+        VoiceActivityDetector vad = new VoiceActivityDetector(RATE);
+        Random random = new Random(1);
+        int start = -1, end = -1;
+        for (int i = 0; i < 150; i++) {
+            // 0–0,5 s ruido; 0,5–1,5 s "voz" (tono de 200 Hz); después ruido otra vez
+            byte[] frame = i >= 25 && i < 75 ? tone(vad, 200, 6000, i) : noise(vad, random, 80);
+            VoiceActivityDetector.Event event = vad.accept(frame, 0);
+            if (event == VoiceActivityDetector.Event.SPEECH_START) start = i;
+            if (event == VoiceActivityDetector.Event.SPEECH_END) end = i;
+        }
+        assertEquals(27, start, "3 tramas de voz seguidas");
+        assertEquals(74 + 25, end, "500 ms de silencio tras la última trama de voz");
+        assertFalse(vad.isSpeaking());
+    }
+
+    @Test
+    @DisplayName("Sin voz se abandona la escucha a los 5 segundos")
+    void givesUpWithoutSpeech() {
+        VoiceActivityDetector vad = new VoiceActivityDetector(RATE);
+        Random random = new Random(2);
+        VoiceActivityDetector.Event last = VoiceActivityDetector.Event.NONE;
+        int frames = 0;
+        while (last == VoiceActivityDetector.Event.NONE && frames < 1000) {
+            last = vad.accept(noise(vad, random, 80), 0);
+            frames++;
+        }
+        assertEquals(VoiceActivityDetector.Event.NO_SPEECH, last);
+        assertEquals(250, frames);
+    }
+
+    @Test
+    @DisplayName("Energía y cruces por cero se calculan sobre muestras de 16 bits little-endian")
+    void computesFeatures() {
+        byte[] alternating = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            short s = (short) (i % 2 == 0 ? 1000 : -1000);
+            alternating[2 * i] = (byte) s;
+            alternating[2 * i + 1] = (byte) (s >> 8);
+        }
+        assertEquals(1000, VoiceActivityDetector.rms(alternating, 0, 4), 1e-9);
+        assertEquals(0.75, VoiceActivityDetector.zeroCrossingRate(alternating, 0, 4), 1e-9);
+    }
+
+    static byte[] tone(VoiceActivityDetector vad, double hz, double amplitude, int frameIndex) {
+        byte[] frame = new byte[vad.frameBytes()];
+        int samples = frame.length / 2;
+        for (int i = 0; i < samples; i++) {
+            double t = (frameIndex * samples + i) / (double) RATE;
+            short s = (short) (amplitude * Math.sin(2 * Math.PI * hz * t));
+            frame[2 * i] = (byte) s;
+            frame[2 * i + 1] = (byte) (s >> 8);
+        }
+        return frame;
+    }
+
+    static byte[] noise(VoiceActivityDetector vad, Random random, int amplitude) {
+        byte[] frame = new byte[vad.frameBytes()];
+        for (int i = 0; i < frame.length / 2; i++) {
+            short s = (short) (random.nextGaussian() * amplitude);
+            frame[2 * i] = (byte) s;
+            frame[2 * i + 1] = (byte) (s >> 8);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,80 @@
+package com.emergencias.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoiceCaptureTest {
+
+    /** Subida falsa que guarda lo recibido. */
+    private static final class RecordingUpload implements SpeechUpload {
+        final ByteArrayOutputStream audio = new ByteArrayOutputStream();
+        boolean finished;
+
+        @Override
+        public void write(byte[] pcm, int offset, int length) {
+            assertFalse(finished);
+            audio.write(pcm, offset, length);
+        }
+
+        @Override
+        public CompletableFuture<String> finish() {
+            finished = true;
+            return CompletableFuture.completedFuture("{\"text\": \"hola\"}");
+        }
+
+        @Override
+        public void cancel() {}
+    }
+
+    @Test
+    @DisplayName("Sube la frase con 300 ms previos y se detiene al callar, sin esperar al resto del audio")
+    void uploadsUtteranceWithPreRoll() throws Exception {
+        VoiceActivityDetector vad = new VoiceActivityDetector(VoiceCapture.SAMPLE_RATE);
+        int frameBytes = vad.frameBytes();
+        Random random = new Random(3);
+        ByteArrayOutputStream mic = new ByteArrayOutputStream();
+        for (int i = 0; i < 50; i++) mic.write(VoiceActivityDetectorTest.noise(vad, random, 80));      // 1 s
+        for (int i = 0; i < 25; i++) mic.write(VoiceActivityDetectorTest.tone(vad, 200, 6000, i));     // 0,5 s
+        for (int i = 0; i < 200; i++) mic.write(VoiceActivityDetectorTest.noise(vad, random, 80));     // 4 s
+
+        RecordingUpload upload = new RecordingUpload();
+        List<VoiceCapture.Phase> phases = new ArrayList<>();
+        VoiceCapture capture = new VoiceCapture(rate -> {
+            assertEquals(16_000, rate);
+            return upload;
+        });
+        ByteArrayInputStream in = new ByteArrayInputStream(mic.toByteArray());
+
+        assertEquals("{\"text\": \"hola\"}", capture.capture(in, phases::add).get());
+
+        assertEquals(List.of(VoiceCapture.Phase.SPEAKING, VoiceCapture.Phase.TRANSCRIBING), phases);
+        assertTrue(upload.finished);
+        // La voz se confirma en la trama 52: se suben las 15 tramas 38..52 y el resto
+        // hasta la 99 (25 tramas de silencio tras la última de voz, la 74)
+        assertEquals((99 - 38 + 1) * frameBytes, upload.audio.size());
+        assertTrue(in.available() > 0, "la captura termina al detectar el final de la frase");
+    }
+
+    @Test
+    @DisplayName("Si nadie habla no se abre ninguna subida")
+    void noSpeechNoUpload() throws Exception {
+        VoiceActivityDetector vad = new VoiceActivityDetector(VoiceCapture.SAMPLE_RATE);
+        Random random = new Random(4);
+        ByteArrayOutputStream mic = new ByteArrayOutputStream();
+        for (int i = 0; i < 300; i++) mic.write(VoiceActivityDetectorTest.noise(vad, random, 80));
+
+        VoiceCapture capture = new VoiceCapture(rate -> {
+            throw new AssertionError("no debería subir nada");
+        });
+        assertNull(capture.capture(new ByteArrayInputStream(mic.toByteArray()), phase -> {}).get());
+    }
+}
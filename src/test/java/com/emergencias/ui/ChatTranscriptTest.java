@@ -0,0 +1,40 @@
+package com.emergencias.ui;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatTranscriptTest {
+
+    private final ChatTranscript transcript = new ChatTranscript();
+
+    @Test
+    @DisplayName("El streaming amplía la última burbuja del bot sin crear mensajes nuevos")
+    void appendsToLastBotMessage() {
+        transcript.addUser("Hay humo en la cocina");
+        ChatMessage reply = transcript.addBot("Salga");
+        List<String> seen = new ArrayList<>();
+        reply.textProperty().addListener((obs, old, now) -> seen.add(now));
+
+        assertTrue(transcript.appendToLastBot(" de la casa."));
+        assertEquals("Salga de la casa.", reply.text());
+        assertEquals(List.of("Salga de la casa."), seen, "la celda enlazada ve el cambio");
+        assertEquals(2, transcript.messages().size());
+    }
+
+    @Test
+    @DisplayName("Si el último mensaje es del usuario, el texto en streaming no se le pega")
+    void ignoresAppendAfterUserMessage() {
+        assertFalse(transcript.appendToLastBot("huérfano"));
+        transcript.addBot("Hola");
+        transcript.addUser("otra pregunta");
+        assertFalse(transcript.appendToLastBot(" tarde"));
+        assertEquals("otra pregunta", transcript.messages().get(1).text());
+        assertEquals(ChatMessage.Sender.USER, transcript.messages().get(1).sender());
+        assertThrows(UnsupportedOperationException.class, () -> transcript.messages().clear());
+    }
+}
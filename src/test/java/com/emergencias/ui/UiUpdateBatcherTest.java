@@ -0,0 +1,58 @@
+package com.emergencias.ui;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UiUpdateBatcherTest {
+
+    private final List<String> applied = new ArrayList<>();
+    private final AtomicInteger wakeUps = new AtomicInteger();
+    private final UiUpdateBatcher batcher = new UiUpdateBatcher(
+            text -> applied.add("append:" + text), status -> applied.add("status:" + status), wakeUps::incrementAndGet);
+
+    @Test
+    @DisplayName("Los tokens de un fotograma se aplican juntos y el estado solo conserva el último")
+    void coalescesAppendsAndStatus() {
+        batcher.post(() -> applied.add("burbuja"));
+        for (String token : List.of("Hola", ", ", "mantenga", " la calma")) batcher.append(token);
+        batcher.status("Respondiendo...");
+        batcher.status("Listo");
+
+        assertEquals(1, wakeUps.get(), "una sola activación por ráfaga");
+        assertTrue(batcher.flush());
+        assertEquals(List.of("burbuja", "append:Hola, mantenga la calma", "status:Listo"), applied);
+    }
+
+    @Test
+    @DisplayName("El orden entre operaciones se respeta y el batcher se duerme sin trabajo")
+    void keepsOrderAndSleepsWhenIdle() {
+        batcher.append("fin de la respuesta");
+        batcher.post(() -> applied.add("burbuja nueva"));
+        batcher.append("otra");
+        assertTrue(batcher.flush());
+        assertEquals(List.of("append:fin de la respuesta", "burbuja nueva", "append:otra"), applied);
+
+        // Con el batcher despierto no se vuelve a programar; tras vaciarse sí
+        batcher.append("x");
+        assertEquals(1, wakeUps.get());
+        assertTrue(batcher.flush());
+        assertFalse(batcher.flush());
+        batcher.status("Listo");
+        assertEquals(2, wakeUps.get());
+    }
+
+    @Test
+    @DisplayName("Un fallo en una operación no impide aplicar las demás")
+    void survivesFailingOperation() {
+        batcher.post(() -> { throw new IllegalStateException("nodo inexistente"); });
+        batcher.append("sigue");
+        assertTrue(batcher.flush());
+        assertEquals(List.of("append:sigue"), applied);
+    }
+}